@@ -18,6 +18,8 @@
 
 package org.killbill.billing.account.api.svcs;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,6 +31,7 @@ import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountEmail;
 import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.account.api.DefaultAccount;
 import org.killbill.billing.account.api.DefaultAccountEmail;
 import org.killbill.billing.account.api.DefaultMutableAccountData;
 import org.killbill.billing.account.api.ImmutableAccountData;
@@ -55,6 +58,7 @@ public class DefaultAccountInternalApi extends DefaultAccountApiBase implements
 
     private final ImmutableAccountInternalApi immutableAccountInternalApi;
     private final AccountDao accountDao;
+    private final CacheController accountCacheController;
     private final CacheController bcdCacheController;
 
     @Inject
@@ -65,6 +69,7 @@ public class DefaultAccountInternalApi extends DefaultAccountApiBase implements
         super(accountDao, nonEntityDao, cacheControllerDispatcher);
         this.immutableAccountInternalApi = immutableAccountInternalApi;
         this.accountDao = accountDao;
+        this.accountCacheController = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
         this.bcdCacheController = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_BCD);
     }
 
@@ -83,6 +88,18 @@ public class DefaultAccountInternalApi extends DefaultAccountApiBase implements
         return super.getAccountByRecordId(recordId, context);
     }
 
+    @Override
+    public List<Account> getAccountsByRecordIds(final Collection<Long> recordIds, final InternalTenantContext context) {
+        final List<AccountModelDao> accountModelDaos = accountDao.getByRecordIds(recordIds, context);
+        final List<Account> accounts = new ArrayList<Account>(accountModelDaos.size());
+        for (final AccountModelDao accountModelDao : accountModelDaos) {
+            final Account account = new DefaultAccount(accountModelDao);
+            DefaultImmutableAccountInternalApi.cacheAccountData(accountModelDao, account, accountCacheController, bcdCacheController);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
     @Override
     public void updateBCD(final String externalKey, final int bcd,
                           final InternalCallContext context) throws AccountApiException {
@@ -148,6 +165,16 @@ public class DefaultAccountInternalApi extends DefaultAccountApiBase implements
         return immutableAccountInternalApi.getImmutableAccountDataByRecordId(recordId, context);
     }
 
+    @Override
+    public void prefetchAccountDataByIds(final Collection<UUID> accountIds, final InternalTenantContext context) {
+        immutableAccountInternalApi.prefetchAccountDataByIds(accountIds, context);
+    }
+
+    @Override
+    public void prefetchAccountDataByRecordIds(final Collection<Long> accountRecordIds, final InternalTenantContext context) {
+        immutableAccountInternalApi.prefetchAccountDataByRecordIds(accountRecordIds, context);
+    }
+
     private AccountModelDao getAccountModelDaoByRecordId(final Long recordId, final InternalTenantContext context) throws AccountApiException {
         final AccountModelDao accountModelDao = accountDao.getByRecordId(recordId, context);
         if (accountModelDao == null) {
@@ -17,6 +17,12 @@
 
 package org.killbill.billing.account.api.svcs;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.killbill.billing.ObjectType;
@@ -24,6 +30,7 @@ import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.DefaultAccount;
 import org.killbill.billing.account.api.DefaultImmutableAccountData;
+import org.killbill.billing.account.api.DefaultMutableAccountData;
 import org.killbill.billing.account.api.ImmutableAccountData;
 import org.killbill.billing.account.api.ImmutableAccountInternalApi;
 import org.killbill.billing.account.dao.AccountModelDao;
@@ -35,6 +42,7 @@ import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.ImmutableAccountCacheLoader.LoaderCallback;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.ObjectRecordIds;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
@@ -42,14 +50,19 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.clock.Clock;
 import org.skife.jdbi.v2.IDBI;
 
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 public class DefaultImmutableAccountInternalApi implements ImmutableAccountInternalApi {
 
+    // Keep the IN clause of bulk lookups well below the limits of the supported databases
+    private static final int MAX_ACCOUNTS_PER_PREFETCH_QUERY = 500;
+
     private final EntitySqlDaoTransactionalJdbiWrapper transactionalSqlDao;
     private final NonEntityDao nonEntityDao;
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final CacheController accountCacheController;
+    private final CacheController bcdCacheController;
 
     @Inject
     public DefaultImmutableAccountInternalApi(final IDBI dbi,
@@ -61,6 +74,7 @@ public class DefaultImmutableAccountInternalApi implements ImmutableAccountInter
         this.nonEntityDao = nonEntityDao;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.accountCacheController = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
+        this.bcdCacheController = cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_BCD);
     }
 
     @Override
@@ -75,6 +89,49 @@ public class DefaultImmutableAccountInternalApi implements ImmutableAccountInter
         return (ImmutableAccountData) accountCacheController.get(recordId, arg);
     }
 
+    @Override
+    public void prefetchAccountDataByIds(final Collection<UUID> accountIds, final InternalTenantContext context) {
+        // Also populates the record id caches, used by getImmutableAccountDataById
+        final Map<UUID, ObjectRecordIds> objectsRecordIds = nonEntityDao.retrieveRecordIdsFromObjects(accountIds, ObjectType.ACCOUNT, cacheControllerDispatcher);
+
+        final Collection<Long> accountRecordIds = new ArrayList<Long>(objectsRecordIds.size());
+        for (final ObjectRecordIds objectRecordIds : objectsRecordIds.values()) {
+            accountRecordIds.add(objectRecordIds.getRecordId());
+        }
+        prefetchAccountDataByRecordIds(accountRecordIds, context);
+    }
+
+    @Override
+    public void prefetchAccountDataByRecordIds(final Collection<Long> accountRecordIds, final InternalTenantContext context) {
+        final Set<Long> cacheMisses = new LinkedHashSet<Long>();
+        for (final Long recordId : accountRecordIds) {
+            if (recordId != null && accountCacheController.get(recordId) == null) {
+                cacheMisses.add(recordId);
+            }
+        }
+
+        for (final List<Long> chunk : Iterables.partition(cacheMisses, MAX_ACCOUNTS_PER_PREFETCH_QUERY)) {
+            final List<AccountModelDao> accountModelDaos = transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<AccountModelDao>>() {
+
+                @Override
+                public List<AccountModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    return entitySqlDaoWrapperFactory.become(AccountSqlDao.class).getByRecordIds(chunk, context);
+                }
+            });
+
+            for (final AccountModelDao accountModelDao : accountModelDaos) {
+                cacheAccountData(accountModelDao, new DefaultAccount(accountModelDao), accountCacheController, bcdCacheController);
+            }
+        }
+    }
+
+    static void cacheAccountData(final AccountModelDao accountModelDao, final Account account, final CacheController accountCacheController, final CacheController bcdCacheController) {
+        // Same values as the ones built by the cache loaders
+        accountCacheController.putIfAbsent(accountModelDao.getRecordId(), new DefaultImmutableAccountData(account));
+        final Integer bcd = accountModelDao.getBillingCycleDayLocal() != null ? accountModelDao.getBillingCycleDayLocal() : DefaultMutableAccountData.DEFAULT_BILLING_CYCLE_DAY_LOCAL;
+        bcdCacheController.putIfAbsent(accountModelDao.getId(), bcd);
+    }
+
     private CacheLoaderArgument createImmutableAccountCacheLoaderArgument(final InternalTenantContext context) {
         final LoaderCallback loaderCallback = new LoaderCallback() {
             @Override
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,6 +31,9 @@ public interface AccountDao extends EntityDao<AccountModelDao, Account, AccountA
 
     AccountModelDao getAccountByKey(String key, InternalTenantContext context);
 
+    // Unknown record ids are ignored
+    List<AccountModelDao> getByRecordIds(Collection<Long> recordIds, InternalTenantContext context);
+
     Pagination<AccountModelDao> searchAccounts(String searchKey, Long offset, Long limit, InternalTenantContext context);
 
     /**
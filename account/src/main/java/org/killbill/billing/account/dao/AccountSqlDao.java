@@ -16,12 +16,15 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.dao.RecordIdCollectionBinder;
 import org.killbill.billing.util.entity.dao.Audited;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
@@ -41,6 +44,10 @@ public interface AccountSqlDao extends EntitySqlDao<AccountModelDao, Account> {
     public UUID getIdFromKey(@Bind("externalKey") final String key,
                              @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<AccountModelDao> getByRecordIds(@RecordIdCollectionBinder final Collection<Long> recordIds,
+                                                @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public Integer getBCD(@Bind("id") String accountId,
                        @BindBean final InternalTenantContext context);
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.account.api.svcs;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.account.AccountTestSuiteWithEmbeddedDB;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.account.api.DefaultAccount;
+import org.killbill.billing.account.api.ImmutableAccountData;
+import org.killbill.billing.account.api.ImmutableAccountInternalApi;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import static org.killbill.billing.account.AccountTestUtils.createTestAccount;
+
+public class TestDefaultImmutableAccountInternalApi extends AccountTestSuiteWithEmbeddedDB {
+
+    @Inject
+    protected ImmutableAccountInternalApi immutableAccountInternalApi;
+    @Inject
+    protected AccountInternalApi accountInternalApi;
+
+    @Test(groups = "slow", description = "Test prefetching account data populates the immutable account data and BCD caches")
+    public void testPrefetchAccountData() throws Exception {
+        final Account account1 = createAccount(new DefaultAccount(createTestAccount(12)));
+        final Account account2 = createAccount(new DefaultAccount(createTestAccount(25)));
+        final Long recordId1 = nonEntityDao.retrieveRecordIdFromObject(account1.getId(), ObjectType.ACCOUNT, null);
+        final Long recordId2 = nonEntityDao.retrieveRecordIdFromObject(account2.getId(), ObjectType.ACCOUNT, null);
+
+        final CacheController<Object, Object> immutableAccountCache = controllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
+        final CacheController<Object, Object> bcdCache = controllerDispatcher.getCacheController(CacheType.ACCOUNT_BCD);
+
+        controllerDispatcher.clearAll();
+        Assert.assertNull(immutableAccountCache.get(recordId1));
+
+        // Unknown accounts are ignored
+        immutableAccountInternalApi.prefetchAccountDataByIds(ImmutableList.<UUID>of(account1.getId(), account2.getId(), UUID.randomUUID()), internalCallContext);
+        checkCachedAccountData(immutableAccountCache.get(recordId1), bcdCache.get(account1.getId()), account1);
+        checkCachedAccountData(immutableAccountCache.get(recordId2), bcdCache.get(account2.getId()), account2);
+        Assert.assertEquals(immutableAccountInternalApi.getImmutableAccountDataById(account1.getId(), internalCallContext).getExternalKey(), account1.getExternalKey());
+
+        controllerDispatcher.clearAll();
+
+        immutableAccountInternalApi.prefetchAccountDataByRecordIds(ImmutableList.<Long>of(recordId2, recordId2 + 1000), internalCallContext);
+        Assert.assertNull(immutableAccountCache.get(recordId1));
+        checkCachedAccountData(immutableAccountCache.get(recordId2), bcdCache.get(account2.getId()), account2);
+    }
+
+    @Test(groups = "slow", description = "Test retrieving accounts by record ids populates the immutable account data and BCD caches")
+    public void testGetAccountsByRecordIds() throws Exception {
+        final Account account1 = createAccount(new DefaultAccount(createTestAccount(12)));
+        final Account account2 = createAccount(new DefaultAccount(createTestAccount(25)));
+        final Long recordId1 = nonEntityDao.retrieveRecordIdFromObject(account1.getId(), ObjectType.ACCOUNT, null);
+        final Long recordId2 = nonEntityDao.retrieveRecordIdFromObject(account2.getId(), ObjectType.ACCOUNT, null);
+
+        final CacheController<Object, Object> immutableAccountCache = controllerDispatcher.getCacheController(CacheType.ACCOUNT_IMMUTABLE);
+        final CacheController<Object, Object> bcdCache = controllerDispatcher.getCacheController(CacheType.ACCOUNT_BCD);
+
+        controllerDispatcher.clearAll();
+
+        // Unknown accounts are ignored
+        final List<Account> accounts = accountInternalApi.getAccountsByRecordIds(ImmutableList.<Long>of(recordId1, recordId2, recordId2 + 1000), internalCallContext);
+        Assert.assertEquals(accounts.size(), 2);
+        final Set<UUID> accountIds = new HashSet<UUID>();
+        for (final Account account : accounts) {
+            accountIds.add(account.getId());
+        }
+        Assert.assertEquals(accountIds, ImmutableSet.<UUID>of(account1.getId(), account2.getId()));
+
+        checkCachedAccountData(immutableAccountCache.get(recordId1), bcdCache.get(account1.getId()), account1);
+        checkCachedAccountData(immutableAccountCache.get(recordId2), bcdCache.get(account2.getId()), account2);
+    }
+
+    private void checkCachedAccountData(final Object cachedAccountData, final Object cachedBCD, final Account account) {
+        Assert.assertNotNull(cachedAccountData);
+        final ImmutableAccountData accountData = (ImmutableAccountData) cachedAccountData;
+        Assert.assertEquals(accountData.getId(), account.getId());
+        Assert.assertEquals(accountData.getExternalKey(), account.getExternalKey());
+        Assert.assertEquals(accountData.getCurrency(), account.getCurrency());
+        Assert.assertEquals(accountData.getTimeZone(), account.getTimeZone());
+        Assert.assertEquals(cachedBCD, account.getBillCycleDayLocal());
+    }
+}
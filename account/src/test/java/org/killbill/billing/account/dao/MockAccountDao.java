@@ -18,6 +18,7 @@
 
 package org.killbill.billing.account.dao;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -109,6 +110,18 @@ public class MockAccountDao extends MockEntityDaoBase<AccountModelDao, Account,
         return null;
     }
 
+    @Override
+    public List<AccountModelDao> getByRecordIds(final Collection<Long> recordIds, final InternalTenantContext context) {
+        final List<AccountModelDao> accounts = new ArrayList<AccountModelDao>(recordIds.size());
+        for (final Long recordId : recordIds) {
+            final AccountModelDao account = getByRecordId(recordId, context);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
     @Override
     public Pagination<AccountModelDao> searchAccounts(final String searchKey, final Long offset, final Long limit, final InternalTenantContext context) {
         final Collection<AccountModelDao> results = new LinkedList<AccountModelDao>();
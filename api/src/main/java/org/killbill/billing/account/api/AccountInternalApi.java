@@ -18,6 +18,7 @@
 
 package org.killbill.billing.account.api;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +33,10 @@ public interface AccountInternalApi extends ImmutableAccountInternalApi {
 
     Account getAccountByRecordId(Long recordId, InternalTenantContext context) throws AccountApiException;
 
+    // Single query (per 500 accounts) for accounts about to be processed in sequence: also warms up the immutable account data
+    // and BCD caches (unknown accounts are ignored)
+    List<Account> getAccountsByRecordIds(Collection<Long> recordIds, InternalTenantContext context);
+
     void updateBCD(String key, int bcd, InternalCallContext context) throws AccountApiException;
 
     int getBCD(UUID accountId, InternalTenantContext context) throws AccountApiException;
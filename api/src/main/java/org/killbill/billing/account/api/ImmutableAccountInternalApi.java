@@ -17,6 +17,7 @@
 
 package org.killbill.billing.account.api;
 
+import java.util.Collection;
 import java.util.UUID;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -26,4 +27,9 @@ public interface ImmutableAccountInternalApi {
     ImmutableAccountData getImmutableAccountDataById(UUID accountId, InternalTenantContext context) throws AccountApiException;
 
     ImmutableAccountData getImmutableAccountDataByRecordId(Long recordId, InternalTenantContext context) throws AccountApiException;
+
+    // Warm up the immutable account data and BCD caches for accounts about to be processed in sequence (unknown accounts are ignored)
+    void prefetchAccountDataByIds(Collection<UUID> accountIds, InternalTenantContext context);
+
+    void prefetchAccountDataByRecordIds(Collection<Long> accountRecordIds, InternalTenantContext context);
 }
@@ -20,9 +20,12 @@ package org.killbill.billing.invoice.api;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
@@ -37,6 +40,38 @@ public interface InvoiceInternalApi {
 
     public BigDecimal getAccountBalance(UUID accountId, InternalTenantContext context);
 
+    /**
+     * Retrieve a page of the (non migrated) invoices of the account, with their items and payments.
+     *
+     * @param accountId    the account id
+     * @param createdSince   only return invoices created at or after that date
+     * @param afterInvoiceId the last invoice of the previous page, null for the first page
+     * @param limit          the maximum number of invoices to return
+     * @param context        the tenant context (with the account record id set)
+     * @return the invoices, in creation order
+     */
+    public List<Invoice> getInvoicesByAccount(UUID accountId, DateTime createdSince, @Nullable UUID afterInvoiceId, Long limit, InternalTenantContext context);
+
+    /**
+     * Retrieve the (non migrated) invoices of the account with at least one credit item, with their items and payments.
+     *
+     * @param accountId    the account id
+     * @param createdSince only return invoices created at or after that date
+     * @param context      the tenant context (with the account record id set)
+     * @return the invoices, in creation order
+     */
+    public List<Invoice> getInvoicesWithCreditsByAccount(UUID accountId, DateTime createdSince, InternalTenantContext context);
+
+    /**
+     * Retrieve the ids of the (non migrated) invoices within an invoice date range, without loading the invoices.
+     *
+     * @param startDate the first invoice date (inclusive), if any
+     * @param endDate   the last invoice date (inclusive), if any
+     * @param context   the tenant context (with the account record id set, to restrict the lookup to that account)
+     * @return the invoice ids, ordered by invoice date
+     */
+    public List<UUID> getInvoiceIdsByInvoiceDate(LocalDate startDate, LocalDate endDate, InternalTenantContext context);
+
     public void recordPaymentAttemptInit(UUID invoiceId, BigDecimal amountOutstanding, Currency currency, Currency processedCurrency, UUID paymentId, String transactionExternalKey, DateTime paymentDate, InternalCallContext context) throws InvoiceApiException;
 
     public void recordPaymentAttemptCompletion(UUID invoiceId, BigDecimal amountOutstanding, Currency currency, Currency processedCurrency, UUID paymentId, String transactionExternalKey, DateTime paymentDate, boolean success, InternalCallContext context) throws InvoiceApiException;
@@ -47,6 +82,13 @@ public interface InvoiceInternalApi {
 
     public Invoice getInvoiceForPaymentId(UUID paymentId, InternalTenantContext context) throws InvoiceApiException;
 
+    /**
+     * @param paymentIds the payment ids, typically a page of the account payments
+     * @param context    the tenant context
+     * @return all the invoice payments associated with these payments
+     */
+    public List<InvoicePayment> getInvoicePaymentsByPaymentIds(Collection<UUID> paymentIds, InternalTenantContext context);
+
     /**
      * Create a refund.
      *
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.api;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+
+public interface AccountPaymentsInternalApi {
+
+    /**
+     * Retrieve a page of the payments of the account, without plugin info.
+     *
+     * @param accountId    the account id
+     * @param createdSince only return payments created at or after that date
+     * @param offset       the offset of the first payment
+     * @param limit        the maximum number of payments to return
+     * @param context      the tenant context (with the account record id set)
+     * @return the payments, ordered by creation date
+     */
+    public List<Payment> getAccountPayments(UUID accountId, DateTime createdSince, Long offset, Long limit, InternalTenantContext context);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.api;
+
+import org.killbill.billing.util.callcontext.CallContext;
+
+public interface PaymentMethodsReconciliationInternalApi {
+
+    /**
+     * Asynchronously refresh the payment methods of all the accounts of the tenant with that plugin.
+     * If a reconciliation is already in progress for that plugin, it is left running.
+     *
+     * @param pluginName the name of the plugin
+     * @param context    the call context
+     * @throws PaymentApiException if the plugin isn't registered
+     */
+    public void reconcilePaymentMethods(String pluginName, CallContext context) throws PaymentApiException;
+}
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.tag;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -40,6 +41,24 @@ public interface TagInternalApi {
      */
     public List<Tag> getTags(UUID objectId, ObjectType objectType, InternalTenantContext context);
 
+    /**
+     * Return tags for a set of objects of the same type, in a single query
+     *
+     * @param objectIds  the object ids
+     * @param objectType the object type
+     * @param context    call callcontext
+     * @return tags for all these objects
+     */
+    public List<Tag> getTagsForObjects(Collection<UUID> objectIds, ObjectType objectType, InternalTenantContext context);
+
+    /**
+     * Return the control tags for the account and all its objects (bundles, invoices, ...)
+     *
+     * @param context call callcontext
+     * @return active control tags
+     */
+    public List<Tag> getControlTagsForAccount(InternalTenantContext context);
+
 
     public List<Tag> getTagsForAccountType(ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.killbill.billing.util.config.CatalogConfig;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Keeps the most recently used lazily loaded catalog versions (see LazyCatalogVersion) strongly reachable.
+ * <p/>
+ * Versions evicted from the pool are only weakly referenced, and are parsed again on their next access.
+ * <p/>
+ * Hits are on the path of every catalog lookup, so they don't take any lock: they only refresh the access time of the
+ * version, at most once per {@link #TOUCH_INTERVAL_NANOS}. Eviction of the least recently used version happens when a
+ * version is added, which is rare (it follows the parsing of the XML).
+ */
+public class CatalogVersionPool {
+
+    public static final String HITS_METRIC_NAME = MetricRegistry.name(CatalogVersionPool.class, "hits");
+    public static final String LOADS_METRIC_NAME = MetricRegistry.name(CatalogVersionPool.class, "loads");
+    public static final String SIZE_METRIC_NAME = MetricRegistry.name(CatalogVersionPool.class, "size");
+
+    private static final long TOUCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int maxSize;
+    private final ConcurrentMap<LazyCatalogVersion, PooledVersion> recentlyUsedVersions = new ConcurrentHashMap<LazyCatalogVersion, PooledVersion>();
+
+    private final Counter nbHits = new Counter();
+    private final Counter nbLoads = new Counter();
+
+    @Inject
+    public CatalogVersionPool(final CatalogConfig catalogConfig, final MetricRegistry metricRegistry) {
+        this(catalogConfig.getLazyCatalogVersionsPoolSize(), metricRegistry);
+    }
+
+    public CatalogVersionPool(final int maxSize) {
+        this(maxSize, (MetricRegistry) null);
+    }
+
+    public CatalogVersionPool(final int maxSize, @Nullable final MetricRegistry metricRegistry) {
+        this.maxSize = maxSize;
+        if (metricRegistry != null) {
+            registerGauges(metricRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public long getNbHits() {
+        return nbHits.getCount();
+    }
+
+    public long getNbLoads() {
+        return nbLoads.getCount();
+    }
+
+    public int size() {
+        return recentlyUsedVersions.size();
+    }
+
+    void recordHit(final LazyCatalogVersion version, final StandaloneCatalog catalog) {
+        nbHits.inc();
+
+        final PooledVersion pooledVersion = recentlyUsedVersions.get(version);
+        if (pooledVersion == null) {
+            // Evicted, but still reachable from elsewhere
+            add(version, catalog);
+        } else {
+            pooledVersion.touch();
+        }
+    }
+
+    void recordLoad(final LazyCatalogVersion version, final StandaloneCatalog catalog) {
+        nbLoads.inc();
+        add(version, catalog);
+    }
+
+    private void add(final LazyCatalogVersion version, final StandaloneCatalog catalog) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        recentlyUsedVersions.put(version, new PooledVersion(catalog));
+        if (recentlyUsedVersions.size() > maxSize) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        while (recentlyUsedVersions.size() > maxSize) {
+            Map.Entry<LazyCatalogVersion, PooledVersion> eldest = null;
+            for (final Map.Entry<LazyCatalogVersion, PooledVersion> entry : recentlyUsedVersions.entrySet()) {
+                if (eldest == null || entry.getValue().lastAccessNanos - eldest.getValue().lastAccessNanos < 0) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            recentlyUsedVersions.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void registerGauges(final MetricRegistry metricRegistry) {
+        metricRegistry.remove(HITS_METRIC_NAME);
+        metricRegistry.register(HITS_METRIC_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getNbHits();
+            }
+        });
+        metricRegistry.remove(LOADS_METRIC_NAME);
+        metricRegistry.register(LOADS_METRIC_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getNbLoads();
+            }
+        });
+        metricRegistry.remove(SIZE_METRIC_NAME);
+        metricRegistry.register(SIZE_METRIC_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return size();
+            }
+        });
+    }
+
+    private static final class PooledVersion {
+
+        // Keeps the version strongly reachable
+        private final StandaloneCatalog catalog;
+
+        private volatile long lastAccessNanos;
+
+        private PooledVersion(final StandaloneCatalog catalog) {
+            this.catalog = catalog;
+            this.lastAccessNanos = System.nanoTime();
+        }
+
+        private void touch() {
+            final long now = System.nanoTime();
+            // Avoid a write (and cache line invalidation) per lookup on hot versions
+            if (now - lastAccessNanos > TOUCH_INTERVAL_NANOS) {
+                lastAccessNanos = now;
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.killbill.billing.catalog;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.util.Arrays;
@@ -34,7 +35,9 @@ import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultInternationalPrice extends ValidatingConfig<StandaloneCatalog> implements InternationalPrice {
+public class DefaultInternationalPrice extends ValidatingConfig<StandaloneCatalog> implements InternationalPrice, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     //TODO: Must have a price point for every configured currency
     //TODO: No prices is a zero cost plan
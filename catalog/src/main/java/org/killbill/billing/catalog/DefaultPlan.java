@@ -18,6 +18,7 @@
 
 package org.killbill.billing.catalog;
 
+import java.io.Serializable;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,7 +50,9 @@ import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultPlan extends ValidatingConfig<StandaloneCatalog> implements Plan {
+public class DefaultPlan extends ValidatingConfig<StandaloneCatalog> implements Plan, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlAttribute(required = true)
     @XmlID
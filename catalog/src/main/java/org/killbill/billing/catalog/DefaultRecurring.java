@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog;
 
+import java.io.Serializable;
 import java.net.URI;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -33,7 +34,9 @@ import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultRecurring extends ValidatingConfig<StandaloneCatalog> implements Recurring {
+public class DefaultRecurring extends ValidatingConfig<StandaloneCatalog> implements Recurring, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlElement(required = true)
     private BillingPeriod billingPeriod;
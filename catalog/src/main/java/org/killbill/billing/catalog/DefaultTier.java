@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog;
 
+import java.io.Serializable;
 import java.util.Arrays;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -34,7 +35,9 @@ import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultTier extends ValidatingConfig<StandaloneCatalog> implements Tier {
+public class DefaultTier extends ValidatingConfig<StandaloneCatalog> implements Tier, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlElementWrapper(name = "limits", required = false)
     @XmlElement(name = "limit", required = true)
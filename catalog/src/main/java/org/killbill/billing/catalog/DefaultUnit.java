@@ -16,6 +16,8 @@
 
 package org.killbill.billing.catalog;
 
+import java.io.Serializable;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -26,8 +28,10 @@ import org.killbill.xmlloader.ValidatingConfig;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultUnit extends ValidatingConfig<StandaloneCatalog> implements Unit {
-    
+public class DefaultUnit extends ValidatingConfig<StandaloneCatalog> implements Unit, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlAttribute(required = true)
     @XmlID
     private String name;
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog;
 
+import java.io.Serializable;
 import java.net.URI;
 import java.util.Arrays;
 
@@ -41,7 +42,9 @@ import org.killbill.xmlloader.ValidationError;
 import org.killbill.xmlloader.ValidationErrors;
 
 @XmlAccessorType(XmlAccessType.NONE)
-public class DefaultUsage extends ValidatingConfig<StandaloneCatalog> implements Usage {
+public class DefaultUsage extends ValidatingConfig<StandaloneCatalog> implements Usage, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     @XmlAttribute(required = true)
     @XmlID
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.Date;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.killbill.billing.catalog.api.BillingMode;
+import org.killbill.xmlloader.XMLLoader;
+
+/**
+ * A catalog version for which only the header (effective date, name and billing mode) is eagerly read:
+ * the full version is parsed from its XML on first access, and then shared through the CatalogVersionPool.
+ */
+public class LazyCatalogVersion {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // Only the header is needed
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final URI uri;
+    private final String catalogXML;
+    private final Date effectiveDate;
+    private final String catalogName;
+    private final BillingMode recurringBillingMode;
+    private final CatalogVersionPool catalogVersionPool;
+
+    private volatile WeakReference<StandaloneCatalog> standaloneCatalogRef = new WeakReference<StandaloneCatalog>(null);
+
+    public LazyCatalogVersion(final URI uri, final String catalogXML, final CatalogVersionPool catalogVersionPool) throws XMLStreamException {
+        this.uri = uri;
+        this.catalogXML = catalogXML;
+        this.catalogVersionPool = catalogVersionPool;
+
+        // The header elements are the first children of the root element
+        Date effectiveDate = null;
+        String catalogName = null;
+        BillingMode recurringBillingMode = null;
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(catalogXML));
+        try {
+            int depth = 0;
+            while (reader.hasNext() && (effectiveDate == null || catalogName == null || recurringBillingMode == null)) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2) {
+                        final String elementName = reader.getLocalName();
+                        if ("effectiveDate".equals(elementName)) {
+                            effectiveDate = DatatypeConverter.parseDateTime(reader.getElementText().trim()).getTime();
+                            depth--;
+                        } else if ("catalogName".equals(elementName)) {
+                            catalogName = reader.getElementText().trim();
+                            depth--;
+                        } else if ("recurringBillingMode".equals(elementName)) {
+                            recurringBillingMode = BillingMode.valueOf(reader.getElementText().trim());
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (effectiveDate == null || catalogName == null || recurringBillingMode == null) {
+            throw new XMLStreamException("Unable to read the catalog header");
+        }
+        this.effectiveDate = effectiveDate;
+        this.catalogName = catalogName;
+        this.recurringBillingMode = recurringBillingMode;
+    }
+
+    public Date getEffectiveDate() {
+        return effectiveDate;
+    }
+
+    public String getCatalogName() {
+        return catalogName;
+    }
+
+    public BillingMode getRecurringBillingMode() {
+        return recurringBillingMode;
+    }
+
+    public boolean isLoaded() {
+        return standaloneCatalogRef.get() != null;
+    }
+
+    public StandaloneCatalog getStandaloneCatalog() {
+        // Lock-free fast path, the lock only serializes the parsing
+        final StandaloneCatalog standaloneCatalog = standaloneCatalogRef.get();
+        if (standaloneCatalog != null) {
+            catalogVersionPool.recordHit(this, standaloneCatalog);
+            return standaloneCatalog;
+        }
+        return loadStandaloneCatalog();
+    }
+
+    private synchronized StandaloneCatalog loadStandaloneCatalog() {
+        StandaloneCatalog standaloneCatalog = standaloneCatalogRef.get();
+        if (standaloneCatalog != null) {
+            catalogVersionPool.recordHit(this, standaloneCatalog);
+            return standaloneCatalog;
+        }
+
+        try {
+            standaloneCatalog = XMLLoader.getObjectFromStream(uri, new ByteArrayInputStream(catalogXML.getBytes()), StandaloneCatalog.class);
+        } catch (final Exception e) {
+            // The XML was validated when the catalog was uploaded
+            throw new IllegalStateException(String.format("Failed to load catalog version %s effective %s", catalogName, effectiveDate), e);
+        }
+        standaloneCatalogRef = new WeakReference<StandaloneCatalog>(standaloneCatalog);
+        catalogVersionPool.recordLoad(this, standaloneCatalog);
+        return standaloneCatalog;
+    }
+}
@@ -55,7 +55,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<StandaloneCatalogWithPriceOverride> implements StaticCatalog {
 
+    // Exactly one of standaloneCatalog and lazyCatalogVersion is set
     private final StandaloneCatalog standaloneCatalog;
+    @JsonIgnore
+    private final LazyCatalogVersion lazyCatalogVersion;
     private final Long tenantRecordId;
 
     /* Since we offer endpoints that attempt to serialize catalog objects, we need to explicitly tell Jackson to ignore those fields */
@@ -67,6 +70,15 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
     public StandaloneCatalogWithPriceOverride(final StandaloneCatalog staticCatalog, final PriceOverride priceOverride, final Long tenantRecordId, final InternalCallContextFactory internalCallContextFactory) {
         this.tenantRecordId = tenantRecordId;
         this.standaloneCatalog = staticCatalog;
+        this.lazyCatalogVersion = null;
+        this.priceOverride = priceOverride;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    public StandaloneCatalogWithPriceOverride(final LazyCatalogVersion lazyCatalogVersion, final PriceOverride priceOverride, final Long tenantRecordId, final InternalCallContextFactory internalCallContextFactory) {
+        this.tenantRecordId = tenantRecordId;
+        this.standaloneCatalog = null;
+        this.lazyCatalogVersion = lazyCatalogVersion;
         this.priceOverride = priceOverride;
         this.internalCallContextFactory = internalCallContextFactory;
     }
@@ -74,12 +86,13 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
     public StandaloneCatalogWithPriceOverride(final StandaloneCatalogWithPriceOverride cur, final InternalTenantContext tenantContext) {
         this.tenantRecordId = tenantContext.getTenantRecordId();
         this.priceOverride = cur.getPriceOverride();
-        this.standaloneCatalog = cur.getStandaloneCatalog();
+        this.standaloneCatalog = cur.standaloneCatalog;
+        this.lazyCatalogVersion = cur.lazyCatalogVersion;
         this.internalCallContextFactory = cur.getInternalCallContextFactory();
     }
 
     public StandaloneCatalog getStandaloneCatalog() {
-        return standaloneCatalog;
+        return standaloneCatalog != null ? standaloneCatalog : lazyCatalogVersion.getStandaloneCatalog();
     }
 
     public PriceOverride getPriceOverride() {
@@ -96,42 +109,43 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
 
     @Override
     public String getCatalogName() {
-        return standaloneCatalog.getCatalogName();
+        return standaloneCatalog != null ? standaloneCatalog.getCatalogName() : lazyCatalogVersion.getCatalogName();
     }
 
     @Override
     public BillingMode getRecurringBillingMode() {
-        return standaloneCatalog.getRecurringBillingMode();
+        return standaloneCatalog != null ? standaloneCatalog.getRecurringBillingMode() : lazyCatalogVersion.getRecurringBillingMode();
     }
 
+    // Doesn't load a lazy version: used to find the version for a given date
     @Override
     public Date getEffectiveDate() {
-        return standaloneCatalog.getEffectiveDate();
+        return standaloneCatalog != null ? standaloneCatalog.getEffectiveDate() : lazyCatalogVersion.getEffectiveDate();
     }
 
     @Override
     public Currency[] getCurrentSupportedCurrencies() throws CatalogApiException {
-        return standaloneCatalog.getCurrentSupportedCurrencies();
+        return getStandaloneCatalog().getCurrentSupportedCurrencies();
     }
 
     @Override
     public DefaultProduct[] getCurrentProducts() throws CatalogApiException {
-        return standaloneCatalog.getCurrentProducts();
+        return getStandaloneCatalog().getCurrentProducts();
     }
 
     @Override
     public Unit[] getCurrentUnits() throws CatalogApiException {
-        return standaloneCatalog.getCurrentUnits();
+        return getStandaloneCatalog().getCurrentUnits();
     }
 
     @Override
     public DefaultPlan[] getCurrentPlans() throws CatalogApiException {
-        return standaloneCatalog.getCurrentPlans();
+        return getStandaloneCatalog().getCurrentPlans();
     }
 
     @Override
     public Plan createOrFindCurrentPlan(final String productName, final BillingPeriod period, final String priceListName, final PlanPhasePriceOverridesWithCallContext overrides) throws CatalogApiException {
-        final Plan defaultPlan = standaloneCatalog.createOrFindCurrentPlan(productName, period, priceListName, null);
+        final Plan defaultPlan = getStandaloneCatalog().createOrFindCurrentPlan(productName, period, priceListName, null);
 
         if (overrides == null ||
             overrides.getOverrides() == null ||
@@ -148,14 +162,14 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
         final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(planName);
         if (m.matches()) {
             final InternalTenantContext internalTenantContext = createInternalTenantContext();
-            return priceOverride.getOverriddenPlan(planName, standaloneCatalog, internalTenantContext);
+            return priceOverride.getOverriddenPlan(planName, getStandaloneCatalog(), internalTenantContext);
         }
-        return standaloneCatalog.findCurrentPlan(planName);
+        return getStandaloneCatalog().findCurrentPlan(planName);
     }
 
     @Override
     public Product findCurrentProduct(final String productName) throws CatalogApiException {
-        return standaloneCatalog.findCurrentProduct(productName);
+        return getStandaloneCatalog().findCurrentProduct(productName);
     }
 
     @Override
@@ -164,79 +178,79 @@ public class StandaloneCatalogWithPriceOverride extends ValidatingConfig<Standal
         final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(planName);
         if (m.matches()) {
             final InternalTenantContext internalTenantContext = createInternalTenantContext();
-            final Plan plan = priceOverride.getOverriddenPlan(planName, standaloneCatalog, internalTenantContext);
+            final Plan plan = priceOverride.getOverriddenPlan(planName, getStandaloneCatalog(), internalTenantContext);
             return plan.findPhase(phaseName);
         }
-        return standaloneCatalog.findCurrentPhase(phaseName);
+        return getStandaloneCatalog().findCurrentPhase(phaseName);
     }
 
     @Override
     public PriceList findCurrentPricelist(final String priceListName) throws CatalogApiException {
-        return standaloneCatalog.findCurrentPricelist(priceListName);
+        return getStandaloneCatalog().findCurrentPricelist(priceListName);
     }
 
     @Override
     public BillingActionPolicy planChangePolicy(final PlanPhaseSpecifier planPhaseSpecifier, final PlanSpecifier planSpecifier) throws CatalogApiException {
-        return standaloneCatalog.planChangePolicy(planPhaseSpecifier, planSpecifier);
+        return getStandaloneCatalog().planChangePolicy(planPhaseSpecifier, planSpecifier);
     }
 
     @Override
     public PlanChangeResult planChange(final PlanPhaseSpecifier planPhaseSpecifier, final PlanSpecifier planSpecifier) throws CatalogApiException {
-        return standaloneCatalog.planChange(planPhaseSpecifier, planSpecifier);
+        return getStandaloneCatalog().planChange(planPhaseSpecifier, planSpecifier);
     }
 
     @Override
     public BillingActionPolicy planCancelPolicy(final PlanPhaseSpecifier planPhaseSpecifier) throws CatalogApiException {
-        return standaloneCatalog.planCancelPolicy(planPhaseSpecifier);
+        return getStandaloneCatalog().planCancelPolicy(planPhaseSpecifier);
     }
 
     @Override
     public PlanAlignmentCreate planCreateAlignment(final PlanSpecifier planSpecifier) throws CatalogApiException {
-        return standaloneCatalog.planCreateAlignment(planSpecifier);
+        return getStandaloneCatalog().planCreateAlignment(planSpecifier);
     }
 
     @Override
     public BillingAlignment billingAlignment(final PlanPhaseSpecifier planPhaseSpecifier) throws CatalogApiException {
-        return standaloneCatalog.billingAlignment(planPhaseSpecifier);
+        return getStandaloneCatalog().billingAlignment(planPhaseSpecifier);
     }
 
     @Override
     public PlanAlignmentChange planChangeAlignment(final PlanPhaseSpecifier planPhaseSpecifier, final PlanSpecifier planSpecifier) throws CatalogApiException {
-        return standaloneCatalog.planChangeAlignment(planPhaseSpecifier, planSpecifier);
+        return getStandaloneCatalog().planChangeAlignment(planPhaseSpecifier, planSpecifier);
     }
 
     @Override
     public boolean canCreatePlan(final PlanSpecifier planSpecifier) throws CatalogApiException {
-        return standaloneCatalog.canCreatePlan(planSpecifier);
+        return getStandaloneCatalog().canCreatePlan(planSpecifier);
     }
 
     @Override
     public List<Listing> getAvailableBasePlanListings() throws CatalogApiException {
-        return standaloneCatalog.getAvailableBasePlanListings();
+        return getStandaloneCatalog().getAvailableBasePlanListings();
     }
 
     @Override
     public List<Listing> getAvailableAddOnListings(final String baseProductName, @Nullable final String priceListName) throws CatalogApiException {
-        return standaloneCatalog.getAvailableAddOnListings(baseProductName, priceListName);
+        return getStandaloneCatalog().getAvailableAddOnListings(baseProductName, priceListName);
     }
 
     @Override
     public boolean compliesWithLimits(final String phaseName, final String unit, final double value) throws CatalogApiException {
-        return standaloneCatalog.compliesWithLimits(phaseName, unit, value);
+        return getStandaloneCatalog().compliesWithLimits(phaseName, unit, value);
     }
 
     @Override
     public ValidationErrors validate(final StandaloneCatalogWithPriceOverride root, final ValidationErrors errors) {
-        return standaloneCatalog.validate(root.standaloneCatalog, errors);
+        return getStandaloneCatalog().validate(root.getStandaloneCatalog(), errors);
     }
 
     @Override
     public void initialize(final StandaloneCatalogWithPriceOverride root, final URI sourceURI) {
-        standaloneCatalog.initialize(root.standaloneCatalog, sourceURI);
+        getStandaloneCatalog().initialize(root.getStandaloneCatalog(), sourceURI);
     }
 
     public DefaultPriceList findCurrentPriceList(final String priceListName) throws CatalogApiException {
-        return standaloneCatalog.findCurrentPriceList(priceListName);
+        return getStandaloneCatalog().findCurrentPriceList(priceListName);
     }
 
     private InternalTenantContext createInternalTenantContext() {
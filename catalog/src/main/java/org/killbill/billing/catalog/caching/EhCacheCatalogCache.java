@@ -55,6 +55,7 @@ public class EhCacheCatalogCache implements CatalogCache {
     private final OSGIServiceRegistration<CatalogPluginApi> pluginRegistry;
     private final VersionedCatalogMapper versionedCatalogMapper;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final OverriddenPlanCache overriddenPlanCache;
 
     private VersionedCatalog defaultCatalog;
 
@@ -63,12 +64,14 @@ public class EhCacheCatalogCache implements CatalogCache {
                                final VersionedCatalogMapper versionedCatalogMapper,
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final VersionedCatalogLoader loader,
-                               final InternalCallContextFactory internalCallContextFactory) {
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final OverriddenPlanCache overriddenPlanCache) {
         this.pluginRegistry = pluginRegistry;
         this.versionedCatalogMapper = versionedCatalogMapper;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.TENANT_CATALOG);
         this.loader = loader;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.overriddenPlanCache = overriddenPlanCache;
         this.cacheLoaderArgument = initializeCacheLoaderArgument(this);
         setDefaultCatalog();
     }
@@ -95,12 +98,16 @@ public class EhCacheCatalogCache implements CatalogCache {
         // The cache loader might choke on some bad xml -- unlikely since we check its validity prior storing it,
         // but to be on the safe side;;
         try {
+            final boolean isCached = cacheController.get(tenantContext.getTenantRecordId()) != null;
             VersionedCatalog tenantCatalog = (VersionedCatalog) cacheController.get(tenantContext.getTenantRecordId(), cacheLoaderArgument);
             // It means we are using a default catalog in a multi-tenant deployment, that does not really match a real use case, but we want to support it
             // for test purpose.
             if (tenantCatalog == null) {
                 tenantCatalog = new VersionedCatalog(defaultCatalog.getClock(), defaultCatalog.getCatalogName(), defaultCatalog.getRecurringBillingMode(), defaultCatalog.getVersions(), tenantContext);
                 cacheController.add(tenantContext.getTenantRecordId(), tenantCatalog);
+            } else if (!isCached) {
+                // The tenant catalog was just loaded: warm-up the overridden plans cache, to avoid one lookup per custom plan later on
+                loadOverriddenPlans(tenantCatalog, tenantContext);
             }
             return tenantCatalog;
         } catch (final IllegalStateException e) {
@@ -115,6 +122,15 @@ public class EhCacheCatalogCache implements CatalogCache {
         }
     }
 
+    private void loadOverriddenPlans(final VersionedCatalog tenantCatalog, final InternalTenantContext tenantContext) {
+        try {
+            overriddenPlanCache.loadOverriddenPlans(tenantCatalog, tenantContext);
+        } catch (final RuntimeException e) {
+            // Best effort, overridden plans will be loaded one by one
+            logger.warn("Failed to load overridden plans for tenant {}", tenantContext.getTenantRecordId(), e);
+        }
+    }
+
     private VersionedCatalog getCatalogFromPlugins(final InternalTenantContext internalTenantContext) {
         final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
         for (final String service : pluginRegistry.getAllServices()) {
@@ -17,6 +17,7 @@
 
 package org.killbill.billing.catalog.caching;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.regex.Matcher;
 
@@ -35,26 +36,42 @@ import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.StaticCatalog;
 import org.killbill.billing.catalog.dao.CatalogOverrideDao;
 import org.killbill.billing.catalog.dao.CatalogOverridePhaseDefinitionModelDao;
+import org.killbill.billing.catalog.dao.CatalogOverridePlanPhaseDefinitionModelDao;
 import org.killbill.billing.catalog.override.DefaultPriceOverride;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.cache.OverriddenPlanCacheLoader.LoaderCallback;
+import org.killbill.billing.util.config.CatalogConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 
 public class EhCacheOverriddenPlanCache implements OverriddenPlanCache {
 
+    private static final Logger logger = LoggerFactory.getLogger(EhCacheOverriddenPlanCache.class);
+
+    // Plans loaded per query during warm-up
+    private static final int WARM_UP_PAGE_SIZE = 100;
+    // Leave most of the (shared across tenants) cache to the plans actually used
+    private static final double WARM_UP_MAX_CACHE_FRACTION = 0.25;
+
     private final CacheController cacheController;
+    private final CacheController planDefRecordIdCacheController;
     private final LoaderCallback loaderCallback;
     private final CatalogOverrideDao overrideDao;
+    private final CatalogConfig catalogConfig;
 
     @Inject
-    public EhCacheOverriddenPlanCache(final CatalogOverrideDao overrideDao, final CacheControllerDispatcher cacheControllerDispatcher) {
+    public EhCacheOverriddenPlanCache(final CatalogOverrideDao overrideDao, final CacheControllerDispatcher cacheControllerDispatcher, final CatalogConfig catalogConfig) {
         this.overrideDao = overrideDao;
+        this.catalogConfig = catalogConfig;
         this.cacheController = cacheControllerDispatcher.getCacheController(CacheType.OVERRIDDEN_PLAN);
+        this.planDefRecordIdCacheController = cacheControllerDispatcher.getCacheController(CacheType.OVERRIDDEN_PLAN_DEFINITION_RECORD_ID);
         this.loaderCallback = new LoaderCallback() {
             @Override
             public Object loadPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
@@ -75,6 +92,80 @@ public class EhCacheOverriddenPlanCache implements OverriddenPlanCache {
         return (DefaultPlan) cacheController.get(planName, argument);
     }
 
+    @Override
+    public void loadOverriddenPlans(final StaticCatalog catalog, final InternalTenantContext context) {
+        if (!catalogConfig.isOverriddenPlansWarmUpEnabled()) {
+            return;
+        }
+
+        final int maxPlans = (int) (cacheController.getMaxEntries() * WARM_UP_MAX_CACHE_FRACTION);
+        int nbPlans = 0;
+        Long fromPlanDefRecordId = 0L;
+        while (nbPlans < maxPlans) {
+            final int pageSize = Math.min(WARM_UP_PAGE_SIZE, maxPlans - nbPlans);
+            final List<CatalogOverridePlanPhaseDefinitionModelDao> planPhaseDefs = overrideDao.getActiveOverriddenPlanPhases(fromPlanDefRecordId, pageSize, context);
+            if (planPhaseDefs.isEmpty()) {
+                break;
+            }
+
+            // Rows are ordered by plan definition record id, and a page never splits a plan
+            int from = 0;
+            while (from < planPhaseDefs.size()) {
+                final Long planDefRecordId = planPhaseDefs.get(from).getTargetPlanDefRecordId();
+                int to = from + 1;
+                while (to < planPhaseDefs.size() && planPhaseDefs.get(to).getTargetPlanDefRecordId().equals(planDefRecordId)) {
+                    to++;
+                }
+                loadOverriddenPlan(planPhaseDefs.subList(from, to), catalog, context);
+                fromPlanDefRecordId = planDefRecordId;
+                nbPlans++;
+                from = to;
+            }
+        }
+    }
+
+    @Override
+    public Long getOverriddenPlanDefinitionRecordId(final String parentPlanName, final PlanPhasePriceOverride[] resolvedOverrides, final InternalTenantContext context) {
+        final String signature = getSignature(parentPlanName, resolvedOverrides, context);
+        return signature != null ? (Long) planDefRecordIdCacheController.get(signature) : null;
+    }
+
+    @Override
+    public void addOverriddenPlanDefinitionRecordId(final String parentPlanName, final PlanPhasePriceOverride[] resolvedOverrides, final Long planDefRecordId, final InternalTenantContext context) {
+        final String signature = getSignature(parentPlanName, resolvedOverrides, context);
+        if (signature != null) {
+            planDefRecordIdCacheController.putIfAbsent(signature, planDefRecordId);
+        }
+    }
+
+    private void loadOverriddenPlan(final List<CatalogOverridePlanPhaseDefinitionModelDao> planPhaseDefs, final StaticCatalog catalog, final InternalTenantContext context) {
+        final CatalogOverridePlanPhaseDefinitionModelDao first = planPhaseDefs.get(0);
+        final String planName = new StringBuffer(first.getParentPlanName()).append("-").append(first.getTargetPlanDefRecordId()).toString();
+
+        final DefaultPlan defaultPlan;
+        try {
+            defaultPlan = (DefaultPlan) catalog.findCurrentPlan(first.getParentPlanName());
+        } catch (final CatalogApiException e) {
+            logger.debug("Skipping overridden plan {}: parent plan isn't part of the current catalog", planName);
+            return;
+        }
+
+        final PlanPhase[] phases = defaultPlan.getAllPhases();
+        final PlanPhasePriceOverride[] overrides = new PlanPhasePriceOverride[phases.length];
+        for (final CatalogOverridePlanPhaseDefinitionModelDao cur : planPhaseDefs) {
+            final int phaseNumber = cur.getPhaseNumber();
+            if (phaseNumber >= phases.length || !phases[phaseNumber].getName().equals(cur.getParentPhaseName())) {
+                // Phases have changed since the override was created, let the regular loader deal with it
+                logger.debug("Skipping overridden plan {}: phases don't match the current catalog", planName);
+                return;
+            }
+            overrides[phaseNumber] = new DefaultPlanPhasePriceOverride(cur.getParentPhaseName(), Currency.valueOf(cur.getCurrency()), cur.getFixedPrice(), cur.getRecurringPrice());
+        }
+
+        cacheController.putIfAbsent(planName, new DefaultPlan(planName, defaultPlan, overrides));
+        addOverriddenPlanDefinitionRecordId(first.getParentPlanName(), overrides, first.getTargetPlanDefRecordId(), context);
+    }
+
     private DefaultPlan loadOverriddenPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException {
 
         final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(planName);
@@ -110,4 +201,39 @@ public class EhCacheOverriddenPlanCache implements OverriddenPlanCache {
         }
         return result;
     }
+
+    // The plan definition record ids are stored in their own cache, keyed by this signature.
+    // It mirrors the database lookup: phase definitions match on (phase name, currency, fixed price, recurring price) and the
+    // plan definition on the set of (phase number, phase definition). Plans without any override are never shared.
+    @VisibleForTesting
+    static String getSignature(final String parentPlanName, final PlanPhasePriceOverride[] resolvedOverrides, final InternalTenantContext context) {
+        final StringBuilder signature = new StringBuilder();
+        signature.append(context.getTenantRecordId()).append('|').append(parentPlanName);
+        boolean hasOverride = false;
+        for (int i = 0; i < resolvedOverrides.length; i++) {
+            final PlanPhasePriceOverride cur = resolvedOverrides[i];
+            if (cur == null) {
+                continue;
+            }
+            hasOverride = true;
+            signature.append('|')
+                     .append(i)
+                     .append(',').append(cur.getPhaseName())
+                     .append(',').append(cur.getCurrency())
+                     .append(',').append(toSignature(cur.getFixedPrice()))
+                     .append(',').append(toSignature(cur.getRecurringPrice()));
+        }
+        return hasOverride ? signature.toString() : null;
+    }
+
+    // Prices are compared numerically by the database (e.g. 10 and 10.000000000 are the same price)
+    private static String toSignature(final BigDecimal price) {
+        if (price == null) {
+            return "";
+        } else if (price.signum() == 0) {
+            return "0";
+        } else {
+            return price.stripTrailingZeros().toPlainString();
+        }
+    }
 }
@@ -20,9 +20,18 @@ package org.killbill.billing.catalog.caching;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.DefaultPlan;
 import org.killbill.billing.catalog.api.CatalogApiException;
+import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.StaticCatalog;
 
 public interface OverriddenPlanCache {
 
     DefaultPlan getOverriddenPlan(final String planName, final StaticCatalog catalog, final InternalTenantContext context) throws CatalogApiException;
+
+    // Bulk load all the active overridden plans of the tenant (e.g. when its catalog is loaded)
+    void loadOverriddenPlans(final StaticCatalog catalog, final InternalTenantContext context);
+
+    // Record id of an existing plan definition matching these overrides, or null if it isn't known yet
+    Long getOverriddenPlanDefinitionRecordId(final String parentPlanName, final PlanPhasePriceOverride[] resolvedOverrides, final InternalTenantContext context);
+
+    void addOverriddenPlanDefinitionRecordId(final String parentPlanName, final PlanPhasePriceOverride[] resolvedOverrides, final Long planDefRecordId, final InternalTenantContext context);
 }
@@ -30,4 +30,8 @@ public interface CatalogOverrideDao {
 
     public List<CatalogOverridePhaseDefinitionModelDao> getOverriddenPlanPhases(final Long planDefRecordId, final InternalTenantContext context);
 
+    // Bulk version of getOverriddenPlanPhases for the next (at most) maxPlans active overridden plans of the tenant after fromPlanDefRecordId,
+    // ordered by plan definition and phase number
+    public List<CatalogOverridePlanPhaseDefinitionModelDao> getActiveOverriddenPlanPhases(final Long fromPlanDefRecordId, final int maxPlans, final InternalTenantContext context);
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.dao;
+
+import java.math.BigDecimal;
+
+// Flattened view of an overridden plan phase (catalog_override_plan_phase joined with its plan and phase definitions)
+public class CatalogOverridePlanPhaseDefinitionModelDao {
+
+    private Long targetPlanDefRecordId;
+    private String parentPlanName;
+    private Short phaseNumber;
+    private String parentPhaseName;
+    private String currency;
+    private BigDecimal fixedPrice;
+    private BigDecimal recurringPrice;
+
+    public CatalogOverridePlanPhaseDefinitionModelDao() {
+    }
+
+    public Long getTargetPlanDefRecordId() {
+        return targetPlanDefRecordId;
+    }
+
+    public void setTargetPlanDefRecordId(final Long targetPlanDefRecordId) {
+        this.targetPlanDefRecordId = targetPlanDefRecordId;
+    }
+
+    public String getParentPlanName() {
+        return parentPlanName;
+    }
+
+    public void setParentPlanName(final String parentPlanName) {
+        this.parentPlanName = parentPlanName;
+    }
+
+    public Short getPhaseNumber() {
+        return phaseNumber;
+    }
+
+    public void setPhaseNumber(final Short phaseNumber) {
+        this.phaseNumber = phaseNumber;
+    }
+
+    public String getParentPhaseName() {
+        return parentPhaseName;
+    }
+
+    public void setParentPhaseName(final String parentPhaseName) {
+        this.parentPhaseName = parentPhaseName;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(final String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getFixedPrice() {
+        return fixedPrice;
+    }
+
+    public void setFixedPrice(final BigDecimal fixedPrice) {
+        this.fixedPrice = fixedPrice;
+    }
+
+    public BigDecimal getRecurringPrice() {
+        return recurringPrice;
+    }
+
+    public void setRecurringPrice(final BigDecimal recurringPrice) {
+        this.recurringPrice = recurringPrice;
+    }
+}
@@ -18,6 +18,7 @@
 package org.killbill.billing.catalog.dao;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -45,6 +46,11 @@ public interface CatalogOverridePlanPhaseSqlDao extends Transactional<CatalogOve
                                         @Bind("targetCount") final Integer targetCount,
                                         @SmartBindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<CatalogOverridePlanPhaseDefinitionModelDao> getActivePlanPhaseDefinitions(@Bind("fromPlanDefRecordId") final Long fromPlanDefRecordId,
+                                                                                         @Bind("maxPlans") final Integer maxPlans,
+                                                                                         @SmartBindBean final InternalTenantContext context);
+
     @SqlQuery
     public Long getLastInsertId();
 }
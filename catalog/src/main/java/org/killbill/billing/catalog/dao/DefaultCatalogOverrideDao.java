@@ -47,6 +47,7 @@ public class DefaultCatalogOverrideDao implements CatalogOverrideDao {
         ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(CatalogOverridePlanDefinitionModelDao.class));
         ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(CatalogOverridePhaseDefinitionModelDao.class));
         ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(CatalogOverridePlanPhaseModelDao.class));
+        ((DBI) dbi).registerMapper(new LowerToCamelBeanMapperFactory(CatalogOverridePlanPhaseDefinitionModelDao.class));
     }
 
     @Override
@@ -97,6 +98,17 @@ public class DefaultCatalogOverrideDao implements CatalogOverrideDao {
         });
     }
 
+    @Override
+    public List<CatalogOverridePlanPhaseDefinitionModelDao> getActiveOverriddenPlanPhases(final Long fromPlanDefRecordId, final int maxPlans, final InternalTenantContext context) {
+        return dbi.inTransaction(new TransactionCallback<List<CatalogOverridePlanPhaseDefinitionModelDao>>() {
+            @Override
+            public List<CatalogOverridePlanPhaseDefinitionModelDao> inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                final CatalogOverridePlanPhaseSqlDao sqlDao = handle.attach(CatalogOverridePlanPhaseSqlDao.class);
+                return sqlDao.getActivePlanPhaseDefinitions(fromPlanDefRecordId, maxPlans, context);
+            }
+        });
+    }
+
     private Long getOverridePlanDefinitionFromTransaction(final CatalogOverridePhaseDefinitionModelDao[] overridePhaseDefinitionModelDaos, final Handle inTransactionHandle, final InternalCallContext context) {
         final CatalogOverridePlanPhaseSqlDao sqlDao = inTransactionHandle.attach(CatalogOverridePlanPhaseSqlDao.class);
 
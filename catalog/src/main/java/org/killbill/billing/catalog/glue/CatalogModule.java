@@ -18,6 +18,7 @@
 
 package org.killbill.billing.catalog.glue;
 
+import org.killbill.billing.catalog.CatalogVersionPool;
 import org.killbill.billing.catalog.DefaultCatalogService;
 import org.killbill.billing.catalog.api.CatalogService;
 import org.killbill.billing.catalog.api.CatalogUserApi;
@@ -30,6 +31,7 @@ import org.killbill.billing.catalog.caching.OverriddenPlanCache;
 import org.killbill.billing.catalog.dao.CatalogOverrideDao;
 import org.killbill.billing.catalog.dao.DefaultCatalogOverrideDao;
 import org.killbill.billing.catalog.io.CatalogLoader;
+import org.killbill.billing.catalog.io.CatalogSnapshotStore;
 import org.killbill.billing.catalog.io.VersionedCatalogLoader;
 import org.killbill.billing.catalog.override.DefaultPriceOverride;
 import org.killbill.billing.catalog.override.PriceOverride;
@@ -61,6 +63,8 @@ public class CatalogModule extends KillBillModule {
     protected void installCatalog() {
         bind(CatalogService.class).to(DefaultCatalogService.class).asEagerSingleton();
         bind(CatalogLoader.class).to(VersionedCatalogLoader.class).asEagerSingleton();
+        bind(CatalogSnapshotStore.class).asEagerSingleton();
+        bind(CatalogVersionPool.class).asEagerSingleton();
         bind(PriceOverride.class).to(DefaultPriceOverride.class).asEagerSingleton();
     }
 
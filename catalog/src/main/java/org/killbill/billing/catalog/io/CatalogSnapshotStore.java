@@ -0,0 +1,314 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.catalog.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.killbill.billing.catalog.StandaloneCatalog;
+import org.killbill.billing.util.config.CatalogConfig;
+import org.killbill.billing.util.nodes.KillbillVersions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Local, binary (Java serialization) copies of validated tenant catalogs, keyed by a hash of the catalog XML versions and
+ * of the snapshot format (see {@link #SNAPSHOT_FORMAT_VERSION}).
+ * <p/>
+ * The catalog classes pin their serialVersionUID, so a snapshot written by another build could silently deserialize with
+ * missing fields: the format is also written as the header of each snapshot, and a snapshot with another header is a miss.
+ * Snapshots are only an optimization: any problem reading one is logged and the caller falls back to parsing the XML.
+ * <p/>
+ * Deserialization only resolves the catalog model classes and the few JDK value types they reference, so a file dropped
+ * in the snapshot directory cannot instantiate arbitrary classes. Only the {@link #MAX_SNAPSHOTS} most recent snapshots
+ * are kept.
+ */
+public class CatalogSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotStore.class);
+
+    private static final String SNAPSHOT_EXTENSION = ".ser";
+
+    // Bump when the serialized form of the catalog classes changes (fields added, removed or retyped): SNAPSHOT builds
+    // share the same Kill Bill version
+    static final int SNAPSHOT_FORMAT_VERSION = 1;
+
+    static final String SNAPSHOT_FORMAT = SNAPSHOT_FORMAT_VERSION + "-" + KillbillVersions.getKillbillVersion();
+
+    // Snapshots are keyed by content, so each catalog upload leaves the previous file behind
+    static final int MAX_SNAPSHOTS = 100;
+
+    private static final String ALLOWED_PACKAGE_PREFIX = "org.killbill.billing.catalog.";
+
+    private static final Set<String> ALLOWED_CLASSES = ImmutableSet.<String>of(String.class.getName(),
+                                                                               Enum.class.getName(),
+                                                                               Number.class.getName(),
+                                                                               Boolean.class.getName(),
+                                                                               Integer.class.getName(),
+                                                                               Long.class.getName(),
+                                                                               Double.class.getName(),
+                                                                               BigDecimal.class.getName(),
+                                                                               BigInteger.class.getName(),
+                                                                               Date.class.getName(),
+                                                                               URI.class.getName());
+
+    private final File directory;
+    private final String format;
+
+    @Inject
+    public CatalogSnapshotStore(final CatalogConfig catalogConfig) {
+        this(catalogConfig.getCatalogSnapshotDirectory() == null ? null : new File(catalogConfig.getCatalogSnapshotDirectory()));
+    }
+
+    public CatalogSnapshotStore(@Nullable final File directory) {
+        this(directory, SNAPSHOT_FORMAT);
+    }
+
+    CatalogSnapshotStore(@Nullable final File directory, final String format) {
+        this.directory = directory;
+        this.format = format;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Unable to create catalog snapshot directory {}", directory);
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public String computeKey(final Iterable<String> catalogXMLs) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(format, Charsets.UTF_8);
+        for (final String catalogXML : catalogXMLs) {
+            final byte[] bytes = catalogXML.getBytes(Charsets.UTF_8);
+            // Length prefix, so that the split between versions is part of the key
+            hasher.putInt(bytes.length);
+            hasher.putBytes(bytes);
+        }
+        return hasher.hash().toString();
+    }
+
+    @Nullable
+    public List<StandaloneCatalog> read(final String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final File snapshot = getSnapshotFile(key);
+        if (!snapshot.isFile()) {
+            return null;
+        }
+
+        try {
+            final RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+            try {
+                final FileChannel channel = file.getChannel();
+                final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                final ObjectInputStream in = new SnapshotObjectInputStream(new ByteBufferInputStream(buffer));
+                final String snapshotFormat = in.readUTF();
+                if (!format.equals(snapshotFormat)) {
+                    logger.info("Ignoring catalog snapshot {} with format {} (expected {})", snapshot, snapshotFormat, format);
+                    return null;
+                }
+                final int nbVersions = in.readInt();
+                final List<StandaloneCatalog> catalogs = new ArrayList<StandaloneCatalog>(nbVersions);
+                for (int i = 0; i < nbVersions; i++) {
+                    final StandaloneCatalog catalog = (StandaloneCatalog) in.readObject();
+                    // Rebuild the transient links (the catalog was validated before being stored)
+                    catalog.initialize(catalog, catalog.getCatalogURI());
+                    catalogs.add(catalog);
+                }
+                return catalogs;
+            } finally {
+                file.close();
+            }
+        } catch (final Exception e) {
+            logger.warn("Unable to read catalog snapshot {}, falling back to XML", snapshot, e);
+            if (!snapshot.delete()) {
+                logger.warn("Unable to delete catalog snapshot {}", snapshot);
+            }
+            return null;
+        }
+    }
+
+    public void write(final String key, final List<StandaloneCatalog> catalogs) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final File snapshot = getSnapshotFile(key);
+        File tmpSnapshot = null;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeUTF(format);
+            out.writeInt(catalogs.size());
+            for (final StandaloneCatalog catalog : catalogs) {
+                out.writeObject(catalog);
+            }
+            out.close();
+
+            // Write then rename, so that other nodes or threads never map a partial snapshot
+            tmpSnapshot = File.createTempFile(key, ".tmp", directory);
+            final FileOutputStream fileOutputStream = new FileOutputStream(tmpSnapshot);
+            try {
+                bytes.writeTo(fileOutputStream);
+            } finally {
+                fileOutputStream.close();
+            }
+            Files.move(tmpSnapshot.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmpSnapshot = null;
+
+            pruneSnapshots(snapshot);
+        } catch (final Exception e) {
+            logger.warn("Unable to write catalog snapshot {}", snapshot, e);
+            if (tmpSnapshot != null && tmpSnapshot.exists() && !tmpSnapshot.delete()) {
+                logger.warn("Unable to delete temporary catalog snapshot {}", tmpSnapshot);
+            }
+        }
+    }
+
+    private File getSnapshotFile(final String key) {
+        return new File(directory, key + SNAPSHOT_EXTENSION);
+    }
+
+    private void pruneSnapshots(final File latestSnapshot) {
+        final File[] snapshots = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(SNAPSHOT_EXTENSION);
+            }
+        });
+        if (snapshots == null || snapshots.length <= MAX_SNAPSHOTS) {
+            return;
+        }
+
+        // Most recent first
+        Arrays.sort(snapshots, new Comparator<File>() {
+            @Override
+            public int compare(final File first, final File second) {
+                return Long.compare(second.lastModified(), first.lastModified());
+            }
+        });
+
+        int nbKept = 1;
+        for (final File snapshot : snapshots) {
+            if (snapshot.equals(latestSnapshot)) {
+                continue;
+            }
+            if (nbKept < MAX_SNAPSHOTS) {
+                nbKept++;
+            } else if (!snapshot.delete()) {
+                logger.warn("Unable to delete old catalog snapshot {}", snapshot);
+            }
+        }
+    }
+
+    private static final class SnapshotObjectInputStream extends ObjectInputStream {
+
+        private SnapshotObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class not allowed in a catalog snapshot");
+            }
+            return super.resolveClass(desc);
+        }
+
+        private static boolean isAllowed(final String className) {
+            // Arrays: [Lorg.killbill.billing.catalog.DefaultPlan; or primitive arrays such as [I
+            String elementClassName = className;
+            while (elementClassName.startsWith("[")) {
+                elementClassName = elementClassName.substring(1);
+            }
+            if (elementClassName.length() != className.length()) {
+                if (elementClassName.startsWith("L") && elementClassName.endsWith(";")) {
+                    elementClassName = elementClassName.substring(1, elementClassName.length() - 1);
+                } else {
+                    return elementClassName.length() == 1;
+                }
+            }
+            return elementClassName.startsWith(ALLOWED_PACKAGE_PREFIX) || ALLOWED_CLASSES.contains(elementClassName);
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int nbBytes = Math.min(len, buffer.remaining());
+            buffer.get(b, off, nbBytes);
+            return nbBytes;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
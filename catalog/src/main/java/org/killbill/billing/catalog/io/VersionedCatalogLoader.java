@@ -19,6 +19,7 @@
 package org.killbill.billing.catalog.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -26,7 +27,11 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.killbill.billing.ErrorCode;
+import org.killbill.billing.catalog.CatalogVersionPool;
+import org.killbill.billing.catalog.LazyCatalogVersion;
 import org.killbill.billing.catalog.StandaloneCatalog;
 import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
 import org.killbill.billing.catalog.VersionedCatalog;
@@ -47,12 +52,25 @@ public class VersionedCatalogLoader implements CatalogLoader {
     private final Clock clock;
     private final PriceOverride priceOverride;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final CatalogSnapshotStore catalogSnapshotStore;
+    private final CatalogVersionPool catalogVersionPool;
 
-    @Inject
     public VersionedCatalogLoader(final Clock clock, final PriceOverride priceOverride, final InternalCallContextFactory internalCallContextFactory) {
+        this(clock, priceOverride, internalCallContextFactory, new CatalogSnapshotStore((File) null));
+    }
+
+    public VersionedCatalogLoader(final Clock clock, final PriceOverride priceOverride, final InternalCallContextFactory internalCallContextFactory, final CatalogSnapshotStore catalogSnapshotStore) {
+        this(clock, priceOverride, internalCallContextFactory, catalogSnapshotStore, new CatalogVersionPool(0));
+    }
+
+    @Inject
+    public VersionedCatalogLoader(final Clock clock, final PriceOverride priceOverride, final InternalCallContextFactory internalCallContextFactory,
+                                  final CatalogSnapshotStore catalogSnapshotStore, final CatalogVersionPool catalogVersionPool) {
         this.clock = clock;
         this.priceOverride = priceOverride;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.catalogSnapshotStore = catalogSnapshotStore;
+        this.catalogVersionPool = catalogVersionPool;
     }
 
     @Override
@@ -79,13 +97,28 @@ public class VersionedCatalogLoader implements CatalogLoader {
     }
 
     public VersionedCatalog load(final Iterable<String> catalogXMLs, final Long tenantRecordId) throws CatalogApiException {
+        if (catalogVersionPool.isEnabled()) {
+            return loadLazily(catalogXMLs, tenantRecordId);
+        }
+
         final VersionedCatalog result = new VersionedCatalog(clock);
         final URI uri;
         try {
-            uri = new URI("/tenantCatalog");
-            for (final String cur : catalogXMLs) {
-                final InputStream curCatalogStream = new ByteArrayInputStream(cur.getBytes());
-                final StandaloneCatalog catalog = XMLLoader.getObjectFromStream(uri, curCatalogStream, StandaloneCatalog.class);
+            final String snapshotKey = catalogSnapshotStore.isEnabled() ? catalogSnapshotStore.computeKey(catalogXMLs) : null;
+            List<StandaloneCatalog> catalogs = snapshotKey != null ? catalogSnapshotStore.read(snapshotKey) : null;
+            if (catalogs == null) {
+                uri = new URI("/tenantCatalog");
+                catalogs = new ArrayList<StandaloneCatalog>();
+                for (final String cur : catalogXMLs) {
+                    final InputStream curCatalogStream = new ByteArrayInputStream(cur.getBytes());
+                    catalogs.add(XMLLoader.getObjectFromStream(uri, curCatalogStream, StandaloneCatalog.class));
+                }
+                if (snapshotKey != null) {
+                    catalogSnapshotStore.write(snapshotKey, catalogs);
+                }
+            }
+
+            for (final StandaloneCatalog catalog : catalogs) {
                 result.add(new StandaloneCatalogWithPriceOverride(catalog, priceOverride, tenantRecordId, internalCallContextFactory));
             }
             return result;
@@ -96,6 +129,34 @@ public class VersionedCatalogLoader implements CatalogLoader {
         }
     }
 
+    // Only the version headers are read here, versions are parsed on first access
+    private VersionedCatalog loadLazily(final Iterable<String> catalogXMLs, final Long tenantRecordId) throws CatalogApiException {
+        final VersionedCatalog result = new VersionedCatalog(clock);
+        try {
+            final URI uri = new URI("/tenantCatalog");
+            for (final String cur : catalogXMLs) {
+                LazyCatalogVersion lazyCatalogVersion = null;
+                try {
+                    lazyCatalogVersion = new LazyCatalogVersion(uri, cur, catalogVersionPool);
+                } catch (final XMLStreamException e) {
+                    // Parse it now, to get the real error if any
+                }
+
+                if (lazyCatalogVersion != null) {
+                    result.add(new StandaloneCatalogWithPriceOverride(lazyCatalogVersion, priceOverride, tenantRecordId, internalCallContextFactory));
+                } else {
+                    final StandaloneCatalog catalog = XMLLoader.getObjectFromStream(uri, new ByteArrayInputStream(cur.getBytes()), StandaloneCatalog.class);
+                    result.add(new StandaloneCatalogWithPriceOverride(catalog, priceOverride, tenantRecordId, internalCallContextFactory));
+                }
+            }
+            return result;
+        } catch (final CatalogApiException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CatalogApiException(ErrorCode.CAT_INVALID_DEFAULT, "Problem encountered loading catalog ", e);
+        }
+    }
+
     protected List<URI> findXmlReferences(final String directoryContents, final URL url) throws URISyntaxException {
         if (url.getProtocol().equals(PROTOCOL_FOR_FILE)) {
             return findXmlFileReferences(directoryContents, url);
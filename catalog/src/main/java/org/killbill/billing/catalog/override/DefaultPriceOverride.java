@@ -97,8 +97,13 @@ public class DefaultPriceOverride implements PriceOverride {
             }
         }
 
-        final CatalogOverridePlanDefinitionModelDao overriddenPlan = overrideDao.getOrCreateOverridePlanDefinition(parentPlan.getName(), catalogEffectiveDate, resolvedOverride, context);
-        final String planName = new StringBuffer(parentPlan.getName()).append("-").append(overriddenPlan.getRecordId()).toString();
+        Long planDefRecordId = overriddenPlanCache.getOverriddenPlanDefinitionRecordId(parentPlan.getName(), resolvedOverride, context);
+        if (planDefRecordId == null) {
+            final CatalogOverridePlanDefinitionModelDao overriddenPlan = overrideDao.getOrCreateOverridePlanDefinition(parentPlan.getName(), catalogEffectiveDate, resolvedOverride, context);
+            planDefRecordId = overriddenPlan.getRecordId();
+            overriddenPlanCache.addOverriddenPlanDefinitionRecordId(parentPlan.getName(), resolvedOverride, planDefRecordId, context);
+        }
+        final String planName = new StringBuffer(parentPlan.getName()).append("-").append(planDefRecordId).toString();
         final DefaultPlan result = new DefaultPlan(planName, (DefaultPlan) parentPlan, resolvedOverride);
         return result;
     }
@@ -24,6 +24,8 @@ import org.killbill.billing.catalog.api.rules.CaseCancelPolicy;
 
 public class DefaultCaseCancelPolicy extends DefaultCasePhase<BillingActionPolicy> implements CaseCancelPolicy {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = true)
     private BillingActionPolicy policy;
 
@@ -23,6 +23,8 @@ import org.killbill.billing.catalog.api.rules.CaseChangePlanAlignment;
 
 public class DefaultCaseChangePlanAlignment extends DefaultCaseChange<PlanAlignmentChange> implements CaseChangePlanAlignment {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = true)
     private PlanAlignmentChange alignment;
 
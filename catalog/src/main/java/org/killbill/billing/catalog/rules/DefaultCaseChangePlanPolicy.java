@@ -30,6 +30,8 @@ import org.killbill.billing.catalog.api.rules.CaseChangePlanPolicy;
 @XmlSeeAlso(DefaultCaseChange.class)
 public class DefaultCaseChangePlanPolicy extends DefaultCaseChange<BillingActionPolicy> implements CaseChangePlanPolicy {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = true)
     private BillingActionPolicy policy;
 
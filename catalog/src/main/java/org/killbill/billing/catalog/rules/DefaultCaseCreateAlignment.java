@@ -23,6 +23,8 @@ import org.killbill.billing.catalog.api.rules.CaseCreateAlignment;
 
 public class DefaultCaseCreateAlignment extends DefaultCaseStandardNaming<PlanAlignmentCreate> implements CaseCreateAlignment {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = true)
     private PlanAlignmentCreate alignment;
 
@@ -28,6 +28,8 @@ import org.killbill.xmlloader.ValidationErrors;
 
 public abstract class DefaultCasePhase<T> extends DefaultCaseStandardNaming<T> {
 
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = false)
     protected PhaseType phaseType;
 
@@ -26,6 +26,9 @@ import org.killbill.billing.catalog.api.ProductCategory;
 import org.killbill.billing.catalog.api.rules.Case;
 
 public abstract class DefaultCaseStandardNaming<T> extends DefaultCase<T> implements Case {
+
+    private static final long serialVersionUID = 1L;
+
     @XmlElement(required = false, name = "product")
     @XmlIDREF
     private DefaultProduct product;
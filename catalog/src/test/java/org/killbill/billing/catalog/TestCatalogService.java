@@ -36,6 +36,20 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
                 return "file:src/test/resources/versionedCatalog";
             }
 
+            @Override
+            public boolean isOverriddenPlansWarmUpEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getCatalogSnapshotDirectory() {
+                return null;
+            }
+
+            @Override
+            public int getLazyCatalogVersionsPoolSize() {
+                return 0;
+            }
         }, tenantInternalApi, catalogCache, cacheInvalidationCallback);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(internalCallContext));
@@ -50,6 +64,20 @@ public class TestCatalogService extends CatalogTestSuiteNoDB {
                 return "file:src/test/resources/WeaponsHire.xml";
             }
 
+            @Override
+            public boolean isOverriddenPlansWarmUpEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getCatalogSnapshotDirectory() {
+                return null;
+            }
+
+            @Override
+            public int getLazyCatalogVersionsPoolSize() {
+                return 0;
+            }
         },  tenantInternalApi, catalogCache, cacheInvalidationCallback);
         service.loadCatalog();
         Assert.assertNotNull(service.getFullCatalog(internalCallContext));
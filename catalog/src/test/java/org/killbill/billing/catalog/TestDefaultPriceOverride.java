@@ -30,6 +30,7 @@ import org.killbill.billing.catalog.api.InternationalPrice;
 import org.killbill.billing.catalog.api.Plan;
 import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.Price;
+import org.killbill.billing.catalog.caching.OverriddenPlanCache;
 import org.killbill.billing.catalog.override.DefaultPriceOverride;
 import org.killbill.xmlloader.XMLLoader;
 import org.testng.annotations.Test;
@@ -37,13 +38,18 @@ import org.testng.annotations.Test;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Resources;
+import com.google.inject.Inject;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class TestDefaultPriceOverride extends CatalogTestSuiteWithEmbeddedDB {
 
+    @Inject
+    private OverriddenPlanCache overriddenPlanCache;
+
     @Test(groups = "slow")
     public void testBasic() throws Exception {
 
@@ -165,6 +171,37 @@ public class TestDefaultPriceOverride extends CatalogTestSuiteWithEmbeddedDB {
         }
     }
 
+    @Test(groups = "slow")
+    public void testGetOrCreateExistingOverriddenPlan() throws Exception {
+
+        final StandaloneCatalog catalog = XMLLoader.getObjectFromString(Resources.getResource("SpyCarAdvanced.xml").toExternalForm(), StandaloneCatalog.class);
+        final Plan plan = catalog.findCurrentPlan("discount-standard-monthly");
+
+        final List<PlanPhasePriceOverride> overrides = new ArrayList<PlanPhasePriceOverride>();
+        overrides.add(new DefaultPlanPhasePriceOverride(plan.getAllPhases()[0].getName(), Currency.USD, BigDecimal.ONE, null));
+        overrides.add(new DefaultPlanPhasePriceOverride(plan.getAllPhases()[2].getName(), Currency.USD, null, new BigDecimal("142.41")));
+
+        final DefaultPlan overriddenPlanCreated = priceOverride.getOrCreateOverriddenPlan(plan, new DateTime(catalog.getEffectiveDate()), overrides, internalCallContext);
+
+        // Same prices, different scale
+        final List<PlanPhasePriceOverride> sameOverrides = new ArrayList<PlanPhasePriceOverride>();
+        sameOverrides.add(new DefaultPlanPhasePriceOverride(plan.getAllPhases()[0].getName(), Currency.USD, new BigDecimal("1.000"), null));
+        sameOverrides.add(new DefaultPlanPhasePriceOverride(plan.getAllPhases()[2].getName(), Currency.USD, null, new BigDecimal("142.4100")));
+        assertEquals(priceOverride.getOrCreateOverriddenPlan(plan, new DateTime(catalog.getEffectiveDate()), sameOverrides, internalCallContext).getName(), overriddenPlanCreated.getName());
+
+        // Verify the bulk load indexes the existing overridden plans
+        controlCacheDispatcher.clearAll();
+        final Matcher m = DefaultPriceOverride.CUSTOM_PLAN_NAME_PATTERN.matcher(overriddenPlanCreated.getName());
+        assertTrue(m.matches());
+        final PlanPhasePriceOverride[] resolvedOverrides = new PlanPhasePriceOverride[] {overrides.get(0), null, overrides.get(1)};
+        assertNull(overriddenPlanCache.getOverriddenPlanDefinitionRecordId(plan.getName(), resolvedOverrides, internalCallContext));
+        overriddenPlanCache.loadOverriddenPlans(catalog, internalCallContext);
+        assertEquals(overriddenPlanCache.getOverriddenPlanDefinitionRecordId(plan.getName(), resolvedOverrides, internalCallContext), Long.valueOf(m.group(2)));
+
+        final DefaultPlan overriddenPlan = priceOverride.getOverriddenPlan(overriddenPlanCreated.getName(), catalog, internalCallContext);
+        assertEquals(overriddenPlan.getAllPhases()[2].getRecurring().getRecurringPrice().getPrice(Currency.USD).compareTo(new BigDecimal("142.41")), 0);
+    }
+
     private void assertInternationalPrice(final InternationalPrice newInternationalPrice, final InternationalPrice initInternationalPrice, final PlanPhasePriceOverride override, final boolean isFixed) throws CurrencyValueNull {
         assertEquals(newInternationalPrice.getPrices().length, initInternationalPrice.getPrices().length);
         for (int i = 0; i < newInternationalPrice.getPrices().length; i++) {
@@ -33,6 +33,7 @@ import org.testng.annotations.Test;
 import com.google.common.io.Resources;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class TestCatalogOverrideDao extends CatalogTestSuiteWithEmbeddedDB {
@@ -93,5 +94,48 @@ public class TestCatalogOverrideDao extends CatalogTestSuiteWithEmbeddedDB {
         }
     }
 
-}
+    @Test(groups = "slow")
+    public void testGetActiveOverriddenPlanPhases() throws Exception {
+
+        final StandaloneCatalog catalog = XMLLoader.getObjectFromString(Resources.getResource("SpyCarAdvanced.xml").toExternalForm(), StandaloneCatalog.class);
+        final Plan plan = catalog.findCurrentPlan("discount-standard-monthly");
+
+        final PlanPhasePriceOverride[] resolvedOverrides = new PlanPhasePriceOverride[plan.getAllPhases().length];
+        resolvedOverrides[0] = new DefaultPlanPhasePriceOverride(plan.getAllPhases()[0].getName(), Currency.USD, BigDecimal.TEN, null);
+        resolvedOverrides[2] = new DefaultPlanPhasePriceOverride(plan.getFinalPhase().getName(), Currency.USD, null, new BigDecimal("348.64"));
+        final CatalogOverridePlanDefinitionModelDao newPlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(plan.getName(), new DateTime(catalog.getEffectiveDate()), resolvedOverrides, internalCallContext);
 
+        final PlanPhasePriceOverride[] otherResolvedOverrides = new PlanPhasePriceOverride[plan.getAllPhases().length];
+        otherResolvedOverrides[1] = new DefaultPlanPhasePriceOverride(plan.getAllPhases()[1].getName(), Currency.USD, null, BigDecimal.ONE);
+        final CatalogOverridePlanDefinitionModelDao otherNewPlan = catalogOverrideDao.getOrCreateOverridePlanDefinition(plan.getName(), new DateTime(catalog.getEffectiveDate()), otherResolvedOverrides, internalCallContext);
+
+        final List<CatalogOverridePlanPhaseDefinitionModelDao> planPhases = catalogOverrideDao.getActiveOverriddenPlanPhases(0L, 10, internalCallContext);
+        assertEquals(planPhases.size(), 3);
+
+        assertEquals(planPhases.get(0).getTargetPlanDefRecordId(), newPlan.getRecordId());
+        assertEquals(planPhases.get(0).getParentPlanName(), plan.getName());
+        assertEquals(planPhases.get(0).getPhaseNumber(), Short.valueOf((short) 0));
+        assertEquals(planPhases.get(0).getParentPhaseName(), resolvedOverrides[0].getPhaseName());
+        assertEquals(planPhases.get(0).getFixedPrice().compareTo(BigDecimal.TEN), 0);
+        assertNull(planPhases.get(0).getRecurringPrice());
+
+        assertEquals(planPhases.get(1).getTargetPlanDefRecordId(), newPlan.getRecordId());
+        assertEquals(planPhases.get(1).getPhaseNumber(), Short.valueOf((short) 2));
+        assertEquals(planPhases.get(1).getRecurringPrice().compareTo(new BigDecimal("348.64")), 0);
+
+        assertEquals(planPhases.get(2).getTargetPlanDefRecordId(), otherNewPlan.getRecordId());
+        assertEquals(planPhases.get(2).getPhaseNumber(), Short.valueOf((short) 1));
+        assertEquals(planPhases.get(2).getCurrency(), "USD");
+
+        // Pages never split a plan
+        final List<CatalogOverridePlanPhaseDefinitionModelDao> firstPage = catalogOverrideDao.getActiveOverriddenPlanPhases(0L, 1, internalCallContext);
+        assertEquals(firstPage.size(), 2);
+        assertEquals(firstPage.get(1).getTargetPlanDefRecordId(), newPlan.getRecordId());
+
+        final List<CatalogOverridePlanPhaseDefinitionModelDao> secondPage = catalogOverrideDao.getActiveOverriddenPlanPhases(newPlan.getRecordId(), 1, internalCallContext);
+        assertEquals(secondPage.size(), 1);
+        assertEquals(secondPage.get(0).getTargetPlanDefRecordId(), otherNewPlan.getRecordId());
+
+        assertEquals(catalogOverrideDao.getActiveOverriddenPlanPhases(otherNewPlan.getRecordId(), 1, internalCallContext).size(), 0);
+    }
+}
@@ -19,11 +19,14 @@
 package org.killbill.billing.catalog.io;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
@@ -32,14 +35,25 @@ import javax.xml.transform.TransformerException;
 
 import org.joda.time.DateTime;
 import org.killbill.billing.catalog.CatalogTestSuiteNoDB;
+import org.killbill.billing.catalog.CatalogVersionPool;
+import org.killbill.billing.catalog.StandaloneCatalog;
 import org.killbill.billing.catalog.StandaloneCatalogWithPriceOverride;
 import org.killbill.billing.catalog.VersionedCatalog;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.InvalidConfigException;
+import org.killbill.billing.catalog.api.Plan;
+import org.killbill.billing.catalog.api.PlanPhase;
+import org.killbill.billing.catalog.override.PriceOverride;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.xmlloader.XMLLoader;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.xml.sax.SAXException;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
 
@@ -166,4 +180,154 @@ public class TestVersionedCatalogLoader extends CatalogTestSuiteNoDB {
         final VersionedCatalog c = loader.loadDefaultCatalog(destinationFile.toURI().toString());
         Assert.assertEquals(c.getCatalogName(), "SpyCarBasic");
     }
+
+    @Test(groups = "fast")
+    public void testLoadFromSnapshot() throws Exception {
+        final CatalogSnapshotStore catalogSnapshotStore = new CatalogSnapshotStore(Files.createTempDir());
+        final VersionedCatalogLoader snapshotLoader = new VersionedCatalogLoader(clock, Mockito.mock(PriceOverride.class), Mockito.mock(InternalCallContextFactory.class), catalogSnapshotStore);
+
+        final List<String> catalogXMLs = ImmutableList.<String>of(Resources.toString(Resources.getResource("SpyCarBasic.xml"), Charsets.UTF_8));
+        final String key = catalogSnapshotStore.computeKey(catalogXMLs);
+        Assert.assertNull(catalogSnapshotStore.read(key));
+
+        // First load parses the XML and stores the snapshot
+        final VersionedCatalog fromXML = snapshotLoader.load(catalogXMLs, 1L);
+        final List<StandaloneCatalog> snapshot = catalogSnapshotStore.read(key);
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(snapshot.size(), 1);
+
+        // Second load uses the snapshot
+        final VersionedCatalog fromSnapshot = snapshotLoader.load(catalogXMLs, 1L);
+        Assert.assertEquals(fromSnapshot.getCatalogName(), fromXML.getCatalogName());
+        Assert.assertEquals(fromSnapshot.getEffectiveDate(), fromXML.getEffectiveDate());
+        final Plan[] xmlPlans = fromXML.getCurrentPlans();
+        final Plan[] snapshotPlans = fromSnapshot.getCurrentPlans();
+        Assert.assertEquals(snapshotPlans.length, xmlPlans.length);
+        for (int i = 0; i < xmlPlans.length; i++) {
+            Assert.assertEquals(snapshotPlans[i].getName(), xmlPlans[i].getName());
+            Assert.assertEquals(snapshotPlans[i].getProduct().getName(), xmlPlans[i].getProduct().getName());
+            final PlanPhase[] xmlPhases = xmlPlans[i].getAllPhases();
+            final PlanPhase[] snapshotPhases = snapshotPlans[i].getAllPhases();
+            Assert.assertEquals(snapshotPhases.length, xmlPhases.length);
+            for (int j = 0; j < xmlPhases.length; j++) {
+                Assert.assertEquals(snapshotPhases[j].getName(), xmlPhases[j].getName());
+            }
+        }
+
+        // A different catalog gets a different snapshot
+        Assert.assertNotEquals(catalogSnapshotStore.computeKey(ImmutableList.<String>of(catalogXMLs.get(0), catalogXMLs.get(0))), key);
+    }
+
+    @Test(groups = "fast")
+    public void testLoadWithCorruptedSnapshot() throws Exception {
+        final File snapshotDirectory = Files.createTempDir();
+        final CatalogSnapshotStore catalogSnapshotStore = new CatalogSnapshotStore(snapshotDirectory);
+        final VersionedCatalogLoader snapshotLoader = new VersionedCatalogLoader(clock, Mockito.mock(PriceOverride.class), Mockito.mock(InternalCallContextFactory.class), catalogSnapshotStore);
+
+        final List<String> catalogXMLs = ImmutableList.<String>of(Resources.toString(Resources.getResource("SpyCarBasic.xml"), Charsets.UTF_8));
+        final String key = catalogSnapshotStore.computeKey(catalogXMLs);
+        Files.write("not a snapshot".getBytes(), new File(snapshotDirectory, key + ".ser"));
+
+        // Falls back to the XML
+        final VersionedCatalog catalog = snapshotLoader.load(catalogXMLs, 1L);
+        Assert.assertEquals(catalog.getCatalogName(), "SpyCarBasic");
+        // ...and a valid snapshot replaced the bad one
+        Assert.assertNotNull(catalogSnapshotStore.read(key));
+    }
+
+    @Test(groups = "fast")
+    public void testSnapshotWithUnexpectedClass() throws Exception {
+        final File snapshotDirectory = Files.createTempDir();
+        final CatalogSnapshotStore catalogSnapshotStore = new CatalogSnapshotStore(snapshotDirectory);
+
+        final File snapshot = new File(snapshotDirectory, "unexpected.ser");
+        final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(snapshot));
+        try {
+            out.writeUTF(CatalogSnapshotStore.SNAPSHOT_FORMAT);
+            out.writeInt(1);
+            out.writeObject(new HashMap<String, String>());
+        } finally {
+            out.close();
+        }
+
+        // The class is rejected before being instantiated and the snapshot is discarded
+        Assert.assertNull(catalogSnapshotStore.read("unexpected"));
+        Assert.assertFalse(snapshot.exists());
+    }
+
+    @Test(groups = "fast")
+    public void testSnapshotWithAnotherFormat() throws Exception {
+        final File snapshotDirectory = Files.createTempDir();
+        final CatalogSnapshotStore oldSnapshotStore = new CatalogSnapshotStore(snapshotDirectory, "0-old");
+        final CatalogSnapshotStore catalogSnapshotStore = new CatalogSnapshotStore(snapshotDirectory);
+
+        final List<String> catalogXMLs = ImmutableList.<String>of(Resources.toString(Resources.getResource("SpyCarBasic.xml"), Charsets.UTF_8));
+        // Snapshots of another format don't share keys with the current ones
+        Assert.assertNotEquals(oldSnapshotStore.computeKey(catalogXMLs), catalogSnapshotStore.computeKey(catalogXMLs));
+
+        // ...and are ignored if found under the same key
+        final List<StandaloneCatalog> catalogs = ImmutableList.<StandaloneCatalog>of(XMLLoader.getObjectFromString(Resources.getResource("SpyCarBasic.xml").toExternalForm(), StandaloneCatalog.class));
+        oldSnapshotStore.write("key", catalogs);
+        Assert.assertNotNull(oldSnapshotStore.read("key"));
+        Assert.assertNull(catalogSnapshotStore.read("key"));
+    }
+
+    @Test(groups = "fast")
+    public void testOldSnapshotsArePruned() throws Exception {
+        final File snapshotDirectory = Files.createTempDir();
+        final CatalogSnapshotStore catalogSnapshotStore = new CatalogSnapshotStore(snapshotDirectory);
+
+        final List<StandaloneCatalog> catalogs = ImmutableList.<StandaloneCatalog>of(XMLLoader.getObjectFromString(Resources.getResource("SpyCarBasic.xml").toExternalForm(), StandaloneCatalog.class));
+        for (int i = 0; i <= CatalogSnapshotStore.MAX_SNAPSHOTS; i++) {
+            catalogSnapshotStore.write("key-" + i, catalogs);
+        }
+
+        Assert.assertEquals(snapshotDirectory.list().length, CatalogSnapshotStore.MAX_SNAPSHOTS);
+        // The snapshot just written is always kept
+        Assert.assertNotNull(catalogSnapshotStore.read("key-" + CatalogSnapshotStore.MAX_SNAPSHOTS));
+    }
+
+    @Test(groups = "fast")
+    public void testLoadLazily() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final CatalogVersionPool catalogVersionPool = new CatalogVersionPool(2, metricRegistry);
+        final VersionedCatalogLoader lazyLoader = new VersionedCatalogLoader(clock, Mockito.mock(PriceOverride.class), Mockito.mock(InternalCallContextFactory.class), new CatalogSnapshotStore((File) null), catalogVersionPool);
+
+        final List<String> catalogXMLs = ImmutableList.<String>of(Resources.toString(Resources.getResource("versionedCatalog/WeaponsHireSmall-1.xml"), Charsets.UTF_8),
+                                                                  Resources.toString(Resources.getResource("versionedCatalog/WeaponsHireSmall-2.xml"), Charsets.UTF_8),
+                                                                  Resources.toString(Resources.getResource("versionedCatalog/WeaponsHireSmall-3.xml"), Charsets.UTF_8));
+        final VersionedCatalog eagerCatalog = loader.load(catalogXMLs, 1L);
+        final VersionedCatalog lazyCatalog = lazyLoader.load(catalogXMLs, 1L);
+
+        // Only the headers have been read
+        Assert.assertEquals(lazyCatalog.size(), 3);
+        Assert.assertEquals(lazyCatalog.getCatalogName(), eagerCatalog.getCatalogName());
+        Assert.assertEquals(lazyCatalog.getRecurringBillingMode(), eagerCatalog.getRecurringBillingMode());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(lazyCatalog.getVersions().get(i).getEffectiveDate(), eagerCatalog.getVersions().get(i).getEffectiveDate());
+        }
+        Assert.assertEquals(catalogVersionPool.getNbLoads(), 0);
+
+        // Only the version effective at that date is parsed
+        final DateTime requestedDate = new DateTime("2011-02-03T00:00:00+00:00");
+        Assert.assertEquals(lazyCatalog.findPlan("pistol-monthly", requestedDate).getName(), eagerCatalog.findPlan("pistol-monthly", requestedDate).getName());
+        Assert.assertEquals(lazyCatalog.getStandaloneCatalogEffectiveDate(requestedDate), eagerCatalog.getStandaloneCatalogEffectiveDate(requestedDate));
+        Assert.assertEquals(catalogVersionPool.getNbLoads(), 1);
+        Assert.assertEquals(catalogVersionPool.getNbHits(), 0);
+
+        Assert.assertEquals(lazyCatalog.getProducts(requestedDate).length, eagerCatalog.getProducts(requestedDate).length);
+        Assert.assertEquals(catalogVersionPool.getNbLoads(), 1);
+        Assert.assertEquals(catalogVersionPool.getNbHits(), 1);
+
+        // The pool is bounded
+        lazyCatalog.getProducts(new DateTime("2011-01-02T00:00:00+00:00"));
+        lazyCatalog.getProducts(new DateTime("2011-03-04T00:00:00+00:00"));
+        Assert.assertEquals(catalogVersionPool.getNbLoads(), 3);
+        Assert.assertEquals(catalogVersionPool.size(), 2);
+
+        // ...and exposes its statistics
+        Assert.assertEquals(metricRegistry.getGauges().get(CatalogVersionPool.HITS_METRIC_NAME).getValue(), (Object) 1L);
+        Assert.assertEquals(metricRegistry.getGauges().get(CatalogVersionPool.LOADS_METRIC_NAME).getValue(), (Object) 3L);
+        Assert.assertEquals(metricRegistry.getGauges().get(CatalogVersionPool.SIZE_METRIC_NAME).getValue(), (Object) 2);
+    }
 }
@@ -31,6 +31,7 @@ import org.killbill.billing.entitlement.api.DefaultEntitlement;
 import org.killbill.billing.entitlement.api.Entitlement;
 import org.killbill.billing.entitlement.api.EntitlementApiException;
 import org.killbill.billing.entitlement.dao.BlockingStateDao;
+import org.killbill.billing.entitlement.engine.core.AccountEventsStreamsSnapshotCache;
 import org.killbill.billing.entitlement.engine.core.BlockingTransitionNotificationKey;
 import org.killbill.billing.entitlement.engine.core.EntitlementNotificationKey;
 import org.killbill.billing.entitlement.engine.core.EntitlementNotificationKeyAction;
@@ -70,6 +71,7 @@ public class DefaultEntitlementService implements EntitlementService {
     private final NotificationQueueService notificationQueueService;
     private final EntitlementUtils entitlementUtils;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AccountEventsStreamsSnapshotCache accountEventsStreamsSnapshotCache;
 
     private NotificationQueue entitlementEventQueue;
 
@@ -79,13 +81,15 @@ public class DefaultEntitlementService implements EntitlementService {
                                      final PersistentBus eventBus,
                                      final NotificationQueueService notificationQueueService,
                                      final EntitlementUtils entitlementUtils,
-                                     final InternalCallContextFactory internalCallContextFactory) {
+                                     final InternalCallContextFactory internalCallContextFactory,
+                                     final AccountEventsStreamsSnapshotCache accountEventsStreamsSnapshotCache) {
         this.entitlementInternalApi = entitlementInternalApi;
         this.blockingStateDao = blockingStateDao;
         this.eventBus = eventBus;
         this.notificationQueueService = notificationQueueService;
         this.entitlementUtils = entitlementUtils;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.accountEventsStreamsSnapshotCache = accountEventsStreamsSnapshotCache;
     }
 
     @Override
@@ -120,6 +124,14 @@ public class DefaultEntitlementService implements EntitlementService {
         } catch (final NotificationQueueAlreadyExists e) {
             throw new RuntimeException(e);
         }
+
+        if (accountEventsStreamsSnapshotCache.isEnabled()) {
+            try {
+                eventBus.register(accountEventsStreamsSnapshotCache);
+            } catch (final EventBusException e) {
+                throw new RuntimeException("Failed to register bus handlers", e);
+            }
+        }
     }
 
     private void processEntitlementNotification(final EntitlementNotificationKey key, final InternalCallContext internalCallContext, final CallContext callContext) {
@@ -201,6 +213,13 @@ public class DefaultEntitlementService implements EntitlementService {
 
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
     public void stop() throws NoSuchNotificationQueue {
+        if (accountEventsStreamsSnapshotCache.isEnabled()) {
+            try {
+                eventBus.unregister(accountEventsStreamsSnapshotCache);
+            } catch (final EventBusException e) {
+                throw new RuntimeException("Failed to unregister bus handlers", e);
+            }
+        }
         if (entitlementEventQueue != null) {
             entitlementEventQueue.stopQueue();
             notificationQueueService.deleteNotificationQueue(entitlementEventQueue.getServiceName(), entitlementEventQueue.getQueueName());
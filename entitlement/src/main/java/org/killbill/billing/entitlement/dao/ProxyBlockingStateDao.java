@@ -19,7 +19,7 @@
 package org.killbill.billing.entitlement.dao;
 
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -45,7 +45,6 @@ import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
 import org.killbill.billing.subscription.api.user.SubscriptionBaseApiException;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
-import org.killbill.billing.util.customfield.ShouldntHappenException;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.bus.api.PersistentBus;
@@ -58,7 +57,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.Lists;
 
 @Singleton
 public class ProxyBlockingStateDao implements BlockingStateDao {
@@ -67,100 +66,45 @@ public class ProxyBlockingStateDao implements BlockingStateDao {
 
     // Ordering is critical here, especially for Junction
     public static List<BlockingState> sortedCopy(final Iterable<BlockingState> blockingStates) {
-        final List<BlockingState> blockingStatesSomewhatSorted = Ordering.<BlockingState>natural().immutableSortedCopy(blockingStates);
-
-        final List<BlockingState> result = new LinkedList<BlockingState>();
-
-        // Make sure same-day transitions are always returned in the same order depending on their attributes
-        final Iterator<BlockingState> iterator = blockingStatesSomewhatSorted.iterator();
-        BlockingState prev = null;
-        while (iterator.hasNext()) {
-            final BlockingState current = iterator.next();
-            if (iterator.hasNext()) {
-                final BlockingState next = iterator.next();
-                if (prev != null &&
-                    current.getEffectiveDate().equals(next.getEffectiveDate()) &&
-                    current.getBlockedId().equals(next.getBlockedId()) &&
-                    !current.getService().equals(next.getService())) {
-                    // Same date, same blockable id, different services (for same-service events, trust the total ordering)
-
-                    // Make sure block billing transitions are respected first
-                    BlockingState prevCandidate = insertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockBilling(), current.isBlockBilling(), next.isBlockBilling());
-                    if (prevCandidate == null) {
-                        // Then respect block entitlement transitions
-                        prevCandidate = insertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockEntitlement(), current.isBlockEntitlement(), next.isBlockEntitlement());
-                        if (prevCandidate == null) {
-                            // And finally block changes transitions
-                            prevCandidate = insertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockChange(), current.isBlockChange(), next.isBlockChange());
-                            if (prevCandidate == null) {
-                                // Trust the current sorting
-                                result.add(current);
-                                result.add(next);
-                                prev = next;
-                            } else {
-                                prev = prevCandidate;
-                            }
-                        } else {
-                            prev = prevCandidate;
-                        }
-                    } else {
-                        prev = prevCandidate;
-                    }
-                } else {
-                    result.add(current);
-                    result.add(next);
-                    prev = next;
-                }
-            } else {
-                // End of the list
-                result.add(current);
+        // Stable sort, like Ordering#immutableSortedCopy
+        final List<BlockingState> result = Lists.<BlockingState>newArrayList(blockingStates);
+        Collections.sort(result);
+
+        // Make sure same-day transitions are always returned in the same order depending on their attributes:
+        // walk the list pair by pair (the first pair has no previous state) and swap tied elements in place,
+        // so that the first one of the pair is a transition from the previous state
+        for (int i = 2; i + 1 < result.size(); i += 2) {
+            final BlockingState prev = result.get(i - 1);
+            final BlockingState current = result.get(i);
+            final BlockingState next = result.get(i + 1);
+            if (current.getEffectiveDate().equals(next.getEffectiveDate()) &&
+                current.getBlockedId().equals(next.getBlockedId()) &&
+                !current.getService().equals(next.getService()) &&
+                shouldSwapTiedBlockingStates(prev, current, next)) {
+                // Same date, same blockable id, different services (for same-service events, trust the total ordering)
+                result.set(i, next);
+                result.set(i + 1, current);
             }
         }
 
         return result;
     }
 
-    private static BlockingState insertTiedBlockingStatesInTheRightOrder(final Collection<BlockingState> result,
-                                                                         final BlockingState current,
-                                                                         final BlockingState next,
-                                                                         final boolean prevBlocked,
-                                                                         final boolean currentBlocked,
-                                                                         final boolean nextBlocked) {
-        final BlockingState prev;
-
-        if (prevBlocked && currentBlocked && nextBlocked) {
-            // Tricky use case, bail
-            return null;
-        } else if (prevBlocked && currentBlocked && !nextBlocked) {
-            result.add(next);
-            result.add(current);
-            prev = current;
-        } else if (prevBlocked && !currentBlocked && nextBlocked) {
-            result.add(current);
-            result.add(next);
-            prev = next;
-        } else if (prevBlocked && !currentBlocked && !nextBlocked) {
-            // Tricky use case, bail
-            return null;
-        } else if (!prevBlocked && currentBlocked && nextBlocked) {
-            // Tricky use case, bail
-            return null;
-        } else if (!prevBlocked && currentBlocked && !nextBlocked) {
-            result.add(current);
-            result.add(next);
-            prev = next;
-        } else if (!prevBlocked && !currentBlocked && nextBlocked) {
-            result.add(next);
-            result.add(current);
-            prev = current;
-        } else if (!prevBlocked && !currentBlocked && !nextBlocked) {
-            // Tricky use case, bail
-            return null;
-        } else {
-            throw new ShouldntHappenException("Marker exception for code clarity");
+    private static boolean shouldSwapTiedBlockingStates(final BlockingState prev, final BlockingState current, final BlockingState next) {
+        // Make sure block billing transitions are respected first
+        if (current.isBlockBilling() != next.isBlockBilling()) {
+            return current.isBlockBilling() == prev.isBlockBilling();
         }
-
-        return prev;
+        // Then respect block entitlement transitions
+        if (current.isBlockEntitlement() != next.isBlockEntitlement()) {
+            return current.isBlockEntitlement() == prev.isBlockEntitlement();
+        }
+        // And finally block changes transitions
+        if (current.isBlockChange() != next.isBlockChange()) {
+            return current.isBlockChange() == prev.isBlockChange();
+        }
+        // Trust the current sorting
+        return false;
     }
 
     private final SubscriptionBaseInternalApi subscriptionInternalApi;
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.engine.core;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.entitlement.AccountEventsStreams;
+import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.events.BlockingTransitionInternalEvent;
+import org.killbill.billing.events.SubscriptionInternalEvent;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
+import org.killbill.billing.util.config.EntitlementConfig;
+import org.killbill.billing.util.entity.dao.AccountVersionTracker;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+//
+// Node-local cache of the computed events streams for an account.
+//
+// A snapshot is reused only if the account version hasn't changed (see AccountVersionTracker,
+// the version is incremented in the same transaction as any change to the account) and if no
+// subscription event or blocking state has become effective since it was computed (the
+// computed states depend on the time at which the EventsStream objects were built).
+// Bus events only speed-up the eviction: the version check is what guarantees correctness,
+// including for changes made by other nodes.
+//
+@Singleton
+public class AccountEventsStreamsSnapshotCache {
+
+    // Local dates are computed in the account timezone: be conservative around the effective dates
+    private static final long LOCAL_DATE_SAFETY_MARGIN_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final int maxAccounts;
+    private final long maxAgeMillis;
+    // Concurrent (segmented) LRU: lookups don't contend on a single lock
+    private final Cache<Long, AccountSnapshot> snapshots;
+
+    @Inject
+    public AccountEventsStreamsSnapshotCache(final EntitlementConfig entitlementConfig) {
+        this.maxAccounts = entitlementConfig.getAccountSnapshotMaxAccounts();
+        this.maxAgeMillis = entitlementConfig.getAccountSnapshotMaxAge().getMillis();
+        this.snapshots = CacheBuilder.newBuilder()
+                                     .maximumSize(Math.max(maxAccounts, 0))
+                                     .<Long, AccountSnapshot>build();
+        if (isEnabled()) {
+            // Entries are keyed by the account version
+            AccountVersionTracker.enableVersioning();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxAccounts > 0;
+    }
+
+    public AccountEventsStreams get(final Long accountRecordId, final Long tenantRecordId, @Nullable final Long version, final DateTime now) {
+        if (!isEnabled() || version == null) {
+            return null;
+        }
+
+        final AccountSnapshot snapshot = snapshots.getIfPresent(accountRecordId);
+        if (snapshot == null) {
+            return null;
+        } else if (!snapshot.isValid(tenantRecordId, version, now)) {
+            snapshots.invalidate(accountRecordId);
+            return null;
+        } else {
+            return snapshot.getAccountEventsStreams();
+        }
+    }
+
+    public void put(final Long accountRecordId, final Long tenantRecordId, @Nullable final Long version, final DateTime computedAt, final AccountEventsStreams accountEventsStreams) {
+        if (!isEnabled() || version == null) {
+            return;
+        }
+
+        final DateTime validUntil = computeValidUntil(accountEventsStreams, computedAt, maxAgeMillis);
+        if (validUntil.isAfter(computedAt)) {
+            snapshots.put(accountRecordId, new AccountSnapshot(tenantRecordId, version, computedAt, validUntil, accountEventsStreams));
+        }
+    }
+
+    public void invalidate(final Long accountRecordId) {
+        snapshots.invalidate(accountRecordId);
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleSubscriptionTransition(final SubscriptionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleBlockingStateTransition(final BlockingTransitionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    // The snapshot expires at the next subscription event or blocking state effective date (past events don't change the computed states)
+    static DateTime computeValidUntil(final AccountEventsStreams accountEventsStreams, final DateTime computedAt, final long maxAgeMillis) {
+        DateTime validUntil = computedAt.plus(maxAgeMillis);
+        for (final Collection<EventsStream> eventsStreams : accountEventsStreams.getEventsStreams().values()) {
+            for (final EventsStream eventsStream : eventsStreams) {
+                for (final SubscriptionBaseTransition transition : eventsStream.getSubscriptionBase().getAllTransitions()) {
+                    validUntil = earliestOf(validUntil, transition.getEffectiveTransitionTime(), computedAt);
+                }
+                for (final BlockingState blockingState : eventsStream.getBlockingStates()) {
+                    validUntil = earliestOf(validUntil, blockingState.getEffectiveDate(), computedAt);
+                }
+            }
+        }
+        return validUntil;
+    }
+
+    private static DateTime earliestOf(final DateTime validUntil, @Nullable final DateTime effectiveDate, final DateTime computedAt) {
+        if (effectiveDate == null || !effectiveDate.isAfter(computedAt)) {
+            return validUntil;
+        }
+
+        // Some states (e.g. the entitlement effective end date) are compared as local dates, which can flip up to a day before the effective date
+        final DateTime expiration = effectiveDate.minus(LOCAL_DATE_SAFETY_MARGIN_MILLIS).isAfter(computedAt) ? effectiveDate.minus(LOCAL_DATE_SAFETY_MARGIN_MILLIS) : computedAt;
+        return expiration.isBefore(validUntil) ? expiration : validUntil;
+    }
+
+    private static final class AccountSnapshot {
+
+        private final Long tenantRecordId;
+        private final Long version;
+        private final DateTime computedAt;
+        private final DateTime validUntil;
+        private final AccountEventsStreams accountEventsStreams;
+
+        private AccountSnapshot(final Long tenantRecordId, @Nullable final Long version, final DateTime computedAt, final DateTime validUntil, final AccountEventsStreams accountEventsStreams) {
+            this.tenantRecordId = tenantRecordId;
+            this.version = version;
+            this.computedAt = computedAt;
+            this.validUntil = validUntil;
+            this.accountEventsStreams = accountEventsStreams;
+        }
+
+        public boolean isValid(final Long tenantRecordId, @Nullable final Long version, final DateTime now) {
+            return Objects.equal(this.tenantRecordId, tenantRecordId) &&
+                   Objects.equal(this.version, version) &&
+                   !now.isBefore(computedAt) &&
+                   now.isBefore(validUntil);
+        }
+
+        public AccountEventsStreams getAccountEventsStreams() {
+            return accountEventsStreams;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.joda.time.DateTime;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
@@ -75,6 +76,7 @@ public class EventsStreamBuilder {
     private final DefaultBlockingStateDao defaultBlockingStateDao;
     private final Clock clock;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AccountEventsStreamsSnapshotCache accountEventsStreamsSnapshotCache;
 
     @Inject
     public EventsStreamBuilder(final AccountInternalApi accountInternalApi, final SubscriptionBaseInternalApi subscriptionInternalApi,
@@ -82,12 +84,14 @@ public class EventsStreamBuilder {
                                final NotificationQueueService notificationQueueService, final PersistentBus eventBus,
                                final CacheControllerDispatcher cacheControllerDispatcher,
                                final NonEntityDao nonEntityDao,
-                               final InternalCallContextFactory internalCallContextFactory) {
+                               final InternalCallContextFactory internalCallContextFactory,
+                               final AccountEventsStreamsSnapshotCache accountEventsStreamsSnapshotCache) {
         this.accountInternalApi = accountInternalApi;
         this.subscriptionInternalApi = subscriptionInternalApi;
         this.checker = checker;
         this.clock = clock;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.accountEventsStreamsSnapshotCache = accountEventsStreamsSnapshotCache;
 
         this.defaultBlockingStateDao = new DefaultBlockingStateDao(dbi, clock, notificationQueueService, eventBus, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
         this.blockingStateDao = new OptimizedProxyBlockingStateDao(this, subscriptionInternalApi, dbi, clock, notificationQueueService, eventBus, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
@@ -115,6 +119,25 @@ public class EventsStreamBuilder {
     }
 
     public AccountEventsStreams buildForAccount(final InternalTenantContext internalTenantContext) throws EntitlementApiException {
+        if (!accountEventsStreamsSnapshotCache.isEnabled()) {
+            return buildForAccountFromScratch(internalTenantContext);
+        }
+
+        // Retrieve the version before computing the snapshot: a concurrent change will simply make it stale
+        final Long version = defaultBlockingStateDao.getAccountVersion(internalTenantContext);
+        final DateTime computedAt = clock.getUTCNow();
+
+        final AccountEventsStreams cachedAccountEventsStreams = accountEventsStreamsSnapshotCache.get(internalTenantContext.getAccountRecordId(), internalTenantContext.getTenantRecordId(), version, computedAt);
+        if (cachedAccountEventsStreams != null) {
+            return cachedAccountEventsStreams;
+        }
+
+        final AccountEventsStreams accountEventsStreams = buildForAccountFromScratch(internalTenantContext);
+        accountEventsStreamsSnapshotCache.put(internalTenantContext.getAccountRecordId(), internalTenantContext.getTenantRecordId(), version, computedAt, accountEventsStreams);
+        return accountEventsStreams;
+    }
+
+    private AccountEventsStreams buildForAccountFromScratch(final InternalTenantContext internalTenantContext) throws EntitlementApiException {
         // Retrieve the subscriptions (map bundle id -> subscriptions)
         final Map<UUID, List<SubscriptionBase>> subscriptions;
         try {
@@ -17,7 +17,11 @@
 
 package org.killbill.billing.entitlement.dao;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -29,6 +33,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
 
 public class TestProxyBlockingStateDao extends EntitlementTestSuiteNoDB {
 
@@ -96,6 +101,35 @@ public class TestProxyBlockingStateDao extends EntitlementTestSuiteNoDB {
         verifySortedCopy(bs1, bs2, bs3, bs4, bs3, bs2, bs1, bs4);
     }
 
+    @Test(groups = "fast", description = "Verify the in-place implementation of sortedCopy is equivalent to the original one")
+    public void testSortedCopyEquivalence() throws Exception {
+        final Random random = new Random(1234L);
+        final DateTime effectiveDate = clock.getUTCNow();
+        final List<UUID> blockedIds = ImmutableList.<UUID>of(UUID.randomUUID(), UUID.randomUUID());
+        final List<String> services = ImmutableList.<String>of("svc1", "svc2", "svc3");
+
+        for (int i = 0; i < 5000; i++) {
+            final int nbBlockingStates = random.nextInt(12);
+            final List<BlockingState> blockingStates = new LinkedList<BlockingState>();
+            for (int j = 0; j < nbBlockingStates; j++) {
+                blockingStates.add(new DefaultBlockingState(UUID.randomUUID(),
+                                                            blockedIds.get(random.nextInt(blockedIds.size())),
+                                                            BlockingStateType.ACCOUNT,
+                                                            "OD" + j,
+                                                            services.get(random.nextInt(services.size())),
+                                                            random.nextBoolean(),
+                                                            random.nextBoolean(),
+                                                            random.nextBoolean(),
+                                                            effectiveDate.plusDays(random.nextInt(3)),
+                                                            effectiveDate,
+                                                            effectiveDate,
+                                                            (long) random.nextInt(1000)));
+            }
+
+            Assert.assertEquals(ProxyBlockingStateDao.sortedCopy(blockingStates), legacySortedCopy(blockingStates), "Input: " + blockingStates);
+        }
+    }
+
     private void verifySortedCopy(final BlockingState bs1, final BlockingState bs2, final BlockingState bs3, final BlockingState bs4,
                                   final BlockingState a, final BlockingState b, final BlockingState c, final BlockingState d) {
         final List<BlockingState> sortedCopy = ProxyBlockingStateDao.sortedCopy(ImmutableList.<BlockingState>of(a, b, c, d));
@@ -104,4 +138,88 @@ public class TestProxyBlockingStateDao extends EntitlementTestSuiteNoDB {
         Assert.assertEquals(sortedCopy.get(2).getStateName(), bs3.getStateName());
         Assert.assertEquals(sortedCopy.get(3).getStateName(), bs4.getStateName());
     }
+
+    // Original implementation of ProxyBlockingStateDao#sortedCopy, kept as a reference
+    private static List<BlockingState> legacySortedCopy(final Iterable<BlockingState> blockingStates) {
+        final List<BlockingState> blockingStatesSomewhatSorted = Ordering.<BlockingState>natural().immutableSortedCopy(blockingStates);
+
+        final List<BlockingState> result = new LinkedList<BlockingState>();
+
+        final Iterator<BlockingState> iterator = blockingStatesSomewhatSorted.iterator();
+        BlockingState prev = null;
+        while (iterator.hasNext()) {
+            final BlockingState current = iterator.next();
+            if (iterator.hasNext()) {
+                final BlockingState next = iterator.next();
+                if (prev != null &&
+                    current.getEffectiveDate().equals(next.getEffectiveDate()) &&
+                    current.getBlockedId().equals(next.getBlockedId()) &&
+                    !current.getService().equals(next.getService())) {
+                    BlockingState prevCandidate = legacyInsertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockBilling(), current.isBlockBilling(), next.isBlockBilling());
+                    if (prevCandidate == null) {
+                        prevCandidate = legacyInsertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockEntitlement(), current.isBlockEntitlement(), next.isBlockEntitlement());
+                        if (prevCandidate == null) {
+                            prevCandidate = legacyInsertTiedBlockingStatesInTheRightOrder(result, current, next, prev.isBlockChange(), current.isBlockChange(), next.isBlockChange());
+                            if (prevCandidate == null) {
+                                result.add(current);
+                                result.add(next);
+                                prev = next;
+                            } else {
+                                prev = prevCandidate;
+                            }
+                        } else {
+                            prev = prevCandidate;
+                        }
+                    } else {
+                        prev = prevCandidate;
+                    }
+                } else {
+                    result.add(current);
+                    result.add(next);
+                    prev = next;
+                }
+            } else {
+                result.add(current);
+            }
+        }
+
+        return result;
+    }
+
+    private static BlockingState legacyInsertTiedBlockingStatesInTheRightOrder(final Collection<BlockingState> result,
+                                                                               final BlockingState current,
+                                                                               final BlockingState next,
+                                                                               final boolean prevBlocked,
+                                                                               final boolean currentBlocked,
+                                                                               final boolean nextBlocked) {
+        final BlockingState prev;
+
+        if (prevBlocked && currentBlocked && nextBlocked) {
+            return null;
+        } else if (prevBlocked && currentBlocked && !nextBlocked) {
+            result.add(next);
+            result.add(current);
+            prev = current;
+        } else if (prevBlocked && !currentBlocked && nextBlocked) {
+            result.add(current);
+            result.add(next);
+            prev = next;
+        } else if (prevBlocked && !currentBlocked && !nextBlocked) {
+            return null;
+        } else if (!prevBlocked && currentBlocked && nextBlocked) {
+            return null;
+        } else if (!prevBlocked && currentBlocked && !nextBlocked) {
+            result.add(current);
+            result.add(next);
+            prev = next;
+        } else if (!prevBlocked && !currentBlocked && nextBlocked) {
+            result.add(next);
+            result.add(current);
+            prev = current;
+        } else {
+            return null;
+        }
+
+        return prev;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.entitlement.engine.core;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.entitlement.AccountEventsStreams;
+import org.killbill.billing.entitlement.EntitlementTestSuiteNoDB;
+import org.killbill.billing.entitlement.EventsStream;
+import org.killbill.billing.entitlement.api.BlockingState;
+import org.killbill.billing.subscription.api.SubscriptionBase;
+import org.killbill.billing.subscription.api.user.SubscriptionBaseTransition;
+import org.killbill.billing.util.config.EntitlementConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class TestAccountEventsStreamsSnapshotCache extends EntitlementTestSuiteNoDB {
+
+    private final DateTime now = new DateTime(2016, 5, 10, 12, 0, 0, DateTimeZone.UTC);
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception {
+        final AccountEventsStreamsSnapshotCache cache = createCache(0);
+        Assert.assertFalse(cache.isEnabled());
+
+        cache.put(1L, 1L, 10L, now, createAccountEventsStreams(now.minusMonths(1), null));
+        Assert.assertNull(cache.get(1L, 1L, 10L, now));
+    }
+
+    @Test(groups = "fast")
+    public void testVersionAndTenantChecks() throws Exception {
+        final AccountEventsStreamsSnapshotCache cache = createCache(10);
+        final AccountEventsStreams accountEventsStreams = createAccountEventsStreams(now.minusMonths(1), null);
+        cache.put(1L, 1L, 10L, now, accountEventsStreams);
+
+        Assert.assertEquals(cache.get(1L, 1L, 10L, now.plusMinutes(5)), accountEventsStreams);
+        Assert.assertNull(cache.get(1L, 2L, 10L, now.plusMinutes(5)));
+        Assert.assertNull(cache.get(1L, 1L, 11L, now.plusMinutes(5)));
+        // Evicted by the previous stale lookup
+        Assert.assertNull(cache.get(1L, 1L, 10L, now.plusMinutes(5)));
+
+        cache.put(1L, 1L, 11L, now, accountEventsStreams);
+        cache.invalidate(1L);
+        Assert.assertNull(cache.get(1L, 1L, 11L, now.plusMinutes(5)));
+    }
+
+    @Test(groups = "fast")
+    public void testExpirationWithFutureEvents() throws Exception {
+        final AccountEventsStreamsSnapshotCache cache = createCache(10);
+
+        // Future cancellation in a week: valid until a day before it (capped by the max age)
+        final AccountEventsStreams withFutureEvent = createAccountEventsStreams(now.minusMonths(1), now.plusDays(7));
+        Assert.assertEquals(AccountEventsStreamsSnapshotCache.computeValidUntil(withFutureEvent, now, 30L * 24 * 60 * 60 * 1000), now.plusDays(6));
+        Assert.assertEquals(AccountEventsStreamsSnapshotCache.computeValidUntil(withFutureEvent, now, 60 * 60 * 1000L), now.plusHours(1));
+
+        cache.put(1L, 1L, 10L, now, withFutureEvent);
+        Assert.assertEquals(cache.get(1L, 1L, 10L, now.plusMinutes(59)), withFutureEvent);
+        Assert.assertNull(cache.get(1L, 1L, 10L, now.plusHours(1)));
+
+        // Imminent event: not cacheable
+        final AccountEventsStreams withImminentEvent = createAccountEventsStreams(now.minusMonths(1), now.plusHours(3));
+        Assert.assertEquals(AccountEventsStreamsSnapshotCache.computeValidUntil(withImminentEvent, now, 60 * 60 * 1000L), now);
+        cache.put(2L, 1L, 10L, now, withImminentEvent);
+        Assert.assertNull(cache.get(2L, 1L, 10L, now));
+    }
+
+    @Test(groups = "fast")
+    public void testLRUEviction() throws Exception {
+        final AccountEventsStreamsSnapshotCache cache = createCache(2);
+        final AccountEventsStreams accountEventsStreams = createAccountEventsStreams(now.minusMonths(1), null);
+
+        cache.put(1L, 1L, 10L, now, accountEventsStreams);
+        cache.put(2L, 1L, 20L, now, accountEventsStreams);
+        Assert.assertNotNull(cache.get(1L, 1L, 10L, now));
+        cache.put(3L, 1L, 30L, now, accountEventsStreams);
+
+        Assert.assertNotNull(cache.get(1L, 1L, 10L, now));
+        Assert.assertNull(cache.get(2L, 1L, 20L, now));
+        Assert.assertNotNull(cache.get(3L, 1L, 30L, now));
+    }
+
+    private AccountEventsStreamsSnapshotCache createCache(final int maxAccounts) {
+        final EntitlementConfig entitlementConfig = Mockito.mock(EntitlementConfig.class);
+        Mockito.when(entitlementConfig.getAccountSnapshotMaxAccounts()).thenReturn(maxAccounts);
+        Mockito.when(entitlementConfig.getAccountSnapshotMaxAge()).thenReturn(new TimeSpan("1h"));
+        return new AccountEventsStreamsSnapshotCache(entitlementConfig);
+    }
+
+    private AccountEventsStreams createAccountEventsStreams(final DateTime startDate, final DateTime blockingStateEffectiveDate) {
+        final SubscriptionBaseTransition transition = Mockito.mock(SubscriptionBaseTransition.class);
+        Mockito.when(transition.getEffectiveTransitionTime()).thenReturn(startDate);
+        final SubscriptionBase subscriptionBase = Mockito.mock(SubscriptionBase.class);
+        Mockito.when(subscriptionBase.getAllTransitions()).thenReturn(ImmutableList.<SubscriptionBaseTransition>of(transition));
+
+        final ImmutableList.Builder<BlockingState> blockingStates = ImmutableList.<BlockingState>builder();
+        if (blockingStateEffectiveDate != null) {
+            final BlockingState blockingState = Mockito.mock(BlockingState.class);
+            Mockito.when(blockingState.getEffectiveDate()).thenReturn(blockingStateEffectiveDate);
+            blockingStates.add(blockingState);
+        }
+
+        final EventsStream eventsStream = Mockito.mock(EventsStream.class);
+        Mockito.when(eventsStream.getSubscriptionBase()).thenReturn(subscriptionBase);
+        Mockito.when(eventsStream.getBlockingStates()).thenReturn(blockingStates.build());
+
+        final Map<UUID, Collection<EventsStream>> eventsStreams = ImmutableMap.<UUID, Collection<EventsStream>>of(UUID.randomUUID(), ImmutableList.<EventsStream>of(eventsStream));
+        final AccountEventsStreams accountEventsStreams = Mockito.mock(AccountEventsStreams.class);
+        Mockito.when(accountEventsStreams.getEventsStreams()).thenReturn(eventsStreams);
+        return accountEventsStreams;
+    }
+}
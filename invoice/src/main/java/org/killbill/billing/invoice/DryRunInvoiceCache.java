@@ -0,0 +1,325 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.catalog.api.PlanPhasePriceOverride;
+import org.killbill.billing.catalog.api.PlanPhaseSpecifier;
+import org.killbill.billing.events.BlockingTransitionInternalEvent;
+import org.killbill.billing.events.ControlTagCreationInternalEvent;
+import org.killbill.billing.events.ControlTagDeletionInternalEvent;
+import org.killbill.billing.events.InvoiceInternalEvent;
+import org.killbill.billing.events.InvoiceNotificationInternalEvent;
+import org.killbill.billing.events.SubscriptionInternalEvent;
+import org.killbill.billing.invoice.api.DryRunArguments;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.killbill.billing.util.entity.dao.AccountVersionTracker;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+//
+// Node-local cache of the dryRun invoices (e.g. upcoming invoice previews) of an account.
+//
+// A result is reused only for the same target date and dryRun arguments, if the account version hasn't changed
+// (see InvoiceDao#getAccountStateVersion, bumped on each account change, including usage recording) and for at most
+// InvoiceConfig#getDryRunCacheMaxAge (the invoice date and the upcoming invoice dates depend on the current time).
+// Catalog and per-tenant config changes don't bump any account version: the tenant entries are dropped through
+// the tenant cache invalidation callbacks instead (see TENANT_KEYS). Bus events only speed-up the eviction
+// on the node receiving them.
+//
+// Cached invoices are shared: callers must not modify them.
+//
+@Singleton
+public class DryRunInvoiceCache implements CacheInvalidationCallback {
+
+    public static final Iterable<TenantKey> TENANT_KEYS = ImmutableList.<TenantKey>of(TenantKey.CATALOG,
+                                                                                      TenantKey.PER_TENANT_CONFIG);
+
+    public static final String HITS_METRIC_NAME = MetricRegistry.name(DryRunInvoiceCache.class, "hits");
+    public static final String MISSES_METRIC_NAME = MetricRegistry.name(DryRunInvoiceCache.class, "misses");
+    public static final String HIT_RATIO_METRIC_NAME = MetricRegistry.name(DryRunInvoiceCache.class, "hitRatio");
+
+    // Previews for a given account are usually requested with a handful of different arguments
+    private static final int MAX_DRY_RUN_INVOICES_PER_ACCOUNT = 16;
+
+    private final int maxAccounts;
+    private final long maxAgeMillis;
+    private final MetricRegistry metricRegistry;
+    private final Meter hits;
+    private final Meter misses;
+    private final Map<Long, AccountDryRunInvoices> dryRunInvoices;
+
+    @Inject
+    public DryRunInvoiceCache(final InvoiceConfig invoiceConfig, final MetricRegistry metricRegistry) {
+        this.maxAccounts = invoiceConfig.getDryRunCacheMaxAccounts();
+        this.maxAgeMillis = invoiceConfig.getDryRunCacheMaxAge().getMillis();
+        this.metricRegistry = metricRegistry;
+        this.hits = metricRegistry.meter(HITS_METRIC_NAME);
+        this.misses = metricRegistry.meter(MISSES_METRIC_NAME);
+        this.dryRunInvoices = Collections.synchronizedMap(new LinkedHashMap<Long, AccountDryRunInvoices>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, AccountDryRunInvoices> eldest) {
+                return size() > maxAccounts;
+            }
+        });
+        if (isEnabled()) {
+            // Entries are keyed by the account version
+            AccountVersionTracker.enableVersioning();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxAccounts > 0;
+    }
+
+    public void initialize() {
+        metricRegistry.remove(HIT_RATIO_METRIC_NAME);
+        metricRegistry.register(HIT_RATIO_METRIC_NAME, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getOneMinuteRate(), hits.getOneMinuteRate() + misses.getOneMinuteRate());
+            }
+        });
+    }
+
+    public void stop() {
+        metricRegistry.remove(HIT_RATIO_METRIC_NAME);
+    }
+
+    //
+    // Returns null if there is no valid cached result, Optional.absent() if the cached result is that there is no invoice to generate.
+    //
+    public Optional<Invoice> get(@Nullable final Long accountRecordId, final Long tenantRecordId, @Nullable final String version, final DateTime now,
+                                 @Nullable final DateTime targetDate, final DryRunArguments dryRunArguments) {
+        if (!isEnabled() || accountRecordId == null || version == null) {
+            return null;
+        }
+
+        final AccountDryRunInvoices accountDryRunInvoices = dryRunInvoices.get(accountRecordId);
+        if (accountDryRunInvoices == null) {
+            misses.mark();
+            return null;
+        } else if (!accountDryRunInvoices.isValid(tenantRecordId, version)) {
+            dryRunInvoices.remove(accountRecordId);
+            misses.mark();
+            return null;
+        }
+
+        final Optional<Invoice> invoice = accountDryRunInvoices.get(computeKey(targetDate, dryRunArguments), now);
+        if (invoice == null) {
+            misses.mark();
+        } else {
+            hits.mark();
+        }
+        return invoice;
+    }
+
+    // The version must have been retrieved before generating the invoice
+    public void put(@Nullable final Long accountRecordId, final Long tenantRecordId, @Nullable final String version, final DateTime computedAt,
+                    @Nullable final DateTime targetDate, final DryRunArguments dryRunArguments, @Nullable final Invoice invoice) {
+        if (!isEnabled() || accountRecordId == null || version == null) {
+            return;
+        }
+
+        final List<Object> key = computeKey(targetDate, dryRunArguments);
+        synchronized (dryRunInvoices) {
+            AccountDryRunInvoices accountDryRunInvoices = dryRunInvoices.get(accountRecordId);
+            if (accountDryRunInvoices == null || !accountDryRunInvoices.isValid(tenantRecordId, version)) {
+                accountDryRunInvoices = new AccountDryRunInvoices(tenantRecordId, version);
+                dryRunInvoices.put(accountRecordId, accountDryRunInvoices);
+            }
+            accountDryRunInvoices.put(key, computedAt.plus(maxAgeMillis), invoice);
+        }
+    }
+
+    public void invalidate(final Long accountRecordId) {
+        dryRunInvoices.remove(accountRecordId);
+    }
+
+    public void invalidateTenant(final Long tenantRecordId) {
+        synchronized (dryRunInvoices) {
+            final Iterator<AccountDryRunInvoices> iterator = dryRunInvoices.values().iterator();
+            while (iterator.hasNext()) {
+                if (Objects.equal(iterator.next().getTenantRecordId(), tenantRecordId)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+        invalidateTenant(tenantContext.getTenantRecordId());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleSubscriptionTransition(final SubscriptionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleBlockingStateTransition(final BlockingTransitionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagCreation(final ControlTagCreationInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagDeletion(final ControlTagDeletionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    // Invoice creations and adjustments, invoice payments, ...
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleInvoiceEvent(final InvoiceInternalEvent event) {
+        // Posted for dryRun invoices
+        if (event instanceof InvoiceNotificationInternalEvent) {
+            return;
+        }
+        invalidate(event.getSearchKey1());
+    }
+
+    // DryRunArguments implementations don't implement equals
+    static List<Object> computeKey(@Nullable final DateTime targetDate, final DryRunArguments dryRunArguments) {
+        final List<Object> overrides = new ArrayList<Object>();
+        if (dryRunArguments.getPlanPhasePriceOverrides() != null) {
+            for (final PlanPhasePriceOverride override : dryRunArguments.getPlanPhasePriceOverrides()) {
+                overrides.add(Arrays.<Object>asList(override.getPhaseName(),
+                                                    computeKey(override.getPlanPhaseSpecifier()),
+                                                    override.getCurrency(),
+                                                    override.getFixedPrice(),
+                                                    override.getRecurringPrice()));
+            }
+        }
+
+        // DefaultInvoiceUserApi passes the target date at the current time of day: only the local date matters
+        return Arrays.<Object>asList(targetDate == null ? null : targetDate.toLocalDate(),
+                                     targetDate == null ? null : targetDate.getZone(),
+                                     dryRunArguments.getDryRunType(),
+                                     computeKey(dryRunArguments.getPlanPhaseSpecifier()),
+                                     dryRunArguments.getAction(),
+                                     dryRunArguments.getSubscriptionId(),
+                                     dryRunArguments.getEffectiveDate(),
+                                     dryRunArguments.getBundleId(),
+                                     dryRunArguments.getBillingActionPolicy(),
+                                     overrides);
+    }
+
+    private static List<Object> computeKey(@Nullable final PlanPhaseSpecifier spec) {
+        if (spec == null) {
+            return null;
+        }
+        return Arrays.<Object>asList(spec.getProductName(),
+                                     spec.getProductCategory(),
+                                     spec.getBillingPeriod(),
+                                     spec.getPriceListName(),
+                                     spec.getPhaseType());
+    }
+
+    private static final class AccountDryRunInvoices {
+
+        private final Long tenantRecordId;
+        private final String version;
+        private final Map<List<Object>, DryRunInvoice> invoices;
+
+        private AccountDryRunInvoices(final Long tenantRecordId, final String version) {
+            this.tenantRecordId = tenantRecordId;
+            this.version = version;
+            this.invoices = Collections.synchronizedMap(new LinkedHashMap<List<Object>, DryRunInvoice>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<Object>, DryRunInvoice> eldest) {
+                    return size() > MAX_DRY_RUN_INVOICES_PER_ACCOUNT;
+                }
+            });
+        }
+
+        public Long getTenantRecordId() {
+            return tenantRecordId;
+        }
+
+        public boolean isValid(final Long tenantRecordId, final String version) {
+            return Objects.equal(this.tenantRecordId, tenantRecordId) && this.version.equals(version);
+        }
+
+        public Optional<Invoice> get(final List<Object> key, final DateTime now) {
+            final DryRunInvoice dryRunInvoice = invoices.get(key);
+            if (dryRunInvoice == null) {
+                return null;
+            } else if (!now.isBefore(dryRunInvoice.getValidUntil())) {
+                invoices.remove(key);
+                return null;
+            } else {
+                return dryRunInvoice.getInvoice();
+            }
+        }
+
+        public void put(final List<Object> key, final DateTime validUntil, @Nullable final Invoice invoice) {
+            invoices.put(key, new DryRunInvoice(validUntil, invoice));
+        }
+    }
+
+    private static final class DryRunInvoice {
+
+        private final DateTime validUntil;
+        private final Optional<Invoice> invoice;
+
+        private DryRunInvoice(final DateTime validUntil, @Nullable final Invoice invoice) {
+            this.validUntil = validUntil;
+            this.invoice = Optional.<Invoice>fromNullable(invoice);
+        }
+
+        public DateTime getValidUntil() {
+            return validUntil;
+        }
+
+        public Optional<Invoice> getInvoice() {
+            return invoice;
+        }
+    }
+}
@@ -104,6 +104,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
@@ -133,6 +134,8 @@ public class InvoiceDispatcher {
     private final Clock clock;
     private final NotificationQueueService notificationQueueService;
     private final InvoiceConfig invoiceConfig;
+    private final DryRunInvoiceCache dryRunInvoiceCache;
+    private final InvoiceTriggerCoalescer invoiceTriggerCoalescer;
 
     @Inject
     public InvoiceDispatcher(final InvoiceGenerator generator,
@@ -147,6 +150,8 @@ public class InvoiceDispatcher {
                              final PersistentBus eventBus,
                              final NotificationQueueService notificationQueueService,
                              final InvoiceConfig invoiceConfig,
+                             final DryRunInvoiceCache dryRunInvoiceCache,
+                             final InvoiceTriggerCoalescer invoiceTriggerCoalescer,
                              final Clock clock) {
         this.generator = generator;
         this.billingApi = billingApi;
@@ -161,6 +166,8 @@ public class InvoiceDispatcher {
         this.clock = clock;
         this.notificationQueueService = notificationQueueService;
         this.invoiceConfig = invoiceConfig;
+        this.dryRunInvoiceCache = dryRunInvoiceCache;
+        this.invoiceTriggerCoalescer = invoiceTriggerCoalescer;
     }
 
     public void processSubscriptionForInvoiceGeneration(final EffectiveSubscriptionInternalEvent transition,
@@ -194,9 +201,12 @@ public class InvoiceDispatcher {
                 return null;
             }
             final UUID accountId = subscriptionApi.getAccountIdFromSubscriptionId(subscriptionId, context);
-            final DryRunArguments dryRunArguments = dryRunForNotification ? TARGET_DATE_DRY_RUN_ARGUMENTS : null;
+            if (dryRunForNotification) {
+                return processAccount(accountId, targetDate, TARGET_DATE_DRY_RUN_ARGUMENTS, context);
+            }
 
-            return processAccount(accountId, targetDate, dryRunArguments, context);
+            processAccountForTrigger(accountId, targetDate, context);
+            return null;
         } catch (final SubscriptionBaseApiException e) {
             log.warn("Failed handling SubscriptionBase change.",
                       new InvoiceApiException(ErrorCode.INVOICE_NO_ACCOUNT_ID_FOR_SUBSCRIPTION_ID, subscriptionId.toString()));
@@ -204,13 +214,39 @@ public class InvoiceDispatcher {
         }
     }
 
+    // Invoice generation triggered by a system event: the run may be merged with the ones for the other pending triggers for that account
+    public void processAccountForTrigger(final UUID accountId, final DateTime targetDate, final InternalCallContext context) throws InvoiceApiException {
+        invoiceTriggerCoalescer.process(accountId, targetDate, new InvoiceTriggerCoalescer.InvoiceRun() {
+            @Override
+            public void run(final DateTime coalescedTargetDate) throws InvoiceApiException {
+                processAccount(accountId, coalescedTargetDate, null, context);
+            }
+        });
+    }
+
     public Invoice processAccount(final UUID accountId, @Nullable final DateTime targetDate,
                                   @Nullable final DryRunArguments dryRunArguments, final InternalCallContext context) throws InvoiceApiException {
+        // Invoice notifications are only triggered once per target date: don't bother caching them
+        final boolean useDryRunCache = dryRunInvoiceCache.isEnabled() && dryRunArguments != null && dryRunArguments != TARGET_DATE_DRY_RUN_ARGUMENTS;
+        // Retrieve the version before generating the invoice: a concurrent change will simply make it stale
+        final String accountStateVersion = useDryRunCache ? invoiceDao.getAccountStateVersion(context) : null;
+        final DateTime computedAt = clock.getUTCNow();
+        if (useDryRunCache) {
+            final Optional<Invoice> cachedDryRunInvoice = dryRunInvoiceCache.get(context.getAccountRecordId(), context.getTenantRecordId(), accountStateVersion, computedAt, targetDate, dryRunArguments);
+            if (cachedDryRunInvoice != null) {
+                return cachedDryRunInvoice.orNull();
+            }
+        }
+
         GlobalLock lock = null;
         try {
             lock = locker.lockWithNumberOfTries(LockerType.ACCNT_INV_PAY.toString(), accountId.toString(), invoiceConfig.getMaxGlobalLockRetries());
 
-            return processAccountWithLock(accountId, targetDate, dryRunArguments, context);
+            final Invoice invoice = processAccountWithLock(accountId, targetDate, dryRunArguments, context);
+            if (useDryRunCache) {
+                dryRunInvoiceCache.put(context.getAccountRecordId(), context.getTenantRecordId(), accountStateVersion, computedAt, targetDate, dryRunArguments, invoice);
+            }
+            return invoice;
         } catch (final LockFailedException e) {
             log.warn("Failed to process invoice for accountId='{}', targetDate='{}'", accountId.toString(), targetDate, e);
         } finally {
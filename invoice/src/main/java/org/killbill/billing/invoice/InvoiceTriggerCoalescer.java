@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.util.config.InvoiceConfig;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+//
+// Collapses the invoice triggers (subscription transitions, blocking states, next billing dates, ...) received
+// for the same account while a previous run is pending into a single run, at the maximum target date.
+//
+// A bulk change on a large bundle (e.g. cancelling all add-ons) fires one bus event per subscription: the bus
+// dispatches them concurrently and, without coalescing, each of them would run a full invoice generation in turn
+// under the account lock. Only one run per account is executed at a time on this node: the triggers received in
+// the meantime are merged into the next run. The callers whose trigger was coalesced wait for the run which covers
+// it to complete (and see its failure, if any): as before, a trigger is only acknowledged once the invoice has been
+// generated. Waits are bounded by InvoiceConfig#getTriggerCoalescingMaxWait: past it, the trigger is processed
+// independently (the account lock still serializes the runs), so that a slow run doesn't pin the bus threads.
+//
+@Singleton
+public class InvoiceTriggerCoalescer {
+
+    public static final String COALESCED_TRIGGERS_METRIC_NAME = MetricRegistry.name(InvoiceTriggerCoalescer.class, "coalescedTriggers");
+    public static final String EXECUTED_RUNS_METRIC_NAME = MetricRegistry.name(InvoiceTriggerCoalescer.class, "executedRuns");
+
+    public interface InvoiceRun {
+
+        void run(DateTime targetDate) throws InvoiceApiException;
+    }
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final long maxWaitMillis;
+    private final Meter coalescedTriggers;
+    private final Meter executedRuns;
+    // Per account, the run in progress on this node and the next one (which new triggers are merged into), guarded by the runs lock
+    private final Object runsLock = new Object();
+    private final Map<UUID, PendingRun> runningRuns = new HashMap<UUID, PendingRun>();
+    private final Map<UUID, PendingRun> pendingRuns = new HashMap<UUID, PendingRun>();
+
+    @Inject
+    public InvoiceTriggerCoalescer(final InvoiceConfig invoiceConfig, final MetricRegistry metricRegistry) {
+        this.enabled = invoiceConfig.isTriggerCoalescingEnabled();
+        this.windowMillis = invoiceConfig.getTriggerCoalescingWindow().getMillis();
+        this.maxWaitMillis = invoiceConfig.getTriggerCoalescingMaxWait().getMillis();
+        this.coalescedTriggers = metricRegistry.meter(COALESCED_TRIGGERS_METRIC_NAME);
+        this.executedRuns = metricRegistry.meter(EXECUTED_RUNS_METRIC_NAME);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void process(final UUID accountId, final DateTime targetDate, final InvoiceRun invoiceRun) throws InvoiceApiException {
+        if (!enabled) {
+            executedRuns.mark();
+            invoiceRun.run(targetDate);
+            return;
+        }
+
+        final PendingRun pendingRun;
+        final PendingRun previousRun;
+        final boolean isOwner;
+        synchronized (runsLock) {
+            final PendingRun existingRun = pendingRuns.get(accountId);
+            if (existingRun != null) {
+                existingRun.merge(targetDate);
+                coalescedTriggers.mark();
+                pendingRun = existingRun;
+                previousRun = null;
+                isOwner = false;
+            } else {
+                pendingRun = new PendingRun(targetDate);
+                pendingRuns.put(accountId, pendingRun);
+                previousRun = runningRuns.get(accountId);
+                isOwner = true;
+            }
+        }
+
+        if (isOwner) {
+            execute(accountId, pendingRun, previousRun, invoiceRun);
+        } else if (!pendingRun.awaitCompletion(maxWaitMillis)) {
+            // The run covering this trigger is taking too long: don't rely on it anymore
+            executedRuns.mark();
+            invoiceRun.run(targetDate);
+        }
+    }
+
+    private void execute(final UUID accountId, final PendingRun pendingRun, @Nullable final PendingRun previousRun, final InvoiceRun invoiceRun) throws InvoiceApiException {
+        try {
+            // Keep merging new triggers until the account is available (or for the configured window, to give the other events of the same bus batch a chance to be merged)
+            if (previousRun != null) {
+                previousRun.awaitCompletionQuietly(maxWaitMillis);
+            } else if (windowMillis > 0) {
+                Thread.sleep(windowMillis);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final IllegalStateException failure = new IllegalStateException("Interrupted while waiting to run the invoice generation for account " + accountId, e);
+            // The merged triggers must not wait for a run which will never happen
+            synchronized (runsLock) {
+                pendingRuns.remove(accountId);
+            }
+            pendingRun.complete(failure);
+            throw failure;
+        }
+
+        // From now on, new triggers will be part of the next run
+        final DateTime targetDate;
+        synchronized (runsLock) {
+            pendingRuns.remove(accountId);
+            runningRuns.put(accountId, pendingRun);
+            targetDate = pendingRun.getMaxTargetDate();
+        }
+
+        Exception failure = null;
+        try {
+            executedRuns.mark();
+            invoiceRun.run(targetDate);
+        } catch (final InvoiceApiException e) {
+            failure = e;
+            throw e;
+        } catch (final RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            synchronized (runsLock) {
+                runningRuns.remove(accountId);
+            }
+            pendingRun.complete(failure);
+        }
+    }
+
+    private static final class PendingRun {
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        // Guarded by the runs lock
+        private DateTime maxTargetDate;
+        private volatile Exception failure;
+
+        private PendingRun(final DateTime targetDate) {
+            this.maxTargetDate = targetDate;
+        }
+
+        public void merge(final DateTime targetDate) {
+            if (targetDate.isAfter(maxTargetDate)) {
+                maxTargetDate = targetDate;
+            }
+        }
+
+        public DateTime getMaxTargetDate() {
+            return maxTargetDate;
+        }
+
+        public void complete(@Nullable final Exception failure) {
+            this.failure = failure;
+            completed.countDown();
+        }
+
+        // Returns false if the run didn't complete in time
+        public boolean awaitCompletionQuietly(final long maxWaitMillis) throws InterruptedException {
+            return completed.await(maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Returns false if the run didn't complete in time, rethrows its failure otherwise
+        public boolean awaitCompletion(final long maxWaitMillis) throws InvoiceApiException {
+            try {
+                if (!awaitCompletionQuietly(maxWaitMillis)) {
+                    return false;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a coalesced invoice run", e);
+            }
+
+            if (failure instanceof InvoiceApiException) {
+                throw (InvoiceApiException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            return true;
+        }
+    }
+}
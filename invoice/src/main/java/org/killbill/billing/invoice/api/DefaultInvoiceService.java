@@ -19,11 +19,17 @@
 package org.killbill.billing.invoice.api;
 
 import org.killbill.bus.api.PersistentBus;
+import org.killbill.billing.invoice.DryRunInvoiceCache;
 import org.killbill.billing.invoice.InvoiceListener;
 import org.killbill.billing.invoice.InvoiceTagHandler;
+import org.killbill.billing.invoice.generator.InvoiceGenerationExecutor;
 import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
+import org.killbill.billing.invoice.template.HtmlInvoiceCache;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
 import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.tag.ControlTagsCache;
 import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 
@@ -35,14 +41,26 @@ public class DefaultInvoiceService implements InvoiceService {
     private final NextBillingDateNotifier dateNotifier;
     private final InvoiceListener invoiceListener;
     private final InvoiceTagHandler tagHandler;
+    private final ControlTagsCache controlTagsCache;
+    private final DryRunInvoiceCache dryRunInvoiceCache;
+    private final HtmlInvoiceCache htmlInvoiceCache;
+    private final TenantInternalApi tenantInternalApi;
     private final PersistentBus eventBus;
+    private final InvoiceGenerationExecutor invoiceGenerationExecutor;
 
     @Inject
-    public DefaultInvoiceService(final InvoiceListener invoiceListener, final InvoiceTagHandler tagHandler, final PersistentBus eventBus, final NextBillingDateNotifier dateNotifier) {
+    public DefaultInvoiceService(final InvoiceListener invoiceListener, final InvoiceTagHandler tagHandler, final ControlTagsCache controlTagsCache,
+                                 final DryRunInvoiceCache dryRunInvoiceCache, final HtmlInvoiceCache htmlInvoiceCache, final TenantInternalApi tenantInternalApi,
+                                 final PersistentBus eventBus, final NextBillingDateNotifier dateNotifier, final InvoiceGenerationExecutor invoiceGenerationExecutor) {
         this.invoiceListener = invoiceListener;
         this.tagHandler = tagHandler;
+        this.controlTagsCache = controlTagsCache;
+        this.dryRunInvoiceCache = dryRunInvoiceCache;
+        this.htmlInvoiceCache = htmlInvoiceCache;
+        this.tenantInternalApi = tenantInternalApi;
         this.eventBus = eventBus;
         this.dateNotifier = dateNotifier;
+        this.invoiceGenerationExecutor = invoiceGenerationExecutor;
     }
 
     @Override
@@ -55,10 +73,31 @@ public class DefaultInvoiceService implements InvoiceService {
         try {
             eventBus.register(invoiceListener);
             eventBus.register(tagHandler);
+            // The AUTO_INVOICING_OFF control tags are looked-up on each invoice run (see InternalBillingApi)
+            if (controlTagsCache.isEnabled()) {
+                eventBus.register(controlTagsCache);
+            }
+            if (dryRunInvoiceCache.isEnabled()) {
+                eventBus.register(dryRunInvoiceCache);
+            }
+            if (htmlInvoiceCache.isEnabled()) {
+                eventBus.register(htmlInvoiceCache);
+            }
         } catch (PersistentBus.EventBusException e) {
             throw new RuntimeException("Failed to register bus handlers", e);
         }
         dateNotifier.initialize();
+        if (dryRunInvoiceCache.isEnabled()) {
+            dryRunInvoiceCache.initialize();
+            for (final TenantKey tenantKey : DryRunInvoiceCache.TENANT_KEYS) {
+                tenantInternalApi.initializeCacheInvalidationCallback(tenantKey, dryRunInvoiceCache);
+            }
+        }
+        if (htmlInvoiceCache.isEnabled()) {
+            for (final TenantKey tenantKey : HtmlInvoiceCache.TEMPLATE_TENANT_KEYS) {
+                tenantInternalApi.initializeCacheInvalidationCallback(tenantKey, htmlInvoiceCache);
+            }
+        }
     }
 
     @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
@@ -71,9 +110,20 @@ public class DefaultInvoiceService implements InvoiceService {
         try {
             eventBus.unregister(invoiceListener);
             eventBus.unregister(tagHandler);
+            if (controlTagsCache.isEnabled()) {
+                eventBus.unregister(controlTagsCache);
+            }
+            if (dryRunInvoiceCache.isEnabled()) {
+                eventBus.unregister(dryRunInvoiceCache);
+            }
+            if (htmlInvoiceCache.isEnabled()) {
+                eventBus.unregister(htmlInvoiceCache);
+            }
         } catch (PersistentBus.EventBusException e) {
             throw new RuntimeException("Failed to unregister bus handlers", e);
         }
         dateNotifier.stop();
+        dryRunInvoiceCache.stop();
+        invoiceGenerationExecutor.stop();
     }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
@@ -88,6 +89,31 @@ public class DefaultInvoiceInternalApi implements InvoiceInternalApi {
         });
     }
 
+    @Override
+    public List<Invoice> getInvoicesByAccount(final UUID accountId, final DateTime createdSince, @Nullable final UUID afterInvoiceId, final Long limit, final InternalTenantContext context) {
+        return ImmutableList.<Invoice>copyOf(Collections2.transform(dao.getInvoicesByAccount(createdSince, afterInvoiceId, limit, context), new Function<InvoiceModelDao, Invoice>() {
+            @Override
+            public Invoice apply(final InvoiceModelDao input) {
+                return new DefaultInvoice(input);
+            }
+        }));
+    }
+
+    @Override
+    public List<Invoice> getInvoicesWithCreditsByAccount(final UUID accountId, final DateTime createdSince, final InternalTenantContext context) {
+        return ImmutableList.<Invoice>copyOf(Collections2.transform(dao.getInvoicesWithCreditsByAccount(createdSince, context), new Function<InvoiceModelDao, Invoice>() {
+            @Override
+            public Invoice apply(final InvoiceModelDao input) {
+                return new DefaultInvoice(input);
+            }
+        }));
+    }
+
+    @Override
+    public List<UUID> getInvoiceIdsByInvoiceDate(@Nullable final LocalDate startDate, @Nullable final LocalDate endDate, final InternalTenantContext context) {
+        return dao.getInvoiceIdsByInvoiceDate(startDate, endDate, context);
+    }
+
     @Override
     public BigDecimal getAccountBalance(final UUID accountId, final InternalTenantContext context) {
         return dao.getAccountBalance(accountId, context);
@@ -155,6 +181,16 @@ public class DefaultInvoiceInternalApi implements InvoiceInternalApi {
         dao.consumeExstingCBAOnAccountWithUnpaidInvoices(accountId, context);
     }
 
+    @Override
+    public List<InvoicePayment> getInvoicePaymentsByPaymentIds(final Collection<UUID> paymentIds, final InternalTenantContext context) {
+        return ImmutableList.<InvoicePayment>copyOf(Collections2.transform(dao.getInvoicePaymentsByPaymentIds(paymentIds, context), new Function<InvoicePaymentModelDao, InvoicePayment>() {
+            @Override
+            public InvoicePayment apply(final InvoicePaymentModelDao input) {
+                return new DefaultInvoicePayment(input);
+            }
+        }));
+    }
+
     @Override
     public Map<UUID, BigDecimal> validateInvoiceItemAdjustments(final UUID paymentId, final Map<UUID, BigDecimal> idWithAmount, final InternalTenantContext context) throws InvoiceApiException {
         final InvoicePayment invoicePayment = getInvoicePayment(paymentId, InvoicePaymentType.ATTEMPT, context);
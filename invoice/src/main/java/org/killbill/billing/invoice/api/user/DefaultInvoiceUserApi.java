@@ -55,6 +55,7 @@ import org.killbill.billing.invoice.model.DefaultInvoice;
 import org.killbill.billing.invoice.model.ExternalChargeInvoiceItem;
 import org.killbill.billing.invoice.model.InvoiceItemFactory;
 import org.killbill.billing.invoice.template.HtmlInvoice;
+import org.killbill.billing.invoice.template.HtmlInvoiceCache;
 import org.killbill.billing.invoice.template.HtmlInvoiceGenerator;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.UUIDs;
@@ -91,6 +92,7 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
     private final TagInternalApi tagApi;
     private final InvoiceApiHelper invoiceApiHelper;
     private final HtmlInvoiceGenerator generator;
+    private final HtmlInvoiceCache htmlInvoiceCache;
     private final InternalCallContextFactory internalCallContextFactory;
     private final PersistentBus eventBus;
 
@@ -102,6 +104,7 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
                                  final TagInternalApi tagApi,
                                  final InvoiceApiHelper invoiceApiHelper,
                                  final HtmlInvoiceGenerator generator,
+                                 final HtmlInvoiceCache htmlInvoiceCache,
                                  final InternalCallContextFactory internalCallContextFactory) {
         this.dao = dao;
         this.dispatcher = dispatcher;
@@ -109,6 +112,7 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         this.tagApi = tagApi;
         this.invoiceApiHelper = invoiceApiHelper;
         this.generator = generator;
+        this.htmlInvoiceCache = htmlInvoiceCache;
         this.internalCallContextFactory = internalCallContextFactory;
         this.eventBus = eventBus;
     }
@@ -434,6 +438,14 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         }
 
         final InternalTenantContext internalContext = internalCallContextFactory.createInternalTenantContext(invoiceId, ObjectType.INVOICE, context);
+
+        // Retrieve the version before rendering the invoice: a concurrent change will simply make it stale
+        final String renderingVersion = htmlInvoiceCache.isEnabled() ? dao.getAccountStateVersion(internalContext) : null;
+        final String cachedHtml = htmlInvoiceCache.get(invoiceId, internalContext.getTenantRecordId(), renderingVersion);
+        if (cachedHtml != null) {
+            return cachedHtml;
+        }
+
         final Account account = accountUserApi.getAccountById(invoice.getAccountId(), internalContext);
 
         // Check if this account has the MANUAL_PAY system tag
@@ -447,6 +459,7 @@ public class DefaultInvoiceUserApi implements InvoiceUserApi {
         }
 
         final HtmlInvoice htmlInvoice = generator.generateInvoice(account, invoice, manualPay, internalContext);
+        htmlInvoiceCache.put(invoiceId, internalContext.getTenantRecordId(), renderingVersion, htmlInvoice.getBody());
         return htmlInvoice.getBody();
     }
 
@@ -19,12 +19,14 @@
 package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
 
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -53,6 +55,22 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoiceModelDao> getInvoicesByAccount(LocalDate fromDate, InternalTenantContext context);
 
+    /**
+     * @param createdSince   only return invoices created at or after that date
+     * @param afterInvoiceId the last invoice of the previous page, if any
+     * @param limit          the maximum number of invoices to return
+     * @param context        the tenant context (with the account record id set)
+     * @return the non migrated invoices, in creation (record id) order
+     */
+    List<InvoiceModelDao> getInvoicesByAccount(DateTime createdSince, @Nullable UUID afterInvoiceId, Long limit, InternalTenantContext context);
+
+    /**
+     * @param createdSince only return invoices created at or after that date
+     * @param context      the tenant context (with the account record id set)
+     * @return the non migrated invoices with at least one credit item, in creation (record id) order
+     */
+    List<InvoiceModelDao> getInvoicesWithCreditsByAccount(DateTime createdSince, InternalTenantContext context);
+
     List<InvoiceModelDao> getInvoicesBySubscription(UUID subscriptionId, InternalTenantContext context);
 
     Pagination<InvoiceModelDao> searchInvoices(String searchKey, Long offset, Long limit, InternalTenantContext context);
@@ -61,6 +79,22 @@ public interface InvoiceDao extends EntityDao<InvoiceModelDao, Invoice, InvoiceA
 
     List<InvoicePaymentModelDao> getInvoicePaymentsByPaymentId(UUID paymentId, InternalTenantContext context);
 
+    List<InvoicePaymentModelDao> getInvoicePaymentsByPaymentIds(Collection<UUID> paymentIds, InternalTenantContext context);
+
+    /**
+     * @param context the tenant context (with the account record id set)
+     * @return an opaque version of the account data (used to generate and render its invoices), which changes whenever that data changes
+     */
+    String getAccountStateVersion(InternalTenantContext context);
+
+    /**
+     * @param startDate the first invoice date (inclusive), if any
+     * @param endDate   the last invoice date (inclusive), if any
+     * @param context   the tenant context (with the account record id set, to restrict the lookup to that account)
+     * @return the ids of the non migrated invoices, ordered by invoice date
+     */
+    List<UUID> getInvoiceIdsByInvoiceDate(@Nullable LocalDate startDate, @Nullable LocalDate endDate, InternalTenantContext context);
+
     List<InvoicePaymentModelDao> getInvoicePaymentsByAccount(InternalTenantContext context);
 
     BigDecimal getAccountBalance(UUID accountId, InternalTenantContext context);
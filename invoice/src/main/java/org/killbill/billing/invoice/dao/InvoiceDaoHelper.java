@@ -22,9 +22,11 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -233,6 +235,29 @@ public class InvoiceDaoHelper {
         setInvoicesWrittenOff(invoices, context);
     }
 
+    // Same as populateChildren, but only loads the children of the specified invoices (instead of the whole account)
+    public void populateChildrenForInvoices(final List<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
+        if (invoices.isEmpty()) {
+            return;
+        }
+
+        final Collection<String> invoiceIds = new ArrayList<String>(invoices.size());
+        final Collection<UUID> invoiceUUIDs = new ArrayList<UUID>(invoices.size());
+        for (final InvoiceModelDao invoice : invoices) {
+            invoiceIds.add(invoice.getId().toString());
+            invoiceUUIDs.add(invoice.getId());
+        }
+
+        final List<InvoiceItemModelDao> invoiceItems = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class).getInvoiceItemsByInvoices(invoiceIds, context);
+        addInvoiceItems(invoices, invoiceItems);
+
+        final List<InvoicePaymentModelDao> invoicePayments = entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class).getByInvoiceIds(invoiceIds, context);
+        addInvoicePayments(invoices, invoicePayments);
+
+        final List<Tag> tags = tagInternalApi.getTagsForObjects(invoiceUUIDs, ObjectType.INVOICE, context);
+        setInvoicesWrittenOff(invoices, tags);
+    }
+
     public List<InvoiceModelDao> getAllInvoicesByAccountFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         final List<InvoiceModelDao> invoices = entitySqlDaoWrapperFactory.become(InvoiceSqlDao.class).getByAccountRecordId(context);
         populateChildren(invoices, entitySqlDaoWrapperFactory, context);
@@ -247,7 +272,10 @@ public class InvoiceDaoHelper {
     private void getInvoiceItemsWithinTransaction(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         final InvoiceItemSqlDao invoiceItemSqlDao = entitySqlDaoWrapperFactory.become(InvoiceItemSqlDao.class);
         final List<InvoiceItemModelDao> invoiceItemsForAccount = invoiceItemSqlDao.getByAccountRecordId(context);
+        addInvoiceItems(invoices, invoiceItemsForAccount);
+    }
 
+    private void addInvoiceItems(final Iterable<InvoiceModelDao> invoices, final Iterable<InvoiceItemModelDao> invoiceItemsForAccount) {
         final Map<UUID, List<InvoiceItemModelDao>> invoiceItemsPerInvoiceId = new HashMap<UUID, List<InvoiceItemModelDao>>();
         for (final InvoiceItemModelDao item : invoiceItemsForAccount) {
             if (invoiceItemsPerInvoiceId.get(item.getInvoiceId()) == null) {
@@ -267,7 +295,10 @@ public class InvoiceDaoHelper {
     private void getInvoicePaymentsWithinTransaction(final Iterable<InvoiceModelDao> invoices, final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalTenantContext context) {
         final InvoicePaymentSqlDao invoicePaymentSqlDao = entitySqlDaoWrapperFactory.become(InvoicePaymentSqlDao.class);
         final List<InvoicePaymentModelDao> invoicePaymentsForAccount = invoicePaymentSqlDao.getByAccountRecordId(context);;
+        addInvoicePayments(invoices, invoicePaymentsForAccount);
+    }
 
+    private void addInvoicePayments(final Iterable<InvoiceModelDao> invoices, final Iterable<InvoicePaymentModelDao> invoicePaymentsForAccount) {
         final Map<UUID, List<InvoicePaymentModelDao>> invoicePaymentsPerInvoiceId = new HashMap<UUID, List<InvoicePaymentModelDao>>();
         for (final InvoicePaymentModelDao invoicePayment : invoicePaymentsForAccount) {
             if (invoicePaymentsPerInvoiceId.get(invoicePayment.getInvoiceId()) == null) {
@@ -293,18 +324,22 @@ public class InvoiceDaoHelper {
     }
 
     private void setInvoicesWrittenOff(final Iterable<InvoiceModelDao> invoices, final InternalTenantContext internalTenantContext) {
+        final Collection<UUID> invoiceIds = new HashSet<UUID>();
+        for (final InvoiceModelDao invoice : invoices) {
+            invoiceIds.add(invoice.getId());
+        }
+        final List<Tag> tags = tagInternalApi.getTagsForObjects(invoiceIds, ObjectType.INVOICE, internalTenantContext);
+        setInvoicesWrittenOff(invoices, tags);
+    }
 
-        final List<Tag> tags = tagInternalApi.getTagsForAccountType(ObjectType.INVOICE, false, internalTenantContext);
-        final Iterable<Tag> writtenOffTags = filterForWrittenOff(tags);
-        for (final Tag cur : writtenOffTags) {
-            final InvoiceModelDao foundInvoice = Iterables.tryFind(invoices, new Predicate<InvoiceModelDao>() {
-                @Override
-                public boolean apply(final InvoiceModelDao input) {
-                    return input.getId().equals(cur.getObjectId());
-                }
-            }).orNull();
-            if (foundInvoice != null) {
-                foundInvoice.setIsWrittenOff(true);
+    private void setInvoicesWrittenOff(final Iterable<InvoiceModelDao> invoices, final List<Tag> tags) {
+        final Set<UUID> writtenOffInvoiceIds = new HashSet<UUID>();
+        for (final Tag cur : filterForWrittenOff(tags)) {
+            writtenOffInvoiceIds.add(cur.getObjectId());
+        }
+        for (final InvoiceModelDao invoice : invoices) {
+            if (writtenOffInvoiceIds.contains(invoice.getId())) {
+                invoice.setIsWrittenOff(true);
             }
         }
     }
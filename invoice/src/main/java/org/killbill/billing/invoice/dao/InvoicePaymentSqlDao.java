@@ -19,6 +19,7 @@
 package org.killbill.billing.invoice.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -28,6 +29,7 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.api.InvoicePayment;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -45,6 +47,14 @@ public interface InvoicePaymentSqlDao extends EntitySqlDao<InvoicePaymentModelDa
     public List<InvoicePaymentModelDao> getAllPaymentsForInvoiceIncludedInit(@Bind("invoiceId") final String invoiceId,
                                                               @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    List<InvoicePaymentModelDao> getByInvoiceIds(@UUIDCollectionBinder final Collection<String> invoiceIds,
+                                                 @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<InvoicePaymentModelDao> getByPaymentIds(@UUIDCollectionBinder final Collection<String> paymentIds,
+                                                 @BindBean final InternalTenantContext context);
+
     @SqlQuery
     List<InvoicePaymentModelDao> getInvoicePayments(@Bind("paymentId") final String paymentId,
                                                     @BindBean final InternalTenantContext context);
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.invoice.dao;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -35,8 +36,23 @@ public interface InvoiceSqlDao extends EntitySqlDao<InvoiceModelDao, Invoice> {
     List<InvoiceModelDao> getInvoicesBySubscription(@Bind("subscriptionId") final String subscriptionId,
                                                     @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    List<InvoiceModelDao> getByAccountRecordIdCreatedSince(@Bind("createdSince") final Date createdSince,
+                                                          @Bind("fromRecordId") final Long fromRecordId,
+                                                          @Bind("rowCount") final Long rowCount,
+                                                          @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<InvoiceModelDao> getWithCreditsByAccountRecordIdCreatedSince(@Bind("createdSince") final Date createdSince,
+                                                                     @BindBean final InternalTenantContext context);
+
     @SqlQuery
     UUID getInvoiceIdByPaymentId(@Bind("paymentId") final String paymentId,
                                  @BindBean final InternalTenantContext context);
+
+    @SqlQuery
+    List<UUID> getIdsByInvoiceDate(@Bind("startDate") final Date startDate,
+                                   @Bind("endDate") final Date endDate,
+                                   @BindBean final InternalTenantContext context);
 }
 
@@ -19,10 +19,12 @@ package org.killbill.billing.invoice.generator;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Nullable;
 
@@ -53,6 +55,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 
 import static org.killbill.billing.invoice.generator.InvoiceDateUtils.calculateNumberOfWholeBillingPeriods;
@@ -63,15 +66,22 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
 
     private static final Logger log = LoggerFactory.getLogger(FixedAndRecurringInvoiceItemGenerator.class);
 
+    private final InvoiceGenerationExecutor invoiceGenerationExecutor;
+
     @Inject
-    public FixedAndRecurringInvoiceItemGenerator() {
+    public FixedAndRecurringInvoiceItemGenerator(final InvoiceGenerationExecutor invoiceGenerationExecutor) {
+        this.invoiceGenerationExecutor = invoiceGenerationExecutor;
     }
 
     public List<InvoiceItem> generateItems(final ImmutableAccountData account, final UUID invoiceId, final BillingEventSet eventSet,
                                            @Nullable final List<Invoice> existingInvoices, final LocalDate targetDate,
                                            final Currency targetCurrency, Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
                                            final InternalCallContext internalCallContext) throws InvoiceApiException {
-        final AccountItemTree accountItemTree = new AccountItemTree(account.getId(), invoiceId);
+        // Billing events are ordered by subscription first
+        final List<List<BillingEvent>> perSubscriptionEvents = invoiceGenerationExecutor.isEnabled() ? partitionBySubscription(eventSet) : null;
+        final boolean parallel = perSubscriptionEvents != null && invoiceGenerationExecutor.shouldParallelize(perSubscriptionEvents.size());
+
+        final AccountItemTree accountItemTree = new AccountItemTree(account.getId(), invoiceId, parallel ? invoiceGenerationExecutor : null);
         if (existingInvoices != null) {
             for (final Invoice invoice : existingInvoices) {
                 for (final InvoiceItem item : invoice.getInvoiceItems()) {
@@ -86,8 +96,12 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
 
         // Generate list of proposed invoice items based on billing events from junction-- proposed items are ALL items since beginning of time
         final List<InvoiceItem> proposedItems = new ArrayList<InvoiceItem>();
-        processRecurringBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate, existingInvoices);
-        processFixedBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems);
+        if (parallel) {
+            processBillingEventsInParallel(invoiceId, account.getId(), eventSet, perSubscriptionEvents, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate);
+        } else {
+            processRecurringBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems, perSubscriptionFutureNotificationDate);
+            processFixedBillingEvents(invoiceId, account.getId(), eventSet, targetDate, targetCurrency, proposedItems);
+        }
 
         accountItemTree.mergeWithProposedItems(proposedItems);
         return accountItemTree.getResultingItemList();
@@ -95,48 +109,114 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
 
     private void processRecurringBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events,
                                                final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
-                                               final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
-                                               @Nullable final List<Invoice> existingInvoices) throws InvoiceApiException {
+                                               final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate) throws InvoiceApiException {
 
         if (events.size() == 0) {
             return;
         }
 
         // Pretty-print the generated invoice items from the junction events
-        final StringBuilder logStringBuilder = new StringBuilder("Proposed Invoice items for invoiceId='")
+        final StringBuilder logStringBuilder = createProposedItemsLogStringBuilder(invoiceId, accountId);
+        processRecurringBillingEvents(invoiceId, accountId, events, ImmutableList.<BillingEvent>copyOf(events), true, targetDate, currency, proposedItems, perSubscriptionFutureNotificationDate, logStringBuilder);
+        log.info(logStringBuilder.toString());
+    }
+
+    //
+    // Generate the proposed items one subscription at a time, in parallel. The results are merged in the order of the subscriptions
+    // so that the proposed items (all recurring items, then all fixed items), the future notification dates and the log output
+    // are the same as in the sequential path.
+    //
+    private void processBillingEventsInParallel(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final List<List<BillingEvent>> perSubscriptionEvents,
+                                                final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
+                                                final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate) throws InvoiceApiException {
+        final List<Callable<SubscriptionProposedItems>> tasks = new ArrayList<Callable<SubscriptionProposedItems>>(perSubscriptionEvents.size());
+        for (int i = 0; i < perSubscriptionEvents.size(); i++) {
+            final List<BillingEvent> subscriptionEvents = perSubscriptionEvents.get(i);
+            final boolean isLastSubscription = i == perSubscriptionEvents.size() - 1;
+            tasks.add(new Callable<SubscriptionProposedItems>() {
+                @Override
+                public SubscriptionProposedItems call() throws InvoiceApiException {
+                    final SubscriptionProposedItems result = new SubscriptionProposedItems();
+                    processRecurringBillingEvents(invoiceId, accountId, events, subscriptionEvents, isLastSubscription, targetDate, currency, result.recurringItems, result.futureNotificationDates, result.logStringBuilder);
+                    processFixedBillingEvents(invoiceId, accountId, events, subscriptionEvents, targetDate, currency, result.fixedItems);
+                    return result;
+                }
+            });
+        }
+
+        final List<SubscriptionProposedItems> results = invoiceGenerationExecutor.invokeAll(tasks);
+
+        final StringBuilder logStringBuilder = createProposedItemsLogStringBuilder(invoiceId, accountId);
+        for (final SubscriptionProposedItems result : results) {
+            proposedItems.addAll(result.recurringItems);
+            perSubscriptionFutureNotificationDate.putAll(result.futureNotificationDates);
+            logStringBuilder.append(result.logStringBuilder);
+        }
+        for (final SubscriptionProposedItems result : results) {
+            proposedItems.addAll(result.fixedItems);
+        }
+        log.info(logStringBuilder.toString());
+    }
+
+    private List<List<BillingEvent>> partitionBySubscription(final BillingEventSet events) {
+        final List<List<BillingEvent>> result = new ArrayList<List<BillingEvent>>();
+        List<BillingEvent> curSubscriptionEvents = null;
+        UUID curSubscriptionId = null;
+        for (final BillingEvent event : events) {
+            if (curSubscriptionEvents == null || !event.getSubscription().getId().equals(curSubscriptionId)) {
+                curSubscriptionEvents = new ArrayList<BillingEvent>();
+                result.add(curSubscriptionEvents);
+                curSubscriptionId = event.getSubscription().getId();
+            }
+            curSubscriptionEvents.add(event);
+        }
+        return result;
+    }
+
+    private StringBuilder createProposedItemsLogStringBuilder(final UUID invoiceId, final UUID accountId) {
+        return new StringBuilder("Proposed Invoice items for invoiceId='")
                 .append(invoiceId)
                 .append("', accountId='")
                 .append(accountId)
                 .append("'");
+    }
 
-        final Iterator<BillingEvent> eventIt = events.iterator();
-        BillingEvent nextEvent = eventIt.next();
-        while (eventIt.hasNext()) {
-            final BillingEvent thisEvent = nextEvent;
-            nextEvent = eventIt.next();
-            if (!events.getSubscriptionIdsWithAutoInvoiceOff().
+    //
+    // Process a run of (ordered) billing events. isLastRun is true when these are the last events of the set: the very last
+    // event is then always considered, as there is no next event.
+    //
+    private void processRecurringBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final List<BillingEvent> eventsRun, final boolean isLastRun,
+                                               final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems,
+                                               final Map<UUID, SubscriptionFutureNotificationDates> perSubscriptionFutureNotificationDate,
+                                               final StringBuilder logStringBuilder) throws InvoiceApiException {
+        for (int i = 0; i < eventsRun.size(); i++) {
+            final BillingEvent thisEvent = eventsRun.get(i);
+            final BillingEvent nextEvent = i < eventsRun.size() - 1 ? eventsRun.get(i + 1) : null;
+            if (nextEvent == null && isLastRun) {
+                final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, thisEvent, null, targetDate, currency, logStringBuilder, events.getRecurringBillingMode(), perSubscriptionFutureNotificationDate, events.getAccountDateAndTimeZoneContext());
+                proposedItems.addAll(newProposedItems);
+            } else if (!events.getSubscriptionIdsWithAutoInvoiceOff().
                     contains(thisEvent.getSubscription().getId())) { // don't consider events for subscriptions that have auto_invoice_off
-                final BillingEvent adjustedNextEvent = (thisEvent.getSubscription().getId() == nextEvent.getSubscription().getId()) ? nextEvent : null;
+                final BillingEvent adjustedNextEvent = (nextEvent != null && thisEvent.getSubscription().getId() == nextEvent.getSubscription().getId()) ? nextEvent : null;
                 final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, thisEvent, adjustedNextEvent, targetDate, currency, logStringBuilder, events.getRecurringBillingMode(), perSubscriptionFutureNotificationDate, events.getAccountDateAndTimeZoneContext());
                 proposedItems.addAll(newProposedItems);
             }
         }
-        final List<InvoiceItem> newProposedItems = processRecurringEvent(invoiceId, accountId, nextEvent, null, targetDate, currency, logStringBuilder, events.getRecurringBillingMode(), perSubscriptionFutureNotificationDate, events.getAccountDateAndTimeZoneContext());
-        proposedItems.addAll(newProposedItems);
-
-        log.info(logStringBuilder.toString());
-
-        return;
     }
 
     @VisibleForTesting
     void processFixedBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems) {
+        processFixedBillingEvents(invoiceId, accountId, events, events, targetDate, currency, proposedItems);
+    }
+
+    private void processFixedBillingEvents(final UUID invoiceId, final UUID accountId, final BillingEventSet events, final Iterable<BillingEvent> eventsRun,
+                                           final LocalDate targetDate, final Currency currency, final List<InvoiceItem> proposedItems) {
 
         final AccountDateAndTimeZoneContext dateAndTimeZoneContext = events.getAccountDateAndTimeZoneContext();
 
         InvoiceItem prevItem = null;
 
-        final Iterator<BillingEvent> eventIt = events.iterator();
+        final Iterator<BillingEvent> eventIt = eventsRun.iterator();
         while (eventIt.hasNext()) {
             final BillingEvent thisEvent = eventIt.next();
 
@@ -382,6 +462,14 @@ public class FixedAndRecurringInvoiceItemGenerator extends InvoiceItemGenerator
         }
     }
 
+    private static final class SubscriptionProposedItems {
+
+        private final List<InvoiceItem> recurringItems = new ArrayList<InvoiceItem>();
+        private final List<InvoiceItem> fixedItems = new ArrayList<InvoiceItem>();
+        private final Map<UUID, SubscriptionFutureNotificationDates> futureNotificationDates = new HashMap<UUID, SubscriptionFutureNotificationDates>();
+        private final StringBuilder logStringBuilder = new StringBuilder();
+    }
+
     // That code should belong to Duration/DefaultDuration but requires a change api (not possible for 0.16.3, but will be moreved in 0.17.0)
     private LocalDate addDurationToLocalDate(@Nullable final LocalDate inputDate, final Duration duration) {
 
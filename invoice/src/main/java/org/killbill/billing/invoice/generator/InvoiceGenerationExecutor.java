@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fork/join pool used to generate the invoice items of large accounts, one task per subscription.
+ * <p/>
+ * Parallel generation is disabled by default (see org.killbill.invoice.parallelGeneration.minSubscriptions).
+ */
+public class InvoiceGenerationExecutor {
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceGenerationExecutor.class);
+
+    private final int minSubscriptions;
+    private final ForkJoinPool forkJoinPool;
+
+    @Inject
+    public InvoiceGenerationExecutor(final InvoiceConfig invoiceConfig) {
+        this.minSubscriptions = invoiceConfig.getParallelGenerationMinSubscriptions();
+        if (minSubscriptions > 0) {
+            final int nbThreads = invoiceConfig.getParallelGenerationNbThreads() > 0 ? invoiceConfig.getParallelGenerationNbThreads() : Runtime.getRuntime().availableProcessors();
+            this.forkJoinPool = new ForkJoinPool(nbThreads);
+        } else {
+            this.forkJoinPool = null;
+        }
+    }
+
+    // Invoked by the invoice service on shutdown
+    public void stop() {
+        if (forkJoinPool == null) {
+            return;
+        }
+
+        forkJoinPool.shutdown();
+        try {
+            if (!forkJoinPool.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS)) {
+                logger.warn("Invoice generation pool failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+                forkJoinPool.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return forkJoinPool != null;
+    }
+
+    public boolean shouldParallelize(final int nbSubscriptions) {
+        return isEnabled() && nbSubscriptions >= minSubscriptions;
+    }
+
+    /**
+     * @param tasks independent tasks (e.g. one per subscription)
+     * @param <T>   task result type
+     * @return the task results, in the order of the tasks (so callers can merge them deterministically)
+     * @throws InvoiceApiException if a task failed with an InvoiceApiException
+     */
+    public <T> List<T> invokeAll(final List<Callable<T>> tasks) throws InvoiceApiException {
+        final List<Future<T>> futures = forkJoinPool.invokeAll(tasks);
+
+        final List<T> results = new ArrayList<T>(futures.size());
+        for (final Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating invoice items", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof InvoiceApiException) {
+                    throw (InvoiceApiException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                } else {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        return results;
+    }
+}
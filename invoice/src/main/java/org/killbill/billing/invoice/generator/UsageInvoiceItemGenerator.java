@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Nullable;
 
@@ -63,10 +64,12 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
     private static final Logger log = LoggerFactory.getLogger(UsageInvoiceItemGenerator.class);
 
     private final RawUsageOptimizer rawUsageOptimizer;
+    private final InvoiceGenerationExecutor invoiceGenerationExecutor;
 
     @Inject
-    public UsageInvoiceItemGenerator(final RawUsageOptimizer rawUsageOptimizer) {
+    public UsageInvoiceItemGenerator(final RawUsageOptimizer rawUsageOptimizer, final InvoiceGenerationExecutor invoiceGenerationExecutor) {
         this.rawUsageOptimizer = rawUsageOptimizer;
+        this.invoiceGenerationExecutor = invoiceGenerationExecutor;
     }
 
 
@@ -85,10 +88,11 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
 
             final LocalDate minBillingEventDate = getMinBillingEventDate(eventSet, account.getTimeZone());
 
-            final List<InvoiceItem> items = Lists.newArrayList();
             final Iterator<BillingEvent> events = eventSet.iterator();
 
             RawUsageOptimizerResult rawUsageOptimizerResult = null;
+            // Events to consider, per subscription (in the order of the billing events)
+            final List<List<BillingEvent>> perSubscriptionEvents = Lists.newArrayList();
             List<BillingEvent> curEvents = Lists.newArrayList();
             UUID curSubscriptionId = null;
             while (events.hasNext()) {
@@ -118,26 +122,45 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
 
                 final UUID subscriptionId = event.getSubscription().getId();
                 if (curSubscriptionId != null && !curSubscriptionId.equals(subscriptionId)) {
-                    final SubscriptionConsumableInArrear subscriptionConsumableInArrear = new SubscriptionConsumableInArrear(account.getId(), invoiceId, curEvents, rawUsageOptimizerResult.getRawUsage(), targetDate, rawUsageOptimizerResult.getRawUsageStartDate(), eventSet.getAccountDateAndTimeZoneContext());
-                    final List<InvoiceItem> consumableInUsageArrearItems = perSubscriptionConsumableInArrearUsageItems.get(curSubscriptionId);
-
-                    final SubscriptionConsumableInArrearItemsAndNextNotificationDate subscriptionResult = subscriptionConsumableInArrear.computeMissingUsageInvoiceItems(consumableInUsageArrearItems != null ? consumableInUsageArrearItems : ImmutableList.<InvoiceItem>of());
-                    final List<InvoiceItem> newInArrearUsageItems = subscriptionResult.getInvoiceItems();
-                    items.addAll(newInArrearUsageItems);
-                    updatePerSubscriptionNextNotificationUsageDate(curSubscriptionId, subscriptionResult.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
+                    perSubscriptionEvents.add(curEvents);
                     curEvents = Lists.newArrayList();
                 }
                 curSubscriptionId = subscriptionId;
                 curEvents.add(event);
             }
             if (curSubscriptionId != null) {
-                final SubscriptionConsumableInArrear subscriptionConsumableInArrear = new SubscriptionConsumableInArrear(account.getId(), invoiceId, curEvents, rawUsageOptimizerResult.getRawUsage(), targetDate, rawUsageOptimizerResult.getRawUsageStartDate(), eventSet.getAccountDateAndTimeZoneContext());
-                final List<InvoiceItem> consumableInUsageArrearItems = perSubscriptionConsumableInArrearUsageItems.get(curSubscriptionId);
+                perSubscriptionEvents.add(curEvents);
+            }
 
-                final SubscriptionConsumableInArrearItemsAndNextNotificationDate subscriptionResult = subscriptionConsumableInArrear.computeMissingUsageInvoiceItems(consumableInUsageArrearItems != null ? consumableInUsageArrearItems : ImmutableList.<InvoiceItem>of());
-                final List<InvoiceItem> newInArrearUsageItems = subscriptionResult.getInvoiceItems();
-                items.addAll(newInArrearUsageItems);
-                updatePerSubscriptionNextNotificationUsageDate(curSubscriptionId, subscriptionResult.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
+            final List<SubscriptionConsumableInArrearResult> subscriptionResults;
+            if (invoiceGenerationExecutor.shouldParallelize(perSubscriptionEvents.size())) {
+                final RawUsageOptimizerResult finalRawUsageOptimizerResult = rawUsageOptimizerResult;
+                final List<Callable<SubscriptionConsumableInArrearResult>> tasks = Lists.newArrayListWithCapacity(perSubscriptionEvents.size());
+                for (final List<BillingEvent> subscriptionEvents : perSubscriptionEvents) {
+                    tasks.add(new Callable<SubscriptionConsumableInArrearResult>() {
+                        @Override
+                        public SubscriptionConsumableInArrearResult call() throws InvoiceApiException {
+                            try {
+                                return computeMissingUsageInvoiceItems(account, invoiceId, subscriptionEvents, finalRawUsageOptimizerResult, targetDate, eventSet, perSubscriptionConsumableInArrearUsageItems);
+                            } catch (final CatalogApiException e) {
+                                throw new InvoiceApiException(e);
+                            }
+                        }
+                    });
+                }
+                subscriptionResults = invoiceGenerationExecutor.invokeAll(tasks);
+            } else {
+                subscriptionResults = Lists.newArrayListWithCapacity(perSubscriptionEvents.size());
+                for (final List<BillingEvent> subscriptionEvents : perSubscriptionEvents) {
+                    subscriptionResults.add(computeMissingUsageInvoiceItems(account, invoiceId, subscriptionEvents, rawUsageOptimizerResult, targetDate, eventSet, perSubscriptionConsumableInArrearUsageItems));
+                }
+            }
+
+            // Merge the results in the order of the subscriptions
+            final List<InvoiceItem> items = Lists.newArrayList();
+            for (final SubscriptionConsumableInArrearResult subscriptionResult : subscriptionResults) {
+                items.addAll(subscriptionResult.result.getInvoiceItems());
+                updatePerSubscriptionNextNotificationUsageDate(subscriptionResult.subscriptionId, subscriptionResult.result.getPerUsageNotificationDates(), BillingMode.IN_ARREAR, perSubscriptionFutureNotificationDates);
             }
             return items;
 
@@ -147,6 +170,27 @@ public class UsageInvoiceItemGenerator extends InvoiceItemGenerator {
     }
 
 
+    private SubscriptionConsumableInArrearResult computeMissingUsageInvoiceItems(final ImmutableAccountData account, final UUID invoiceId, final List<BillingEvent> subscriptionEvents,
+                                                                                 final RawUsageOptimizerResult rawUsageOptimizerResult, final LocalDate targetDate, final BillingEventSet eventSet,
+                                                                                 final Map<UUID, List<InvoiceItem>> perSubscriptionConsumableInArrearUsageItems) throws CatalogApiException {
+        final UUID subscriptionId = subscriptionEvents.get(0).getSubscription().getId();
+        final SubscriptionConsumableInArrear subscriptionConsumableInArrear = new SubscriptionConsumableInArrear(account.getId(), invoiceId, subscriptionEvents, rawUsageOptimizerResult.getRawUsage(), targetDate, rawUsageOptimizerResult.getRawUsageStartDate(), eventSet.getAccountDateAndTimeZoneContext());
+        final List<InvoiceItem> consumableInUsageArrearItems = perSubscriptionConsumableInArrearUsageItems.get(subscriptionId);
+        final SubscriptionConsumableInArrearItemsAndNextNotificationDate result = subscriptionConsumableInArrear.computeMissingUsageInvoiceItems(consumableInUsageArrearItems != null ? consumableInUsageArrearItems : ImmutableList.<InvoiceItem>of());
+        return new SubscriptionConsumableInArrearResult(subscriptionId, result);
+    }
+
+    private static final class SubscriptionConsumableInArrearResult {
+
+        private final UUID subscriptionId;
+        private final SubscriptionConsumableInArrearItemsAndNextNotificationDate result;
+
+        private SubscriptionConsumableInArrearResult(final UUID subscriptionId, final SubscriptionConsumableInArrearItemsAndNextNotificationDate result) {
+            this.subscriptionId = subscriptionId;
+            this.result = result;
+        }
+    }
+
     private LocalDate getMinBillingEventDate(final BillingEventSet eventSet, final DateTimeZone accountTimeZone) {
         DateTime minDate = null;
         final Iterator<BillingEvent> events = eventSet.iterator();
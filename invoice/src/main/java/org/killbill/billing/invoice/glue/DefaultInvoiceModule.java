@@ -19,9 +19,11 @@
 package org.killbill.billing.invoice.glue;
 
 import org.killbill.billing.glue.InvoiceModule;
+import org.killbill.billing.invoice.DryRunInvoiceCache;
 import org.killbill.billing.invoice.InvoiceDispatcher;
 import org.killbill.billing.invoice.InvoiceListener;
 import org.killbill.billing.invoice.InvoiceTagHandler;
+import org.killbill.billing.invoice.InvoiceTriggerCoalescer;
 import org.killbill.billing.invoice.api.DefaultInvoiceService;
 import org.killbill.billing.invoice.api.InvoiceApiHelper;
 import org.killbill.billing.invoice.api.InvoiceInternalApi;
@@ -42,6 +44,7 @@ import org.killbill.billing.invoice.dao.InvoiceDao;
 import org.killbill.billing.invoice.dao.InvoiceDaoHelper;
 import org.killbill.billing.invoice.generator.DefaultInvoiceGenerator;
 import org.killbill.billing.invoice.generator.FixedAndRecurringInvoiceItemGenerator;
+import org.killbill.billing.invoice.generator.InvoiceGenerationExecutor;
 import org.killbill.billing.invoice.generator.InvoiceGenerator;
 import org.killbill.billing.invoice.generator.UsageInvoiceItemGenerator;
 import org.killbill.billing.invoice.notification.DefaultNextBillingDateNotifier;
@@ -51,6 +54,7 @@ import org.killbill.billing.invoice.notification.NextBillingDateNotifier;
 import org.killbill.billing.invoice.notification.NextBillingDatePoster;
 import org.killbill.billing.invoice.notification.NullInvoiceNotifier;
 import org.killbill.billing.invoice.plugin.api.InvoicePluginApi;
+import org.killbill.billing.invoice.template.HtmlInvoiceCache;
 import org.killbill.billing.invoice.template.bundles.DefaultResourceBundleFactory;
 import org.killbill.billing.invoice.usage.RawUsageOptimizer;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
@@ -126,6 +130,8 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
     }
 
     protected void installInvoiceDispatcher() {
+        bind(DryRunInvoiceCache.class).asEagerSingleton();
+        bind(InvoiceTriggerCoalescer.class).asEagerSingleton();
         bind(InvoiceDispatcher.class).asEagerSingleton();
     }
 
@@ -141,6 +147,7 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         bind(InvoiceGenerator.class).to(DefaultInvoiceGenerator.class).asEagerSingleton();
         bind(FixedAndRecurringInvoiceItemGenerator.class).asEagerSingleton();
         bind(UsageInvoiceItemGenerator.class).asEagerSingleton();
+        bind(InvoiceGenerationExecutor.class).asEagerSingleton();
     }
 
     protected void installInvoicePluginApi() {
@@ -167,5 +174,6 @@ public class DefaultInvoiceModule extends KillBillModule implements InvoiceModul
         installResourceBundleFactory();
         bind(RawUsageOptimizer.class).asEagerSingleton();
         bind(InvoiceApiHelper.class).asEagerSingleton();
+        bind(HtmlInvoiceCache.class).asEagerSingleton();
     }
 }
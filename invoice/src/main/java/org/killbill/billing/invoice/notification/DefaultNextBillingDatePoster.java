@@ -19,15 +19,22 @@
 package org.killbill.billing.invoice.notification;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications.SubscriptionNotification;
 import org.killbill.billing.invoice.api.DefaultInvoiceService;
 import org.killbill.billing.util.AccountDateAndTimeZoneContext;
+import org.killbill.billing.util.config.InvoiceConfig;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.clock.Clock;
 import org.killbill.notificationq.api.NotificationEventWithMetadata;
 import org.killbill.notificationq.api.NotificationQueue;
 import org.killbill.notificationq.api.NotificationQueueService;
@@ -35,8 +42,6 @@ import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificatio
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 public class DefaultNextBillingDatePoster implements NextBillingDatePoster {
@@ -44,63 +49,113 @@ public class DefaultNextBillingDatePoster implements NextBillingDatePoster {
     private static final Logger log = LoggerFactory.getLogger(DefaultNextBillingDatePoster.class);
 
     private final NotificationQueueService notificationQueueService;
+    private final InvoiceConfig invoiceConfig;
+    private final Clock clock;
 
     @Inject
-    public DefaultNextBillingDatePoster(final NotificationQueueService notificationQueueService) {
+    public DefaultNextBillingDatePoster(final NotificationQueueService notificationQueueService, final InvoiceConfig invoiceConfig, final Clock clock) {
         this.notificationQueueService = notificationQueueService;
+        this.invoiceConfig = invoiceConfig;
+        this.clock = clock;
     }
 
     @Override
-    public void insertNextBillingNotificationFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
-                                                             final UUID subscriptionId, final DateTime futureNotificationTime, final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, final InternalCallContext internalCallContext) {
-        insertNextBillingFromTransactionInternal(entitySqlDaoWrapperFactory, accountId, subscriptionId, Boolean.FALSE, futureNotificationTime, futureNotificationTime, accountDateAndTimeZoneContext, internalCallContext);
-    }
-
-    @Override
-    public void insertNextBillingDryRunNotificationFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
-                                                                   final UUID subscriptionId, final DateTime futureNotificationTime, final DateTime targetDate, final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, final InternalCallContext internalCallContext) {
-        insertNextBillingFromTransactionInternal(entitySqlDaoWrapperFactory, accountId, subscriptionId, Boolean.TRUE, futureNotificationTime, targetDate, accountDateAndTimeZoneContext, internalCallContext);
-    }
+    public void insertNextBillingNotificationsFromTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
+                                                              final FutureAccountNotifications futureAccountNotifications, final InternalCallContext internalCallContext) {
+        if (futureAccountNotifications.getNotifications().isEmpty()) {
+            return;
+        }
 
-    private void insertNextBillingFromTransactionInternal(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final UUID accountId,
-                                                          final UUID subscriptionId, final Boolean isDryRunForInvoiceNotification, final DateTime futureNotificationTime, final DateTime targetDate, final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, final InternalCallContext internalCallContext) {
         final NotificationQueue nextBillingQueue;
         try {
             nextBillingQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME,
                                                                              DefaultNextBillingDateNotifier.NEXT_BILLING_DATE_NOTIFIER_QUEUE);
+        } catch (final NoSuchNotificationQueue e) {
+            log.error("Attempting to put items on a non-existent queue (NextBillingDateNotifier).", e);
+            return;
+        }
 
-            // If we see existing notification for the same date (and isDryRunForInvoiceNotification mode), we don't insert a new notification
-            final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> futureNotifications = nextBillingQueue.getFutureNotificationFromTransactionForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId(), entitySqlDaoWrapperFactory.getHandle().getConnection());
-            final NotificationEventWithMetadata<NextBillingDateNotificationKey> existingFutureNotificationWithSameDate = Iterables.tryFind(futureNotifications, new Predicate<NotificationEventWithMetadata<NextBillingDateNotificationKey>>() {
-                @Override
-                public boolean apply(final NotificationEventWithMetadata<NextBillingDateNotificationKey> input) {
-                    final boolean isEventDryRunForNotifications = input.getEvent().isDryRunForInvoiceNotification() != null ?
-                                                                  input.getEvent().isDryRunForInvoiceNotification() : false;
+        final Connection connection = entitySqlDaoWrapperFactory.getHandle().getConnection();
+        final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext = futureAccountNotifications.getAccountDateAndTimeZoneContext();
 
-                    final LocalDate notificationEffectiveLocaleDate = accountDateAndTimeZoneContext.computeLocalDateFromFixedAccountOffset(futureNotificationTime);
-                    final LocalDate eventEffectiveLocaleDate = accountDateAndTimeZoneContext.computeLocalDateFromFixedAccountOffset(input.getEffectiveDate());
+        // If we see existing notification for the same date (and isDryRunForInvoiceNotification mode), we don't insert a new notification
+        final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> futureNotifications = nextBillingQueue.getFutureNotificationFromTransactionForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId(), connection);
+        final Set<ScheduledNotification> scheduledNotifications = new HashSet<ScheduledNotification>();
+        for (final NotificationEventWithMetadata<NextBillingDateNotificationKey> futureNotification : futureNotifications) {
+            final boolean isEventDryRunForNotifications = futureNotification.getEvent().isDryRunForInvoiceNotification() != null ?
+                                                          futureNotification.getEvent().isDryRunForInvoiceNotification() : false;
+            scheduledNotifications.add(new ScheduledNotification(accountDateAndTimeZoneContext.computeLocalDateFromFixedAccountOffset(futureNotification.getEffectiveDate()), isEventDryRunForNotifications));
+        }
 
-                    return notificationEffectiveLocaleDate.compareTo(eventEffectiveLocaleDate) == 0 &&
-                           ((isDryRunForInvoiceNotification && isEventDryRunForNotifications) ||
-                            (!isDryRunForInvoiceNotification && !isEventDryRunForNotifications));
+        final long dryRunNotificationTime = invoiceConfig.getDryRunNotificationSchedule().getMillis();
+        final boolean isInvoiceNotificationEnabled = dryRunNotificationTime > 0;
+        final DateTime now = clock.getUTCNow();
+        for (final UUID subscriptionId : futureAccountNotifications.getNotifications().keySet()) {
+            for (final SubscriptionNotification cur : futureAccountNotifications.getNotifications().get(subscriptionId)) {
+                if (isInvoiceNotificationEnabled) {
+                    final DateTime curDryRunNotificationTime = cur.getEffectiveDate().minus(dryRunNotificationTime);
+                    final DateTime effectiveCurDryRunNotificationTime = curDryRunNotificationTime.isAfter(now) ? curDryRunNotificationTime : now;
+                    recordNotificationIfMissing(nextBillingQueue, connection, scheduledNotifications, subscriptionId, Boolean.TRUE, effectiveCurDryRunNotificationTime, cur.getEffectiveDate(), accountDateAndTimeZoneContext, internalCallContext);
                 }
-            }).orNull();
-
-            if (existingFutureNotificationWithSameDate == null) {
-                log.info("Queuing next billing date notification at {} for subscriptionId {}", futureNotificationTime.toString(), subscriptionId.toString());
+                if (cur.isForInvoiceNotificationTrigger()) {
+                    recordNotificationIfMissing(nextBillingQueue, connection, scheduledNotifications, subscriptionId, Boolean.FALSE, cur.getEffectiveDate(), cur.getEffectiveDate(), accountDateAndTimeZoneContext, internalCallContext);
+                }
+            }
+        }
+    }
 
-                nextBillingQueue.recordFutureNotificationFromTransaction(entitySqlDaoWrapperFactory.getHandle().getConnection(), futureNotificationTime,
-                                                                         new NextBillingDateNotificationKey(subscriptionId, targetDate, isDryRunForInvoiceNotification), internalCallContext.getUserToken(),
-                                                                         internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
-            } else if (log.isDebugEnabled()) {
+    private void recordNotificationIfMissing(final NotificationQueue nextBillingQueue, final Connection connection, final Set<ScheduledNotification> scheduledNotifications,
+                                             final UUID subscriptionId, final Boolean isDryRunForInvoiceNotification, final DateTime futureNotificationTime, final DateTime targetDate,
+                                             final AccountDateAndTimeZoneContext accountDateAndTimeZoneContext, final InternalCallContext internalCallContext) {
+        final ScheduledNotification scheduledNotification = new ScheduledNotification(accountDateAndTimeZoneContext.computeLocalDateFromFixedAccountOffset(futureNotificationTime), isDryRunForInvoiceNotification);
+        // Also guards against duplicates within the same invoice run (e.g. several subscriptions billed on the same day)
+        if (!scheduledNotifications.add(scheduledNotification)) {
+            if (log.isDebugEnabled()) {
                 log.debug("*********************   SKIPPING Queuing next billing date notification at {} for subscriptionId {} *******************", futureNotificationTime.toString(), subscriptionId.toString());
             }
+            return;
+        }
 
-        } catch (final NoSuchNotificationQueue e) {
-            log.error("Attempting to put items on a non-existent queue (NextBillingDateNotifier).", e);
+        try {
+            log.info("Queuing next billing date notification at {} for subscriptionId {}", futureNotificationTime.toString(), subscriptionId.toString());
+
+            nextBillingQueue.recordFutureNotificationFromTransaction(connection, futureNotificationTime,
+                                                                     new NextBillingDateNotificationKey(subscriptionId, targetDate, isDryRunForInvoiceNotification), internalCallContext.getUserToken(),
+                                                                     internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
         } catch (final IOException e) {
             log.error("Failed to serialize notificationKey for subscriptionId {}", subscriptionId);
         }
     }
 
+    private static final class ScheduledNotification {
+
+        private final LocalDate effectiveLocalDate;
+        private final boolean isDryRunForInvoiceNotification;
+
+        private ScheduledNotification(final LocalDate effectiveLocalDate, final boolean isDryRunForInvoiceNotification) {
+            this.effectiveLocalDate = effectiveLocalDate;
+            this.isDryRunForInvoiceNotification = isDryRunForInvoiceNotification;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final ScheduledNotification that = (ScheduledNotification) o;
+            return isDryRunForInvoiceNotification == that.isDryRunForInvoiceNotification &&
+                   effectiveLocalDate.equals(that.effectiveLocalDate);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = effectiveLocalDate.hashCode();
+            result = 31 * result + (isDryRunForInvoiceNotification ? 1 : 0);
+            return result;
+        }
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.template;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.events.InvoiceAdjustmentInternalEvent;
+import org.killbill.billing.events.InvoicePaymentInternalEvent;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.killbill.billing.util.entity.dao.AccountVersionTracker;
+import org.killbill.clock.Clock;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+//
+// Node-local cache of the rendered HTML invoices.
+//
+// A rendered invoice is reused only if the account version hasn't changed (see InvoiceDao#getAccountStateVersion, bumped
+// on each change of the account, its tags, invoices and invoice payments) and for at most InvoiceConfig#getHtmlCacheMaxAge
+// (amounts may be converted using the current rates). The entries of a tenant are invalidated when its invoice templates
+// or translations change (the tenant broadcasts are polled on all nodes).
+//
+@Singleton
+public class HtmlInvoiceCache implements CacheInvalidationCallback {
+
+    public static final Iterable<TenantKey> TEMPLATE_TENANT_KEYS = ImmutableList.<TenantKey>of(TenantKey.INVOICE_TEMPLATE,
+                                                                                                TenantKey.INVOICE_MP_TEMPLATE,
+                                                                                                TenantKey.INVOICE_TRANSLATION_,
+                                                                                                TenantKey.CATALOG_TRANSLATION_);
+
+    private final int maxInvoices;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private final Map<UUID, RenderedInvoice> renderedInvoices;
+
+    @Inject
+    public HtmlInvoiceCache(final InvoiceConfig invoiceConfig, final Clock clock) {
+        this.maxInvoices = invoiceConfig.getHtmlCacheMaxInvoices();
+        this.maxAgeMillis = invoiceConfig.getHtmlCacheMaxAge().getMillis();
+        this.clock = clock;
+        this.renderedInvoices = Collections.synchronizedMap(new LinkedHashMap<UUID, RenderedInvoice>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<UUID, RenderedInvoice> eldest) {
+                return size() > maxInvoices;
+            }
+        });
+        if (isEnabled()) {
+            // Entries are keyed by the account version
+            AccountVersionTracker.enableVersioning();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxInvoices > 0;
+    }
+
+    public String get(final UUID invoiceId, final Long tenantRecordId, @Nullable final String version) {
+        if (!isEnabled() || version == null) {
+            return null;
+        }
+
+        final RenderedInvoice renderedInvoice = renderedInvoices.get(invoiceId);
+        if (renderedInvoice == null) {
+            return null;
+        } else if (!renderedInvoice.isValid(tenantRecordId, version, clock.getUTCNow())) {
+            renderedInvoices.remove(invoiceId);
+            return null;
+        } else {
+            return renderedInvoice.getHtml();
+        }
+    }
+
+    // The version must have been retrieved before rendering the invoice
+    public void put(final UUID invoiceId, final Long tenantRecordId, @Nullable final String version, final String html) {
+        if (!isEnabled() || version == null) {
+            return;
+        }
+
+        renderedInvoices.put(invoiceId, new RenderedInvoice(tenantRecordId, version, clock.getUTCNow().plus(maxAgeMillis), html));
+    }
+
+    public void invalidate(final UUID invoiceId) {
+        renderedInvoices.remove(invoiceId);
+    }
+
+    public void invalidateTenant(final Long tenantRecordId) {
+        synchronized (renderedInvoices) {
+            final Iterator<RenderedInvoice> iterator = renderedInvoices.values().iterator();
+            while (iterator.hasNext()) {
+                if (Objects.equal(iterator.next().getTenantRecordId(), tenantRecordId)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+        invalidateTenant(tenantContext.getTenantRecordId());
+    }
+
+    // The persistent bus dispatches each event to a single node: this only frees the entry early on that node,
+    // the version check is what keeps the other nodes from serving a stale invoice
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleInvoicePayment(final InvoicePaymentInternalEvent event) {
+        if (event.getInvoiceId() != null) {
+            invalidate(event.getInvoiceId());
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleInvoiceAdjustment(final InvoiceAdjustmentInternalEvent event) {
+        invalidate(event.getInvoiceId());
+    }
+
+    private static final class RenderedInvoice {
+
+        private final Long tenantRecordId;
+        private final String version;
+        private final DateTime validUntil;
+        private final String html;
+
+        private RenderedInvoice(final Long tenantRecordId, final String version, final DateTime validUntil, final String html) {
+            this.tenantRecordId = tenantRecordId;
+            this.version = version;
+            this.validUntil = validUntil;
+            this.html = html;
+        }
+
+        public boolean isValid(final Long tenantRecordId, final String version, final DateTime now) {
+            return Objects.equal(this.tenantRecordId, tenantRecordId) &&
+                   this.version.equals(version) &&
+                   now.isBefore(validUntil);
+        }
+
+        public Long getTenantRecordId() {
+            return tenantRecordId;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+    }
+}
@@ -20,17 +20,22 @@ package org.killbill.billing.invoice.tree;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
+import javax.annotation.Nullable;
+
+import org.killbill.billing.invoice.api.InvoiceApiException;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceGenerationExecutor;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 
 /**
  * Tree of invoice items for a given account.
@@ -52,18 +57,28 @@ public class AccountItemTree {
     private final UUID accountId;
     private final UUID targetInvoiceId;
     private final Map<UUID, SubscriptionItemTree> subscriptionItemTree;
-    private final List<InvoiceItem> allExistingItems;
+    private final InvoiceGenerationExecutor executor;
+    // Only used to retrieve the original item for linked items
+    private final Map<UUID, InvoiceItem> allExistingItemsById;
     private List<InvoiceItem> pendingItemAdj;
 
     private boolean isBuilt;
 
     public AccountItemTree(final UUID accountId, final UUID targetInvoiceId) {
+        this(accountId, targetInvoiceId, null);
+    }
+
+    /**
+     * @param executor if not null, the subscription trees are built and merged in parallel (one task per subscription)
+     */
+    public AccountItemTree(final UUID accountId, final UUID targetInvoiceId, @Nullable final InvoiceGenerationExecutor executor) {
         this.accountId = accountId;
+        this.executor = executor;
         this.targetInvoiceId = targetInvoiceId;
         this.subscriptionItemTree = new HashMap<UUID, SubscriptionItemTree>();
         this.isBuilt = false;
-        this.allExistingItems = new LinkedList<InvoiceItem>();
-        this.pendingItemAdj = new LinkedList<InvoiceItem>();
+        this.allExistingItemsById = new HashMap<UUID, InvoiceItem>();
+        this.pendingItemAdj = new ArrayList<InvoiceItem>();
     }
 
     /**
@@ -78,9 +93,13 @@ public class AccountItemTree {
             }
             pendingItemAdj.clear();
         }
-        for (SubscriptionItemTree tree : subscriptionItemTree.values()) {
-            tree.build();
-        }
+        invokeForEachTree(new Function<SubscriptionItemTree, Void>() {
+            @Override
+            public Void apply(final SubscriptionItemTree tree) {
+                tree.build();
+                return null;
+            }
+        });
         isBuilt = true;
     }
 
@@ -96,8 +115,10 @@ public class AccountItemTree {
     private void addExistingItem(final InvoiceItem existingItem, final boolean failOnMissingSubscription) {
         Preconditions.checkState(!isBuilt);
 
-        // Only used to retrieve the original item for linked items
-        allExistingItems.add(existingItem);
+        // Keep the first item seen for a given id (pending adjustments are added a second time in build())
+        if (!allExistingItemsById.containsKey(existingItem.getId())) {
+            allExistingItemsById.put(existingItem.getId(), existingItem);
+        }
 
         switch (existingItem.getInvoiceItemType()) {
             case EXTERNAL_CHARGE:
@@ -120,7 +141,7 @@ public class AccountItemTree {
         }
 
         if (existingItem.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ) {
-            final InvoiceItem linkedInvoiceItem = getLinkedInvoiceItem(existingItem, allExistingItems);
+            final InvoiceItem linkedInvoiceItem = getLinkedInvoiceItem(existingItem, allExistingItemsById);
             if (linkedInvoiceItem != null &&
                 linkedInvoiceItem.getInvoiceItemType() != InvoiceItemType.RECURRING &&
                 linkedInvoiceItem.getInvoiceItemType() != InvoiceItemType.FIXED) {
@@ -130,7 +151,7 @@ public class AccountItemTree {
             }
         }
 
-        final UUID subscriptionId = getSubscriptionId(existingItem, allExistingItems);
+        final UUID subscriptionId = getSubscriptionId(existingItem, allExistingItemsById);
         Preconditions.checkState(subscriptionId != null || !failOnMissingSubscription, "Missing subscription id");
 
         if (subscriptionId == null && existingItem.getInvoiceItemType() == InvoiceItemType.ITEM_ADJ) {
@@ -153,32 +174,56 @@ public class AccountItemTree {
     public void mergeWithProposedItems(final List<InvoiceItem> proposedItems) {
 
         build();
-        for (SubscriptionItemTree tree : subscriptionItemTree.values()) {
-            tree.flatten(true);
-        }
 
+        // Dispatch the proposed items per subscription (trees are independent from each other)
+        final Set<UUID> newSubscriptionIds = new HashSet<UUID>();
+        final Map<UUID, List<InvoiceItem>> proposedItemsPerSubscription = new HashMap<UUID, List<InvoiceItem>>();
         for (InvoiceItem item : proposedItems) {
             final UUID subscriptionId = getSubscriptionId(item, null);
-            SubscriptionItemTree tree = subscriptionItemTree.get(subscriptionId);
-            if (tree == null) {
-                tree = new SubscriptionItemTree(subscriptionId, targetInvoiceId);
-                subscriptionItemTree.put(subscriptionId, tree);
+            if (!subscriptionItemTree.containsKey(subscriptionId)) {
+                subscriptionItemTree.put(subscriptionId, new SubscriptionItemTree(subscriptionId, targetInvoiceId));
+                newSubscriptionIds.add(subscriptionId);
             }
-            tree.mergeProposedItem(item);
+            List<InvoiceItem> proposedItemsForSubscription = proposedItemsPerSubscription.get(subscriptionId);
+            if (proposedItemsForSubscription == null) {
+                proposedItemsForSubscription = new ArrayList<InvoiceItem>();
+                proposedItemsPerSubscription.put(subscriptionId, proposedItemsForSubscription);
+            }
+            proposedItemsForSubscription.add(item);
         }
 
-        for (SubscriptionItemTree tree : subscriptionItemTree.values()) {
-            tree.buildForMerge();
-        }
+        invokeForEachTree(new Function<SubscriptionItemTree, Void>() {
+            @Override
+            public Void apply(final SubscriptionItemTree tree) {
+                // Only the trees built from existing items need to be flattened
+                if (!newSubscriptionIds.contains(tree.getSubscriptionId())) {
+                    tree.flatten(true);
+                }
+                final List<InvoiceItem> proposedItemsForSubscription = proposedItemsPerSubscription.get(tree.getSubscriptionId());
+                if (proposedItemsForSubscription != null) {
+                    for (final InvoiceItem item : proposedItemsForSubscription) {
+                        tree.mergeProposedItem(item);
+                    }
+                }
+                tree.buildForMerge();
+                return null;
+            }
+        });
     }
 
     /**
      * @return the resulting list of items that should be written to disk
      */
     public List<InvoiceItem> getResultingItemList() {
+        final List<List<InvoiceItem>> simplifiedViews = invokeForEachTree(new Function<SubscriptionItemTree, List<InvoiceItem>>() {
+            @Override
+            public List<InvoiceItem> apply(final SubscriptionItemTree tree) {
+                return tree.getView();
+            }
+        });
+
         final List<InvoiceItem> result = new ArrayList<InvoiceItem>();
-        for (SubscriptionItemTree tree : subscriptionItemTree.values()) {
-            final List<InvoiceItem> simplifiedView = tree.getView();
+        for (final List<InvoiceItem> simplifiedView : simplifiedViews) {
             if (simplifiedView.size() > 0) {
                 result.addAll(simplifiedView);
             }
@@ -190,22 +235,44 @@ public class AccountItemTree {
         return accountId;
     }
 
-    private UUID getSubscriptionId(final InvoiceItem item, final List<InvoiceItem> allItems) {
+    // Results are returned in the iteration order of the trees, whether or not the trees are processed in parallel
+    private <T> List<T> invokeForEachTree(final Function<SubscriptionItemTree, T> function) {
+        final List<T> results = new ArrayList<T>(subscriptionItemTree.size());
+        if (executor == null) {
+            for (final SubscriptionItemTree tree : subscriptionItemTree.values()) {
+                results.add(function.apply(tree));
+            }
+            return results;
+        }
+
+        final List<Callable<T>> tasks = new ArrayList<Callable<T>>(subscriptionItemTree.size());
+        for (final SubscriptionItemTree tree : subscriptionItemTree.values()) {
+            tasks.add(new Callable<T>() {
+                @Override
+                public T call() {
+                    return function.apply(tree);
+                }
+            });
+        }
+        try {
+            return executor.invokeAll(tasks);
+        } catch (final InvoiceApiException e) {
+            // Not expected, tree operations only throw unchecked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private UUID getSubscriptionId(final InvoiceItem item, final Map<UUID, InvoiceItem> allItemsById) {
         if (item.getInvoiceItemType() == InvoiceItemType.RECURRING ||
             item.getInvoiceItemType() == InvoiceItemType.FIXED) {
             return item.getSubscriptionId();
         } else {
-            final InvoiceItem linkedItem = getLinkedInvoiceItem(item, allItems);
+            final InvoiceItem linkedItem = getLinkedInvoiceItem(item, allItemsById);
             return linkedItem != null ? linkedItem.getSubscriptionId() : null;
         }
     }
 
-    private InvoiceItem getLinkedInvoiceItem(final InvoiceItem item, final Iterable<InvoiceItem> allItems) {
-        return Iterables.tryFind(allItems, new Predicate<InvoiceItem>() {
-            @Override
-            public boolean apply(final InvoiceItem input) {
-                return input.getId().equals(item.getLinkedItemId());
-            }
-        }).orNull();
+    private InvoiceItem getLinkedInvoiceItem(final InvoiceItem item, final Map<UUID, InvoiceItem> allItemsById) {
+        return item.getLinkedItemId() == null ? null : allItemsById.get(item.getLinkedItemId());
     }
 }
@@ -20,10 +20,7 @@ package org.killbill.billing.invoice.tree;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -33,9 +30,6 @@ import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.tree.Item.ItemAction;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 
 /**
  * Keeps track of all the items existing on a specified interval.
@@ -44,7 +38,8 @@ public class ItemsInterval {
 
     private final UUID targetInvoiceId;
     private final NodeInterval interval;
-    private LinkedList<Item> items;
+    // Very small (usually 1 or 2 elements): plain scans are cheaper than any index
+    private final List<Item> items;
 
     public ItemsInterval(final NodeInterval interval, final UUID targetInvoiceId) {
         this(interval, targetInvoiceId, null);
@@ -53,28 +48,19 @@ public class ItemsInterval {
     public ItemsInterval(final NodeInterval interval, final UUID targetInvoiceId, final Item initialItem) {
         this.interval = interval;
         this.targetInvoiceId = targetInvoiceId;
-        this.items = Lists.newLinkedList();
+        this.items = new ArrayList<Item>(2);
         if (initialItem != null) {
             items.add(initialItem);
         }
     }
 
     public boolean containsItem(final UUID targetId) {
-        return Iterables.tryFind(items, new Predicate<Item>() {
-            @Override
-            public boolean apply(final Item input) {
-                return input.getId().equals(targetId);
-            }
-        }).orNull() != null;
+        return findItem(targetId) != null;
     }
 
     public void setAdjustment(final BigDecimal amount, final UUID targetId) {
-        final Item item = Iterables.tryFind(items, new Predicate<Item>() {
-            @Override
-            public boolean apply(final Item input) {
-                return input.getId().equals(targetId);
-            }
-        }).get();
+        final Item item = findItem(targetId);
+        Preconditions.checkState(item != null, "Unable to find item %s", targetId);
         item.incrementAdjustedAmount(amount);
     }
 
@@ -109,6 +95,9 @@ public class ItemsInterval {
      * @return true if there is no more items
      */
     public boolean mergeCancellingPairs() {
+        if (items.size() < 2) {
+            return items.isEmpty();
+        }
 
         final Map<UUID, List<Item>> tmp = new HashMap<UUID, List<Item>>();
         for (Item cur : items) {
@@ -130,13 +119,15 @@ public class ItemsInterval {
         return items.size() == 0;
     }
 
-    public Iterable<Item> get_ADD_items() {
-        return Iterables.filter(items, new Predicate<Item>() {
-            @Override
-            public boolean apply(final Item input) {
-                return input.getAction() == ItemAction.ADD;
+    // Snapshot, as callers may remove items while iterating
+    public List<Item> get_ADD_items() {
+        final List<Item> result = new ArrayList<Item>(items.size());
+        for (final Item item : items) {
+            if (item.getAction() == ItemAction.ADD) {
+                result.add(item);
             }
-        });
+        }
+        return result;
     }
 
     public NodeInterval getNodeInterval() {
@@ -149,12 +140,7 @@ public class ItemsInterval {
 
     private Item getResulting_CANCEL_Item() {
         Preconditions.checkState(items.size() == 0 || items.size() == 1);
-        return Iterables.tryFind(items, new Predicate<Item>() {
-            @Override
-            public boolean apply(final Item input) {
-                return input.getAction() == ItemAction.CANCEL;
-            }
-        }).orNull();
+        return items.size() == 1 && items.get(0).getAction() == ItemAction.CANCEL ? items.get(0) : null;
     }
 
     private Item getResulting_ADD_Item() {
@@ -174,21 +160,18 @@ public class ItemsInterval {
         return item;
     }
 
-    // Just ensure that ADD items precedes CANCEL items
+    // Just ensure that ADD items precedes CANCEL items (same order as a stable sort: ADD items are inserted after the existing ones)
     public void insertSortedItem(final Item item) {
-        items.add(item);
-        Collections.sort(items, new Comparator<Item>() {
-            @Override
-            public int compare(final Item o1, final Item o2) {
-                if (o1.getAction() == ItemAction.ADD && o2.getAction() == ItemAction.CANCEL) {
-                    return -1;
-                } else if (o1.getAction() == ItemAction.CANCEL && o2.getAction() == ItemAction.ADD) {
-                    return 1;
-                } else {
-                    return 0;
-                }
-            }
-        });
+        if (item.getAction() == ItemAction.CANCEL) {
+            items.add(item);
+            return;
+        }
+
+        int insertionIndex = 0;
+        while (insertionIndex < items.size() && items.get(insertionIndex).getAction() == ItemAction.ADD) {
+            insertionIndex++;
+        }
+        items.add(insertionIndex, item);
     }
 
     public void cancelItems(final Item item) {
@@ -203,19 +186,27 @@ public class ItemsInterval {
     }
 
     public Item getCancelledItemIfExists(final UUID targetId) {
-        final Item item = Iterables.tryFind(items, new Predicate<Item>() {
-            @Override
-            public boolean apply(final Item input) {
-                return input.getAction() == ItemAction.CANCEL && input.getLinkedId().equals(targetId);
+        for (final Item item : items) {
+            if (item.getAction() == ItemAction.CANCEL && item.getLinkedId().equals(targetId)) {
+                return item;
             }
-        }).orNull();
-        return item;
+        }
+        return null;
     }
 
     public int size() {
         return items.size();
     }
 
+    private Item findItem(final UUID targetId) {
+        for (final Item item : items) {
+            if (item.getId().equals(targetId)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
     /**
      * Creates a new item.
      * <p/>
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.LocalDate;
+import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.util.jackson.ObjectMapper;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -219,23 +220,35 @@ public class ItemsNodeInterval extends NodeInterval {
     }
 
     /**
-     * Add the adjustment amount on the item specified by the targetId.
+     * Add the adjustment amounts on the adjusted items.
+     * <p/>
+     * The nodes are indexed by item id in a single walk of the tree, instead of searching the tree for each adjustment.
      *
-     * @param adjustementDate date of the adjustment
-     * @param amount          amount of the adjustment
-     * @param targetId        item that has been adjusted
+     * @param itemAdjs ITEM_ADJ items, pointing to the adjusted item through their linked item id
      */
-    public void addAdjustment(final LocalDate adjustementDate, final BigDecimal amount, final UUID targetId) {
-        // TODO we should really be using findNode(adjustementDate, new SearchCallback() instead but wrong dates in test
-        // creates test panic.
-        final NodeInterval node = findNode(new SearchCallback() {
+    public void addAdjustments(final List<InvoiceItem> itemAdjs) {
+        if (itemAdjs.isEmpty()) {
+            return;
+        }
+
+        final Map<UUID, ItemsNodeInterval> nodesByItemId = new HashMap<UUID, ItemsNodeInterval>();
+        walkTree(new WalkCallback() {
             @Override
-            public boolean isMatch(final NodeInterval curNode) {
-                return ((ItemsNodeInterval) curNode).getItemsInterval().containsItem(targetId);
+            public void onCurrentNode(final int depth, final NodeInterval curNode, final NodeInterval parent) {
+                for (final Item item : ((ItemsNodeInterval) curNode).getItems()) {
+                    // First node in depth first order wins, as with findNode
+                    if (!nodesByItemId.containsKey(item.getId())) {
+                        nodesByItemId.put(item.getId(), (ItemsNodeInterval) curNode);
+                    }
+                }
             }
         });
-        Preconditions.checkNotNull(node, "Cannot add adjustment for item = " + targetId + ", date = " + adjustementDate);
-        ((ItemsNodeInterval) node).setAdjustment(amount.negate(), targetId);
+
+        for (final InvoiceItem itemAdj : itemAdjs) {
+            final ItemsNodeInterval node = nodesByItemId.get(itemAdj.getLinkedItemId());
+            Preconditions.checkNotNull(node, "Cannot add adjustment for item = " + itemAdj.getLinkedItemId() + ", date = " + itemAdj.getStartDate());
+            node.setAdjustment(itemAdj.getAmount().negate(), itemAdj.getLinkedItemId());
+        }
     }
 
     public void jsonSerializeTree(final ObjectMapper mapper, final OutputStream output) throws IOException {
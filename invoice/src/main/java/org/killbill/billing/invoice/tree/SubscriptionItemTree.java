@@ -16,27 +16,21 @@
 
 package org.killbill.billing.invoice.tree;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import javax.annotation.Nullable;
-
 import org.joda.time.LocalDate;
 
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.tree.Item.ItemAction;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Ordering;
 
 /**
  * Tree of invoice items for a given subscription.
@@ -77,10 +71,10 @@ public class SubscriptionItemTree {
         this.subscriptionId = subscriptionId;
         this.targetInvoiceId = targetInvoiceId;
         this.root = new ItemsNodeInterval(targetInvoiceId);
-        this.items = new LinkedList<Item>();
-        this.existingFixedItems = new LinkedList<InvoiceItem>();
+        this.items = new ArrayList<Item>();
+        this.existingFixedItems = new ArrayList<InvoiceItem>();
         this.remainingFixedItems = new HashMap<LocalDate, InvoiceItem>();
-        this.pendingItemAdj = new LinkedList<InvoiceItem>();
+        this.pendingItemAdj = new ArrayList<InvoiceItem>();
         this.isBuilt = false;
     }
 
@@ -89,9 +83,7 @@ public class SubscriptionItemTree {
      */
     public void build() {
         Preconditions.checkState(!isBuilt);
-        for (InvoiceItem item : pendingItemAdj) {
-            root.addAdjustment(item.getStartDate(), item.getAmount(), item.getLinkedItemId());
-        }
+        root.addAdjustments(pendingItemAdj);
         pendingItemAdj.clear();
         root.buildForExistingItems(items);
         isBuilt = true;
@@ -170,13 +162,7 @@ public class SubscriptionItemTree {
                 break;
 
             case FIXED:
-                final InvoiceItem existingItem = Iterables.tryFind(existingFixedItems, new Predicate<InvoiceItem>() {
-                    @Override
-                    public boolean apply(final InvoiceItem input) {
-                        return input.matches(invoiceItem);
-                    }
-                }).orNull();
-                if (existingItem == null) {
+                if (!containsMatchingFixedItem(invoiceItem)) {
                     remainingFixedItems.put(invoiceItem.getStartDate(), invoiceItem);
                 }
                 break;
@@ -187,6 +173,15 @@ public class SubscriptionItemTree {
 
     }
 
+    private boolean containsMatchingFixedItem(final InvoiceItem invoiceItem) {
+        for (final InvoiceItem existingFixedItem : existingFixedItems) {
+            if (existingFixedItem.matches(invoiceItem)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Can be called prior or after merge with proposed items.
      * <ul>
@@ -197,21 +192,17 @@ public class SubscriptionItemTree {
      */
     public List<InvoiceItem> getView() {
 
-        final List<InvoiceItem> tmp = new LinkedList<InvoiceItem>();
-        tmp.addAll(remainingFixedItems.values());
-        tmp.addAll(Collections2.filter(Collections2.transform(items, new Function<Item, InvoiceItem>() {
-            @Override
-            public InvoiceItem apply(final Item input) {
-                return input.toInvoiceItem();
+        final List<InvoiceItem> result = new ArrayList<InvoiceItem>(remainingFixedItems.size() + items.size());
+        result.addAll(remainingFixedItems.values());
+        for (final Item item : items) {
+            final InvoiceItem invoiceItem = item.toInvoiceItem();
+            if (invoiceItem != null) {
+                result.add(invoiceItem);
             }
-        }), new Predicate<InvoiceItem>() {
-            @Override
-            public boolean apply(@Nullable final InvoiceItem input) {
-                return input != null;
-            }
-        }));
+        }
 
-        final List<InvoiceItem> result = Ordering.<InvoiceItem>from(INVOICE_ITEM_COMPARATOR).sortedCopy(tmp);
+        // Stable sort, as the previous Ordering#sortedCopy
+        Collections.sort(result, INVOICE_ITEM_COMPARATOR);
         checkItemsListState(result);
         return result;
     }
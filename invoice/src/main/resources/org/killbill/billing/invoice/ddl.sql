@@ -50,6 +50,7 @@ CREATE TABLE invoices (
 CREATE UNIQUE INDEX invoices_id ON invoices(id);
 CREATE INDEX invoices_account_target ON invoices(account_id ASC, target_date);
 CREATE INDEX invoices_tenant_account_record_id ON invoices(tenant_record_id, account_record_id);
+CREATE INDEX invoices_tenant_invoice_date ON invoices(tenant_record_id, invoice_date);
 
 DROP TABLE IF EXISTS invoice_payments;
 CREATE TABLE invoice_payments (
@@ -0,0 +1 @@
+create index invoices_tenant_invoice_date on invoices(tenant_record_id, invoice_date);
@@ -39,6 +39,7 @@ import org.killbill.billing.lifecycle.api.BusService;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.subscription.api.SubscriptionBaseInternalApi;
+import org.killbill.billing.usage.dao.RolledUpUsageDao;
 import org.killbill.billing.util.api.TagUserApi;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
@@ -114,6 +115,12 @@ public abstract class InvoiceTestSuiteWithEmbeddedDB extends GuicyKillbillTestSu
     protected InvoicePluginDispatcher invoicePluginDispatcher;
     @Inject
     protected InvoiceConfig invoiceConfig;
+    @Inject
+    protected DryRunInvoiceCache dryRunInvoiceCache;
+    @Inject
+    protected InvoiceTriggerCoalescer invoiceTriggerCoalescer;
+    @Inject
+    protected RolledUpUsageDao rolledUpUsageDao;
 
     @Override
     protected KillbillConfigSource getConfigSource() {
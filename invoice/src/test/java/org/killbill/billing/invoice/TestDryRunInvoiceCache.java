@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.invoice.api.DryRunArguments;
+import org.killbill.billing.invoice.api.DryRunType;
+import org.killbill.billing.invoice.api.Invoice;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+
+public class TestDryRunInvoiceCache extends InvoiceTestSuiteNoDB {
+
+    private final DateTime now = new DateTime(2016, 5, 10, 12, 0, 0, DateTimeZone.UTC);
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception {
+        final DryRunInvoiceCache cache = createCache(0, new MetricRegistry());
+        Assert.assertFalse(cache.isEnabled());
+
+        final DryRunArguments dryRunArguments = createDryRunArguments(null);
+        cache.put(1L, 1L, "10-1", now, null, dryRunArguments, Mockito.mock(Invoice.class));
+        Assert.assertNull(cache.get(1L, 1L, "10-1", now, null, dryRunArguments));
+    }
+
+    @Test(groups = "fast")
+    public void testVersionTenantAndArgumentsChecks() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final DryRunInvoiceCache cache = createCache(10, metricRegistry);
+        final UUID subscriptionId = UUID.randomUUID();
+        final Invoice invoice = Mockito.mock(Invoice.class);
+        cache.put(1L, 1L, "10-1", now, null, createDryRunArguments(subscriptionId), invoice);
+
+        // Equivalent arguments (the DryRunArguments objects are rebuilt on each call)
+        Assert.assertEquals(cache.get(1L, 1L, "10-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)), Optional.<Invoice>of(invoice));
+        Assert.assertNull(cache.get(1L, 1L, "10-1", now.plusMinutes(1), null, createDryRunArguments(UUID.randomUUID())));
+        Assert.assertNull(cache.get(1L, 1L, "10-1", now.plusMinutes(1), now.plusDays(1), createDryRunArguments(subscriptionId)));
+        Assert.assertNull(cache.get(1L, 2L, "10-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)));
+        Assert.assertNull(cache.get(1L, 1L, "11-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)));
+        // Evicted by the previous stale lookup
+        Assert.assertNull(cache.get(1L, 1L, "10-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)));
+
+        Assert.assertEquals(metricRegistry.meter(DryRunInvoiceCache.HITS_METRIC_NAME).getCount(), 1);
+        Assert.assertEquals(metricRegistry.meter(DryRunInvoiceCache.MISSES_METRIC_NAME).getCount(), 5);
+
+        // Nothing to invoice is a valid result
+        cache.put(1L, 1L, "11-1", now, null, createDryRunArguments(subscriptionId), null);
+        Assert.assertEquals(cache.get(1L, 1L, "11-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)), Optional.<Invoice>absent());
+
+        cache.invalidate(1L);
+        Assert.assertNull(cache.get(1L, 1L, "11-1", now.plusMinutes(1), null, createDryRunArguments(subscriptionId)));
+    }
+
+    @Test(groups = "fast")
+    public void testTargetDateAndExpiration() throws Exception {
+        final DryRunInvoiceCache cache = createCache(10, new MetricRegistry());
+        final DryRunArguments dryRunArguments = createDryRunArguments(null);
+        final Invoice invoice = Mockito.mock(Invoice.class);
+        cache.put(1L, 1L, "10-1", now, now.plusDays(10), dryRunArguments, invoice);
+
+        // Same target local date, at a different time of day
+        Assert.assertEquals(cache.get(1L, 1L, "10-1", now.plusMinutes(4), now.plusDays(10).plusHours(2), dryRunArguments), Optional.<Invoice>of(invoice));
+        Assert.assertNull(cache.get(1L, 1L, "10-1", now.plusMinutes(5), now.plusDays(10), dryRunArguments));
+    }
+
+    private DryRunInvoiceCache createCache(final int maxAccounts, final MetricRegistry metricRegistry) {
+        final InvoiceConfig invoiceConfig = Mockito.mock(InvoiceConfig.class);
+        Mockito.when(invoiceConfig.getDryRunCacheMaxAccounts()).thenReturn(maxAccounts);
+        Mockito.when(invoiceConfig.getDryRunCacheMaxAge()).thenReturn(new TimeSpan("5m"));
+        return new DryRunInvoiceCache(invoiceConfig, metricRegistry);
+    }
+
+    private DryRunArguments createDryRunArguments(final UUID subscriptionId) {
+        final DryRunArguments dryRunArguments = Mockito.mock(DryRunArguments.class);
+        Mockito.when(dryRunArguments.getDryRunType()).thenReturn(DryRunType.UPCOMING_INVOICE);
+        Mockito.when(dryRunArguments.getSubscriptionId()).thenReturn(subscriptionId);
+        return dryRunArguments;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+
+public class TestInvoiceTriggerCoalescer extends InvoiceTestSuiteNoDB {
+
+    private final DateTime now = new DateTime(2016, 5, 10, 12, 0, 0, DateTimeZone.UTC);
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final InvoiceTriggerCoalescer coalescer = createCoalescer(false, metricRegistry);
+        final RecordingInvoiceRun invoiceRun = new RecordingInvoiceRun(null);
+
+        coalescer.process(UUID.randomUUID(), now, invoiceRun);
+        coalescer.process(UUID.randomUUID(), now.plusDays(1), invoiceRun);
+
+        Assert.assertEquals(invoiceRun.getTargetDates(), ImmutableList.<DateTime>of(now, now.plusDays(1)));
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.EXECUTED_RUNS_METRIC_NAME).getCount(), 2);
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.COALESCED_TRIGGERS_METRIC_NAME).getCount(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testCoalescingWhileRunIsPending() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final InvoiceTriggerCoalescer coalescer = createCoalescer(true, metricRegistry);
+        final UUID accountId = UUID.randomUUID();
+        final CountDownLatch firstRunStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+        final RecordingInvoiceRun invoiceRun = new RecordingInvoiceRun(null) {
+            @Override
+            public void run(final DateTime targetDate) throws InvoiceApiException {
+                super.run(targetDate);
+                if (getTargetDates().size() == 1) {
+                    firstRunStarted.countDown();
+                    awaitUninterruptibly(releaseFirstRun);
+                }
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?> firstTrigger = submit(executor, coalescer, accountId, now, invoiceRun);
+            Assert.assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+            // Triggers received during the first run: the first one owns the next run, the other ones are merged into it
+            final Future<?> secondTrigger = submit(executor, coalescer, accountId, now.plusDays(1), invoiceRun);
+            waitForPendingRun(metricRegistry);
+            final Future<?> thirdTrigger = submit(executor, coalescer, accountId, now.plusDays(3), invoiceRun);
+            final Future<?> fourthTrigger = submit(executor, coalescer, accountId, now.plusDays(2), invoiceRun);
+            waitForCoalescedTriggers(metricRegistry, 2);
+
+            releaseFirstRun.countDown();
+            firstTrigger.get(5, TimeUnit.SECONDS);
+            secondTrigger.get(5, TimeUnit.SECONDS);
+            thirdTrigger.get(5, TimeUnit.SECONDS);
+            fourthTrigger.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(invoiceRun.getTargetDates(), ImmutableList.<DateTime>of(now, now.plusDays(3)));
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.EXECUTED_RUNS_METRIC_NAME).getCount(), 2);
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.COALESCED_TRIGGERS_METRIC_NAME).getCount(), 2);
+    }
+
+    @Test(groups = "fast")
+    public void testFailedRun() throws Exception {
+        final InvoiceTriggerCoalescer coalescer = createCoalescer(true, new MetricRegistry());
+        final RecordingInvoiceRun invoiceRun = new RecordingInvoiceRun(new InvoiceApiException(ErrorCode.INVOICE_INVALID_TRANSITION));
+
+        try {
+            coalescer.process(UUID.randomUUID(), now, invoiceRun);
+            Assert.fail();
+        } catch (final InvoiceApiException e) {
+            Assert.assertEquals(e.getCode(), ErrorCode.INVOICE_INVALID_TRANSITION.getCode());
+        }
+
+        // The failed run isn't pending anymore
+        final RecordingInvoiceRun nextInvoiceRun = new RecordingInvoiceRun(null);
+        coalescer.process(UUID.randomUUID(), now, nextInvoiceRun);
+        Assert.assertEquals(nextInvoiceRun.getTargetDates(), ImmutableList.<DateTime>of(now));
+    }
+
+    @Test(groups = "fast")
+    public void testBoundedWait() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final InvoiceTriggerCoalescer coalescer = createCoalescer(true, "500ms", metricRegistry);
+        final UUID accountId = UUID.randomUUID();
+        final CountDownLatch firstRunStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRuns = new CountDownLatch(1);
+        // All runs block, except the third one
+        final RecordingInvoiceRun invoiceRun = new RecordingInvoiceRun(null) {
+            @Override
+            public void run(final DateTime targetDate) throws InvoiceApiException {
+                super.run(targetDate);
+                if (getTargetDates().size() == 1) {
+                    firstRunStarted.countDown();
+                }
+                if (getTargetDates().size() != 3) {
+                    awaitUninterruptibly(releaseRuns);
+                }
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?> firstTrigger = submit(executor, coalescer, accountId, now, invoiceRun);
+            Assert.assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+
+            // The second trigger gives up waiting for the first run after 500ms and runs (blocked)
+            final Future<?> secondTrigger = submit(executor, coalescer, accountId, now.plusDays(1), invoiceRun);
+            Thread.sleep(100);
+            // The third trigger is merged into the second run, gives up waiting for it and runs on its own
+            final Future<?> thirdTrigger = submit(executor, coalescer, accountId, now.plusDays(2), invoiceRun);
+            waitForCoalescedTriggers(metricRegistry, 1);
+            thirdTrigger.get(5, TimeUnit.SECONDS);
+            Assert.assertFalse(firstTrigger.isDone());
+            Assert.assertFalse(secondTrigger.isDone());
+
+            releaseRuns.countDown();
+            firstTrigger.get(5, TimeUnit.SECONDS);
+            secondTrigger.get(5, TimeUnit.SECONDS);
+        } finally {
+            releaseRuns.countDown();
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(invoiceRun.getTargetDates(), ImmutableList.<DateTime>of(now, now.plusDays(2), now.plusDays(2)));
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.EXECUTED_RUNS_METRIC_NAME).getCount(), 3);
+    }
+
+    @Test(groups = "fast")
+    public void testInterruptedWait() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final InvoiceTriggerCoalescer coalescer = createCoalescer(true, metricRegistry);
+        final UUID accountId = UUID.randomUUID();
+        final CountDownLatch firstRunStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+        final RecordingInvoiceRun invoiceRun = new RecordingInvoiceRun(null) {
+            @Override
+            public void run(final DateTime targetDate) throws InvoiceApiException {
+                super.run(targetDate);
+                if (getTargetDates().size() == 1) {
+                    firstRunStarted.countDown();
+                    awaitUninterruptibly(releaseFirstRun);
+                }
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?> firstTrigger = submit(executor, coalescer, accountId, now, invoiceRun);
+            Assert.assertTrue(firstRunStarted.await(5, TimeUnit.SECONDS));
+            final Future<?> secondTrigger = submit(executor, coalescer, accountId, now.plusDays(1), invoiceRun);
+            waitForPendingRun(metricRegistry);
+
+            // Merged into the pending run, but interrupted while waiting for it
+            Thread.currentThread().interrupt();
+            try {
+                coalescer.process(accountId, now.plusDays(2), invoiceRun);
+                Assert.fail();
+            } catch (final IllegalStateException e) {
+                Assert.assertTrue(e.getCause() instanceof InterruptedException);
+            }
+            Assert.assertTrue(Thread.interrupted());
+
+            releaseFirstRun.countDown();
+            firstTrigger.get(5, TimeUnit.SECONDS);
+            secondTrigger.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The pending run still covers the interrupted trigger
+        Assert.assertEquals(invoiceRun.getTargetDates(), ImmutableList.<DateTime>of(now, now.plusDays(2)));
+    }
+
+    private InvoiceTriggerCoalescer createCoalescer(final boolean enabled, final MetricRegistry metricRegistry) {
+        return createCoalescer(enabled, "1m", metricRegistry);
+    }
+
+    private InvoiceTriggerCoalescer createCoalescer(final boolean enabled, final String maxWait, final MetricRegistry metricRegistry) {
+        final InvoiceConfig invoiceConfig = Mockito.mock(InvoiceConfig.class);
+        Mockito.when(invoiceConfig.isTriggerCoalescingEnabled()).thenReturn(enabled);
+        Mockito.when(invoiceConfig.getTriggerCoalescingWindow()).thenReturn(new TimeSpan("0s"));
+        Mockito.when(invoiceConfig.getTriggerCoalescingMaxWait()).thenReturn(new TimeSpan(maxWait));
+        return new InvoiceTriggerCoalescer(invoiceConfig, metricRegistry);
+    }
+
+    private Future<?> submit(final ExecutorService executor, final InvoiceTriggerCoalescer coalescer, final UUID accountId, final DateTime targetDate, final RecordingInvoiceRun invoiceRun) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    coalescer.process(accountId, targetDate, invoiceRun);
+                } catch (final InvoiceApiException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    // The second trigger owns the next run: it waits for the first run to complete and isn't coalesced
+    private void waitForPendingRun(final MetricRegistry metricRegistry) throws InterruptedException {
+        Thread.sleep(200);
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.COALESCED_TRIGGERS_METRIC_NAME).getCount(), 0);
+    }
+
+    private void waitForCoalescedTriggers(final MetricRegistry metricRegistry, final long expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (metricRegistry.meter(InvoiceTriggerCoalescer.COALESCED_TRIGGERS_METRIC_NAME).getCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(metricRegistry.meter(InvoiceTriggerCoalescer.COALESCED_TRIGGERS_METRIC_NAME).getCount(), expected);
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingInvoiceRun implements InvoiceTriggerCoalescer.InvoiceRun {
+
+        private final InvoiceApiException failure;
+        private final List<DateTime> targetDates = new CopyOnWriteArrayList<DateTime>();
+
+        private RecordingInvoiceRun(final InvoiceApiException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public void run(final DateTime targetDate) throws InvoiceApiException {
+            targetDates.add(targetDate);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        public List<DateTime> getTargetDates() {
+            return targetDates;
+        }
+    }
+}
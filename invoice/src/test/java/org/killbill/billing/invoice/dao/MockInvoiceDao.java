@@ -27,6 +27,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -34,6 +37,7 @@ import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceItemType;
 import org.killbill.billing.invoice.api.user.DefaultInvoiceCreationEvent;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
@@ -42,6 +46,8 @@ import org.killbill.bus.api.PersistentBus;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice, InvoiceApiException> implements InvoiceDao {
@@ -161,6 +167,39 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return invoicesForAccount;
     }
 
+    @Override
+    public List<InvoiceModelDao> getInvoicesByAccount(final DateTime createdSince, @Nullable final UUID afterInvoiceId, final Long limit, final InternalTenantContext context) {
+        // Invoices are kept in insertion order
+        final List<InvoiceModelDao> invoicesForAccount = new ArrayList<InvoiceModelDao>();
+        boolean afterCursor = afterInvoiceId == null;
+        for (final InvoiceModelDao invoice : getInvoicesByAccount(context)) {
+            if (afterCursor && !invoice.getCreatedDate().isBefore(createdSince)) {
+                invoicesForAccount.add(invoice);
+            }
+            afterCursor = afterCursor || invoice.getId().equals(afterInvoiceId);
+        }
+
+        return ImmutableList.<InvoiceModelDao>copyOf(Iterables.limit(invoicesForAccount, limit.intValue()));
+    }
+
+    @Override
+    public List<InvoiceModelDao> getInvoicesWithCreditsByAccount(final DateTime createdSince, final InternalTenantContext context) {
+        final List<InvoiceModelDao> invoicesForAccount = new ArrayList<InvoiceModelDao>();
+        for (final InvoiceModelDao invoice : getInvoicesByAccount(context)) {
+            if (invoice.getCreatedDate().isBefore(createdSince)) {
+                continue;
+            }
+            for (final InvoiceItemModelDao item : invoice.getInvoiceItems()) {
+                if (InvoiceItemType.CREDIT_ADJ.equals(item.getType())) {
+                    invoicesForAccount.add(invoice);
+                    break;
+                }
+            }
+        }
+
+        return invoicesForAccount;
+    }
+
     @Override
     public List<InvoiceModelDao> getInvoicesBySubscription(final UUID subscriptionId, final InternalTenantContext context) {
         final List<InvoiceModelDao> result = new ArrayList<InvoiceModelDao>();
@@ -199,6 +238,29 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
     public void test(final InternalTenantContext context) {
     }
 
+    @Override
+    public String getAccountStateVersion(final InternalTenantContext context) {
+        // No versioning: don't let the results be cached
+        return null;
+    }
+
+    @Override
+    public List<UUID> getInvoiceIdsByInvoiceDate(@Nullable final LocalDate startDate, @Nullable final LocalDate endDate, final InternalTenantContext context) {
+        final List<UUID> result = new ArrayList<UUID>();
+        synchronized (monitor) {
+            final UUID accountId = context.getAccountRecordId() == null ? null : accountRecordIds.inverse().get(context.getAccountRecordId());
+            for (final InvoiceModelDao invoice : invoices.values()) {
+                if ((accountId == null || accountId.equals(invoice.getAccountId())) &&
+                    !invoice.isMigrated() &&
+                    (startDate == null || !invoice.getInvoiceDate().isBefore(startDate)) &&
+                    (endDate == null || !invoice.getInvoiceDate().isAfter(endDate))) {
+                    result.add(invoice.getId());
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public UUID getInvoiceIdByPaymentId(final UUID paymentId, final InternalTenantContext context) {
         synchronized (monitor) {
@@ -224,6 +286,19 @@ public class MockInvoiceDao extends MockEntityDaoBase<InvoiceModelDao, Invoice,
         return result;
     }
 
+    @Override
+    public List<InvoicePaymentModelDao> getInvoicePaymentsByPaymentIds(final Collection<UUID> paymentIds, final InternalTenantContext context) {
+        final List<InvoicePaymentModelDao> result = new LinkedList<InvoicePaymentModelDao>();
+        synchronized (monitor) {
+            for (final InvoicePaymentModelDao payment : payments.values()) {
+                if (paymentIds.contains(payment.getPaymentId())) {
+                    result.add(payment);
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public List<InvoicePaymentModelDao> getInvoicePaymentsByAccount(final InternalTenantContext context) {
 
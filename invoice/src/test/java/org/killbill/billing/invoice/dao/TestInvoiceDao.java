@@ -29,6 +29,7 @@ import java.util.UUID;
 import javax.annotation.Nullable;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
@@ -67,6 +68,7 @@ import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.util.currency.KillBillMoney;
+import org.killbill.billing.util.entity.dao.AccountVersionTracker;
 import org.killbill.clock.ClockMock;
 import org.mockito.Mockito;
 import org.skife.jdbi.v2.exceptions.TransactionFailedException;
@@ -76,6 +78,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 import static org.killbill.billing.invoice.TestInvoiceHelper.FIVE;
 import static org.killbill.billing.invoice.TestInvoiceHelper.TEN;
@@ -108,6 +111,49 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         invoiceUtil.checkInvoicesEqual(invoiceDao.getByNumber(retrievedInvoice.getInvoiceNumber(), context), invoice);
     }
 
+    @Test(groups = "slow")
+    public void testAccountStateVersion() throws Exception {
+        // Versions are only maintained once a consumer is enabled
+        AccountVersionTracker.enableVersioning();
+
+        final String initialVersion = invoiceDao.getAccountStateVersion(context);
+        assertNotNull(initialVersion);
+        assertEquals(invoiceDao.getAccountStateVersion(context), initialVersion);
+
+        final Invoice invoice = new DefaultInvoice(account.getId(), clock.getUTCToday(), clock.getUTCToday(), Currency.USD);
+        invoiceUtil.createInvoice(invoice, true, context);
+        final String versionAfterInvoice = invoiceDao.getAccountStateVersion(context);
+        Assert.assertNotEquals(versionAfterInvoice, initialVersion);
+
+        // Usage is recorded outside of the EntitySqlDao wrappers
+        rolledUpUsageDao.record(UUID.randomUUID(), "bullets", clock.getUTCToday(), 10L, context);
+        final String versionAfterUsage = invoiceDao.getAccountStateVersion(context);
+        Assert.assertNotEquals(versionAfterUsage, versionAfterInvoice);
+        assertEquals(invoiceDao.getAccountStateVersion(context), versionAfterUsage);
+    }
+
+    @Test(groups = "slow")
+    public void testInvoiceIdsByInvoiceDate() throws Exception {
+        final LocalDate today = clock.getUTCToday();
+        final Invoice invoice1 = new DefaultInvoice(account.getId(), today, today, Currency.USD);
+        invoiceUtil.createInvoice(invoice1, true, context);
+        final Invoice invoice2 = new DefaultInvoice(account.getId(), today.plusDays(10), today.plusDays(10), Currency.USD);
+        invoiceUtil.createInvoice(invoice2, true, context);
+
+        final Account otherAccount = invoiceUtil.createAccount(callContext);
+        final InternalCallContext otherContext = internalCallContextFactory.createInternalCallContext(otherAccount.getId(), callContext);
+        final Invoice invoice3 = new DefaultInvoice(otherAccount.getId(), today.plusDays(5), today.plusDays(5), Currency.USD);
+        invoiceUtil.createInvoice(invoice3, true, otherContext);
+
+        assertEquals(invoiceDao.getInvoiceIdsByInvoiceDate(null, null, context), ImmutableList.<UUID>of(invoice1.getId(), invoice2.getId()));
+        assertEquals(invoiceDao.getInvoiceIdsByInvoiceDate(today.plusDays(1), null, context), ImmutableList.<UUID>of(invoice2.getId()));
+        assertEquals(invoiceDao.getInvoiceIdsByInvoiceDate(null, today.plusDays(9), context), ImmutableList.<UUID>of(invoice1.getId()));
+
+        // Across the tenant
+        final InternalCallContext tenantContext = internalCallContextFactory.createInternalCallContext(callContext);
+        assertEquals(invoiceDao.getInvoiceIdsByInvoiceDate(today, today.plusDays(5), tenantContext), ImmutableList.<UUID>of(invoice1.getId(), invoice3.getId()));
+    }
+
     @Test(groups = "slow")
     public void testCreationAndRetrievalByAccount() {
         final UUID accountId = account.getId();
@@ -157,6 +203,10 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertNotNull(retrievedInvoice);
         assertEquals(retrievedInvoice.getInvoiceItems().size(), 1);
         assertEquals(InvoiceModelDaoHelper.getBalance(retrievedInvoice).compareTo(new BigDecimal("10.00")), 0);
+
+        final List<InvoicePaymentModelDao> invoicePayments = invoiceDao.getInvoicePaymentsByPaymentIds(ImmutableList.<UUID>of(paymentId, UUID.randomUUID()), context);
+        assertEquals(invoicePayments.size(), 1);
+        assertEquals(invoicePayments.get(0).getInvoiceId(), invoiceId);
     }
 
     @Test(groups = "slow")
@@ -498,6 +548,58 @@ public class TestInvoiceDao extends InvoiceTestSuiteWithEmbeddedDB {
         assertEquals(invoices.size(), 0);
     }
 
+    @Test(groups = "slow")
+    public void testGetInvoicesForAccountByPage() throws EntityPersistenceException {
+        final UUID accountId = account.getId();
+        final Invoice invoice1 = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2011, 12, 6), Currency.USD);
+        invoiceUtil.createInvoice(invoice1, true, context);
+        final Invoice invoice2 = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2011, 10, 6), Currency.USD);
+        invoiceUtil.createInvoice(invoice2, true, context);
+        final Invoice invoice3 = new DefaultInvoice(accountId, clock.getUTCToday(), new LocalDate(2011, 11, 6), Currency.USD);
+        invoiceUtil.createInvoice(invoice3, true, context);
+
+        final BigDecimal rate = new BigDecimal("17.0");
+        final RecurringInvoiceItem item = new RecurringInvoiceItem(invoice3.getId(), accountId, UUID.randomUUID(), UUID.randomUUID(), "test plan", "test phase", new LocalDate(2011, 11, 6),
+                                                                   new LocalDate(2011, 12, 6), rate, rate, Currency.USD);
+        invoiceUtil.createInvoiceItem(item, context);
+
+        final DateTime beginningOfTime = new DateTime(0L, DateTimeZone.UTC);
+
+        // Pages are in creation order, the cursor being the last invoice of the previous page
+        final List<InvoiceModelDao> firstPage = invoiceDao.getInvoicesByAccount(beginningOfTime, null, 2L, context);
+        assertEquals(firstPage.size(), 2);
+        assertEquals(firstPage.get(0).getId(), invoice1.getId());
+        assertEquals(firstPage.get(1).getId(), invoice2.getId());
+        assertEquals(firstPage.get(0).getInvoiceItems().size(), 0);
+        assertEquals(firstPage.get(1).getInvoiceItems().size(), 0);
+
+        final List<InvoiceModelDao> secondPage = invoiceDao.getInvoicesByAccount(beginningOfTime, invoice2.getId(), 2L, context);
+        assertEquals(secondPage.size(), 1);
+        assertEquals(secondPage.get(0).getId(), invoice3.getId());
+        assertEquals(secondPage.get(0).getInvoiceItems().size(), 1);
+        assertEquals(secondPage.get(0).getInvoiceItems().get(0).getId(), item.getId());
+
+        assertEquals(invoiceDao.getInvoicesByAccount(beginningOfTime, invoice3.getId(), 2L, context).size(), 0);
+
+        // History window
+        DateTime lastCreatedDate = beginningOfTime;
+        for (final InvoiceModelDao invoice : Iterables.concat(firstPage, secondPage)) {
+            lastCreatedDate = invoice.getCreatedDate().isAfter(lastCreatedDate) ? invoice.getCreatedDate() : lastCreatedDate;
+        }
+        assertTrue(invoiceDao.getInvoicesByAccount(lastCreatedDate, null, 10L, context).size() > 0);
+        assertEquals(invoiceDao.getInvoicesByAccount(lastCreatedDate.plusSeconds(1), null, 10L, context).size(), 0);
+
+        // Only invoices with credits
+        assertEquals(invoiceDao.getInvoicesWithCreditsByAccount(beginningOfTime, context).size(), 0);
+        final CreditAdjInvoiceItem creditItem = new CreditAdjInvoiceItem(invoice2.getId(), accountId, new LocalDate(), rate.negate(), Currency.USD);
+        invoiceUtil.createInvoiceItem(creditItem, context);
+        final List<InvoiceModelDao> invoicesWithCredits = invoiceDao.getInvoicesWithCreditsByAccount(beginningOfTime, context);
+        assertEquals(invoicesWithCredits.size(), 1);
+        assertEquals(invoicesWithCredits.get(0).getId(), invoice2.getId());
+        assertEquals(invoicesWithCredits.get(0).getInvoiceItems().size(), 1);
+        assertEquals(invoicesWithCredits.get(0).getInvoiceItems().get(0).getId(), creditItem.getId());
+    }
+
     @Test(groups = "slow")
     public void testAccountBalance() throws EntityPersistenceException {
         final UUID accountId = account.getId();
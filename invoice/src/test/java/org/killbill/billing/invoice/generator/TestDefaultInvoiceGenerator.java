@@ -133,6 +133,51 @@ public class TestDefaultInvoiceGenerator extends InvoiceTestSuiteNoDB {
             public int getMaxGlobalLockRetries() {
                 return 10;
             }
+
+            @Override
+            public int getParallelGenerationMinSubscriptions() {
+                return 0;
+            }
+
+            @Override
+            public int getParallelGenerationNbThreads() {
+                return 0;
+            }
+
+            @Override
+            public int getDryRunCacheMaxAccounts() {
+                return 0;
+            }
+
+            @Override
+            public TimeSpan getDryRunCacheMaxAge() {
+                return new TimeSpan("5m");
+            }
+
+            @Override
+            public boolean isTriggerCoalescingEnabled() {
+                return false;
+            }
+
+            @Override
+            public TimeSpan getTriggerCoalescingWindow() {
+                return new TimeSpan("0s");
+            }
+
+            @Override
+            public TimeSpan getTriggerCoalescingMaxWait() {
+                return new TimeSpan("30s");
+            }
+
+            @Override
+            public int getHtmlCacheMaxInvoices() {
+                return 0;
+            }
+
+            @Override
+            public TimeSpan getHtmlCacheMaxAge() {
+                return new TimeSpan("1h");
+            }
         };
         this.account = new MockAccountBuilder().name(UUID.randomUUID().toString().substring(1, 8))
                                                .firstNameLength(6)
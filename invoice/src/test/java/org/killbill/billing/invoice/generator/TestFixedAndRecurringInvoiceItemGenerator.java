@@ -19,7 +19,10 @@ package org.killbill.billing.invoice.generator;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -39,13 +42,16 @@ import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
 import org.killbill.billing.invoice.MockBillingEventSet;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceItemType;
+import org.killbill.billing.invoice.generator.InvoiceWithMetadata.SubscriptionFutureNotificationDates;
 import org.killbill.billing.invoice.model.FixedPriceInvoiceItem;
 import org.killbill.billing.junction.BillingEvent;
 import org.killbill.billing.junction.BillingEventSet;
 import org.killbill.billing.subscription.api.SubscriptionBase;
 import org.killbill.billing.subscription.api.SubscriptionBaseTransitionType;
 import org.killbill.billing.util.AccountDateAndTimeZoneContext;
+import org.killbill.billing.util.config.InvoiceConfig;
 import org.killbill.billing.util.timezone.DefaultAccountDateAndTimeZoneContext;
+import org.skife.config.ConfigurationObjectFactory;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -286,4 +292,59 @@ public class TestFixedAndRecurringInvoiceItemGenerator extends InvoiceTestSuiteN
         assertEquals(proposedItems.get(0).getAmount().compareTo(fixedPriceAmount3), 0);
     }
 
+    @Test(groups = "fast")
+    public void testParallelGenerationMatchesSequentialGeneration() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("org.killbill.invoice.parallelGeneration.minSubscriptions", "2");
+        properties.setProperty("org.killbill.invoice.parallelGeneration.nbThreads", "4");
+        final InvoiceConfig parallelInvoiceConfig = new ConfigurationObjectFactory(properties).build(InvoiceConfig.class);
+        final FixedAndRecurringInvoiceItemGenerator parallelGenerator = new FixedAndRecurringInvoiceItemGenerator(new InvoiceGenerationExecutor(parallelInvoiceConfig));
+
+        final LocalDate targetDate = new LocalDate("2016-06-15");
+        final UUID invoiceId = UUID.randomUUID();
+        final BillingEventSet events = new MockBillingEventSet(internalCallContext);
+
+        final Plan plan = new MockPlan("my-plan");
+        long totalOrdering = 1L;
+        for (int i = 0; i < 50; i++) {
+            final SubscriptionBase sub = invoiceUtil.createSubscription();
+            final BigDecimal recurringPriceAmount = new BigDecimal(10 + i);
+            final BigDecimal fixedPriceAmount = i % 3 == 0 ? BigDecimal.ONE : null;
+            final MockInternationalPrice recurringPrice = new MockInternationalPrice(new DefaultPrice(recurringPriceAmount, Currency.USD));
+            final MockInternationalPrice fixedPrice = fixedPriceAmount == null ? null : new MockInternationalPrice(new DefaultPrice(fixedPriceAmount, Currency.USD));
+            final PlanPhase phase = new MockPlanPhase(recurringPrice, fixedPrice, BillingPeriod.MONTHLY, PhaseType.EVERGREEN);
+
+            final DateTime startDate = new DateTime("2016-01-01").plusDays(i);
+            events.add(invoiceUtil.createMockBillingEvent(account, sub, startDate, plan, phase,
+                                                          fixedPriceAmount, recurringPriceAmount, Currency.USD, BillingPeriod.MONTHLY, 1 + (i % 28),
+                                                          BillingMode.IN_ADVANCE, "Billing Event Desc", totalOrdering++,
+                                                          SubscriptionBaseTransitionType.CREATE));
+            if (i % 5 == 0) {
+                // Mid-period change to exercise multiple events per subscription
+                final BigDecimal newRecurringPriceAmount = recurringPriceAmount.add(BigDecimal.TEN);
+                final PlanPhase newPhase = new MockPlanPhase(new MockInternationalPrice(new DefaultPrice(newRecurringPriceAmount, Currency.USD)), null, BillingPeriod.MONTHLY, PhaseType.EVERGREEN);
+                events.add(invoiceUtil.createMockBillingEvent(account, sub, startDate.plusDays(45), plan, newPhase,
+                                                              null, newRecurringPriceAmount, Currency.USD, BillingPeriod.MONTHLY, 1 + (i % 28),
+                                                              BillingMode.IN_ADVANCE, "Billing Event Desc", totalOrdering++,
+                                                              SubscriptionBaseTransitionType.CHANGE));
+            }
+        }
+
+        final Map<UUID, SubscriptionFutureNotificationDates> sequentialNotificationDates = new HashMap<UUID, SubscriptionFutureNotificationDates>();
+        final List<InvoiceItem> sequentialItems = fixedAndRecurringInvoiceItemGenerator.generateItems(account, invoiceId, events, null, targetDate, Currency.USD, sequentialNotificationDates, internalCallContext);
+
+        final Map<UUID, SubscriptionFutureNotificationDates> parallelNotificationDates = new HashMap<UUID, SubscriptionFutureNotificationDates>();
+        final List<InvoiceItem> parallelItems = parallelGenerator.generateItems(account, invoiceId, events, null, targetDate, Currency.USD, parallelNotificationDates, internalCallContext);
+
+        assertFalse(sequentialItems.isEmpty());
+        assertEquals(parallelItems.size(), sequentialItems.size());
+        for (int i = 0; i < sequentialItems.size(); i++) {
+            assertTrue(parallelItems.get(i).matches(sequentialItems.get(i)));
+        }
+
+        assertEquals(parallelNotificationDates.keySet(), sequentialNotificationDates.keySet());
+        for (final UUID subscriptionId : sequentialNotificationDates.keySet()) {
+            assertEquals(parallelNotificationDates.get(subscriptionId).getNextRecurringDate(), sequentialNotificationDates.get(subscriptionId).getNextRecurringDate());
+        }
+    }
 }
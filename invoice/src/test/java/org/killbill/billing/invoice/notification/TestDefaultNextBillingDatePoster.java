@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.notification;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications;
+import org.killbill.billing.invoice.InvoiceDispatcher.FutureAccountNotifications.SubscriptionNotification;
+import org.killbill.billing.invoice.InvoiceTestSuiteWithEmbeddedDB;
+import org.killbill.billing.invoice.api.DefaultInvoiceService;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
+import org.killbill.billing.util.timezone.DefaultAccountDateAndTimeZoneContext;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+
+public class TestDefaultNextBillingDatePoster extends InvoiceTestSuiteWithEmbeddedDB {
+
+    @Inject
+    private NextBillingDatePoster nextBillingDatePoster;
+
+    @Test(groups = "slow")
+    public void testShouldntInsertMultipleNotificationsForTheSameDay() throws Exception {
+        final EntitySqlDaoTransactionalJdbiWrapper entitySqlDaoTransactionalJdbiWrapper = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao, internalCallContextFactory);
+        final NotificationQueue nextBillingQueue = notificationQueueService.getNotificationQueue(DefaultInvoiceService.INVOICE_SERVICE_NAME, DefaultNextBillingDateNotifier.NEXT_BILLING_DATE_NOTIFIER_QUEUE);
+
+        final DateTime now = clock.getUTCNow();
+        final Map<UUID, List<SubscriptionNotification>> notifications = new HashMap<UUID, List<SubscriptionNotification>>();
+        // Two subscriptions billed on the same day, a third one ten days later
+        notifications.put(UUID.randomUUID(), ImmutableList.<SubscriptionNotification>of(new SubscriptionNotification(now.plusDays(10), true)));
+        notifications.put(UUID.randomUUID(), ImmutableList.<SubscriptionNotification>of(new SubscriptionNotification(now.plusDays(10).plusMinutes(1), true)));
+        notifications.put(UUID.randomUUID(), ImmutableList.<SubscriptionNotification>of(new SubscriptionNotification(now.plusDays(20), true),
+                                                                                        new SubscriptionNotification(now.plusDays(25), false)));
+        final FutureAccountNotifications futureAccountNotifications = new FutureAccountNotifications(new DefaultAccountDateAndTimeZoneContext(now, internalCallContext), notifications);
+
+        for (int i = 0; i < 2; i++) {
+            // The second run should find everything already scheduled
+            entitySqlDaoTransactionalJdbiWrapper.execute(new EntitySqlDaoTransactionWrapper<Void>() {
+                @Override
+                public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                    nextBillingDatePoster.insertNextBillingNotificationsFromTransaction(entitySqlDaoWrapperFactory, UUID.randomUUID(), futureAccountNotifications, internalCallContext);
+                    return null;
+                }
+            });
+
+            final List<NotificationEventWithMetadata<NextBillingDateNotificationKey>> futureNotifications = nextBillingQueue.getFutureNotificationForSearchKeys(internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId());
+            Assert.assertEquals(futureNotifications.size(), 2);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.invoice.template;
+
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.events.InvoiceAdjustmentInternalEvent;
+import org.killbill.billing.invoice.InvoiceTestSuiteNoDB;
+import org.killbill.billing.tenant.api.TenantKV.TenantKey;
+import org.killbill.billing.util.config.InvoiceConfig;
+import org.killbill.clock.ClockMock;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestHtmlInvoiceCache extends InvoiceTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception {
+        final HtmlInvoiceCache cache = createCache(0, new ClockMock());
+        Assert.assertFalse(cache.isEnabled());
+
+        final UUID invoiceId = UUID.randomUUID();
+        cache.put(invoiceId, 1L, "10", "<html/>");
+        Assert.assertNull(cache.get(invoiceId, 1L, "10"));
+    }
+
+    @Test(groups = "fast")
+    public void testVersionTenantAndExpiration() throws Exception {
+        final ClockMock clock = new ClockMock();
+        final HtmlInvoiceCache cache = createCache(10, clock);
+        final UUID invoiceId = UUID.randomUUID();
+
+        cache.put(invoiceId, 1L, "10", "<html/>");
+        Assert.assertEquals(cache.get(invoiceId, 1L, "10"), "<html/>");
+        Assert.assertNull(cache.get(invoiceId, 1L, null));
+        Assert.assertNull(cache.get(invoiceId, 2L, "10"));
+        // Evicted by the previous stale lookup
+        Assert.assertNull(cache.get(invoiceId, 1L, "10"));
+
+        cache.put(invoiceId, 1L, "11", "<html/>");
+        Assert.assertNull(cache.get(invoiceId, 1L, "12"));
+
+        cache.put(invoiceId, 1L, "12", "<html/>");
+        clock.addDays(1);
+        Assert.assertNull(cache.get(invoiceId, 1L, "12"));
+    }
+
+    @Test(groups = "fast")
+    public void testInvalidation() throws Exception {
+        final HtmlInvoiceCache cache = createCache(10, new ClockMock());
+        final UUID invoiceId1 = UUID.randomUUID();
+        final UUID invoiceId2 = UUID.randomUUID();
+        final UUID invoiceId3 = UUID.randomUUID();
+        cache.put(invoiceId1, 1L, "10", "<html>1</html>");
+        cache.put(invoiceId2, 1L, "10", "<html>2</html>");
+        cache.put(invoiceId3, 2L, "10", "<html>3</html>");
+
+        final InvoiceAdjustmentInternalEvent event = Mockito.mock(InvoiceAdjustmentInternalEvent.class);
+        Mockito.when(event.getInvoiceId()).thenReturn(invoiceId1);
+        cache.handleInvoiceAdjustment(event);
+        Assert.assertNull(cache.get(invoiceId1, 1L, "10"));
+        Assert.assertEquals(cache.get(invoiceId2, 1L, "10"), "<html>2</html>");
+
+        // Template change for the first tenant
+        cache.invalidateCache(TenantKey.INVOICE_TEMPLATE, null, new InternalTenantContext(1L));
+        Assert.assertNull(cache.get(invoiceId2, 1L, "10"));
+        Assert.assertEquals(cache.get(invoiceId3, 2L, "10"), "<html>3</html>");
+    }
+
+    private HtmlInvoiceCache createCache(final int maxInvoices, final ClockMock clock) {
+        final InvoiceConfig invoiceConfig = Mockito.mock(InvoiceConfig.class);
+        Mockito.when(invoiceConfig.getHtmlCacheMaxInvoices()).thenReturn(maxInvoices);
+        Mockito.when(invoiceConfig.getHtmlCacheMaxAge()).thenReturn(new TimeSpan("1h"));
+        return new HtmlInvoiceCache(invoiceConfig, clock);
+    }
+}
@@ -21,7 +21,10 @@ package org.killbill.billing.invoice.tree;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -784,6 +787,69 @@ public class TestSubscriptionItemTree extends InvoiceTestSuiteNoDB {
         verifyResult(tree.getView(), expectedResult);
     }
 
+    @Test(groups = "fast", description = "Large subscription history, with hundreds of repairs and adjustments")
+    public void testMergeWithManyRepairsAndAdjustments() {
+
+        final LocalDate startDate = new LocalDate(2000, 1, 1);
+        final int nbPeriods = 240;
+        final int nbPeriodsKept = 140;
+
+        final BigDecimal rate1 = new BigDecimal("30.00");
+        final BigDecimal rate2 = new BigDecimal("20.00");
+
+        final List<InvoiceItem> existingItems = new ArrayList<InvoiceItem>();
+        final List<InvoiceItem> proposedItems = new ArrayList<InvoiceItem>();
+        final List<InvoiceItem> expectedResult = Lists.newLinkedList();
+        for (int i = 0; i < nbPeriods; i++) {
+            final LocalDate periodStart = startDate.plusMonths(i);
+            final LocalDate periodEnd = periodStart.plusMonths(1);
+
+            final InvoiceItem initial = new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, planName, phaseName, periodStart, periodEnd, rate1, rate1, currency);
+            existingItems.add(initial);
+
+            final InvoiceItem current;
+            final BigDecimal repairAmount;
+            if (i % 2 == 0) {
+                // Full repair and change of plan for that period
+                existingItems.add(new RepairAdjInvoiceItem(invoiceId, accountId, periodStart, periodEnd, rate1.negate(), currency, initial.getId()));
+                current = new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, "someelse", "someelse", periodStart, periodEnd, rate2, rate2, currency);
+                existingItems.add(current);
+                repairAmount = rate2;
+            } else {
+                existingItems.add(new ItemAdjInvoiceItem(initial, periodStart.plusDays(1), new BigDecimal("-5.00"), currency));
+                current = initial;
+                repairAmount = rate1.subtract(new BigDecimal("5.00"));
+            }
+
+            if (i < nbPeriodsKept) {
+                proposedItems.add(new RecurringInvoiceItem(invoiceId, accountId, bundleId, subscriptionId, current.getPlanName(), current.getPhaseName(), periodStart, periodEnd, current.getAmount(), current.getRate(), currency));
+            } else {
+                expectedResult.add(new RepairAdjInvoiceItem(invoiceId, accountId, periodStart, periodEnd, repairAmount.negate(), currency, current.getId()));
+            }
+        }
+
+        // The insertion order of the existing items should not matter
+        for (final long seed : new long[]{0L, 1L, 2L}) {
+            final List<InvoiceItem> shuffledExistingItems = new ArrayList<InvoiceItem>(existingItems);
+            if (seed > 0) {
+                Collections.shuffle(shuffledExistingItems, new Random(seed));
+            }
+
+            final SubscriptionItemTree tree = new SubscriptionItemTree(subscriptionId, invoiceId);
+            for (final InvoiceItem existingItem : shuffledExistingItems) {
+                tree.addItem(existingItem);
+            }
+            tree.flatten(true);
+
+            for (final InvoiceItem proposedItem : proposedItems) {
+                tree.mergeProposedItem(proposedItem);
+            }
+            tree.buildForMerge();
+
+            verifyResult(tree.getView(), expectedResult);
+        }
+    }
+
     @Test(groups = "fast")
     public void testMergeMonthlyToAnnualWithNoProRation() {
 
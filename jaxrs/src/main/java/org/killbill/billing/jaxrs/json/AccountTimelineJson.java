@@ -73,15 +73,7 @@ public class AccountTimelineJson {
 
         this.invoices = new LinkedList<InvoiceJson>();
         // Extract the credits from the invoices first
-        final List<CreditJson> credits = new ArrayList<CreditJson>();
-        for (final Invoice invoice : invoices) {
-            for (final InvoiceItem invoiceItem : invoice.getInvoiceItems()) {
-                if (InvoiceItemType.CREDIT_ADJ.equals(invoiceItem.getInvoiceItemType())) {
-                    final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoiceItem(invoiceItem.getId());
-                    credits.add(new CreditJson(invoice, invoiceItem, auditLogs));
-                }
-            }
-        }
+        final List<CreditJson> credits = getCredits(invoices, accountAuditLogs);
         // Create now the invoice json objects
         for (final Invoice invoice : invoices) {
             final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoice(invoice.getId());
@@ -174,7 +166,21 @@ public class AccountTimelineJson {
         return null;
     }
 
-    private String getBundleExternalKey(final Invoice invoice, final List<SubscriptionBundle> bundles) {
+    // Also used by the streaming version of the timeline
+    public static List<CreditJson> getCredits(final Iterable<Invoice> invoices, final AccountAuditLogs accountAuditLogs) {
+        final List<CreditJson> credits = new ArrayList<CreditJson>();
+        for (final Invoice invoice : invoices) {
+            for (final InvoiceItem invoiceItem : invoice.getInvoiceItems()) {
+                if (InvoiceItemType.CREDIT_ADJ.equals(invoiceItem.getInvoiceItemType())) {
+                    final List<AuditLog> auditLogs = accountAuditLogs.getAuditLogsForInvoiceItem(invoiceItem.getId());
+                    credits.add(new CreditJson(invoice, invoiceItem, auditLogs));
+                }
+            }
+        }
+        return credits;
+    }
+
+    public static String getBundleExternalKey(final Invoice invoice, final List<SubscriptionBundle> bundles) {
         final Set<UUID> b = new HashSet<UUID>();
         for (final InvoiceItem cur : invoice.getInvoiceItems()) {
             b.add(cur.getBundleId());
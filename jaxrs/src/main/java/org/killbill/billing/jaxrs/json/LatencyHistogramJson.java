@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.json;
+
+import org.killbill.billing.util.profiling.LatencyHistogram;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class LatencyHistogramJson {
+
+    private final String featureType;
+    private final String operation;
+    private final Long count;
+    private final Double meanUsec;
+    private final Long p50Usec;
+    private final Long p90Usec;
+    private final Long p99Usec;
+    private final Long p999Usec;
+    private final Long maxUsec;
+
+    @JsonCreator
+    public LatencyHistogramJson(@JsonProperty("featureType") final String featureType,
+                                @JsonProperty("operation") final String operation,
+                                @JsonProperty("count") final Long count,
+                                @JsonProperty("meanUsec") final Double meanUsec,
+                                @JsonProperty("p50Usec") final Long p50Usec,
+                                @JsonProperty("p90Usec") final Long p90Usec,
+                                @JsonProperty("p99Usec") final Long p99Usec,
+                                @JsonProperty("p999Usec") final Long p999Usec,
+                                @JsonProperty("maxUsec") final Long maxUsec) {
+        this.featureType = featureType;
+        this.operation = operation;
+        this.count = count;
+        this.meanUsec = meanUsec;
+        this.p50Usec = p50Usec;
+        this.p90Usec = p90Usec;
+        this.p99Usec = p99Usec;
+        this.p999Usec = p999Usec;
+        this.maxUsec = maxUsec;
+    }
+
+    public LatencyHistogramJson(final String featureType, final String operation, final LatencyHistogram.Snapshot snapshot) {
+        this(featureType,
+             operation,
+             snapshot.getCount(),
+             snapshot.getMeanMicros(),
+             snapshot.getValueAtPercentileMicros(50.0),
+             snapshot.getValueAtPercentileMicros(90.0),
+             snapshot.getValueAtPercentileMicros(99.0),
+             snapshot.getValueAtPercentileMicros(99.9),
+             snapshot.getMaxMicros());
+    }
+
+    public String getFeatureType() {
+        return featureType;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public Double getMeanUsec() {
+        return meanUsec;
+    }
+
+    public Long getP50Usec() {
+        return p50Usec;
+    }
+
+    public Long getP90Usec() {
+        return p90Usec;
+    }
+
+    public Long getP99Usec() {
+        return p99Usec;
+    }
+
+    public Long getP999Usec() {
+        return p999Usec;
+    }
+
+    public Long getMaxUsec() {
+        return maxUsec;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("LatencyHistogramJson{");
+        sb.append("featureType='").append(featureType).append('\'');
+        sb.append(", operation='").append(operation).append('\'');
+        sb.append(", count=").append(count);
+        sb.append(", meanUsec=").append(meanUsec);
+        sb.append(", p50Usec=").append(p50Usec);
+        sb.append(", p90Usec=").append(p90Usec);
+        sb.append(", p99Usec=").append(p99Usec);
+        sb.append(", p999Usec=").append(p999Usec);
+        sb.append(", maxUsec=").append(maxUsec);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.util.ArrayList;
@@ -45,10 +47,14 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
@@ -58,6 +64,7 @@ import org.killbill.billing.account.api.AccountEmail;
 import org.killbill.billing.account.api.AccountInternalApi;
 import org.killbill.billing.account.api.AccountUserApi;
 import org.killbill.billing.account.api.MutableAccountData;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.api.CatalogApiException;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.entitlement.api.SubscriptionApi;
@@ -65,6 +72,7 @@ import org.killbill.billing.entitlement.api.SubscriptionApiException;
 import org.killbill.billing.entitlement.api.SubscriptionBundle;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceInternalApi;
 import org.killbill.billing.invoice.api.InvoicePayment;
 import org.killbill.billing.invoice.api.InvoicePaymentApi;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
@@ -73,6 +81,7 @@ import org.killbill.billing.jaxrs.json.AccountEmailJson;
 import org.killbill.billing.jaxrs.json.AccountJson;
 import org.killbill.billing.jaxrs.json.AccountTimelineJson;
 import org.killbill.billing.jaxrs.json.BundleJson;
+import org.killbill.billing.jaxrs.json.CreditJson;
 import org.killbill.billing.jaxrs.json.CustomFieldJson;
 import org.killbill.billing.jaxrs.json.InvoiceEmailJson;
 import org.killbill.billing.jaxrs.json.InvoiceJson;
@@ -84,10 +93,12 @@ import org.killbill.billing.jaxrs.json.PaymentTransactionJson;
 import org.killbill.billing.jaxrs.json.TagJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
+import org.killbill.billing.jaxrs.util.LazyAccountAuditLogs;
 import org.killbill.billing.overdue.OverdueInternalApi;
 import org.killbill.billing.overdue.api.OverdueApiException;
 import org.killbill.billing.overdue.api.OverdueState;
 import org.killbill.billing.overdue.config.api.OverdueException;
+import org.killbill.billing.payment.api.AccountPaymentsInternalApi;
 import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentApiException;
@@ -116,6 +127,7 @@ import org.killbill.clock.Clock;
 import org.killbill.commons.metrics.MetricTag;
 import org.killbill.commons.metrics.TimedResource;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -142,6 +154,8 @@ public class AccountResource extends JaxRsResourceBase {
     private final SubscriptionApi subscriptionApi;
     private final InvoiceUserApi invoiceApi;
     private final InvoicePaymentApi invoicePaymentApi;
+    private final InvoiceInternalApi invoiceInternalApi;
+    private final AccountPaymentsInternalApi accountPaymentsInternalApi;
     private final OverdueInternalApi overdueApi;
     private final PaymentConfig paymentConfig;
     private final JaxrsExecutors jaxrsExecutors;
@@ -158,6 +172,8 @@ public class AccountResource extends JaxRsResourceBase {
                            final CustomFieldUserApi customFieldUserApi,
                            final SubscriptionApi subscriptionApi,
                            final AccountInternalApi accountInternalApi,
+                           final InvoiceInternalApi invoiceInternalApi,
+                           final AccountPaymentsInternalApi accountPaymentsInternalApi,
                            final OverdueInternalApi overdueApi,
                            final Clock clock,
                            final PaymentConfig paymentConfig,
@@ -168,6 +184,8 @@ public class AccountResource extends JaxRsResourceBase {
         this.subscriptionApi = subscriptionApi;
         this.invoiceApi = invoiceApi;
         this.invoicePaymentApi = invoicePaymentApi;
+        this.invoiceInternalApi = invoiceInternalApi;
+        this.accountPaymentsInternalApi = accountPaymentsInternalApi;
         this.overdueApi = overdueApi;
         this.paymentConfig = paymentConfig;
         this.jaxrsExecutors = jaxrsExecutors;
@@ -389,6 +407,7 @@ public class AccountResource extends JaxRsResourceBase {
     public Response getAccountTimeline(@PathParam("accountId") final String accountIdString,
                                        @QueryParam(QUERY_AUDIT) @DefaultValue("NONE") final AuditMode auditMode,
                                        @QueryParam(QUERY_PARALLEL) @DefaultValue("false") final Boolean parallel,
+                                       @QueryParam(QUERY_STREAMING) @DefaultValue("false") final Boolean streaming,
                                        @javax.ws.rs.core.Context final HttpServletRequest request) throws AccountApiException, PaymentApiException, SubscriptionApiException, InvoiceApiException, CatalogApiException {
         final TenantContext tenantContext = context.createContext(request);
 
@@ -426,6 +445,10 @@ public class AccountResource extends JaxRsResourceBase {
             }
         };
 
+        if (streaming) {
+            return buildStreamingAccountTimelineResponse(account, bundlesCallable, auditMode.getLevel(), tenantContext, context.createInternalTenantContext(accountId, tenantContext));
+        }
+
         final AccountTimelineJson json;
 
         List<Invoice> invoices = null;
@@ -479,6 +502,138 @@ public class AccountResource extends JaxRsResourceBase {
         return Response.status(Status.OK).entity(json).build();
     }
 
+    // Each section of the timeline is written as soon as the data it depends on is available, without building the full AccountTimelineJson.
+    // Invoices and payments are read (and written) one page at a time, within the configured history window, and each section only loads
+    // the audit logs (and invoice payments) it needs. Invoices are paged on their record id, hence written in creation order.
+    private Response buildStreamingAccountTimelineResponse(final Account account,
+                                                           final Callable<List<SubscriptionBundle>> bundlesCallable,
+                                                           final AuditLevel auditLevel,
+                                                           final TenantContext tenantContext,
+                                                           final InternalTenantContext internalTenantContext) {
+        final long timeoutMillis = jaxrsConfig.getJaxrsTimeout().getMillis();
+        final long historyWindowMillis = jaxrsConfig.getStreamingTimelineHistoryWindow().getMillis();
+        final DateTime historyStartDate = historyWindowMillis > 0 ? clock.getUTCNow().minus(historyWindowMillis) : new DateTime(0L, DateTimeZone.UTC);
+        final long pageSize = Math.max(1, jaxrsConfig.getStreamingTimelinePageSize());
+
+        // Start retrieving the bundles right away, while the account is written
+        final Future<List<SubscriptionBundle>> futureBundles = jaxrsExecutors.getJaxrsExecutorService().submit(bundlesCallable);
+
+        final StreamingOutput json = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+                final JsonGenerator generator = mapper.getFactory().createJsonGenerator(output);
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                generator.writeStartObject();
+
+                try {
+                    generator.writeObjectField("account", new AccountJson(account, null, null, newAccountAuditLogs()));
+                    generator.flush();
+
+                    final long remainingMillis = deadline - System.currentTimeMillis();
+                    if (remainingMillis <= 0) {
+                        throw newTimeoutException();
+                    }
+                    final List<SubscriptionBundle> bundles = futureBundles.get(remainingMillis, TimeUnit.MILLISECONDS);
+
+                    final AccountAuditLogs bundlesAuditLogs = newAccountAuditLogs();
+                    generator.writeArrayFieldStart("bundles");
+                    int nbWritten = 0;
+                    for (final SubscriptionBundle bundle : bundles) {
+                        generator.writeObject(new BundleJson(bundle, account.getCurrency(), bundlesAuditLogs));
+                        flushIfNeeded(generator, ++nbWritten, pageSize);
+                    }
+                    generator.writeEndArray();
+                    generator.flush();
+
+                    // Each invoice embeds the credits of all the invoices in the window (see AccountTimelineJson)
+                    checkDeadline(deadline);
+                    final AccountAuditLogs invoicesAuditLogs = newAccountAuditLogs();
+                    final List<CreditJson> credits = AccountTimelineJson.getCredits(invoiceInternalApi.getInvoicesWithCreditsByAccount(account.getId(), historyStartDate, internalTenantContext),
+                                                                                    invoicesAuditLogs);
+
+                    generator.writeArrayFieldStart("invoices");
+                    List<Invoice> invoices;
+                    UUID lastInvoiceId = null;
+                    do {
+                        checkDeadline(deadline);
+                        invoices = invoiceInternalApi.getInvoicesByAccount(account.getId(), historyStartDate, lastInvoiceId, pageSize, internalTenantContext);
+                        for (final Invoice invoice : invoices) {
+                            generator.writeObject(new InvoiceJson(invoice,
+                                                                  AccountTimelineJson.getBundleExternalKey(invoice, bundles),
+                                                                  credits,
+                                                                  invoicesAuditLogs.getAuditLogsForInvoice(invoice.getId())));
+                            lastInvoiceId = invoice.getId();
+                        }
+                        generator.flush();
+                    } while (invoices.size() == pageSize);
+                    generator.writeEndArray();
+
+                    final AccountAuditLogs paymentsAuditLogs = newAccountAuditLogs();
+                    generator.writeArrayFieldStart("payments");
+                    List<Payment> payments;
+                    long offset = 0;
+                    do {
+                        checkDeadline(deadline);
+                        payments = accountPaymentsInternalApi.getAccountPayments(account.getId(), historyStartDate, offset, pageSize, internalTenantContext);
+                        final List<InvoicePayment> invoicePayments = invoiceInternalApi.getInvoicePaymentsByPaymentIds(Collections2.<Payment, UUID>transform(payments, new Function<Payment, UUID>() {
+                            @Override
+                            public UUID apply(final Payment payment) {
+                                return payment.getId();
+                            }
+                        }), internalTenantContext);
+                        for (final Payment payment : payments) {
+                            generator.writeObject(new InvoicePaymentJson(payment, getInvoiceId(invoicePayments, payment), paymentsAuditLogs));
+                        }
+                        generator.flush();
+                        offset += payments.size();
+                    } while (payments.size() == pageSize);
+                    generator.writeEndArray();
+                } catch (final InterruptedException e) {
+                    futureBundles.cancel(true);
+                    Thread.currentThread().interrupt();
+                    throw new WebApplicationException(e);
+                } catch (final ExecutionException e) {
+                    throw new WebApplicationException(e.getCause());
+                } catch (final TimeoutException e) {
+                    futureBundles.cancel(true);
+                    log.warn(e.getMessage());
+                    throw new WebApplicationException(e, Status.SERVICE_UNAVAILABLE);
+                } catch (final CatalogApiException e) {
+                    throw new WebApplicationException(e);
+                }
+
+                // Don't close the generator on failure: it would terminate the JSON document and hide the truncation
+                generator.writeEndObject();
+                generator.close();
+            }
+
+            // One instance per section, so that the audit logs of a section are released once it has been written
+            private AccountAuditLogs newAccountAuditLogs() {
+                return new LazyAccountAuditLogs(account.getId(), auditLevel, auditUserApi, tenantContext);
+            }
+
+            private void checkDeadline(final long deadline) throws TimeoutException {
+                if (System.currentTimeMillis() > deadline) {
+                    throw newTimeoutException();
+                }
+            }
+
+            private TimeoutException newTimeoutException() {
+                return new TimeoutException(String.format("Timeout while building the timeline for accountId='%s'", account.getId()));
+            }
+        };
+
+        return Response.status(Status.OK).entity(json).build();
+    }
+
+    private static void flushIfNeeded(final JsonGenerator generator, final int nbWritten, final long pageSize) throws IOException {
+        if (nbWritten % pageSize == 0) {
+            generator.flush();
+        }
+    }
+
     private <T> T runCallableAndHandleTimeout(final Future<T> future, final long timeoutMsec) throws ExecutionException, InterruptedException {
         try {
             return future.get(timeoutMsec, TimeUnit.MILLISECONDS);
@@ -17,27 +17,37 @@
 
 package org.killbill.billing.jaxrs.resources;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.killbill.billing.account.api.AccountUserApi;
 import org.killbill.billing.jaxrs.json.AdminPaymentJson;
+import org.killbill.billing.jaxrs.json.LatencyHistogramJson;
 import org.killbill.billing.jaxrs.util.Context;
 import org.killbill.billing.jaxrs.util.JaxrsUriBuilder;
 import org.killbill.billing.payment.api.AdminPaymentApi;
 import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentApiException;
+import org.killbill.billing.payment.api.PaymentMethodsReconciliationInternalApi;
 import org.killbill.billing.payment.api.PaymentTransaction;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.payment.api.TransactionStatus;
@@ -45,7 +55,10 @@ import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.api.TagUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.profiling.LatencyHistogram;
+import org.killbill.billing.util.profiling.LatencyHistograms;
 import org.killbill.clock.Clock;
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
@@ -64,11 +77,14 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 public class AdminResource extends JaxRsResourceBase {
 
     private final AdminPaymentApi adminPaymentApi;
+    private final PaymentMethodsReconciliationInternalApi paymentMethodsReconciliationApi;
 
     @Inject
-    public AdminResource(final JaxrsUriBuilder uriBuilder, final TagUserApi tagUserApi, final CustomFieldUserApi customFieldUserApi, final AuditUserApi auditUserApi, final AccountUserApi accountUserApi, final PaymentApi paymentApi, final AdminPaymentApi adminPaymentApi, final Clock clock, final Context context) {
+    public AdminResource(final JaxrsUriBuilder uriBuilder, final TagUserApi tagUserApi, final CustomFieldUserApi customFieldUserApi, final AuditUserApi auditUserApi, final AccountUserApi accountUserApi, final PaymentApi paymentApi, final AdminPaymentApi adminPaymentApi,
+                         final PaymentMethodsReconciliationInternalApi paymentMethodsReconciliationApi, final Clock clock, final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.adminPaymentApi = adminPaymentApi;
+        this.paymentMethodsReconciliationApi = paymentMethodsReconciliationApi;
     }
 
 
@@ -104,4 +120,45 @@ public class AdminResource extends JaxRsResourceBase {
         return Response.status(Status.OK).build();
     }
 
+    @POST
+    @Path("/" + PAYMENT_METHODS + "/" + RECONCILIATION)
+    @ApiOperation(value = "Refresh the payment methods of all accounts of the tenant with a given plugin (asynchronously)")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid plugin name supplied")})
+    public Response reconcilePaymentMethods(@QueryParam(QUERY_PAYMENT_METHOD_PLUGIN_NAME) final String pluginName,
+                                            @HeaderParam(HDR_CREATED_BY) final String createdBy,
+                                            @HeaderParam(HDR_REASON) final String reason,
+                                            @HeaderParam(HDR_COMMENT) final String comment,
+                                            @javax.ws.rs.core.Context final HttpServletRequest request) throws PaymentApiException {
+        final CallContext callContext = context.createContext(createdBy, reason, comment, request);
+        paymentMethodsReconciliationApi.reconcilePaymentMethods(pluginName, callContext);
+        return Response.status(Status.OK).build();
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    @Path("/" + LATENCIES)
+    @ApiOperation(value = "Retrieve latency percentiles per profiling feature type and operation", response = LatencyHistogramJson.class, responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid feature type supplied")})
+    public Response getLatencies(@QueryParam(QUERY_FEATURE_TYPE) final String featureTypeStr) {
+        final ProfilingFeatureType featureType = featureTypeStr == null ? null : ProfilingFeatureType.valueOf(featureTypeStr.toUpperCase());
+
+        final List<LatencyHistogramJson> result = new LinkedList<LatencyHistogramJson>();
+        for (final Entry<ProfilingFeatureType, Map<String, LatencyHistogram.Snapshot>> perFeatureType : LatencyHistograms.snapshot().entrySet()) {
+            if (featureType != null && featureType != perFeatureType.getKey()) {
+                continue;
+            }
+            for (final Entry<String, LatencyHistogram.Snapshot> perOperation : perFeatureType.getValue().entrySet()) {
+                result.add(new LatencyHistogramJson(perFeatureType.getKey().name(), perOperation.getKey(), perOperation.getValue()));
+            }
+        }
+        return Response.status(Status.OK).entity(result).build();
+    }
+
+    @DELETE
+    @Path("/" + LATENCIES)
+    @ApiOperation(value = "Reset latency histograms")
+    public Response resetLatencies() {
+        LatencyHistograms.reset();
+        return Response.status(Status.OK).build();
+    }
 }
@@ -21,19 +21,29 @@ package org.killbill.billing.jaxrs.resources;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
@@ -47,8 +57,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.DateTime;
@@ -59,6 +71,7 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountUserApi;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.catalog.DefaultPlanPhasePriceOverride;
 import org.killbill.billing.catalog.api.BillingActionPolicy;
 import org.killbill.billing.catalog.api.BillingPeriod;
@@ -73,10 +86,12 @@ import org.killbill.billing.invoice.api.DryRunArguments;
 import org.killbill.billing.invoice.api.DryRunType;
 import org.killbill.billing.invoice.api.Invoice;
 import org.killbill.billing.invoice.api.InvoiceApiException;
+import org.killbill.billing.invoice.api.InvoiceInternalApi;
 import org.killbill.billing.invoice.api.InvoiceItem;
 import org.killbill.billing.invoice.api.InvoiceNotifier;
 import org.killbill.billing.invoice.api.InvoicePayment;
 import org.killbill.billing.invoice.api.InvoiceUserApi;
+import org.killbill.billing.jaxrs.JaxrsExecutors;
 import org.killbill.billing.jaxrs.json.CustomFieldJson;
 import org.killbill.billing.jaxrs.json.InvoiceDryRunJson;
 import org.killbill.billing.jaxrs.json.InvoiceItemJson;
@@ -103,6 +118,7 @@ import org.killbill.billing.util.api.TagUserApi;
 import org.killbill.billing.util.audit.AccountAuditLogs;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.JaxrsConfig;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.clock.Clock;
 import org.killbill.clock.ClockUtil;
@@ -135,11 +151,15 @@ public class InvoiceResource extends JaxRsResourceBase {
     private static final Logger log = LoggerFactory.getLogger(InvoiceResource.class);
     private static final String ID_PARAM_NAME = "invoiceId";
     private static final String LOCALE_PARAM_NAME = "locale";
+    private static final String APPLICATION_ZIP = "application/zip";
 
     private final InvoiceUserApi invoiceApi;
+    private final InvoiceInternalApi invoiceInternalApi;
     private final InvoiceNotifier invoiceNotifier;
     private final TenantUserApi tenantApi;
     private final Locale defaultLocale;
+    private final JaxrsExecutors jaxrsExecutors;
+    private final JaxrsConfig jaxrsConfig;
 
     private static final Ordering<InvoicePaymentJson> INVOICE_PAYMENT_ORDERING = Ordering.from(new Comparator<InvoicePaymentJson>() {
         @Override
@@ -151,6 +171,7 @@ public class InvoiceResource extends JaxRsResourceBase {
     @Inject
     public InvoiceResource(final AccountUserApi accountUserApi,
                            final InvoiceUserApi invoiceApi,
+                           final InvoiceInternalApi invoiceInternalApi,
                            final PaymentApi paymentApi,
                            final InvoiceNotifier invoiceNotifier,
                            final Clock clock,
@@ -159,12 +180,17 @@ public class InvoiceResource extends JaxRsResourceBase {
                            final CustomFieldUserApi customFieldUserApi,
                            final AuditUserApi auditUserApi,
                            final TenantUserApi tenantApi,
+                           final JaxrsExecutors jaxrsExecutors,
+                           final JaxrsConfig jaxrsConfig,
                            final Context context) {
         super(uriBuilder, tagUserApi, customFieldUserApi, auditUserApi, accountUserApi, paymentApi, clock, context);
         this.invoiceApi = invoiceApi;
+        this.invoiceInternalApi = invoiceInternalApi;
         this.invoiceNotifier = invoiceNotifier;
         this.tenantApi = tenantApi;
         this.defaultLocale = Locale.getDefault();
+        this.jaxrsExecutors = jaxrsExecutors;
+        this.jaxrsConfig = jaxrsConfig;
     }
 
     @TimedResource
@@ -223,6 +249,108 @@ public class InvoiceResource extends JaxRsResourceBase {
         return Response.status(Status.OK).entity(invoiceApi.getInvoiceAsHTML(UUID.fromString(invoiceId), context.createContext(request))).build();
     }
 
+    @TimedResource
+    @GET
+    @Path("/" + EXPORT + "/html")
+    @Produces(APPLICATION_ZIP)
+    @ApiOperation(value = "Export invoices as a zip archive of HTML documents")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Invalid invoice id, account id or dates supplied"),
+                           @ApiResponse(code = 404, message = "Invoice or account not found")})
+    public Response exportInvoicesAsHTML(@QueryParam(QUERY_INVOICE_ID) final List<String> invoiceIds,
+                                         @QueryParam(QUERY_ACCOUNT_ID) final String accountId,
+                                         @QueryParam(QUERY_START_DATE) final String startDate,
+                                         @QueryParam(QUERY_END_DATE) final String endDate,
+                                         @javax.ws.rs.core.Context final HttpServletRequest request) throws InvoiceApiException, AccountApiException {
+        final boolean byIds = invoiceIds != null && !invoiceIds.isEmpty();
+        Preconditions.checkArgument(!(byIds && accountId != null), "Only one of %s or %s should be specified", QUERY_INVOICE_ID, QUERY_ACCOUNT_ID);
+        // Don't export all the invoices of the tenant at once
+        Preconditions.checkArgument(byIds || accountId != null || (startDate != null && endDate != null),
+                                    "%s or %s should be specified, or both %s and %s", QUERY_INVOICE_ID, QUERY_ACCOUNT_ID, QUERY_START_DATE, QUERY_END_DATE);
+        final TenantContext tenantContext = context.createContext(request);
+
+        final List<UUID> invoicesToExport = new LinkedList<UUID>();
+        if (byIds) {
+            for (final String invoiceId : invoiceIds) {
+                invoicesToExport.add(UUID.fromString(invoiceId));
+            }
+        } else {
+            final InternalTenantContext internalTenantContext;
+            if (accountId != null) {
+                // Make sure the account exists: the lookup would be tenant-wide otherwise
+                final Account account = accountUserApi.getAccountById(UUID.fromString(accountId), tenantContext);
+                internalTenantContext = context.createInternalTenantContext(account.getId(), tenantContext);
+            } else {
+                internalTenantContext = context.createInternalTenantContext(tenantContext);
+            }
+            final LocalDate fromDate = startDate == null ? null : LOCAL_DATE_FORMATTER.parseLocalDate(startDate);
+            final LocalDate toDate = endDate == null ? null : LOCAL_DATE_FORMATTER.parseLocalDate(endDate);
+            // Only the ids are loaded here: each invoice is loaded when rendered
+            invoicesToExport.addAll(invoiceInternalApi.getInvoiceIdsByInvoiceDate(fromDate, toDate, internalTenantContext));
+        }
+
+        final long timeoutMillis = jaxrsConfig.getJaxrsTimeout().getMillis();
+        final int parallelism = Math.max(1, jaxrsConfig.getInvoicesExportParallelism());
+
+        final StreamingOutput zip = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                // Keep at most parallelism renderings in flight, and write them in submission order so the archive is deterministic
+                final LinkedList<Future<String>> inFlight = new LinkedList<Future<String>>();
+                final LinkedList<UUID> inFlightIds = new LinkedList<UUID>();
+                final ZipOutputStream zipOutputStream = new ZipOutputStream(output);
+                try {
+                    for (final UUID invoiceId : invoicesToExport) {
+                        if (inFlight.size() >= parallelism) {
+                            writeEntry(zipOutputStream, inFlightIds.removeFirst(), inFlight.removeFirst().get(timeoutMillis, TimeUnit.MILLISECONDS));
+                        }
+                        inFlightIds.add(invoiceId);
+                        inFlight.add(jaxrsExecutors.getJaxrsExecutorService().submit(new Callable<String>() {
+                            @Override
+                            public String call() throws Exception {
+                                return invoiceApi.getInvoiceAsHTML(invoiceId, tenantContext);
+                            }
+                        }));
+                    }
+                    while (!inFlight.isEmpty()) {
+                        writeEntry(zipOutputStream, inFlightIds.removeFirst(), inFlight.removeFirst().get(timeoutMillis, TimeUnit.MILLISECONDS));
+                    }
+                } catch (final InterruptedException e) {
+                    cancelFutures(inFlight);
+                    Thread.currentThread().interrupt();
+                    throw new WebApplicationException(e);
+                } catch (final ExecutionException e) {
+                    cancelFutures(inFlight);
+                    throw new WebApplicationException(e.getCause());
+                } catch (final TimeoutException e) {
+                    cancelFutures(inFlight);
+                    log.warn(e.getMessage());
+                    throw new WebApplicationException(e, Status.SERVICE_UNAVAILABLE);
+                }
+
+                // Don't finish the archive on failure: a truncated zip is easier to detect than a silently incomplete one
+                zipOutputStream.finish();
+                zipOutputStream.flush();
+            }
+
+            private void writeEntry(final ZipOutputStream zipOutputStream, final UUID invoiceId, final String html) throws IOException {
+                zipOutputStream.putNextEntry(new ZipEntry(invoiceId + ".html"));
+                zipOutputStream.write(html.getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        };
+
+        return Response.status(Status.OK)
+                       .entity(zip)
+                       .header("Content-Disposition", "attachment; filename=\"invoices.zip\"")
+                       .build();
+    }
+
+    private static void cancelFutures(final Collection<? extends Future> futures) {
+        for (final Future f : futures) {
+            f.cancel(true);
+        }
+    }
+
     @TimedResource
     @GET
     @Path("/" + PAGINATION)
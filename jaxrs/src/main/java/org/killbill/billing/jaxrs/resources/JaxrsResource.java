@@ -81,6 +81,7 @@ public interface JaxrsResource {
     public static final String QUERY_ACCOUNT_WITH_BALANCE_AND_CBA = "accountWithBalanceAndCBA";
 
     public static final String QUERY_ACCOUNT_ID = "accountId";
+    public static final String QUERY_INVOICE_ID = "invoiceId";
 
     public static final String QUERY_INVOICE_WITH_ITEMS = "withItems";
     public static final String QUERY_UNPAID_INVOICES_ONLY = "unpaidInvoicesOnly";
@@ -122,12 +123,18 @@ public interface JaxrsResource {
 
     public static final String QUERY_PARALLEL = "parallel";
 
+    public static final String QUERY_STREAMING = "streaming";
+
     public static final String QUERY_NOTIFICATION_CALLBACK = "cb";
 
+    public static final String QUERY_FEATURE_TYPE = "featureType";
+
     public static final String PAGINATION = "pagination";
 
     public static final String ADMIN = "admin";
     public static final String ADMIN_PATH = PREFIX + "/" + ADMIN;
+    public static final String LATENCIES = "latencies";
+    public static final String RECONCILIATION = "reconciliation";
 
     public static final String ACCOUNTS = "accounts";
     public static final String ACCOUNTS_PATH = PREFIX + "/" + ACCOUNTS;
@@ -22,6 +22,7 @@ import java.util.UUID;
 
 import javax.servlet.ServletRequest;
 
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.killbill.billing.tenant.api.Tenant;
 import org.killbill.billing.util.UUIDs;
@@ -84,6 +85,14 @@ public class Context {
     }
 
     // Use REQUEST_ID_HEADER if this is provided and lloks like a UUID, if not allocate a random one.
+    public InternalTenantContext createInternalTenantContext(final UUID accountId, final TenantContext tenantContext) {
+        return internalCallContextFactory.createInternalTenantContext(accountId, tenantContext);
+    }
+
+    public InternalTenantContext createInternalTenantContext(final TenantContext tenantContext) {
+        return internalCallContextFactory.createInternalTenantContext(tenantContext);
+    }
+
     private UUID getOrCreateUserToken() {
         UUID userToken;
         if (Request.getPerThreadRequestData().getRequestId() != null) {
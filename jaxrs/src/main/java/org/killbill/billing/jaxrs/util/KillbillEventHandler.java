@@ -16,9 +16,11 @@
 
 package org.killbill.billing.jaxrs.util;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.killbill.billing.events.BusInternalEvent;
 import org.killbill.billing.util.userrequest.CompletionUserRequest;
@@ -29,27 +31,53 @@ import com.google.common.eventbus.Subscribe;
 
 public class KillbillEventHandler {
 
-    private final List<CompletionUserRequest> activeWaiters;
+    // Waiters only care about events with their own user token: index them so that each event is dispatched
+    // to the matching waiters only, without any global lock
+    private final ConcurrentMap<UUID, List<CompletionUserRequest>> activeWaiters;
 
     public KillbillEventHandler() {
-        activeWaiters = new LinkedList<CompletionUserRequest>();
+        activeWaiters = new ConcurrentHashMap<UUID, List<CompletionUserRequest>>();
     }
 
     public void registerCompletionUserRequestWaiter(final CompletionUserRequest waiter) {
-        if (waiter == null) {
+        if (waiter == null || waiter.getUserToken() == null) {
             return;
         }
-        synchronized (activeWaiters) {
-            activeWaiters.add(waiter);
+
+        while (true) {
+            List<CompletionUserRequest> waiters = activeWaiters.get(waiter.getUserToken());
+            if (waiters == null) {
+                final List<CompletionUserRequest> newWaiters = new CopyOnWriteArrayList<CompletionUserRequest>();
+                waiters = activeWaiters.putIfAbsent(waiter.getUserToken(), newWaiters);
+                if (waiters == null) {
+                    waiters = newWaiters;
+                }
+            }
+
+            synchronized (waiters) {
+                // The list may have been removed by a concurrent unregister, in which case we need to try again
+                if (activeWaiters.get(waiter.getUserToken()) == waiters) {
+                    waiters.add(waiter);
+                    return;
+                }
+            }
         }
     }
 
     public void unregisterCompletionUserRequestWaiter(final CompletionUserRequest waiter) {
-        if (waiter == null) {
+        if (waiter == null || waiter.getUserToken() == null) {
             return;
         }
-        synchronized (activeWaiters) {
-            activeWaiters.remove(waiter);
+
+        final List<CompletionUserRequest> waiters = activeWaiters.get(waiter.getUserToken());
+        if (waiters == null) {
+            return;
+        }
+        synchronized (waiters) {
+            waiters.remove(waiter);
+            if (waiters.isEmpty()) {
+                activeWaiters.remove(waiter.getUserToken(), waiters);
+            }
         }
     }
 
@@ -59,13 +87,15 @@ public class KillbillEventHandler {
     @AllowConcurrentEvents
     @Subscribe
     public void handleSubscriptionevents(final BusInternalEvent event) {
-        final List<CompletionUserRequestNotifier> runningWaiters = new ArrayList<CompletionUserRequestNotifier>();
-        synchronized (activeWaiters) {
-            runningWaiters.addAll(activeWaiters);
+        if (event.getUserToken() == null) {
+            return;
         }
-        if (runningWaiters.size() == 0) {
+
+        final List<CompletionUserRequest> runningWaiters = activeWaiters.get(event.getUserToken());
+        if (runningWaiters == null) {
             return;
         }
+        // Iteration is done on a snapshot, see CopyOnWriteArrayList
         for (final CompletionUserRequestNotifier cur : runningWaiters) {
             cur.onBusEvent(event);
         }
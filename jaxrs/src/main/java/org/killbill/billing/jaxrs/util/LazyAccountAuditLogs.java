@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Groupon, Inc
+ * Copyright 2014 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.api.AuditLevel;
+import org.killbill.billing.util.api.AuditUserApi;
+import org.killbill.billing.util.audit.AccountAuditLogs;
+import org.killbill.billing.util.audit.AccountAuditLogsForObjectType;
+import org.killbill.billing.util.audit.AuditLog;
+import org.killbill.billing.util.callcontext.TenantContext;
+
+/**
+ * Account audit logs retrieved one object type at a time, the first time that type is looked up.
+ * <p/>
+ * Unlike AuditUserApi#getAccountAuditLogs(UUID, AuditLevel, TenantContext), which loads the audit logs of every table,
+ * only the types actually needed are loaded, and they can be released by dropping the instance.
+ * Not thread safe.
+ */
+public class LazyAccountAuditLogs implements AccountAuditLogs {
+
+    private final UUID accountId;
+    private final AuditLevel auditLevel;
+    private final AuditUserApi auditUserApi;
+    private final TenantContext tenantContext;
+
+    private final Map<ObjectType, AccountAuditLogsForObjectType> auditLogsCache = new HashMap<ObjectType, AccountAuditLogsForObjectType>();
+
+    public LazyAccountAuditLogs(final UUID accountId, final AuditLevel auditLevel, final AuditUserApi auditUserApi, final TenantContext tenantContext) {
+        this.accountId = accountId;
+        this.auditLevel = auditLevel;
+        this.auditUserApi = auditUserApi;
+        this.tenantContext = tenantContext;
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForAccount() {
+        return getAuditLogs(ObjectType.ACCOUNT).getAuditLogs(accountId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForBundle(final UUID bundleId) {
+        return getAuditLogs(ObjectType.BUNDLE).getAuditLogs(bundleId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForSubscription(final UUID subscriptionId) {
+        return getAuditLogs(ObjectType.SUBSCRIPTION).getAuditLogs(subscriptionId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForSubscriptionEvent(final UUID subscriptionEventId) {
+        return getAuditLogs(ObjectType.SUBSCRIPTION_EVENT).getAuditLogs(subscriptionEventId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForInvoice(final UUID invoiceId) {
+        return getAuditLogs(ObjectType.INVOICE).getAuditLogs(invoiceId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForInvoiceItem(final UUID invoiceItemId) {
+        return getAuditLogs(ObjectType.INVOICE_ITEM).getAuditLogs(invoiceItemId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForPayment(final UUID paymentId) {
+        return getAuditLogs(ObjectType.PAYMENT).getAuditLogs(paymentId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForPaymentTransaction(final UUID paymentTransactionId) {
+        return getAuditLogs(ObjectType.TRANSACTION).getAuditLogs(paymentTransactionId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForPaymentMethod(final UUID paymentMethodId) {
+        return getAuditLogs(ObjectType.PAYMENT_METHOD).getAuditLogs(paymentMethodId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForBlockingState(final UUID blockingStateId) {
+        return getAuditLogs(ObjectType.BLOCKING_STATES).getAuditLogs(blockingStateId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForInvoicePayment(final UUID invoicePaymentId) {
+        return getAuditLogs(ObjectType.INVOICE_PAYMENT).getAuditLogs(invoicePaymentId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForTag(final UUID tagId) {
+        return getAuditLogs(ObjectType.TAG).getAuditLogs(tagId);
+    }
+
+    @Override
+    public List<AuditLog> getAuditLogsForCustomField(final UUID customFieldId) {
+        return getAuditLogs(ObjectType.CUSTOM_FIELD).getAuditLogs(customFieldId);
+    }
+
+    @Override
+    public AccountAuditLogsForObjectType getAuditLogs(final ObjectType objectType) {
+        if (auditLogsCache.get(objectType) == null) {
+            auditLogsCache.put(objectType, auditUserApi.getAccountAuditLogs(accountId, objectType, auditLevel, tenantContext));
+        }
+
+        return auditLogsCache.get(objectType);
+    }
+}
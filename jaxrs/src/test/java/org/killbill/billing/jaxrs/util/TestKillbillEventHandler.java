@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.jaxrs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.billing.events.BusInternalEvent;
+import org.killbill.billing.jaxrs.JaxrsTestSuiteNoDB;
+import org.killbill.billing.util.userrequest.CompletionUserRequestBase;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestKillbillEventHandler extends JaxrsTestSuiteNoDB {
+
+    private static final int NB_WAITERS = 5000;
+    private static final int NB_THREADS = 16;
+
+    @Test(groups = "fast")
+    public void testEventsAreOnlyDispatchedToMatchingWaiters() throws Exception {
+        final KillbillEventHandler handler = new KillbillEventHandler();
+
+        final UUID userToken = UUID.randomUUID();
+        final CountingCompletionUserRequest waiter1 = new CountingCompletionUserRequest(userToken);
+        final CountingCompletionUserRequest waiter2 = new CountingCompletionUserRequest(userToken);
+        final CountingCompletionUserRequest otherWaiter = new CountingCompletionUserRequest(UUID.randomUUID());
+        handler.registerCompletionUserRequestWaiter(waiter1);
+        handler.registerCompletionUserRequestWaiter(waiter2);
+        handler.registerCompletionUserRequestWaiter(otherWaiter);
+
+        handler.handleSubscriptionevents(createEvent(userToken));
+        handler.handleSubscriptionevents(createEvent(null));
+        Assert.assertEquals(waiter1.getNbEvents(), 1);
+        Assert.assertEquals(waiter2.getNbEvents(), 1);
+        Assert.assertEquals(otherWaiter.getNbEvents(), 0);
+
+        handler.unregisterCompletionUserRequestWaiter(waiter1);
+        handler.handleSubscriptionevents(createEvent(userToken));
+        Assert.assertEquals(waiter1.getNbEvents(), 1);
+        Assert.assertEquals(waiter2.getNbEvents(), 2);
+
+        handler.unregisterCompletionUserRequestWaiter(waiter2);
+        handler.handleSubscriptionevents(createEvent(userToken));
+        Assert.assertEquals(waiter2.getNbEvents(), 2);
+    }
+
+    @Test(groups = "fast", description = "Dispatch events while thousands of waiters concurrently register and unregister")
+    public void testWithThousandsOfConcurrentWaiters() throws Exception {
+        final KillbillEventHandler handler = new KillbillEventHandler();
+
+        final List<CountingCompletionUserRequest> waiters = new ArrayList<CountingCompletionUserRequest>(NB_WAITERS);
+        final List<BusInternalEvent> events = new ArrayList<BusInternalEvent>(NB_WAITERS);
+        for (int i = 0; i < NB_WAITERS; i++) {
+            final UUID userToken = UUID.randomUUID();
+            waiters.add(new CountingCompletionUserRequest(userToken));
+            events.add(createEvent(userToken));
+        }
+        final BusInternalEvent unrelatedEvent = createEvent(UUID.randomUUID());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(NB_THREADS);
+            final long startNanos = System.nanoTime();
+            for (int t = 0; t < NB_THREADS; t++) {
+                final int threadNb = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = threadNb; i < NB_WAITERS; i += NB_THREADS) {
+                            handler.registerCompletionUserRequestWaiter(waiters.get(i));
+                            // Simulate the other bus events flowing through the handler
+                            for (int j = 0; j < 10; j++) {
+                                handler.handleSubscriptionevents(unrelatedEvent);
+                            }
+                            handler.handleSubscriptionevents(events.get(i));
+                            handler.unregisterCompletionUserRequestWaiter(waiters.get(i));
+                            handler.handleSubscriptionevents(events.get(i));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            log.info("Dispatched {} events to {} waiters in {} ms", NB_WAITERS * 12, NB_WAITERS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (final CountingCompletionUserRequest waiter : waiters) {
+            Assert.assertEquals(waiter.getNbEvents(), 1);
+        }
+    }
+
+    private BusInternalEvent createEvent(final UUID userToken) {
+        final BusInternalEvent event = Mockito.mock(BusInternalEvent.class);
+        Mockito.when(event.getUserToken()).thenReturn(userToken);
+        return event;
+    }
+
+    private static final class CountingCompletionUserRequest extends CompletionUserRequestBase {
+
+        private final AtomicInteger nbEvents = new AtomicInteger();
+
+        public CountingCompletionUserRequest(final UUID userToken) {
+            super(userToken);
+        }
+
+        @Override
+        public void onBusEvent(final BusInternalEvent curEvent) {
+            nbEvents.incrementAndGet();
+        }
+
+        public int getNbEvents() {
+            return nbEvents.get();
+        }
+    }
+}
@@ -54,7 +54,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
 public class DefaultInternalBillingApi implements BillingInternalApi {
@@ -97,14 +100,16 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
 
         final Set<UUID> skippedSubscriptions = new HashSet<UUID>();
         try {
+            // Retrieve the control tags for the account and all its bundles at once
+            final List<Tag> accountControlTags = tagApi.getControlTagsForAccount(context);
+
             // Check to see if billing is off for the account
-            final List<Tag> accountTags = tagApi.getTags(accountId, ObjectType.ACCOUNT, context);
-            final boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(accountTags);
+            final boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(getTagsForObject(accountControlTags, accountId, ObjectType.ACCOUNT));
             if (found_AUTO_INVOICING_OFF) {
                 return new DefaultBillingEventSet(true, currentCatalog.getRecurringBillingMode(), context); // billing is off, we are done
             }
 
-            addBillingEventsForBundles(bundles, account, dryRunArguments, context, result, skippedSubscriptions);
+            addBillingEventsForBundles(bundles, account, dryRunArguments, accountControlTags, context, result, skippedSubscriptions);
         } catch (SubscriptionBaseApiException e) {
             log.warn("Failed while getting BillingEvent", e);
         }
@@ -126,7 +131,7 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
-    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final ImmutableAccountData account, final DryRunArguments dryRunArguments, final InternalCallContext context,
+    private void addBillingEventsForBundles(final List<SubscriptionBaseBundle> bundles, final ImmutableAccountData account, final DryRunArguments dryRunArguments, final List<Tag> accountControlTags, final InternalCallContext context,
                                             final DefaultBillingEventSet result, final Set<UUID> skipSubscriptionsSet) throws SubscriptionBaseApiException, AccountApiException {
 
         final boolean dryRunMode = dryRunArguments != null;
@@ -151,7 +156,7 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
             final List<SubscriptionBase> subscriptions = subscriptionApi.getSubscriptionsForBundle(bundle.getId(), dryRunArgumentsForBundle, context);
 
             //Check if billing is off for the bundle
-            final List<Tag> bundleTags = tagApi.getTags(bundle.getId(), ObjectType.BUNDLE, context);
+            final List<Tag> bundleTags = getTagsForObject(accountControlTags, bundle.getId(), ObjectType.BUNDLE);
             boolean found_AUTO_INVOICING_OFF = is_AUTO_INVOICING_OFF(bundleTags);
             if (found_AUTO_INVOICING_OFF) {
                 for (final SubscriptionBase subscription : subscriptions) { // billing is off so list sub ids in set to be excluded
@@ -219,6 +224,15 @@ public class DefaultInternalBillingApi implements BillingInternalApi {
         }
     }
 
+    private List<Tag> getTagsForObject(final List<Tag> tags, final UUID objectId, final ObjectType objectType) {
+        return ImmutableList.<Tag>copyOf(Iterables.filter(tags, new Predicate<Tag>() {
+            @Override
+            public boolean apply(final Tag tag) {
+                return tag.getObjectType() == objectType && tag.getObjectId().equals(objectId);
+            }
+        }));
+    }
+
     private final boolean is_AUTO_INVOICING_OFF(final List<Tag> tags) {
         return ControlTagType.isAutoInvoicingOff(Collections2.transform(tags, new Function<Tag, UUID>() {
             @Nullable
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.api;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.payment.core.PaymentProcessor;
+
+public class DefaultAccountPaymentsInternalApi implements AccountPaymentsInternalApi {
+
+    private final PaymentProcessor paymentProcessor;
+
+    @Inject
+    public DefaultAccountPaymentsInternalApi(final PaymentProcessor paymentProcessor) {
+        this.paymentProcessor = paymentProcessor;
+    }
+
+    @Override
+    public List<Payment> getAccountPayments(final UUID accountId, final DateTime createdSince, final Long offset, final Long limit, final InternalTenantContext context) {
+        return paymentProcessor.getAccountPayments(createdSince, offset, limit, context);
+    }
+}
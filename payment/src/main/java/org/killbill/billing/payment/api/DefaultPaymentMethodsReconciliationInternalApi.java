@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.api;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ErrorCode;
+import org.killbill.billing.payment.core.PaymentMethodProcessor;
+import org.killbill.billing.payment.core.reconciliation.PaymentMethodsReconciliation;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+
+public class DefaultPaymentMethodsReconciliationInternalApi implements PaymentMethodsReconciliationInternalApi {
+
+    private final PaymentMethodProcessor paymentMethodProcessor;
+    private final PaymentMethodsReconciliation paymentMethodsReconciliation;
+    private final InternalCallContextFactory internalCallContextFactory;
+
+    @Inject
+    public DefaultPaymentMethodsReconciliationInternalApi(final PaymentMethodProcessor paymentMethodProcessor,
+                                                          final PaymentMethodsReconciliation paymentMethodsReconciliation,
+                                                          final InternalCallContextFactory internalCallContextFactory) {
+        this.paymentMethodProcessor = paymentMethodProcessor;
+        this.paymentMethodsReconciliation = paymentMethodsReconciliation;
+        this.internalCallContextFactory = internalCallContextFactory;
+    }
+
+    @Override
+    public void reconcilePaymentMethods(final String pluginName, final CallContext context) throws PaymentApiException {
+        if (pluginName == null || !paymentMethodProcessor.getAvailablePlugins().contains(pluginName)) {
+            throw new PaymentApiException(ErrorCode.PAYMENT_NO_SUCH_PAYMENT_PLUGIN, pluginName);
+        }
+        paymentMethodsReconciliation.schedule(pluginName, internalCallContextFactory.createInternalCallContext(context));
+    }
+}
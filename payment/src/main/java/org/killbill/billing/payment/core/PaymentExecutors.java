@@ -19,6 +19,7 @@ package org.killbill.billing.payment.core;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -39,6 +40,9 @@ public class PaymentExecutors {
     private static final String PLUGIN_THREAD_PREFIX = "Plugin-th-";
     private static final String PAYMENT_PLUGIN_TH_GROUP_NAME = "pay-plugin-grp";
 
+    private static final String JANITOR_THREAD_PREFIX = "PaymentJanitor-th-";
+    private static final String PAYMENT_JANITOR_TH_GROUP_NAME = "pay-janitor-grp";
+
     public static final String JANITOR_EXECUTOR_NAMED = "JanitorExecutor";
     public static final String PLUGIN_EXECUTOR_NAMED = "PluginExecutor";
 
@@ -46,6 +50,7 @@ public class PaymentExecutors {
 
     private volatile ThreadPoolExecutor pluginExecutorService;
     private volatile ScheduledExecutorService janitorExecutorService;
+    private volatile ThreadPoolExecutor janitorPipelineExecutorService;
 
     @Inject
     public PaymentExecutors(PaymentConfig paymentConfig) {
@@ -57,18 +62,23 @@ public class PaymentExecutors {
         this.pluginExecutorService = createPluginExecutorService();
         this.pluginExecutorService.prestartAllCoreThreads();
         this.janitorExecutorService = createJanitorExecutorService();
+        this.janitorPipelineExecutorService = createJanitorPipelineExecutorService();
     }
 
 
     public void stop() throws InterruptedException {
         pluginExecutorService.shutdownNow();
         janitorExecutorService.shutdownNow();
+        janitorPipelineExecutorService.shutdownNow();
 
         pluginExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         pluginExecutorService = null;
 
         janitorExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
         janitorExecutorService = null;
+
+        janitorPipelineExecutorService.awaitTermination(TIMEOUT_EXECUTOR_SEC, TimeUnit.SECONDS);
+        janitorPipelineExecutorService = null;
     }
 
     public ExecutorService getPluginExecutorService() {
@@ -79,6 +89,10 @@ public class PaymentExecutors {
         return janitorExecutorService;
     }
 
+    public ThreadPoolExecutor getJanitorPipelineExecutorService() {
+        return janitorPipelineExecutorService;
+    }
+
     private ThreadPoolExecutor createPluginExecutorService() {
         final int minThreadNb = DEFAULT_MIN_PLUGIN_THREADS < paymentConfig.getPaymentPluginThreadNb() ? DEFAULT_MIN_PLUGIN_THREADS : paymentConfig.getPaymentPluginThreadNb();
         return new WithProfilingThreadPoolExecutor(minThreadNb,
@@ -101,4 +115,30 @@ public class PaymentExecutors {
     private ScheduledExecutorService createJanitorExecutorService() {
         return Executors.newSingleThreadScheduledExecutor("PaymentJanitor");
     }
+
+    private ThreadPoolExecutor createJanitorPipelineExecutorService() {
+        // Bounded both in threads and in queue size: when the janitor gets too far behind, the notification queue thread processes the work itself (back-pressure).
+        // Unlike CallerRunsPolicy, the work is also run when the pool has been shut down (submission racing with stop): discarding it would lose its notifications.
+        final RejectedExecutionHandler callerRunsPolicy = new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+                r.run();
+            }
+        };
+        return new ThreadPoolExecutor(paymentConfig.getJanitorThreadNb(),
+                                      paymentConfig.getJanitorThreadNb(),
+                                      0L,
+                                      TimeUnit.MILLISECONDS,
+                                      new LinkedBlockingQueue<Runnable>(paymentConfig.getJanitorQueueSize()),
+                                      new ThreadFactory() {
+
+                                          @Override
+                                          public Thread newThread(final Runnable r) {
+                                              final Thread th = new Thread(new ThreadGroup(PAYMENT_JANITOR_TH_GROUP_NAME), r);
+                                              th.setName(JANITOR_THREAD_PREFIX + th.getId());
+                                              return th;
+                                          }
+                                      },
+                                      callerRunsPolicy);
+    }
 }
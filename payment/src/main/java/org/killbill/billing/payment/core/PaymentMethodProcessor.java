@@ -21,13 +21,28 @@ package org.killbill.billing.payment.core;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
 
 import org.killbill.billing.ErrorCode;
+import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
@@ -85,6 +100,7 @@ public class PaymentMethodProcessor extends ProcessorBase {
     private final PluginDispatcher<UUID> uuidPluginNotificationDispatcher;
 
     private final PaymentConfig paymentConfig;
+    private final PaymentExecutors paymentExecutors;
 
     @Inject
     public PaymentMethodProcessor(final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry,
@@ -100,6 +116,7 @@ public class PaymentMethodProcessor extends ProcessorBase {
         super(pluginRegistry, accountInternalApi, paymentDao, tagUserApi, locker, internalCallContextFactory, invoiceApi, clock);
         final long paymentPluginTimeoutSec = TimeUnit.SECONDS.convert(paymentConfig.getPaymentPluginTimeout().getPeriod(), paymentConfig.getPaymentPluginTimeout().getUnit());
         this.paymentConfig = paymentConfig;
+        this.paymentExecutors = executors;
         this.uuidPluginNotificationDispatcher = new PluginDispatcher<UUID>(paymentPluginTimeoutSec, executors);
     }
 
@@ -515,28 +532,9 @@ public class PaymentMethodProcessor extends ProcessorBase {
                 @Override
                 public PluginDispatcherReturnType<List<PaymentMethod>> doOperation() throws PaymentApiException {
 
-                    UUID defaultPaymentMethodId = null;
-
                     final List<PaymentMethodInfoPlugin> pluginPmsWithId = new ArrayList<PaymentMethodInfoPlugin>();
                     final List<PaymentMethodModelDao> finalPaymentMethods = new ArrayList<PaymentMethodModelDao>();
-                    for (final PaymentMethodInfoPlugin cur : pluginPms) {
-                        // If the kbPaymentId is NULL, the plugin does not know about it, so we create a new UUID
-                        final UUID paymentMethodId = cur.getPaymentMethodId() != null ? cur.getPaymentMethodId() : UUIDs.randomUUID();
-                        // TODO paymentMethod externalKey seems broken here.
-                        final PaymentMethod input = new DefaultPaymentMethod(paymentMethodId, paymentMethodId.toString(), account.getId(), pluginName);
-                        final PaymentMethodModelDao pmModel = new PaymentMethodModelDao(input.getId(), input.getExternalKey(), input.getCreatedDate(), input.getUpdatedDate(),
-                                                                                        input.getAccountId(), input.getPluginName(), input.isActive());
-                        finalPaymentMethods.add(pmModel);
-
-                        pluginPmsWithId.add(new DefaultPaymentMethodInfoPlugin(cur, paymentMethodId));
-
-                        // Note: we do not unset the default payment method in Kill Bill even if isDefault is false here.
-                        // Some gateways don't support the concept of "default" payment methods, in that case the plugin
-                        // will always return false - it's Kill Bill in that case which is responsible to manage default payment methods
-                        if (cur.isDefault()) {
-                            defaultPaymentMethodId = paymentMethodId;
-                        }
-                    }
+                    final UUID defaultPaymentMethodId = buildRefreshedPaymentMethods(pluginName, account, pluginPms, finalPaymentMethods, pluginPmsWithId);
 
                     final List<PaymentMethodModelDao> refreshedPaymentMethods = paymentDao.refreshPaymentMethods(pluginName,
                                                                                                                  finalPaymentMethods,
@@ -567,6 +565,193 @@ public class PaymentMethodProcessor extends ProcessorBase {
         }
     }
 
+    /**
+     * Bulk flavor of refreshPaymentMethods, used by the payment methods reconciliation: the plugin is called concurrently for all
+     * accounts (with at most maxPluginConcurrency calls in flight) and the payment methods of all accounts are updated in a single transaction
+     * (or one transaction per account, if that transaction fails).
+     * <p/>
+     * Unlike the single account flavor, the account locks are not taken.
+     *
+     * @param pluginName           the name of the plugin
+     * @param accounts             the accounts to reconcile
+     * @param maxPluginConcurrency the maximum number of concurrent calls to the plugin
+     * @param callContext          the call context
+     * @return the ids of the accounts which could not be reconciled
+     * @throws PaymentApiException if the plugin isn't registered
+     */
+    public Set<UUID> refreshPaymentMethods(final String pluginName, final Collection<Account> accounts, final int maxPluginConcurrency, final CallContext callContext) throws PaymentApiException {
+        final PaymentPluginApi pluginApi = getPaymentPluginApi(pluginName);
+        final Iterable<PluginProperty> properties = ImmutableList.<PluginProperty>of();
+        final Set<UUID> failedAccountIds = new HashSet<UUID>();
+
+        // Retrieve the payment methods from the gateway
+        final Map<UUID, List<PaymentMethodInfoPlugin>> pluginPmsByAccountId = callPluginForAccounts(accounts, maxPluginConcurrency, "retrieve payment methods", failedAccountIds, new Function<Account, Callable<List<PaymentMethodInfoPlugin>>>() {
+            @Override
+            public Callable<List<PaymentMethodInfoPlugin>> apply(final Account account) {
+                return new Callable<List<PaymentMethodInfoPlugin>>() {
+                    @Override
+                    public List<PaymentMethodInfoPlugin> call() throws Exception {
+                        return pluginApi.getPaymentMethods(account.getId(), true, properties, callContext);
+                    }
+                };
+            }
+        });
+
+        final List<Account> refreshedAccounts = new ArrayList<Account>();
+        final Map<UUID, List<PaymentMethodModelDao>> paymentMethodsByAccountId = new HashMap<UUID, List<PaymentMethodModelDao>>();
+        final Map<UUID, List<PaymentMethodInfoPlugin>> pluginPmsWithIdByAccountId = new HashMap<UUID, List<PaymentMethodInfoPlugin>>();
+        final Map<UUID, UUID> defaultPaymentMethodIdByAccountId = new HashMap<UUID, UUID>();
+        for (final Account account : accounts) {
+            final List<PaymentMethodInfoPlugin> pluginPms = pluginPmsByAccountId.get(account.getId());
+            // The method should never return null by convention, but let's not trust the plugin...
+            if (pluginPms == null) {
+                continue;
+            }
+
+            final List<PaymentMethodInfoPlugin> pluginPmsWithId = new ArrayList<PaymentMethodInfoPlugin>();
+            final List<PaymentMethodModelDao> finalPaymentMethods = new ArrayList<PaymentMethodModelDao>();
+            final UUID defaultPaymentMethodId = buildRefreshedPaymentMethods(pluginName, account, pluginPms, finalPaymentMethods, pluginPmsWithId);
+
+            refreshedAccounts.add(account);
+            paymentMethodsByAccountId.put(account.getId(), finalPaymentMethods);
+            pluginPmsWithIdByAccountId.put(account.getId(), pluginPmsWithId);
+            defaultPaymentMethodIdByAccountId.put(account.getId(), defaultPaymentMethodId);
+        }
+        if (refreshedAccounts.isEmpty()) {
+            return failedAccountIds;
+        }
+
+        final Map<UUID, InternalCallContext> contextByAccountId = internalCallContextFactory.createInternalCallContexts(paymentMethodsByAccountId.keySet(), ObjectType.ACCOUNT, callContext);
+        try {
+            paymentDao.refreshPaymentMethodsForAccounts(pluginName, paymentMethodsByAccountId, contextByAccountId);
+        } catch (final RuntimeException e) {
+            // A single account can roll back the whole batch: fall back to one transaction per account, so that only that account fails
+            log.warn("Unable to refresh the payment methods of {} accounts in a single transaction, refreshing them one at a time", refreshedAccounts.size(), e);
+            final Iterator<Account> refreshedAccountsIterator = refreshedAccounts.iterator();
+            while (refreshedAccountsIterator.hasNext()) {
+                final Account account = refreshedAccountsIterator.next();
+                try {
+                    paymentDao.refreshPaymentMethods(pluginName, paymentMethodsByAccountId.get(account.getId()), contextByAccountId.get(account.getId()));
+                } catch (final RuntimeException accountException) {
+                    log.warn("Unable to refresh the payment methods of account {}", account.getId(), accountException);
+                    failedAccountIds.add(account.getId());
+                    refreshedAccountsIterator.remove();
+                }
+            }
+        }
+
+        // Let the plugin know about the Kill Bill ids and update the default payment methods if needed
+        callPluginForAccounts(refreshedAccounts, maxPluginConcurrency, "reset payment methods", failedAccountIds, new Function<Account, Callable<Void>>() {
+            @Override
+            public Callable<Void> apply(final Account account) {
+                return new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        pluginApi.resetPaymentMethods(account.getId(), pluginPmsWithIdByAccountId.get(account.getId()), properties, callContext);
+                        updateDefaultPaymentMethodIfNeeded(pluginName, account, defaultPaymentMethodIdByAccountId.get(account.getId()), contextByAccountId.get(account.getId()));
+                        return null;
+                    }
+                };
+            }
+        });
+
+        return failedAccountIds;
+    }
+
+    // Invoke the plugin for each account on the plugin executor, with at most maxPluginConcurrency calls in flight.
+    // Accounts for which the call failed or timed out are added to failedAccountIds and are absent from the result.
+    private <T> Map<UUID, T> callPluginForAccounts(final Iterable<Account> accounts,
+                                                   final int maxPluginConcurrency,
+                                                   final String operation,
+                                                   final Set<UUID> failedAccountIds,
+                                                   final Function<Account, Callable<T>> callableForAccount) {
+        final ExecutorService pluginExecutor = paymentExecutors.getPluginExecutorService();
+        final long timeoutMillis = paymentConfig.getPaymentPluginTimeout().getMillis();
+        final Semaphore permits = new Semaphore(maxPluginConcurrency);
+
+        final Map<UUID, Future<T>> futures = new LinkedHashMap<UUID, Future<T>>();
+        for (final Account account : accounts) {
+            try {
+                if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timeout while waiting to {} for account {} with plugin", operation, account.getId());
+                    failedAccountIds.add(account.getId());
+                    continue;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting to {} for account {} with plugin", operation, account.getId());
+                failedAccountIds.add(account.getId());
+                continue;
+            }
+
+            final Callable<T> callable = callableForAccount.apply(account);
+            try {
+                futures.put(account.getId(), pluginExecutor.submit(withRequestData(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            return callable.call();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                })));
+            } catch (final RejectedExecutionException e) {
+                permits.release();
+                log.warn("Unable to {} for account {} with plugin: {}", operation, account.getId(), e.toString());
+                failedAccountIds.add(account.getId());
+            }
+        }
+
+        final Map<UUID, T> result = new HashMap<UUID, T>();
+        for (final Entry<UUID, Future<T>> entry : futures.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().get(timeoutMillis, TimeUnit.MILLISECONDS));
+            } catch (final TimeoutException e) {
+                log.warn("Timeout while trying to {} for account {} with plugin", operation, entry.getKey());
+                entry.getValue().cancel(true);
+                failedAccountIds.add(entry.getKey());
+            } catch (final ExecutionException e) {
+                log.warn("Unable to " + operation + " for account " + entry.getKey() + " with plugin", e.getCause());
+                failedAccountIds.add(entry.getKey());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while trying to {} for account {} with plugin", operation, entry.getKey());
+                entry.getValue().cancel(true);
+                failedAccountIds.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    // Build the Kill Bill view of the payment methods returned by the plugin and return the id of the plugin default payment method, if any
+    private UUID buildRefreshedPaymentMethods(final String pluginName,
+                                              final Account account,
+                                              final Iterable<PaymentMethodInfoPlugin> pluginPms,
+                                              final Collection<PaymentMethodModelDao> finalPaymentMethods,
+                                              final Collection<PaymentMethodInfoPlugin> pluginPmsWithId) {
+        UUID defaultPaymentMethodId = null;
+        for (final PaymentMethodInfoPlugin cur : pluginPms) {
+            // If the kbPaymentId is NULL, the plugin does not know about it, so we create a new UUID
+            final UUID paymentMethodId = cur.getPaymentMethodId() != null ? cur.getPaymentMethodId() : UUIDs.randomUUID();
+            // TODO paymentMethod externalKey seems broken here.
+            final PaymentMethod input = new DefaultPaymentMethod(paymentMethodId, paymentMethodId.toString(), account.getId(), pluginName);
+            final PaymentMethodModelDao pmModel = new PaymentMethodModelDao(input.getId(), input.getExternalKey(), input.getCreatedDate(), input.getUpdatedDate(),
+                                                                            input.getAccountId(), input.getPluginName(), input.isActive());
+            finalPaymentMethods.add(pmModel);
+
+            pluginPmsWithId.add(new DefaultPaymentMethodInfoPlugin(cur, paymentMethodId));
+
+            // Note: we do not unset the default payment method in Kill Bill even if isDefault is false here.
+            // Some gateways don't support the concept of "default" payment methods, in that case the plugin
+            // will always return false - it's Kill Bill in that case which is responsible to manage default payment methods
+            if (cur.isDefault()) {
+                defaultPaymentMethodId = paymentMethodId;
+            }
+        }
+        return defaultPaymentMethodId;
+    }
+
     private void updateDefaultPaymentMethodIfNeeded(final String pluginName, final Account account, @Nullable final UUID defaultPluginPaymentMethodId, final InternalCallContext context) throws PaymentApiException, AccountApiException {
 
         // If the plugin does not have a default payment gateway, we keep the current default payment method in KB account as it is.
@@ -19,18 +19,30 @@
 package org.killbill.billing.payment.core;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
 import org.killbill.automaton.OperationResult;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
@@ -62,6 +74,7 @@ import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.PaymentConfig;
 import org.killbill.billing.util.entity.DefaultPagination;
 import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.DefaultPaginationHelper.EntityPaginationBuilder;
@@ -75,6 +88,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -89,6 +103,8 @@ public class PaymentProcessor extends ProcessorBase {
 
     private final PaymentAutomatonRunner paymentAutomatonRunner;
     private final IncompletePaymentTransactionTask incompletePaymentTransactionTask;
+    private final PaymentExecutors paymentExecutors;
+    private final PaymentConfig paymentConfig;
 
     private static final Logger log = LoggerFactory.getLogger(PaymentProcessor.class);
 
@@ -102,10 +118,14 @@ public class PaymentProcessor extends ProcessorBase {
                             final GlobalLocker locker,
                             final PaymentAutomatonRunner paymentAutomatonRunner,
                             final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                            final PaymentExecutors paymentExecutors,
+                            final PaymentConfig paymentConfig,
                             final Clock clock) {
         super(pluginRegistry, accountUserApi, paymentDao, tagUserApi, locker, internalCallContextFactory, invoiceApi, clock);
         this.paymentAutomatonRunner = paymentAutomatonRunner;
         this.incompletePaymentTransactionTask = incompletePaymentTransactionTask;
+        this.paymentExecutors = paymentExecutors;
+        this.paymentConfig = paymentConfig;
     }
 
     public Payment createAuthorization(final boolean isApiPayment, @Nullable final UUID attemptId, final Account account, @Nullable final UUID paymentMethodId, @Nullable final UUID paymentId, final BigDecimal amount, final Currency currency,
@@ -170,29 +190,31 @@ public class PaymentProcessor extends ProcessorBase {
         final List<PaymentModelDao> paymentsModelDao = paymentDao.getPaymentsForAccount(accountId, tenantContext);
         final List<PaymentTransactionModelDao> transactionsModelDao = paymentDao.getTransactionsForAccount(accountId, tenantContext);
 
-        final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<UUID, PaymentPluginApi>();
-        final Collection<UUID> absentPlugins = new HashSet<UUID>();
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> pluginInfoByPaymentId;
+        if (withPluginInfo) {
+            final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId = new HashMap<UUID, PaymentPluginApi>();
+            final Collection<UUID> absentPlugins = new HashSet<UUID>();
+            for (final PaymentModelDao paymentModelDao : paymentsModelDao) {
+                if (!paymentPluginByPaymentMethodId.containsKey(paymentModelDao.getPaymentMethodId()) && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
+                    try {
+                        paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), tenantContext));
+                    } catch (final PaymentApiException e) {
+                        log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
+                        absentPlugins.add(paymentModelDao.getPaymentMethodId());
+                    }
+                }
+            }
+
+            pluginInfoByPaymentId = getPaymentTransactionInfoPluginsConcurrently(paymentsModelDao, paymentPluginByPaymentMethodId, context);
+        } else {
+            pluginInfoByPaymentId = ImmutableMap.<UUID, List<PaymentTransactionInfoPlugin>>of();
+        }
+
         final List<Payment> transformedPayments = Lists.<PaymentModelDao, Payment>transform(paymentsModelDao,
                                                                                             new Function<PaymentModelDao, Payment>() {
                                                                                                 @Override
                                                                                                 public Payment apply(final PaymentModelDao paymentModelDao) {
-                                                                                                    List<PaymentTransactionInfoPlugin> pluginInfo = null;
-
-                                                                                                    if (withPluginInfo) {
-                                                                                                        PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
-                                                                                                        if (pluginApi == null && !absentPlugins.contains(paymentModelDao.getPaymentMethodId())) {
-                                                                                                            try {
-                                                                                                                pluginApi = getPaymentProviderPlugin(paymentModelDao.getPaymentMethodId(), tenantContext);
-                                                                                                                paymentPluginByPaymentMethodId.put(paymentModelDao.getPaymentMethodId(), pluginApi);
-                                                                                                            } catch (final PaymentApiException e) {
-                                                                                                                log.warn("Unable to retrieve pluginApi for payment method " + paymentModelDao.getPaymentMethodId());
-                                                                                                                absentPlugins.add(paymentModelDao.getPaymentMethodId());
-                                                                                                            }
-                                                                                                        }
-
-                                                                                                        pluginInfo = getPaymentTransactionInfoPluginsIfNeeded(pluginApi, paymentModelDao, context);
-                                                                                                    }
-
+                                                                                                    final List<PaymentTransactionInfoPlugin> pluginInfo = pluginInfoByPaymentId.get(paymentModelDao.getId());
                                                                                                     return toPayment(paymentModelDao, transactionsModelDao, pluginInfo, tenantContext);
                                                                                                 }
                                                                                             });
@@ -201,6 +223,22 @@ public class PaymentProcessor extends ProcessorBase {
         return ImmutableList.<Payment>copyOf(transformedPayments);
     }
 
+    // Page of the account payments (without plugin info): only the transactions of that page are loaded
+    public List<Payment> getAccountPayments(final DateTime createdSince, final Long offset, final Long limit, final InternalTenantContext tenantContext) {
+        final List<PaymentModelDao> paymentsModelDao = paymentDao.getPaymentsForAccount(createdSince, offset, limit, tenantContext);
+        final Collection<UUID> paymentIds = new ArrayList<UUID>(paymentsModelDao.size());
+        for (final PaymentModelDao paymentModelDao : paymentsModelDao) {
+            paymentIds.add(paymentModelDao.getId());
+        }
+        final List<PaymentTransactionModelDao> transactionsModelDao = paymentDao.getTransactionsForPayments(paymentIds, tenantContext);
+
+        final List<Payment> payments = new ArrayList<Payment>(paymentsModelDao.size());
+        for (final PaymentModelDao paymentModelDao : paymentsModelDao) {
+            payments.add(toPayment(paymentModelDao, transactionsModelDao, null, tenantContext));
+        }
+        return payments;
+    }
+
     public Payment getPayment(final UUID paymentId, final boolean withPluginInfo, final Iterable<PluginProperty> properties, final TenantContext tenantContext, final InternalTenantContext internalTenantContext) throws PaymentApiException {
         final PaymentModelDao paymentModelDao = paymentDao.getPayment(paymentId, internalTenantContext);
         if (paymentModelDao == null) {
@@ -468,7 +506,7 @@ public class PaymentProcessor extends ProcessorBase {
         return Iterables.<PaymentTransactionModelDao>getLast(completionCandidates, null);
     }
 
-    // Used in bulk get API (getAccountPayments / getPayments)
+    // Used in bulk get API (getPayments)
     private List<PaymentTransactionInfoPlugin> getPaymentTransactionInfoPluginsIfNeeded(@Nullable final PaymentPluginApi pluginApi, final PaymentModelDao paymentModelDao, final TenantContext context) {
         if (pluginApi == null) {
             return null;
@@ -482,6 +520,91 @@ public class PaymentProcessor extends ProcessorBase {
         }
     }
 
+    // Used in getAccountPayments: plugin calls are dispatched concurrently on the plugin executor. Payments for which the plugin
+    // doesn't answer in time (or fails) are returned without plugin info, as if the plugin wasn't available.
+    // The plugin executor also serves the payment calls: a request has at most getPaymentPluginInfoMaxConcurrency calls queued or
+    // running on it, so that a large account cannot queue its plugin info calls ahead of live payments.
+    private Map<UUID, List<PaymentTransactionInfoPlugin>> getPaymentTransactionInfoPluginsConcurrently(final Iterable<PaymentModelDao> paymentsModelDao, final Map<UUID, PaymentPluginApi> paymentPluginByPaymentMethodId, final TenantContext context) {
+        final ExecutorService pluginExecutor = paymentExecutors.getPluginExecutorService();
+        final Semaphore permits = new Semaphore(Math.max(1, paymentConfig.getPaymentPluginInfoMaxConcurrency()));
+        // All calls share the same deadline: wait at most the plugin timeout overall
+        final long deadlineMillis = System.currentTimeMillis() + paymentConfig.getPaymentPluginTimeout().getMillis();
+
+        final Map<UUID, Future<List<PaymentTransactionInfoPlugin>>> futuresByPaymentId = new LinkedHashMap<UUID, Future<List<PaymentTransactionInfoPlugin>>>();
+        for (final PaymentModelDao paymentModelDao : paymentsModelDao) {
+            final PaymentPluginApi pluginApi = paymentPluginByPaymentMethodId.get(paymentModelDao.getPaymentMethodId());
+            if (pluginApi == null) {
+                continue;
+            }
+
+            final Future<List<PaymentTransactionInfoPlugin>> future = this.<List<PaymentTransactionInfoPlugin>>submitWithPermit(pluginExecutor, permits, deadlineMillis, "payment " + paymentModelDao.getId(), new Callable<List<PaymentTransactionInfoPlugin>>() {
+                @Override
+                public List<PaymentTransactionInfoPlugin> call() throws Exception {
+                    return getPaymentTransactionInfoPlugins(pluginApi, paymentModelDao, PLUGIN_PROPERTIES, context);
+                }
+            });
+            if (future != null) {
+                futuresByPaymentId.put(paymentModelDao.getId(), future);
+            }
+        }
+
+        final Map<UUID, List<PaymentTransactionInfoPlugin>> result = new HashMap<UUID, List<PaymentTransactionInfoPlugin>>();
+        for (final UUID paymentId : futuresByPaymentId.keySet()) {
+            final List<PaymentTransactionInfoPlugin> pluginInfo = getWithDeadline(futuresByPaymentId.get(paymentId), deadlineMillis, "payment " + paymentId);
+            if (pluginInfo != null) {
+                result.put(paymentId, pluginInfo);
+            }
+        }
+        return result;
+    }
+
+    // Returns null (no plugin info) if no permit could be acquired before the deadline
+    private <T> Future<T> submitWithPermit(final ExecutorService pluginExecutor, final Semaphore permits, final long deadlineMillis, final String description, final Callable<T> callable) {
+        try {
+            if (!permits.tryAcquire(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                log.warn("Timeout while waiting to retrieve plugin info for " + description);
+                return null;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting to retrieve plugin info for " + description);
+            return null;
+        }
+
+        try {
+            return pluginExecutor.submit(withRequestData(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return callable.call();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            }));
+        } catch (final RejectedExecutionException e) {
+            permits.release();
+            log.warn("Unable to retrieve plugin info for " + description + ": " + e.toString());
+            return null;
+        }
+    }
+
+    private <T> T getWithDeadline(final Future<T> future, final long deadlineMillis, final String description) {
+        try {
+            return future.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            log.warn("Timeout while retrieving plugin info for " + description);
+            future.cancel(true);
+        } catch (final ExecutionException e) {
+            log.warn("Unable to retrieve plugin info for " + description, e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while retrieving plugin info for " + description);
+            future.cancel(true);
+        }
+        return null;
+    }
+
     private List<PaymentTransactionInfoPlugin> getPaymentTransactionInfoPlugins(final PaymentPluginApi plugin, final PaymentModelDao paymentModelDao, final Iterable<PluginProperty> properties, final TenantContext context) throws PaymentApiException {
         try {
             return plugin.getPaymentInfo(paymentModelDao.getAccountId(), paymentModelDao.getId(), properties, context);
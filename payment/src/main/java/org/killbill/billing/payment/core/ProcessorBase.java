@@ -25,6 +25,7 @@ import java.util.concurrent.Callable;
 
 import javax.annotation.Nullable;
 
+import org.apache.shiro.util.ThreadContext;
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.account.api.Account;
@@ -36,9 +37,11 @@ import org.killbill.billing.osgi.api.OSGIServiceRegistration;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.dao.PaymentDao;
 import org.killbill.billing.payment.dao.PaymentMethodModelDao;
+import org.killbill.billing.payment.dispatcher.CallableWithRequestData;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
 import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.tag.TagInternalApi;
+import org.killbill.billing.util.UUIDs;
 import org.killbill.billing.util.api.TagApiException;
 import org.killbill.billing.util.callcontext.CallContext;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
@@ -51,8 +54,10 @@ import org.killbill.clock.Clock;
 import org.killbill.commons.locker.GlobalLock;
 import org.killbill.commons.locker.GlobalLocker;
 import org.killbill.commons.locker.LockFailedException;
+import org.killbill.commons.request.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
@@ -156,6 +161,16 @@ public abstract class ProcessorBase {
         return internalCallContextFactory.createCallContext(context);
     }
 
+    // Propagate the request data, security context and MDC of the caller to the plugin executor threads
+    protected <T> Callable<T> withRequestData(final Callable<T> delegate) {
+        return new CallableWithRequestData<T>(Request.getPerThreadRequestData(),
+                                              UUIDs.getRandom(),
+                                              ThreadContext.getSecurityManager(),
+                                              ThreadContext.getSubject(),
+                                              MDC.getCopyOfContextMap(),
+                                              delegate);
+    }
+
     public interface DispatcherCallback<PluginDispatcherReturnType, ExceptionType extends Exception> {
         public PluginDispatcherReturnType doOperation() throws ExceptionType;
     }
@@ -17,7 +17,13 @@
 
 package org.killbill.billing.payment.core.janitor;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.inject.Inject;
 
@@ -94,7 +100,24 @@ public class IncompletePaymentAttemptTask extends CompletionTaskBase<PaymentAtte
         if (incompleteAttempts.getTotalNbRecords() > 0) {
             log.info("Janitor AttemptCompletionTask start run: found {} incomplete attempts", incompleteAttempts.getTotalNbRecords());
         }
-        return incompleteAttempts;
+        final List<PaymentAttemptModelDao> attempts = ImmutableList.<PaymentAttemptModelDao>copyOf(incompleteAttempts);
+        prefetchAccountData(attempts);
+        return attempts;
+    }
+
+    // The attempts span many accounts: warm up the account caches used by doIteration with one query per tenant, instead of one per account
+    private void prefetchAccountData(final Iterable<PaymentAttemptModelDao> attempts) {
+        final Map<Long, Set<UUID>> accountIdsByTenantRecordId = new HashMap<Long, Set<UUID>>();
+        for (final PaymentAttemptModelDao attempt : attempts) {
+            if (accountIdsByTenantRecordId.get(attempt.getTenantRecordId()) == null) {
+                accountIdsByTenantRecordId.put(attempt.getTenantRecordId(), new HashSet<UUID>());
+            }
+            accountIdsByTenantRecordId.get(attempt.getTenantRecordId()).add(attempt.getAccountId());
+        }
+
+        for (final Entry<Long, Set<UUID>> entry : accountIdsByTenantRecordId.entrySet()) {
+            accountInternalApi.prefetchAccountDataByIds(entry.getValue(), internalCallContextFactory.createInternalTenantContext(entry.getKey(), null));
+        }
     }
 
     @Override
@@ -19,13 +19,19 @@ package org.killbill.billing.payment.core.janitor;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
+import org.killbill.billing.account.api.AccountApiException;
 import org.killbill.billing.account.api.AccountInternalApi;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
@@ -73,6 +79,8 @@ public class IncompletePaymentTransactionTask extends CompletionTaskBase<Payment
                                                                                                           .add(TransactionStatus.UNKNOWN)
                                                                                                           .build();
 
+    private final ConcurrentMap<String, Semaphore> pluginPermitsByPluginName = new ConcurrentHashMap<String, Semaphore>();
+
     @Inject
     public IncompletePaymentTransactionTask(final InternalCallContextFactory internalCallContextFactory, final PaymentConfig paymentConfig,
                                             final PaymentDao paymentDao, final Clock clock,
@@ -93,53 +101,142 @@ public class IncompletePaymentTransactionTask extends CompletionTaskBase<Payment
     }
 
     public void processNotification(final JanitorNotificationKey notificationKey, final UUID userToken, final Long accountRecordId, final long tenantRecordId) {
+        processNotifications(ImmutableList.<JanitorWorkItem>of(new JanitorWorkItem(notificationKey, userToken)), accountRecordId, tenantRecordId);
+    }
+
+    // All work items are expected to belong to the same account: they are processed under a single account lock
+    public void processNotifications(final List<JanitorWorkItem> workItems, final Long accountRecordId, final long tenantRecordId) {
 
         final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(tenantRecordId, accountRecordId);
         doJanitorOperationWithAccountLock(new JanitorIterationCallback() {
             @Override
             public Void doIteration() {
+                final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
 
                 // State may have changed since we originally retrieved with no lock
-                final PaymentTransactionModelDao rehydratedPaymentTransaction = paymentDao.getPaymentTransaction(notificationKey.getUuidKey(), internalTenantContext);
-
-                final TenantContext tenantContext = internalCallContextFactory.createTenantContext(internalTenantContext);
-                final PaymentModelDao payment = paymentDao.getPayment(rehydratedPaymentTransaction.getPaymentId(), internalTenantContext);
-
-                final PaymentMethodModelDao paymentMethod = paymentDao.getPaymentMethod(payment.getPaymentMethodId(), internalTenantContext);
-                final PaymentPluginApi paymentPluginApi = getPaymentPluginApi(payment, paymentMethod.getPluginName());
-
-                final PaymentTransactionInfoPlugin undefinedPaymentTransaction = new DefaultNoOpPaymentInfoPlugin(payment.getId(),
-                                                                                                                  rehydratedPaymentTransaction.getId(),
-                                                                                                                  rehydratedPaymentTransaction.getTransactionType(),
-                                                                                                                  rehydratedPaymentTransaction.getAmount(),
-                                                                                                                  rehydratedPaymentTransaction.getCurrency(),
-                                                                                                                  rehydratedPaymentTransaction.getCreatedDate(),
-                                                                                                                  rehydratedPaymentTransaction.getCreatedDate(),
-                                                                                                                  PaymentPluginStatus.UNDEFINED,
-                                                                                                                  null,
-                                                                                                                  null);
-                PaymentTransactionInfoPlugin paymentTransactionInfoPlugin;
-                try {
-                    final List<PaymentTransactionInfoPlugin> result = paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext);
-                    paymentTransactionInfoPlugin = Iterables.tryFind(result, new Predicate<PaymentTransactionInfoPlugin>() {
-                        @Override
-                        public boolean apply(final PaymentTransactionInfoPlugin input) {
-                            return input.getKbTransactionPaymentId().equals(rehydratedPaymentTransaction.getId());
-                        }
-                    }).or(new Supplier<PaymentTransactionInfoPlugin>() {
-                        @Override
-                        public PaymentTransactionInfoPlugin get() {
-                            return undefinedPaymentTransaction;
-                        }
-                    });
-                } catch (final Exception e) {
-                    paymentTransactionInfoPlugin = undefinedPaymentTransaction;
+                final JanitorPrefetchedData prefetchedData = prefetchData(workItems, internalTenantContext);
+
+                // Only ask the plugin once per payment, even if several of its transactions need to be fixed
+                final Map<UUID, List<PaymentTransactionInfoPlugin>> paymentInfoByPaymentId = new HashMap<UUID, List<PaymentTransactionInfoPlugin>>();
+                for (final JanitorWorkItem workItem : workItems) {
+                    final PaymentTransactionModelDao rehydratedPaymentTransaction = prefetchedData.getPaymentTransaction(workItem.getNotificationKey().getUuidKey());
+                    if (rehydratedPaymentTransaction == null) {
+                        log.warn("Janitor IncompletePaymentTransactionTask unable to retrieve paymentTransactionId='{}'", workItem.getNotificationKey().getUuidKey());
+                        continue;
+                    }
+
+                    final PaymentModelDao payment = prefetchedData.getPayment(rehydratedPaymentTransaction.getPaymentId());
+                    final PaymentMethodModelDao paymentMethod = prefetchedData.getPaymentMethod(payment.getPaymentMethodId());
+
+                    if (!paymentInfoByPaymentId.containsKey(payment.getId())) {
+                        paymentInfoByPaymentId.put(payment.getId(), getPaymentInfo(payment, paymentMethod.getPluginName(), tenantContext));
+                    }
+                    final PaymentTransactionInfoPlugin paymentTransactionInfoPlugin = findPaymentTransactionInfoPlugin(paymentInfoByPaymentId.get(payment.getId()), payment, rehydratedPaymentTransaction);
+
+                    updatePaymentAndTransactionIfNeeded(payment, workItem.getNotificationKey().getAttemptNumber(), workItem.getUserToken(), rehydratedPaymentTransaction, paymentTransactionInfoPlugin, internalTenantContext);
                 }
-                updatePaymentAndTransactionIfNeeded(payment, notificationKey.getAttemptNumber(), userToken, rehydratedPaymentTransaction, paymentTransactionInfoPlugin, internalTenantContext);
                 return null;
             }
         }, internalTenantContext);
+    }
+
+    private JanitorPrefetchedData prefetchData(final List<JanitorWorkItem> workItems, final InternalTenantContext internalTenantContext) {
+        if (workItems.size() == 1) {
+            // Point lookups are cheaper than loading the whole account
+            final PaymentTransactionModelDao paymentTransaction = paymentDao.getPaymentTransaction(workItems.get(0).getNotificationKey().getUuidKey(), internalTenantContext);
+            if (paymentTransaction == null) {
+                return new JanitorPrefetchedData(paymentDao, ImmutableList.<PaymentTransactionModelDao>of(), ImmutableList.<PaymentModelDao>of(), ImmutableList.<PaymentMethodModelDao>of(), internalTenantContext);
+            }
+            final PaymentModelDao payment = paymentDao.getPayment(paymentTransaction.getPaymentId(), internalTenantContext);
+            final PaymentMethodModelDao paymentMethod = paymentDao.getPaymentMethod(payment.getPaymentMethodId(), internalTenantContext);
+            return new JanitorPrefetchedData(paymentDao,
+                                             ImmutableList.<PaymentTransactionModelDao>of(paymentTransaction),
+                                             ImmutableList.<PaymentModelDao>of(payment),
+                                             paymentMethod == null ? ImmutableList.<PaymentMethodModelDao>of() : ImmutableList.<PaymentMethodModelDao>of(paymentMethod),
+                                             internalTenantContext);
+        } else {
+            final UUID accountId;
+            try {
+                accountId = accountInternalApi.getImmutableAccountDataByRecordId(internalTenantContext.getAccountRecordId(), internalTenantContext).getId();
+            } catch (final AccountApiException e) {
+                throw new IllegalStateException(String.format("Janitor IncompletePaymentTransactionTask cannot retrieve accountRecordId='%s'", internalTenantContext.getAccountRecordId()), e);
+            }
+            return new JanitorPrefetchedData(paymentDao,
+                                             paymentDao.getTransactionsForAccount(accountId, internalTenantContext),
+                                             paymentDao.getPaymentsForAccount(accountId, internalTenantContext),
+                                             paymentDao.getPaymentMethods(internalTenantContext),
+                                             internalTenantContext);
+        }
+    }
+
+    private List<PaymentTransactionInfoPlugin> getPaymentInfo(final PaymentModelDao payment, final String pluginName, final TenantContext tenantContext) {
+        final Semaphore pluginPermits = getPluginPermits(pluginName);
+        boolean acquired = false;
+        try {
+            pluginPermits.acquire();
+            acquired = true;
+
+            final PaymentPluginApi paymentPluginApi = getPaymentPluginApi(payment, pluginName);
+            return paymentPluginApi.getPaymentInfo(payment.getAccountId(), payment.getId(), ImmutableList.<PluginProperty>of(), tenantContext);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final Exception e) {
+            return null;
+        } finally {
+            if (acquired) {
+                pluginPermits.release();
+            }
+        }
+    }
+
+    private Semaphore getPluginPermits(final String pluginName) {
+        Semaphore pluginPermits = pluginPermitsByPluginName.get(pluginName);
+        if (pluginPermits == null) {
+            final Semaphore newPluginPermits = new Semaphore(paymentConfig.getJanitorMaxPluginConcurrency());
+            pluginPermits = pluginPermitsByPluginName.putIfAbsent(pluginName, newPluginPermits);
+            if (pluginPermits == null) {
+                pluginPermits = newPluginPermits;
+            }
+        }
+        return pluginPermits;
+    }
+
+    private PaymentTransactionInfoPlugin findPaymentTransactionInfoPlugin(@Nullable final List<PaymentTransactionInfoPlugin> result, final PaymentModelDao payment, final PaymentTransactionModelDao rehydratedPaymentTransaction) {
+        final PaymentTransactionInfoPlugin undefinedPaymentTransaction = new DefaultNoOpPaymentInfoPlugin(payment.getId(),
+                                                                                                          rehydratedPaymentTransaction.getId(),
+                                                                                                          rehydratedPaymentTransaction.getTransactionType(),
+                                                                                                          rehydratedPaymentTransaction.getAmount(),
+                                                                                                          rehydratedPaymentTransaction.getCurrency(),
+                                                                                                          rehydratedPaymentTransaction.getCreatedDate(),
+                                                                                                          rehydratedPaymentTransaction.getCreatedDate(),
+                                                                                                          PaymentPluginStatus.UNDEFINED,
+                                                                                                          null,
+                                                                                                          null);
+        if (result == null) {
+            return undefinedPaymentTransaction;
+        }
+        return Iterables.tryFind(result, new Predicate<PaymentTransactionInfoPlugin>() {
+            @Override
+            public boolean apply(final PaymentTransactionInfoPlugin input) {
+                return input.getKbTransactionPaymentId().equals(rehydratedPaymentTransaction.getId());
+            }
+        }).or(new Supplier<PaymentTransactionInfoPlugin>() {
+            @Override
+            public PaymentTransactionInfoPlugin get() {
+                return undefinedPaymentTransaction;
+            }
+        });
+    }
+
+    // Used when the janitor is stopped before a notification could be processed, so that it does not get lost
+    void rescheduleNotification(final JanitorWorkItem workItem, final Long accountRecordId, final Long tenantRecordId) throws IOException {
+        janitorQueue.recordFutureNotification(clock.getUTCNow(), workItem.getNotificationKey(), workItem.getUserToken(), accountRecordId, tenantRecordId);
+    }
 
+    // Used when the processing of a notification failed: it is retried as an unresolved transaction would be (bounded number of attempts, with backoff)
+    void rescheduleFailedNotification(final JanitorWorkItem workItem, final Long accountRecordId, final Long tenantRecordId) {
+        insertNewNotificationForUnresolvedTransactionIfNeeded(workItem.getNotificationKey().getUuidKey(), workItem.getNotificationKey().getAttemptNumber(), workItem.getUserToken(), accountRecordId, tenantRecordId);
     }
 
     @Override
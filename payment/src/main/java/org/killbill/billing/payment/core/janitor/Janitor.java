@@ -47,6 +47,8 @@ import org.killbill.notificationq.api.NotificationQueueService.NotificationQueue
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * Takes care of incomplete payment/transactions.
  */
@@ -69,12 +71,14 @@ public class Janitor {
     private final OSGIServiceRegistration<PaymentPluginApi> pluginRegistry;
     private final GlobalLocker locker;
     private final PluginControlPaymentAutomatonRunner pluginControlledPaymentAutomatonRunner;
+    private final MetricRegistry metricRegistry;
 
 
 
 
     private IncompletePaymentAttemptTask incompletePaymentAttemptTask;
     private IncompletePaymentTransactionTask incompletePaymentTransactionTask;
+    private JanitorPipeline janitorPipeline;
     private NotificationQueue janitorQueue;
     private ScheduledExecutorService janitorExecutor;
 
@@ -92,7 +96,8 @@ public class Janitor {
                    final GlobalLocker locker,
                    final PaymentConfig paymentConfig,
                    final NotificationQueueService notificationQueueService,
-                   final PaymentExecutors paymentExecutors) {
+                   final PaymentExecutors paymentExecutors,
+                   final MetricRegistry metricRegistry) {
         this.notificationQueueService = notificationQueueService;
         this.paymentExecutors = paymentExecutors;
         this.paymentConfig = paymentConfig;
@@ -105,7 +110,7 @@ public class Janitor {
         this.accountInternalApi = accountInternalApi;
         this.pluginRegistry = pluginRegistry;
         this.locker = locker;
-
+        this.metricRegistry = metricRegistry;
     }
 
     /*
@@ -141,7 +146,8 @@ public class Janitor {
                                                                                 }
                                                                                 final JanitorNotificationKey janitorKey = (JanitorNotificationKey) notificationKey;
                                                                                 if (janitorKey.getTaskName().equals(incompletePaymentTransactionTask.getClass().toString())) {
-                                                                                    incompletePaymentTransactionTask.processNotification(janitorKey, userToken, accountRecordId, tenantRecordId);
+                                                                                    // Acknowledged once handed over: the pipeline takes care of the failures (see JanitorPipeline)
+                                                                                    janitorPipeline.submit(janitorKey, userToken, accountRecordId, tenantRecordId);
                                                                                 }
                                                                             }
                                                                         }
@@ -171,6 +177,8 @@ public class Janitor {
 
         incompletePaymentTransactionTask.attachJanitorQueue(janitorQueue);
         incompletePaymentAttemptTask.attachJanitorQueue(janitorQueue);
+
+        this.janitorPipeline = new JanitorPipeline(incompletePaymentTransactionTask, paymentExecutors.getJanitorPipelineExecutorService(), metricRegistry);
     }
 
     public void start() {
@@ -213,6 +221,8 @@ public class Janitor {
                 log.warn("Janitor failed to complete termination within " + TERMINATION_TIMEOUT_SEC + "sec");
             }
 
+            janitorPipeline.stop();
+
             if (janitorQueue != null) {
                 janitorQueue.stopQueue();
                 notificationQueueService.deleteNotificationQueue(DefaultPaymentService.SERVICE_NAME, QUEUE_NAME);
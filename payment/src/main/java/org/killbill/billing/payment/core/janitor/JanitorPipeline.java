@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Dispatches the janitor notifications for incomplete transactions onto the (bounded) janitor thread pool.
+ * <p/>
+ * Notifications are grouped per account: while work for an account is waiting to be picked up, new notifications
+ * for that account are appended to it, so that they are all processed under a single account lock, with bulk loading
+ * of the account payment data.
+ * <p/>
+ * The notification handler doesn't wait for the work: the notification is acknowledged once handed over, so that
+ * the (few) notification queue threads keep feeding the pipeline. The pipeline tracks the completion of the work instead:
+ * <ul>
+ * <li>a failed work item is rescheduled following the janitor retry schedule (see {@link IncompletePaymentTransactionTask#rescheduleFailedNotification}),
+ * <li>work not picked up yet when the janitor stops is re-inserted into the janitor queue.
+ * </ul>
+ * Only the work accepted by the pipeline (bounded by the janitor queue size) is lost on a crash.
+ */
+public class JanitorPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(JanitorPipeline.class);
+
+    public static final String BACKLOG_METRIC_NAME = MetricRegistry.name(JanitorPipeline.class, "backlog");
+    public static final String PROCESSED_METRIC_NAME = MetricRegistry.name(JanitorPipeline.class, "processed");
+
+    private final IncompletePaymentTransactionTask incompletePaymentTransactionTask;
+    private final Executor janitorPipelineExecutor;
+    private final MetricRegistry metricRegistry;
+
+    private final ConcurrentMap<Long, AccountWork> pendingWorkByAccountRecordId = new ConcurrentHashMap<Long, AccountWork>();
+    private final AtomicLong backlog = new AtomicLong();
+    private final Meter processed;
+
+    private volatile boolean isStopped;
+
+    public JanitorPipeline(final IncompletePaymentTransactionTask incompletePaymentTransactionTask,
+                           final Executor janitorPipelineExecutor,
+                           final MetricRegistry metricRegistry) {
+        this.incompletePaymentTransactionTask = incompletePaymentTransactionTask;
+        this.janitorPipelineExecutor = janitorPipelineExecutor;
+        this.metricRegistry = metricRegistry;
+
+        metricRegistry.remove(BACKLOG_METRIC_NAME);
+        metricRegistry.register(BACKLOG_METRIC_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return backlog.get();
+            }
+        });
+        metricRegistry.remove(PROCESSED_METRIC_NAME);
+        this.processed = metricRegistry.meter(PROCESSED_METRIC_NAME);
+        this.isStopped = false;
+    }
+
+    // Returns the work the notification was added to
+    public AccountWork submit(final JanitorNotificationKey notificationKey, @Nullable final UUID userToken, @Nullable final Long accountRecordId, final Long tenantRecordId) {
+        final JanitorWorkItem workItem = new JanitorWorkItem(notificationKey, userToken);
+        backlog.incrementAndGet();
+        if (accountRecordId == null || isStopped) {
+            // Not expected, process it inline
+            final AccountWork inlineWork = new AccountWork(accountRecordId, tenantRecordId, workItem);
+            inlineWork.run();
+            return inlineWork;
+        }
+
+        while (true) {
+            final AccountWork existingWork = pendingWorkByAccountRecordId.get(accountRecordId);
+            if (existingWork != null && existingWork.add(workItem)) {
+                return existingWork;
+            }
+
+            final AccountWork newWork = new AccountWork(accountRecordId, tenantRecordId, workItem);
+            if (existingWork == null ? pendingWorkByAccountRecordId.putIfAbsent(accountRecordId, newWork) == null : pendingWorkByAccountRecordId.replace(accountRecordId, existingWork, newWork)) {
+                janitorPipelineExecutor.execute(newWork);
+                return newWork;
+            }
+        }
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    public void stop() {
+        isStopped = true;
+
+        // Re-insert the notifications which have not been picked up yet, they will be processed on restart
+        for (final AccountWork accountWork : pendingWorkByAccountRecordId.values()) {
+            final List<JanitorWorkItem> workItems = accountWork.drain();
+            if (workItems.isEmpty()) {
+                // Being processed, its waiters will be released by run()
+                continue;
+            }
+            try {
+                for (final JanitorWorkItem workItem : workItems) {
+                    incompletePaymentTransactionTask.rescheduleNotification(workItem, accountWork.accountRecordId, accountWork.tenantRecordId);
+                }
+            } catch (final IOException e) {
+                log.warn(String.format("Janitor failed to reschedule notifications for accountRecordId='%s'", accountWork.accountRecordId), e);
+            } finally {
+                backlog.addAndGet(-workItems.size());
+                accountWork.completed.countDown();
+            }
+        }
+        pendingWorkByAccountRecordId.clear();
+
+        metricRegistry.remove(BACKLOG_METRIC_NAME);
+        metricRegistry.remove(PROCESSED_METRIC_NAME);
+    }
+
+    final class AccountWork implements Runnable {
+
+        private final Long accountRecordId;
+        private final Long tenantRecordId;
+        private final List<JanitorWorkItem> workItems = new LinkedList<JanitorWorkItem>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        // Once drained, no new work item can be added (a new AccountWork needs to be scheduled)
+        private boolean isDrained;
+
+        private AccountWork(final Long accountRecordId, final Long tenantRecordId, final JanitorWorkItem workItem) {
+            this.accountRecordId = accountRecordId;
+            this.tenantRecordId = tenantRecordId;
+            this.workItems.add(workItem);
+            this.isDrained = false;
+        }
+
+        private synchronized boolean add(final JanitorWorkItem workItem) {
+            if (isDrained) {
+                return false;
+            }
+            workItems.add(workItem);
+            return true;
+        }
+
+        private synchronized List<JanitorWorkItem> drain() {
+            if (isDrained) {
+                return ImmutableList.<JanitorWorkItem>of();
+            }
+            isDrained = true;
+            return ImmutableList.<JanitorWorkItem>copyOf(workItems);
+        }
+
+        // Returns false if the work didn't complete in time
+        boolean awaitCompletion(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return completed.await(timeout, unit);
+        }
+
+        @Override
+        public void run() {
+            final List<JanitorWorkItem> items = drain();
+            if (accountRecordId != null) {
+                pendingWorkByAccountRecordId.remove(accountRecordId, this);
+            }
+            if (items.isEmpty()) {
+                // Already rescheduled by stop()
+                return;
+            }
+
+            try {
+                incompletePaymentTransactionTask.processNotifications(items, accountRecordId, tenantRecordId);
+            } catch (final RuntimeException e) {
+                log.warn(String.format("Janitor failed to process notifications for accountRecordId='%s', rescheduling them", accountRecordId), e);
+                for (final JanitorWorkItem workItem : items) {
+                    incompletePaymentTransactionTask.rescheduleFailedNotification(workItem, accountRecordId, tenantRecordId);
+                }
+            } finally {
+                backlog.addAndGet(-items.size());
+                processed.mark(items.size());
+                completed.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.payment.dao.PaymentDao;
+import org.killbill.billing.payment.dao.PaymentMethodModelDao;
+import org.killbill.billing.payment.dao.PaymentModelDao;
+import org.killbill.billing.payment.dao.PaymentTransactionModelDao;
+
+/**
+ * Transactions, payments and payment methods loaded in bulk for a batch of janitor notifications of a given account.
+ * Lookups fall back to the database for objects which were not prefetched (e.g. deleted payment methods).
+ */
+class JanitorPrefetchedData {
+
+    private final PaymentDao paymentDao;
+    private final InternalTenantContext internalTenantContext;
+
+    private final Map<UUID, PaymentTransactionModelDao> paymentTransactionsById = new HashMap<UUID, PaymentTransactionModelDao>();
+    private final Map<UUID, PaymentModelDao> paymentsById = new HashMap<UUID, PaymentModelDao>();
+    private final Map<UUID, PaymentMethodModelDao> paymentMethodsById = new HashMap<UUID, PaymentMethodModelDao>();
+
+    JanitorPrefetchedData(final PaymentDao paymentDao,
+                          final Iterable<PaymentTransactionModelDao> paymentTransactions,
+                          final Iterable<PaymentModelDao> payments,
+                          final Iterable<PaymentMethodModelDao> paymentMethods,
+                          final InternalTenantContext internalTenantContext) {
+        this.paymentDao = paymentDao;
+        this.internalTenantContext = internalTenantContext;
+        for (final PaymentTransactionModelDao paymentTransaction : paymentTransactions) {
+            paymentTransactionsById.put(paymentTransaction.getId(), paymentTransaction);
+        }
+        for (final PaymentModelDao payment : payments) {
+            paymentsById.put(payment.getId(), payment);
+        }
+        for (final PaymentMethodModelDao paymentMethod : paymentMethods) {
+            paymentMethodsById.put(paymentMethod.getId(), paymentMethod);
+        }
+    }
+
+    PaymentTransactionModelDao getPaymentTransaction(final UUID paymentTransactionId) {
+        return paymentTransactionsById.get(paymentTransactionId);
+    }
+
+    PaymentModelDao getPayment(final UUID paymentId) {
+        PaymentModelDao payment = paymentsById.get(paymentId);
+        if (payment == null) {
+            payment = paymentDao.getPayment(paymentId, internalTenantContext);
+            paymentsById.put(paymentId, payment);
+        }
+        return payment;
+    }
+
+    PaymentMethodModelDao getPaymentMethod(final UUID paymentMethodId) {
+        PaymentMethodModelDao paymentMethod = paymentMethodsById.get(paymentMethodId);
+        if (paymentMethod == null) {
+            paymentMethod = paymentDao.getPaymentMethodIncludedDeleted(paymentMethodId, internalTenantContext);
+            paymentMethodsById.put(paymentMethodId, paymentMethod);
+        }
+        return paymentMethod;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * A janitor notification waiting to be processed by the janitor pipeline.
+ */
+public class JanitorWorkItem {
+
+    private final JanitorNotificationKey notificationKey;
+    private final UUID userToken;
+
+    public JanitorWorkItem(final JanitorNotificationKey notificationKey, @Nullable final UUID userToken) {
+        this.notificationKey = notificationKey;
+        this.userToken = userToken;
+    }
+
+    public JanitorNotificationKey getNotificationKey() {
+        return notificationKey;
+    }
+
+    public UUID getUserToken() {
+        return userToken;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.reconciliation;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.account.api.AccountInternalApi;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.payment.api.PaymentApiException;
+import org.killbill.billing.payment.core.PaymentMethodProcessor;
+import org.killbill.billing.payment.dao.PaymentDao;
+import org.killbill.billing.payment.glue.DefaultPaymentService;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.config.PaymentConfig;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationEventWithMetadata;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Reconciles the payment methods of all the accounts of a tenant with a given plugin, a page of accounts at a time.
+ * <p/>
+ * Each page is a notification carrying the cursor (record id of the last account processed) and the counters so far:
+ * the next page is only recorded once the current one has been reconciled, so the job resumes where it left off after a restart.
+ * <p/>
+ * A page which cannot be reconciled at all (plugin not registered, unexpected error) is retried later, at most
+ * {@link #MAX_PAGE_RETRIES} times: the job is then abandoned if the plugin is still missing, or moves on to the next page
+ * with the accounts of that page counted as failures.
+ */
+public class PaymentMethodsReconciliation {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentMethodsReconciliation.class);
+
+    public static final String QUEUE_NAME = "payment-methods-reconciliation";
+
+    private static final String RECONCILIATION_USER_NAME = "PaymentMethodsReconciliation";
+    private static final Period PAGE_RETRY_DELAY = Period.minutes(5);
+    // One hour at PAGE_RETRY_DELAY
+    static final int MAX_PAGE_RETRIES = 12;
+
+    private static final String RECONCILED_ACCOUNTS_METRIC_NAME = MetricRegistry.name(PaymentMethodsReconciliation.class, "reconciledAccounts");
+    private static final String FAILED_ACCOUNTS_METRIC_NAME = MetricRegistry.name(PaymentMethodsReconciliation.class, "failedAccounts");
+
+    private final NotificationQueueService notificationQueueService;
+    private final PaymentMethodProcessor paymentMethodProcessor;
+    private final PaymentDao paymentDao;
+    private final AccountInternalApi accountInternalApi;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final PaymentConfig paymentConfig;
+    private final Clock clock;
+    private final MetricRegistry metricRegistry;
+
+    private NotificationQueue reconciliationQueue;
+    private Meter reconciledAccounts;
+    private Meter failedAccounts;
+
+    @Inject
+    public PaymentMethodsReconciliation(final NotificationQueueService notificationQueueService,
+                                        final PaymentMethodProcessor paymentMethodProcessor,
+                                        final PaymentDao paymentDao,
+                                        final AccountInternalApi accountInternalApi,
+                                        final InternalCallContextFactory internalCallContextFactory,
+                                        final PaymentConfig paymentConfig,
+                                        final Clock clock,
+                                        final MetricRegistry metricRegistry) {
+        this.notificationQueueService = notificationQueueService;
+        this.paymentMethodProcessor = paymentMethodProcessor;
+        this.paymentDao = paymentDao;
+        this.accountInternalApi = accountInternalApi;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.paymentConfig = paymentConfig;
+        this.clock = clock;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public void initialize() throws NotificationQueueAlreadyExists {
+        reconciliationQueue = notificationQueueService.createNotificationQueue(DefaultPaymentService.SERVICE_NAME,
+                                                                               QUEUE_NAME,
+                                                                               new NotificationQueueHandler() {
+                                                                                   @Override
+                                                                                   public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                                       if (!(notificationKey instanceof PaymentMethodsReconciliationNotificationKey)) {
+                                                                                           log.error("PaymentMethodsReconciliation received an unexpected event className='{}'", notificationKey.getClass());
+                                                                                           return;
+                                                                                       }
+                                                                                       reconcilePage((PaymentMethodsReconciliationNotificationKey) notificationKey, userToken, tenantRecordId);
+                                                                                   }
+                                                                               }
+                                                                              );
+
+        reconciledAccounts = metricRegistry.meter(RECONCILED_ACCOUNTS_METRIC_NAME);
+        failedAccounts = metricRegistry.meter(FAILED_ACCOUNTS_METRIC_NAME);
+    }
+
+    public void start() {
+        reconciliationQueue.startQueue();
+    }
+
+    public void stop() throws NoSuchNotificationQueue {
+        if (reconciliationQueue != null) {
+            reconciliationQueue.stopQueue();
+            notificationQueueService.deleteNotificationQueue(DefaultPaymentService.SERVICE_NAME, QUEUE_NAME);
+        }
+        metricRegistry.remove(RECONCILED_ACCOUNTS_METRIC_NAME);
+        metricRegistry.remove(FAILED_ACCOUNTS_METRIC_NAME);
+    }
+
+    /**
+     * Schedule the reconciliation of all the accounts of the tenant with that plugin. This is a no-op if a
+     * reconciliation is already in progress for that plugin in the tenant.
+     *
+     * @param pluginName the name of the plugin
+     * @param context    the tenant context
+     */
+    public void schedule(final String pluginName, final InternalCallContext context) {
+        for (final NotificationEventWithMetadata<NotificationEvent> notification : reconciliationQueue.getFutureOrInProcessingNotificationForSearchKey2(context.getTenantRecordId())) {
+            if (notification.getEvent() instanceof PaymentMethodsReconciliationNotificationKey &&
+                pluginName.equals(((PaymentMethodsReconciliationNotificationKey) notification.getEvent()).getPluginName())) {
+                log.info("Payment methods reconciliation for plugin {} is already in progress: {}", pluginName, notification.getEvent());
+                return;
+            }
+        }
+
+        final DateTime now = clock.getUTCNow();
+        final PaymentMethodsReconciliationNotificationKey key = new PaymentMethodsReconciliationNotificationKey(pluginName, 0L, 0L, 0L, now.getMillis(), 0);
+        log.info("Scheduling payment methods reconciliation for plugin {}", pluginName);
+        recordNotification(key, now, context.getUserToken(), context.getTenantRecordId());
+    }
+
+    private void reconcilePage(final PaymentMethodsReconciliationNotificationKey key, final UUID userToken, final Long tenantRecordId) {
+        final String pluginName = key.getPluginName();
+        final InternalCallContext context = internalCallContextFactory.createInternalCallContext(tenantRecordId, null, RECONCILIATION_USER_NAME, CallOrigin.INTERNAL, UserType.SYSTEM, userToken);
+
+        final List<Long> accountRecordIds = paymentDao.getAccountRecordIdsWithPaymentMethods(pluginName, key.getFromAccountRecordId(), (long) paymentConfig.getPaymentMethodsReconciliationPageSize(), context);
+        if (accountRecordIds.isEmpty()) {
+            log.info("Payment methods reconciliation for plugin {} completed: {} accounts reconciled, {} failures, in {} ms",
+                     pluginName, key.getNbAccountsReconciled(), key.getNbAccountsFailed(), clock.getUTCNow().getMillis() - key.getStartTimeMillis());
+            return;
+        }
+
+        // Single query for the page, which also warms up the account caches used when building the per-account contexts
+        final List<Account> accounts = accountInternalApi.getAccountsByRecordIds(accountRecordIds, context);
+        long nbAccountsFailed = accountRecordIds.size() - accounts.size();
+        if (nbAccountsFailed > 0) {
+            log.warn("Payment methods reconciliation for plugin {}: unable to retrieve {} accounts out of recordIds {}", pluginName, nbAccountsFailed, accountRecordIds);
+        }
+
+        try {
+            nbAccountsFailed += paymentMethodProcessor.refreshPaymentMethods(pluginName,
+                                                                             accounts,
+                                                                             paymentConfig.getPaymentMethodsReconciliationMaxPluginConcurrency(),
+                                                                             internalCallContextFactory.createCallContext(context)).size();
+        } catch (final PaymentApiException e) {
+            // The plugin isn't registered (e.g. it hasn't been started yet after a restart): try the same page again later
+            if (key.getNbRetries() >= MAX_PAGE_RETRIES) {
+                log.warn("Payment methods reconciliation for plugin {} abandoned: plugin not available after {} retries, {} accounts reconciled, {} failures",
+                         pluginName, key.getNbRetries(), key.getNbAccountsReconciled(), key.getNbAccountsFailed());
+                return;
+            }
+            log.warn("Payment methods reconciliation for plugin {}: plugin not available, retrying in {}", pluginName, PAGE_RETRY_DELAY);
+            retryPage(key, userToken, tenantRecordId);
+            return;
+        } catch (final RuntimeException e) {
+            if (key.getNbRetries() < MAX_PAGE_RETRIES) {
+                log.warn("Payment methods reconciliation for plugin " + pluginName + ": unable to reconcile accounts with recordIds " + accountRecordIds + ", retrying in " + PAGE_RETRY_DELAY, e);
+                retryPage(key, userToken, tenantRecordId);
+                return;
+            }
+            log.warn("Payment methods reconciliation for plugin " + pluginName + ": unable to reconcile accounts with recordIds " + accountRecordIds + " after " + key.getNbRetries() + " retries, skipping them", e);
+            nbAccountsFailed += accounts.size();
+        }
+
+        final long nbAccountsReconciled = accountRecordIds.size() - nbAccountsFailed;
+        reconciledAccounts.mark(nbAccountsReconciled);
+        failedAccounts.mark(nbAccountsFailed);
+
+        final PaymentMethodsReconciliationNotificationKey nextKey = new PaymentMethodsReconciliationNotificationKey(pluginName,
+                                                                                                                    accountRecordIds.get(accountRecordIds.size() - 1),
+                                                                                                                    key.getNbAccountsReconciled() + nbAccountsReconciled,
+                                                                                                                    key.getNbAccountsFailed() + nbAccountsFailed,
+                                                                                                                    key.getStartTimeMillis(),
+                                                                                                                    0);
+        final DateTime now = clock.getUTCNow();
+        final long elapsedMillis = Math.max(1, now.getMillis() - key.getStartTimeMillis());
+        log.info("Payment methods reconciliation for plugin {} in progress: {} accounts reconciled, {} failures ({} accounts/s)",
+                 pluginName, nextKey.getNbAccountsReconciled(), nextKey.getNbAccountsFailed(), (nextKey.getNbAccountsReconciled() + nextKey.getNbAccountsFailed()) * 1000 / elapsedMillis);
+
+        recordNotification(nextKey, now, userToken, tenantRecordId);
+    }
+
+    private void retryPage(final PaymentMethodsReconciliationNotificationKey key, final UUID userToken, final Long tenantRecordId) {
+        final PaymentMethodsReconciliationNotificationKey retryKey = new PaymentMethodsReconciliationNotificationKey(key.getPluginName(),
+                                                                                                                     key.getFromAccountRecordId(),
+                                                                                                                     key.getNbAccountsReconciled(),
+                                                                                                                     key.getNbAccountsFailed(),
+                                                                                                                     key.getStartTimeMillis(),
+                                                                                                                     key.getNbRetries() + 1);
+        recordNotification(retryKey, clock.getUTCNow().plus(PAGE_RETRY_DELAY), userToken, tenantRecordId);
+    }
+
+    private void recordNotification(final PaymentMethodsReconciliationNotificationKey key, final DateTime effectiveDate, final UUID userToken, final Long tenantRecordId) {
+        try {
+            // Tenant-level job: no account record id (search_key1 is not nullable)
+            reconciliationQueue.recordFutureNotification(effectiveDate, key, userToken, 0L, tenantRecordId);
+        } catch (final IOException e) {
+            log.warn("Payment methods reconciliation for plugin {}: failed to record notification {}: {}", key.getPluginName(), key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.reconciliation;
+
+import org.killbill.notificationq.api.NotificationEvent;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class PaymentMethodsReconciliationNotificationKey implements NotificationEvent {
+
+    private final String pluginName;
+    private final Long fromAccountRecordId;
+    private final Long nbAccountsReconciled;
+    private final Long nbAccountsFailed;
+    private final Long startTimeMillis;
+    private final Integer nbRetries;
+
+    @JsonCreator
+    public PaymentMethodsReconciliationNotificationKey(@JsonProperty("pluginName") final String pluginName,
+                                                       @JsonProperty("fromAccountRecordId") final Long fromAccountRecordId,
+                                                       @JsonProperty("nbAccountsReconciled") final Long nbAccountsReconciled,
+                                                       @JsonProperty("nbAccountsFailed") final Long nbAccountsFailed,
+                                                       @JsonProperty("startTimeMillis") final Long startTimeMillis,
+                                                       @JsonProperty("nbRetries") final Integer nbRetries) {
+        this.pluginName = pluginName;
+        this.fromAccountRecordId = fromAccountRecordId;
+        this.nbAccountsReconciled = nbAccountsReconciled;
+        this.nbAccountsFailed = nbAccountsFailed;
+        this.startTimeMillis = startTimeMillis;
+        // Absent from the notifications recorded by previous versions
+        this.nbRetries = nbRetries == null ? 0 : nbRetries;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    // Record id of the last account processed so far
+    public Long getFromAccountRecordId() {
+        return fromAccountRecordId;
+    }
+
+    public Long getNbAccountsReconciled() {
+        return nbAccountsReconciled;
+    }
+
+    public Long getNbAccountsFailed() {
+        return nbAccountsFailed;
+    }
+
+    public Long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    // Number of times the current page has been retried
+    public Integer getNbRetries() {
+        return nbRetries;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PaymentMethodsReconciliationNotificationKey{");
+        sb.append("pluginName='").append(pluginName).append('\'');
+        sb.append(", fromAccountRecordId=").append(fromAccountRecordId);
+        sb.append(", nbAccountsReconciled=").append(nbAccountsReconciled);
+        sb.append(", nbAccountsFailed=").append(nbAccountsFailed);
+        sb.append(", startTimeMillis=").append(startTimeMillis);
+        sb.append(", nbRetries=").append(nbRetries);
+        sb.append('}');
+        return sb.toString();
+    }
+}
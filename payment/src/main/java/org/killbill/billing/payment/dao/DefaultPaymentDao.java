@@ -19,10 +19,13 @@
 package org.killbill.billing.payment.dao;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -47,6 +50,7 @@ import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.billing.util.entity.Pagination;
+import org.killbill.billing.util.entity.dao.DBRouter;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper;
 import org.killbill.billing.util.entity.dao.DefaultPaginationSqlDaoHelper.PaginationIteratorBuilder;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
@@ -55,7 +59,6 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
 import org.killbill.clock.Clock;
-import org.skife.jdbi.v2.IDBI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,9 +79,9 @@ public class DefaultPaymentDao implements PaymentDao {
     private final Clock clock;
 
     @Inject
-    public DefaultPaymentDao(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
+    public DefaultPaymentDao(final DBRouter dbRouter, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
                              final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory, final PersistentBus eventBus) {
-        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
+        this.transactionalSqlDao = new EntitySqlDaoTransactionalJdbiWrapper(dbRouter, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
         this.paginationHelper = new DefaultPaginationSqlDaoHelper(transactionalSqlDao);
         this.eventBus = eventBus;
         this.clock = clock;
@@ -360,6 +363,17 @@ public class DefaultPaymentDao implements PaymentDao {
         });
     }
 
+    @Override
+    public List<PaymentModelDao> getPaymentsForAccount(final DateTime createdSince, final Long offset, final Long limit, final InternalTenantContext context) {
+        Preconditions.checkArgument(context.getAccountRecordId() != null);
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<PaymentModelDao>>() {
+            @Override
+            public List<PaymentModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(PaymentSqlDao.class).getByAccountRecordIdCreatedSince(createdSince.toDate(), offset, limit, context);
+            }
+        });
+    }
+
     @Override
     public List<PaymentModelDao> getPaymentsByStatesAcrossTenants(final String[] states, final DateTime createdBeforeDate, final DateTime createdAfterDate, final int limit) {
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<PaymentModelDao>>() {
@@ -381,6 +395,24 @@ public class DefaultPaymentDao implements PaymentDao {
         });
     }
 
+    @Override
+    public List<PaymentTransactionModelDao> getTransactionsForPayments(final Collection<UUID> paymentIds, final InternalTenantContext context) {
+        if (paymentIds.isEmpty()) {
+            return ImmutableList.<PaymentTransactionModelDao>of();
+        }
+
+        final Collection<String> paymentIdsAsStrings = new ArrayList<String>(paymentIds.size());
+        for (final UUID paymentId : paymentIds) {
+            paymentIdsAsStrings.add(paymentId.toString());
+        }
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<PaymentTransactionModelDao>>() {
+            @Override
+            public List<PaymentTransactionModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(TransactionSqlDao.class).getByPaymentIds(paymentIdsAsStrings, context);
+            }
+        });
+    }
+
     @Override
     public List<PaymentTransactionModelDao> getTransactionsForPayment(final UUID paymentId, final InternalTenantContext context) {
         return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<PaymentTransactionModelDao>>() {
@@ -524,62 +556,91 @@ public class DefaultPaymentDao implements PaymentDao {
 
             @Override
             public List<PaymentMethodModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return refreshPaymentMethodsInTransaction(entitySqlDaoWrapperFactory, pluginName, newPaymentMethods, context);
+            }
+        });
+    }
 
-                final InternalCallContext contextWithUpdatedDate = contextWithUpdatedDate(context);
+    @Override
+    public void refreshPaymentMethodsForAccounts(final String pluginName, final Map<UUID, List<PaymentMethodModelDao>> newPaymentMethodsByAccountId, final Map<UUID, InternalCallContext> contextByAccountId) {
+        transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<Void>() {
 
-                final PaymentMethodSqlDao transactional = entitySqlDaoWrapperFactory.become(PaymentMethodSqlDao.class);
-                // Look at all payment methods, including deleted ones. We assume that newPaymentMethods (payment methods returned by the plugin)
-                // is the full set of non-deleted payment methods in the plugin. If a payment method was marked as deleted on our side,
-                // but is still existing in the plugin, we will un-delete it.
-                final List<PaymentMethodModelDao> allPaymentMethodsForAccount = transactional.getForAccountIncludedDelete(contextWithUpdatedDate);
-
-                // Consider only the payment methods for the plugin we are refreshing
-                final Collection<PaymentMethodModelDao> existingPaymentMethods = Collections2.filter(allPaymentMethodsForAccount,
-                                                                                                     new Predicate<PaymentMethodModelDao>() {
-                                                                                                         @Override
-                                                                                                         public boolean apply(final PaymentMethodModelDao paymentMethod) {
-                                                                                                             return pluginName.equals(paymentMethod.getPluginName());
-                                                                                                         }
-                                                                                                     }
-                                                                                                    );
-
-                for (final PaymentMethodModelDao finalPaymentMethod : newPaymentMethods) {
-                    PaymentMethodModelDao foundExistingPaymentMethod = null;
-                    for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
-                        if (existingPaymentMethod.equals(finalPaymentMethod)) {
-                            // We already have it - nothing to do
-                            foundExistingPaymentMethod = existingPaymentMethod;
-                            break;
-                        } else if (existingPaymentMethod.equalsButActive(finalPaymentMethod)) {
-                            // We already have it but its status has changed - update it accordingly
-                            undeletedPaymentMethodInTransaction(entitySqlDaoWrapperFactory, existingPaymentMethod.getId(), contextWithUpdatedDate);
-                            foundExistingPaymentMethod = existingPaymentMethod;
-                            break;
-                        }
-                        // Otherwise, we don't have it
-                    }
-
-                    if (foundExistingPaymentMethod == null) {
-                        insertPaymentMethodInTransaction(entitySqlDaoWrapperFactory, finalPaymentMethod, contextWithUpdatedDate);
-                    } else {
-                        existingPaymentMethods.remove(foundExistingPaymentMethod);
-                    }
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                for (final Entry<UUID, List<PaymentMethodModelDao>> entry : newPaymentMethodsByAccountId.entrySet()) {
+                    refreshPaymentMethodsInTransaction(entitySqlDaoWrapperFactory, pluginName, entry.getValue(), contextByAccountId.get(entry.getKey()));
                 }
+                return null;
+            }
+        });
+    }
 
-                // Finally, all payment methods left in the existingPaymentMethods should be marked as deleted
-                for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
-                    // Need to verify if this is active -- failure to do so would provide an exception down the stream because
-                    // the logic around audit/history will use getById to retrieve the entity and that method would not return
-                    // a marked as deleted object
-                    if (existingPaymentMethod.isActive()) {
-                        deletedPaymentMethodInTransaction(entitySqlDaoWrapperFactory, existingPaymentMethod.getId(), contextWithUpdatedDate);
-                    }
-                }
-                return transactional.getForAccount(contextWithUpdatedDate);
+    @Override
+    public List<Long> getAccountRecordIdsWithPaymentMethods(final String pluginName, final Long fromAccountRecordId, final Long limit, final InternalTenantContext context) {
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<Long>>() {
+
+            @Override
+            public List<Long> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(PaymentMethodSqlDao.class).getAccountRecordIdsByPluginName(pluginName, fromAccountRecordId, limit, context);
             }
         });
     }
 
+    private List<PaymentMethodModelDao> refreshPaymentMethodsInTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final String pluginName,
+                                                                           final List<PaymentMethodModelDao> newPaymentMethods, final InternalCallContext context) {
+        final InternalCallContext contextWithUpdatedDate = contextWithUpdatedDate(context);
+
+        final PaymentMethodSqlDao transactional = entitySqlDaoWrapperFactory.become(PaymentMethodSqlDao.class);
+        // Look at all payment methods, including deleted ones. We assume that newPaymentMethods (payment methods returned by the plugin)
+        // is the full set of non-deleted payment methods in the plugin. If a payment method was marked as deleted on our side,
+        // but is still existing in the plugin, we will un-delete it.
+        final List<PaymentMethodModelDao> allPaymentMethodsForAccount = transactional.getForAccountIncludedDelete(contextWithUpdatedDate);
+
+        // Consider only the payment methods for the plugin we are refreshing
+        final Collection<PaymentMethodModelDao> existingPaymentMethods = Collections2.filter(allPaymentMethodsForAccount,
+                                                                                             new Predicate<PaymentMethodModelDao>() {
+                                                                                                 @Override
+                                                                                                 public boolean apply(final PaymentMethodModelDao paymentMethod) {
+                                                                                                     return pluginName.equals(paymentMethod.getPluginName());
+                                                                                                 }
+                                                                                             }
+                                                                                            );
+
+        for (final PaymentMethodModelDao finalPaymentMethod : newPaymentMethods) {
+            PaymentMethodModelDao foundExistingPaymentMethod = null;
+            for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
+                if (existingPaymentMethod.equals(finalPaymentMethod)) {
+                    // We already have it - nothing to do
+                    foundExistingPaymentMethod = existingPaymentMethod;
+                    break;
+                } else if (existingPaymentMethod.equalsButActive(finalPaymentMethod)) {
+                    // We already have it but its status has changed - update it accordingly
+                    undeletedPaymentMethodInTransaction(entitySqlDaoWrapperFactory, existingPaymentMethod.getId(), contextWithUpdatedDate);
+                    foundExistingPaymentMethod = existingPaymentMethod;
+                    break;
+                }
+                // Otherwise, we don't have it
+            }
+
+            if (foundExistingPaymentMethod == null) {
+                insertPaymentMethodInTransaction(entitySqlDaoWrapperFactory, finalPaymentMethod, contextWithUpdatedDate);
+            } else {
+                existingPaymentMethods.remove(foundExistingPaymentMethod);
+            }
+        }
+
+        // Finally, all payment methods left in the existingPaymentMethods should be marked as deleted
+        for (final PaymentMethodModelDao existingPaymentMethod : existingPaymentMethods) {
+            // Need to verify if this is active -- failure to do so would provide an exception down the stream because
+            // the logic around audit/history will use getById to retrieve the entity and that method would not return
+            // a marked as deleted object
+            if (existingPaymentMethod.isActive()) {
+                deletedPaymentMethodInTransaction(entitySqlDaoWrapperFactory, existingPaymentMethod.getId(), contextWithUpdatedDate);
+            }
+        }
+        return transactional.getForAccount(contextWithUpdatedDate);
+    }
+
     private void postPaymentEventFromTransaction(final UUID accountId,
                                                  final TransactionStatus transactionStatus,
                                                  final TransactionType transactionType,
@@ -17,7 +17,9 @@
 package org.killbill.billing.payment.dao;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.joda.time.DateTime;
@@ -66,12 +68,16 @@ public interface PaymentDao {
 
     public List<PaymentModelDao> getPaymentsForAccount(UUID accountId, InternalTenantContext context);
 
+    public List<PaymentModelDao> getPaymentsForAccount(DateTime createdSince, Long offset, Long limit, InternalTenantContext context);
+
     public List<PaymentModelDao> getPaymentsByStatesAcrossTenants(String[] states, DateTime createdBeforeDate, DateTime createdAfterDate, int limit);
 
     public List<PaymentTransactionModelDao> getTransactionsForAccount(UUID accountId, InternalTenantContext context);
 
     public List<PaymentTransactionModelDao> getTransactionsForPayment(UUID paymentId, InternalTenantContext context);
 
+    public List<PaymentTransactionModelDao> getTransactionsForPayments(Collection<UUID> paymentIds, InternalTenantContext context);
+
     public PaymentAttemptModelDao getPaymentAttempt(UUID attemptId, InternalTenantContext context);
 
     public PaymentMethodModelDao insertPaymentMethod(PaymentMethodModelDao paymentMethod, InternalCallContext context);
@@ -93,4 +99,10 @@ public interface PaymentDao {
     public void deletedPaymentMethod(UUID paymentMethodId, InternalCallContext context);
 
     public List<PaymentMethodModelDao> refreshPaymentMethods(String pluginName, List<PaymentMethodModelDao> paymentMethods, InternalCallContext context);
+
+    // Refresh the payment methods of several accounts in a single transaction
+    public void refreshPaymentMethodsForAccounts(String pluginName, Map<UUID, List<PaymentMethodModelDao>> paymentMethodsByAccountId, Map<UUID, InternalCallContext> contextByAccountId);
+
+    // Record ids of the accounts having (or having had) payment methods for that plugin, in order
+    public List<Long> getAccountRecordIdsWithPaymentMethods(String pluginName, Long fromAccountRecordId, Long limit, InternalTenantContext context);
 }
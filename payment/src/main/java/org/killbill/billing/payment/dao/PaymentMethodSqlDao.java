@@ -75,4 +75,11 @@ public interface PaymentMethodSqlDao extends EntitySqlDao<PaymentMethodModelDao,
     public Long getCountByPluginName(@Bind("pluginName") final String pluginName,
                                      @BindBean final InternalTenantContext context);
 
+    // Includes the accounts whose payment methods for that plugin have all been deleted
+    @SqlQuery
+    public List<Long> getAccountRecordIdsByPluginName(@Bind("pluginName") final String pluginName,
+                                                      @Bind("fromAccountRecordId") final Long fromAccountRecordId,
+                                                      @Bind("rowCount") final Long rowCount,
+                                                      @BindBean final InternalTenantContext context);
+
 }
@@ -61,6 +61,12 @@ public interface PaymentSqlDao extends EntitySqlDao<PaymentModelDao, Payment> {
     public PaymentModelDao getPaymentByExternalKey(@Bind("externalKey") final String externalKey,
                                                    @BindBean final InternalTenantContext context);
 
+    @SqlQuery
+    public List<PaymentModelDao> getByAccountRecordIdCreatedSince(@Bind("createdSince") final Date createdSince,
+                                                                  @Bind("offset") final Long offset,
+                                                                  @Bind("rowCount") final Long rowCount,
+                                                                  @BindBean final InternalTenantContext context);
+
     @SqlQuery
     public List<PaymentModelDao> getPaymentsByStatesAcrossTenants(@StateCollectionBinder final Collection<String> states,
                                                                   @Bind("createdBeforeDate") final Date createdBeforeDate,
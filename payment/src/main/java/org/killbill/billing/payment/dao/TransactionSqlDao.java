@@ -31,6 +31,7 @@ import org.killbill.billing.util.audit.ChangeType;
 import org.killbill.billing.util.entity.dao.Audited;
 import org.killbill.billing.util.entity.dao.EntitySqlDao;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -69,6 +70,8 @@ public interface TransactionSqlDao extends EntitySqlDao<PaymentTransactionModelD
     @SqlQuery
     public List<PaymentTransactionModelDao> getByPaymentId(@Bind("paymentId") final UUID paymentId,
                                                            @BindBean final InternalTenantContext context);
-}
-
 
+    @SqlQuery
+    public List<PaymentTransactionModelDao> getByPaymentIds(@UUIDCollectionBinder final Collection<String> paymentIds,
+                                                            @BindBean final InternalTenantContext context);
+}
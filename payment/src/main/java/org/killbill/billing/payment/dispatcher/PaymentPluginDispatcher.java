@@ -28,7 +28,9 @@ import org.killbill.billing.ErrorCode;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.payment.api.PaymentApiException;
 import org.killbill.billing.payment.dispatcher.PluginDispatcher.PluginDispatcherReturnType;
+import org.killbill.billing.util.profiling.LatencyHistograms;
 import org.killbill.commons.locker.LockFailedException;
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +44,7 @@ public class PaymentPluginDispatcher {
         final UUID accountId = account != null ? account.getId() : null;
         final String accountExternalKey = account != null ? account.getExternalKey() : "";
 
+        final long startNanos = LatencyHistograms.start();
         try {
             log.debug("Calling plugin(s) {}", pluginNames);
             final ReturnType result = pluginDispatcher.dispatchWithTimeout(callable);
@@ -67,6 +70,9 @@ public class PaymentPluginDispatcher {
                 // Unwraps the ExecutionException (e.getCause()), since it's a dispatch implementation detail
                 throw new PaymentApiException(e.getCause(), ErrorCode.PAYMENT_INTERNAL_ERROR, MoreObjects.firstNonNull(e.getMessage(), ""));
             }
+        } finally {
+            // Includes the time spent waiting for a plugin executor thread
+            LatencyHistograms.recordSince(ProfilingFeatureType.PLUGIN, pluginNames, startNanos);
         }
     }
 }
@@ -25,6 +25,7 @@ import org.killbill.billing.payment.bus.PaymentBusEventHandler;
 import org.killbill.billing.payment.caching.StateMachineConfigCache;
 import org.killbill.billing.payment.core.PaymentExecutors;
 import org.killbill.billing.payment.core.janitor.Janitor;
+import org.killbill.billing.payment.core.reconciliation.PaymentMethodsReconciliation;
 import org.killbill.billing.payment.invoice.PaymentTagHandler;
 import org.killbill.billing.payment.retry.DefaultRetryService;
 import org.killbill.billing.platform.api.LifecycleHandlerType;
@@ -49,6 +50,7 @@ public class DefaultPaymentService implements PaymentService {
     private final PaymentApi api;
     private final DefaultRetryService retryService;
     private final Janitor janitor;
+    private final PaymentMethodsReconciliation paymentMethodsReconciliation;
     private final PaymentExecutors paymentExecutors;
     private final StateMachineConfigCache stateMachineConfigCache;
 
@@ -59,6 +61,7 @@ public class DefaultPaymentService implements PaymentService {
                                  final DefaultRetryService retryService,
                                  final PersistentBus eventBus,
                                  final Janitor janitor,
+                                 final PaymentMethodsReconciliation paymentMethodsReconciliation,
                                  final PaymentExecutors paymentExecutors,
                                  final StateMachineConfigCache stateMachineConfigCache) {
         this.paymentBusEventHandler = paymentBusEventHandler;
@@ -67,6 +70,7 @@ public class DefaultPaymentService implements PaymentService {
         this.api = api;
         this.retryService = retryService;
         this.janitor = janitor;
+        this.paymentMethodsReconciliation = paymentMethodsReconciliation;
         this.paymentExecutors = paymentExecutors;
         this.stateMachineConfigCache = stateMachineConfigCache;
     }
@@ -93,12 +97,14 @@ public class DefaultPaymentService implements PaymentService {
         paymentExecutors.initialize();
         retryService.initialize();
         janitor.initialize();
+        paymentMethodsReconciliation.initialize();
     }
 
     @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
     public void start() {
         retryService.start();
         janitor.start();
+        paymentMethodsReconciliation.start();
     }
 
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
@@ -111,6 +117,7 @@ public class DefaultPaymentService implements PaymentService {
         }
         retryService.stop();
         janitor.stop();
+        paymentMethodsReconciliation.stop();
         try {
             paymentExecutors.stop();
         } catch (InterruptedException e) {
@@ -24,12 +24,16 @@ import org.killbill.automaton.DefaultStateMachineConfig;
 import org.killbill.automaton.StateMachineConfig;
 import org.killbill.billing.control.plugin.api.PaymentControlPluginApi;
 import org.killbill.billing.osgi.api.OSGIServiceRegistration;
+import org.killbill.billing.payment.api.AccountPaymentsInternalApi;
 import org.killbill.billing.payment.api.AdminPaymentApi;
+import org.killbill.billing.payment.api.DefaultAccountPaymentsInternalApi;
 import org.killbill.billing.payment.api.DefaultAdminPaymentApi;
 import org.killbill.billing.payment.api.DefaultPaymentApi;
 import org.killbill.billing.payment.api.DefaultPaymentGatewayApi;
+import org.killbill.billing.payment.api.DefaultPaymentMethodsReconciliationInternalApi;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentGatewayApi;
+import org.killbill.billing.payment.api.PaymentMethodsReconciliationInternalApi;
 import org.killbill.billing.payment.api.PaymentService;
 import org.killbill.billing.payment.bus.PaymentBusEventHandler;
 import org.killbill.billing.payment.caching.EhCacheStateMachineConfigCache;
@@ -41,6 +45,7 @@ import org.killbill.billing.payment.core.PaymentMethodProcessor;
 import org.killbill.billing.payment.core.PaymentProcessor;
 import org.killbill.billing.payment.core.PluginControlPaymentProcessor;
 import org.killbill.billing.payment.core.janitor.Janitor;
+import org.killbill.billing.payment.core.reconciliation.PaymentMethodsReconciliation;
 import org.killbill.billing.payment.core.sm.PaymentControlStateMachineHelper;
 import org.killbill.billing.payment.core.sm.PaymentStateMachineHelper;
 import org.killbill.billing.payment.core.sm.PluginControlPaymentAutomatonRunner;
@@ -97,6 +102,11 @@ public class PaymentModule extends KillBillModule {
         bind(Janitor.class).asEagerSingleton();
     }
 
+    protected void installPaymentMethodsReconciliation() {
+        bind(PaymentMethodsReconciliation.class).asEagerSingleton();
+        bind(PaymentMethodsReconciliationInternalApi.class).to(DefaultPaymentMethodsReconciliationInternalApi.class).asEagerSingleton();
+    }
+
     protected void installRetryEngines() {
         bind(DefaultRetryService.class).asEagerSingleton();
         bind(RetryService.class).annotatedWith(Names.named(RETRYABLE_NAMED)).to(DefaultRetryService.class);
@@ -140,6 +150,7 @@ public class PaymentModule extends KillBillModule {
         bind(new TypeLiteral<OSGIServiceRegistration<PaymentControlPluginApi>>() {}).toProvider(DefaultPaymentControlProviderPluginRegistryProvider.class).asEagerSingleton();
 
         bind(PaymentApi.class).to(DefaultPaymentApi.class).asEagerSingleton();
+        bind(AccountPaymentsInternalApi.class).to(DefaultAccountPaymentsInternalApi.class).asEagerSingleton();
         bind(PaymentGatewayApi.class).to(DefaultPaymentGatewayApi.class).asEagerSingleton();
         bind(AdminPaymentApi.class).to(DefaultAdminPaymentApi.class).asEagerSingleton();
         bind(PaymentBusEventHandler.class).asEagerSingleton();
@@ -153,6 +164,7 @@ public class PaymentModule extends KillBillModule {
         installAutomatonRunner();
         installRetryEngines();
         installJanitor();
+        installPaymentMethodsReconciliation();
     }
 
     public static final class StateMachineProvider implements Provider<StateMachineConfig> {
@@ -94,6 +94,26 @@ public class TestPaymentProcessor extends PaymentTestSuiteWithEmbeddedDB {
         paymentBusListener.verify(1, 0, 1, account.getId(), paymentId, TEN, TransactionStatus.SUCCESS);
     }
 
+    @Test(groups = "slow")
+    public void testGetAccountPaymentsWithPluginInfoForManyPayments() throws Exception {
+        final int nbPayments = 10;
+        for (int i = 0; i < nbPayments; i++) {
+            final String paymentExternalKey = UUID.randomUUID().toString();
+            final String authorizationKey = UUID.randomUUID().toString();
+            final Payment authorization = paymentProcessor.createAuthorization(true, null, account, null, null, TEN, CURRENCY, paymentExternalKey, authorizationKey,
+                                                                               SHOULD_LOCK_ACCOUNT, PLUGIN_PROPERTIES, callContext, internalCallContext);
+            verifyPayment(authorization, paymentExternalKey, TEN, ZERO, ZERO, 1);
+        }
+
+        // Plugin info is retrieved concurrently for all payments (more than the per-request plugin info concurrency)
+        final List<Payment> payments = paymentProcessor.getAccountPayments(account.getId(), true, callContext, internalCallContext);
+        Assert.assertEquals(payments.size(), nbPayments);
+        for (final Payment payment : payments) {
+            Assert.assertEquals(payment.getTransactions().size(), 1);
+            Assert.assertNotNull(payment.getTransactions().get(0).getPaymentInfoPlugin());
+        }
+    }
+
     @Test(groups = "slow")
     public void testClassicFlow() throws Exception {
         final String paymentExternalKey = UUID.randomUUID().toString();
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.janitor;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.payment.PaymentTestSuiteNoDB;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class TestJanitorPipeline extends PaymentTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testNotificationsAreGroupedPerAccount() {
+        final IncompletePaymentTransactionTask task = Mockito.mock(IncompletePaymentTransactionTask.class);
+        final ManualExecutor executor = new ManualExecutor();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final JanitorPipeline janitorPipeline = new JanitorPipeline(task, executor, metricRegistry);
+
+        janitorPipeline.submit(newKey(), null, 1L, 10L);
+        janitorPipeline.submit(newKey(), null, 1L, 10L);
+        janitorPipeline.submit(newKey(), null, 2L, 10L);
+        janitorPipeline.submit(newKey(), null, 1L, 10L);
+
+        // One unit of work per account
+        Assert.assertEquals(executor.tasks.size(), 2);
+        Assert.assertEquals(janitorPipeline.getBacklog(), 4);
+        Assert.assertEquals(metricRegistry.getGauges().get(JanitorPipeline.BACKLOG_METRIC_NAME).getValue(), 4L);
+
+        executor.runAll();
+
+        final ArgumentCaptor<List> workItemsCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(task).processNotifications(workItemsCaptor.capture(), Mockito.eq(1L), Mockito.eq(10L));
+        Assert.assertEquals(workItemsCaptor.getValue().size(), 3);
+        Mockito.verify(task).processNotifications(workItemsCaptor.capture(), Mockito.eq(2L), Mockito.eq(10L));
+        Assert.assertEquals(workItemsCaptor.getValue().size(), 1);
+
+        Assert.assertEquals(janitorPipeline.getBacklog(), 0);
+        Assert.assertEquals(metricRegistry.meter(JanitorPipeline.PROCESSED_METRIC_NAME).getCount(), 4);
+
+        // New work after the account was processed is scheduled again
+        janitorPipeline.submit(newKey(), null, 1L, 10L);
+        Assert.assertEquals(executor.tasks.size(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testPendingNotificationsAreRescheduledOnStop() throws Exception {
+        final IncompletePaymentTransactionTask task = Mockito.mock(IncompletePaymentTransactionTask.class);
+        final ManualExecutor executor = new ManualExecutor();
+        final JanitorPipeline janitorPipeline = new JanitorPipeline(task, executor, new MetricRegistry());
+
+        final JanitorPipeline.AccountWork accountWork = janitorPipeline.submit(newKey(), null, 1L, 10L);
+        janitorPipeline.submit(newKey(), null, 1L, 10L);
+
+        janitorPipeline.stop();
+        Mockito.verify(task, Mockito.times(2)).rescheduleNotification(Mockito.<JanitorWorkItem>any(), Mockito.eq(1L), Mockito.eq(10L));
+        Assert.assertEquals(janitorPipeline.getBacklog(), 0);
+        // The work is completed once the notifications have been re-inserted
+        Assert.assertTrue(accountWork.awaitCompletion(1, TimeUnit.SECONDS));
+
+        // Work picked up after the stop is a no-op
+        executor.runAll();
+        Mockito.verify(task, Mockito.never()).processNotifications(Mockito.<List<JanitorWorkItem>>any(), Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    @Test(groups = "fast")
+    public void testFailuresAreRescheduled() throws Exception {
+        final IncompletePaymentTransactionTask task = Mockito.mock(IncompletePaymentTransactionTask.class);
+        Mockito.doThrow(new IllegalStateException("plugin unavailable"))
+               .when(task).processNotifications(Mockito.<List<JanitorWorkItem>>any(), Mockito.eq(1L), Mockito.anyLong());
+        final ManualExecutor executor = new ManualExecutor();
+        final JanitorPipeline janitorPipeline = new JanitorPipeline(task, executor, new MetricRegistry());
+
+        final JanitorPipeline.AccountWork accountWork1 = janitorPipeline.submit(newKey(), null, 1L, 10L);
+        final JanitorPipeline.AccountWork accountWork2 = janitorPipeline.submit(newKey(), null, 1L, 10L);
+        final JanitorPipeline.AccountWork accountWork3 = janitorPipeline.submit(newKey(), null, 2L, 10L);
+        Assert.assertSame(accountWork1, accountWork2);
+
+        executor.runAll();
+
+        // The notifications have already been acknowledged: each notification of the failed work is rescheduled by the pipeline
+        Assert.assertTrue(accountWork1.awaitCompletion(1, TimeUnit.SECONDS));
+        Assert.assertTrue(accountWork3.awaitCompletion(1, TimeUnit.SECONDS));
+        Mockito.verify(task, Mockito.times(2)).rescheduleFailedNotification(Mockito.<JanitorWorkItem>any(), Mockito.eq(1L), Mockito.eq(10L));
+        Mockito.verify(task, Mockito.never()).rescheduleFailedNotification(Mockito.<JanitorWorkItem>any(), Mockito.eq(2L), Mockito.anyLong());
+        Assert.assertEquals(janitorPipeline.getBacklog(), 0);
+    }
+
+    private JanitorNotificationKey newKey() {
+        return new JanitorNotificationKey(UUID.randomUUID(), IncompletePaymentTransactionTask.class.toString(), 1);
+    }
+
+    private static final class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new LinkedList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        public void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.payment.core.reconciliation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.osgi.api.OSGIServiceDescriptor;
+import org.killbill.billing.payment.PaymentTestSuiteWithEmbeddedDB;
+import org.killbill.billing.payment.api.PaymentApiException;
+import org.killbill.billing.payment.api.PaymentMethod;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.plugin.api.PaymentMethodInfoPlugin;
+import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
+import org.killbill.billing.payment.plugin.api.PaymentPluginApiException;
+import org.killbill.billing.payment.provider.DefaultNoOpPaymentMethodPlugin;
+import org.killbill.billing.payment.provider.MockPaymentProviderPlugin;
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.callcontext.CallContext;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+
+import static com.jayway.awaitility.Awaitility.await;
+
+public class TestPaymentMethodsReconciliation extends PaymentTestSuiteWithEmbeddedDB {
+
+    private static final String PLUGIN_NAME = "reconciliation-test-plugin";
+    private static final ImmutableList<PluginProperty> PLUGIN_PROPERTIES = ImmutableList.<PluginProperty>of();
+    private static final int PAGE_SIZE = 2;
+    private static final int TIMEOUT = 10;
+
+    // Payment methods known by the gateway, per account
+    private final Map<UUID, List<PaymentMethodInfoPlugin>> gatewayPaymentMethods = new ConcurrentHashMap<UUID, List<PaymentMethodInfoPlugin>>();
+    private final Set<UUID> failingAccountIds = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+    @Inject
+    private PaymentMethodsReconciliation paymentMethodsReconciliation;
+
+    @Override
+    protected KillbillConfigSource getConfigSource() {
+        return getConfigSource("/payment.properties",
+                               ImmutableMap.<String, String>of("org.killbill.payment.provider.default", MockPaymentProviderPlugin.PLUGIN_NAME,
+                                                               "killbill.payment.engine.events.off", "false",
+                                                               "org.killbill.payment.methods.reconciliation.page.size", String.valueOf(PAGE_SIZE)));
+    }
+
+    @BeforeClass(groups = "slow")
+    protected void beforeClass() throws Exception {
+        super.beforeClass();
+
+        final PaymentPluginApi pluginApi = Mockito.mock(PaymentPluginApi.class);
+        Mockito.when(pluginApi.getPaymentMethods(Mockito.<UUID>any(), Mockito.anyBoolean(), Mockito.<Iterable<PluginProperty>>any(), Mockito.<CallContext>any()))
+               .thenAnswer(new Answer<List<PaymentMethodInfoPlugin>>() {
+                   @Override
+                   public List<PaymentMethodInfoPlugin> answer(final InvocationOnMock invocation) throws Throwable {
+                       final UUID accountId = (UUID) invocation.getArguments()[0];
+                       if (failingAccountIds.contains(accountId)) {
+                           throw new PaymentPluginApiException("gateway", "unavailable");
+                       }
+                       final List<PaymentMethodInfoPlugin> paymentMethods = gatewayPaymentMethods.get(accountId);
+                       return paymentMethods == null ? ImmutableList.<PaymentMethodInfoPlugin>of() : paymentMethods;
+                   }
+               });
+        registry.registerService(new OSGIServiceDescriptor() {
+                                     @Override
+                                     public String getPluginSymbolicName() {
+                                         return null;
+                                     }
+
+                                     @Override
+                                     public String getPluginName() {
+                                         return PLUGIN_NAME;
+                                     }
+
+                                     @Override
+                                     public String getRegistrationName() {
+                                         return PLUGIN_NAME;
+                                     }
+                                 },
+                                 pluginApi);
+    }
+
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        gatewayPaymentMethods.clear();
+        failingAccountIds.clear();
+        paymentMethodsReconciliation.initialize();
+        paymentMethodsReconciliation.start();
+    }
+
+    @AfterMethod(groups = "slow")
+    public void afterMethod() throws Exception {
+        paymentMethodsReconciliation.stop();
+        super.afterMethod();
+    }
+
+    @Test(groups = "slow")
+    public void testRefreshPaymentMethodsForAccounts() throws Exception {
+        final List<Account> accounts = createAccountsWithNewGatewayPaymentMethod(3);
+        final Account failingAccount = accounts.get(1);
+        failingAccountIds.add(failingAccount.getId());
+
+        final Set<UUID> failedAccountIds = paymentMethodProcessor.refreshPaymentMethods(PLUGIN_NAME, accounts, 2, callContext);
+
+        Assert.assertEquals(failedAccountIds, ImmutableSet.<UUID>of(failingAccount.getId()));
+        // The other accounts have been reconciled...
+        Assert.assertEquals(getPaymentMethods(accounts.get(0)).size(), 2);
+        Assert.assertEquals(getPaymentMethods(accounts.get(2)).size(), 2);
+        // ...but not the failing one
+        Assert.assertEquals(getPaymentMethods(failingAccount).size(), 1);
+    }
+
+    @Test(groups = "slow")
+    public void testRefreshPaymentMethodsForAccountsWithUnknownPlugin() throws Exception {
+        final List<Account> accounts = createAccountsWithNewGatewayPaymentMethod(1);
+        try {
+            paymentMethodProcessor.refreshPaymentMethods("unknown-plugin", accounts, 2, callContext);
+            Assert.fail("The plugin isn't registered");
+        } catch (final PaymentApiException e) {
+            Assert.assertEquals(getPaymentMethods(accounts.get(0)).size(), 1);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testReconcileAllPages() throws Exception {
+        // Three pages of accounts
+        final List<Account> accounts = createAccountsWithNewGatewayPaymentMethod(2 * PAGE_SIZE + 1);
+
+        paymentMethodsReconciliation.schedule(PLUGIN_NAME, internalCallContext);
+
+        await().atMost(TIMEOUT, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                for (final Account account : accounts) {
+                    if (getPaymentMethods(account).size() != 2) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    // Each account has one payment method with the plugin in Kill Bill, the gateway knows about it and about a second one
+    private List<Account> createAccountsWithNewGatewayPaymentMethod(final int nbAccounts) throws Exception {
+        final List<Account> accounts = new ArrayList<Account>(nbAccounts);
+        for (int i = 0; i < nbAccounts; i++) {
+            final Account account = testHelper.createTestAccount(UUID.randomUUID().toString() + "@bar.com", false);
+            final String externalKey = UUID.randomUUID().toString();
+            final UUID existingPaymentMethodId = paymentApi.addPaymentMethod(account, externalKey, PLUGIN_NAME, false, new DefaultNoOpPaymentMethodPlugin(externalKey, false, null), PLUGIN_PROPERTIES, callContext);
+            gatewayPaymentMethods.put(account.getId(), ImmutableList.<PaymentMethodInfoPlugin>of(createGatewayPaymentMethod(account.getId(), existingPaymentMethodId),
+                                                                                                 createGatewayPaymentMethod(account.getId(), null)));
+            Assert.assertEquals(getPaymentMethods(account).size(), 1);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    private PaymentMethodInfoPlugin createGatewayPaymentMethod(final UUID accountId, final UUID paymentMethodId) {
+        final PaymentMethodInfoPlugin paymentMethodInfoPlugin = Mockito.mock(PaymentMethodInfoPlugin.class);
+        Mockito.when(paymentMethodInfoPlugin.getAccountId()).thenReturn(accountId);
+        Mockito.when(paymentMethodInfoPlugin.getPaymentMethodId()).thenReturn(paymentMethodId);
+        Mockito.when(paymentMethodInfoPlugin.getExternalPaymentMethodId()).thenReturn(UUID.randomUUID().toString());
+        Mockito.when(paymentMethodInfoPlugin.isDefault()).thenReturn(false);
+        return paymentMethodInfoPlugin;
+    }
+
+    private List<PaymentMethod> getPaymentMethods(final Account account) throws PaymentApiException {
+        final List<PaymentMethod> paymentMethods = new ArrayList<PaymentMethod>();
+        for (final PaymentMethod paymentMethod : paymentApi.getAccountPaymentMethods(account.getId(), false, PLUGIN_PROPERTIES, callContext)) {
+            if (PLUGIN_NAME.equals(paymentMethod.getPluginName()) && paymentMethod.isActive()) {
+                paymentMethods.add(paymentMethod);
+            }
+        }
+        return paymentMethods;
+    }
+}
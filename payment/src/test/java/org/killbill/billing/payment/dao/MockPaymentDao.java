@@ -20,6 +20,7 @@ package org.killbill.billing.payment.dao;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -268,11 +269,36 @@ public class MockPaymentDao implements PaymentDao {
         }
     }
 
+    @Override
+    public List<PaymentModelDao> getPaymentsForAccount(final DateTime createdSince, final Long offset, final Long limit, final InternalTenantContext context) {
+        synchronized (this) {
+            final List<PaymentModelDao> result = ImmutableList.copyOf(Iterables.filter(payments.values(), new Predicate<PaymentModelDao>() {
+                @Override
+                public boolean apply(final PaymentModelDao input) {
+                    return !input.getCreatedDate().isBefore(createdSince);
+                }
+            }));
+            return ImmutableList.copyOf(Iterables.limit(Iterables.skip(result, offset.intValue()), limit.intValue()));
+        }
+    }
+
     @Override
     public List<PaymentModelDao> getPaymentsByStatesAcrossTenants(final String[] states, final DateTime createdBeforeDate, final DateTime createdAfterDate, final int limit) {
         return null;
     }
 
+    @Override
+    public List<PaymentTransactionModelDao> getTransactionsForPayments(final Collection<UUID> paymentIds, final InternalTenantContext context) {
+        synchronized (this) {
+            return ImmutableList.copyOf(Iterables.filter(transactions.values(), new Predicate<PaymentTransactionModelDao>() {
+                @Override
+                public boolean apply(final PaymentTransactionModelDao input) {
+                    return paymentIds.contains(input.getPaymentId());
+                }
+            }));
+        }
+    }
+
     @Override
     public List<PaymentTransactionModelDao> getTransactionsForAccount(final UUID accountId, final InternalTenantContext context) {
         synchronized (this) {
@@ -390,6 +416,15 @@ public class MockPaymentDao implements PaymentDao {
         return ImmutableList.<PaymentMethodModelDao>of();
     }
 
+    @Override
+    public void refreshPaymentMethodsForAccounts(final String pluginName, final Map<UUID, List<PaymentMethodModelDao>> paymentMethodsByAccountId, final Map<UUID, InternalCallContext> contextByAccountId) {
+    }
+
+    @Override
+    public List<Long> getAccountRecordIdsWithPaymentMethods(final String pluginName, final Long fromAccountRecordId, final Long limit, final InternalTenantContext context) {
+        return ImmutableList.<Long>of();
+    }
+
     @Override
     public PaymentMethodModelDao getPaymentMethodIncludedDeleted(final UUID paymentMethodId, final InternalTenantContext context) {
         return getPaymentMethod(paymentMethodId, context);
@@ -42,6 +42,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 import static org.testng.Assert.assertEquals;
@@ -253,6 +254,53 @@ public class TestPaymentDao extends PaymentTestSuiteWithEmbeddedDB {
         assertEquals(deletedPaymentMethod.getPluginName(), pluginName);
     }
 
+    @Test(groups = "slow")
+    public void testRefreshPaymentMethodsForAccounts() {
+        final String pluginName = "reconciled";
+
+        final UUID accountId1 = UUID.randomUUID();
+        final UUID accountId2 = UUID.randomUUID();
+        final UUID accountId3 = UUID.randomUUID();
+        final InternalCallContext context1 = new InternalCallContext(internalCallContext, 11L, DateTimeZone.UTC);
+        final InternalCallContext context2 = new InternalCallContext(internalCallContext, 12L, DateTimeZone.UTC);
+        final InternalCallContext context3 = new InternalCallContext(internalCallContext, 13L, DateTimeZone.UTC);
+
+        // First account has an active payment method, second one a deleted one and third one a payment method for another plugin
+        final PaymentMethodModelDao method1 = new PaymentMethodModelDao(UUID.randomUUID(), UUID.randomUUID().toString(), null, null, accountId1, pluginName, true);
+        paymentDao.insertPaymentMethod(method1, context1);
+        final PaymentMethodModelDao method2 = new PaymentMethodModelDao(UUID.randomUUID(), UUID.randomUUID().toString(), null, null, accountId2, pluginName, true);
+        paymentDao.insertPaymentMethod(method2, context2);
+        paymentDao.deletedPaymentMethod(method2.getId(), context2);
+        final PaymentMethodModelDao method3 = new PaymentMethodModelDao(UUID.randomUUID(), UUID.randomUUID().toString(), null, null, accountId3, "other", true);
+        paymentDao.insertPaymentMethod(method3, context3);
+
+        assertEquals(paymentDao.getAccountRecordIdsWithPaymentMethods(pluginName, 0L, 10L, internalCallContext), ImmutableList.<Long>of(11L, 12L));
+        assertEquals(paymentDao.getAccountRecordIdsWithPaymentMethods(pluginName, 0L, 1L, internalCallContext), ImmutableList.<Long>of(11L));
+        assertEquals(paymentDao.getAccountRecordIdsWithPaymentMethods(pluginName, 11L, 10L, internalCallContext), ImmutableList.<Long>of(12L));
+        assertEquals(paymentDao.getAccountRecordIdsWithPaymentMethods(pluginName, 12L, 10L, internalCallContext), ImmutableList.<Long>of());
+
+        // The plugin now knows about a new payment method for the first account and about the deleted one for the second account
+        final PaymentMethodModelDao newMethod1 = new PaymentMethodModelDao(UUID.randomUUID(), UUID.randomUUID().toString(), null, null, accountId1, pluginName, true);
+        final PaymentMethodModelDao undeletedMethod2 = new PaymentMethodModelDao(method2.getId(), method2.getExternalKey(), null, null, accountId2, pluginName, true);
+        paymentDao.refreshPaymentMethodsForAccounts(pluginName,
+                                                    ImmutableMap.<UUID, List<PaymentMethodModelDao>>of(accountId1, ImmutableList.<PaymentMethodModelDao>of(newMethod1),
+                                                                                                       accountId2, ImmutableList.<PaymentMethodModelDao>of(undeletedMethod2)),
+                                                    ImmutableMap.<UUID, InternalCallContext>of(accountId1, context1, accountId2, context2));
+
+        final List<PaymentMethodModelDao> methods1 = paymentDao.getPaymentMethods(context1);
+        assertEquals(methods1.size(), 1);
+        assertEquals(methods1.get(0).getId(), newMethod1.getId());
+        assertNull(paymentDao.getPaymentMethod(method1.getId(), context1));
+
+        final List<PaymentMethodModelDao> methods2 = paymentDao.getPaymentMethods(context2);
+        assertEquals(methods2.size(), 1);
+        assertEquals(methods2.get(0).getId(), method2.getId());
+
+        final List<PaymentMethodModelDao> methods3 = paymentDao.getPaymentMethods(context3);
+        assertEquals(methods3.size(), 1);
+        assertEquals(methods3.get(0).getId(), method3.getId());
+    }
+
     @Test(groups = "slow")
     public void testPendingTransactions() {
 
@@ -460,6 +508,45 @@ public class TestPaymentDao extends PaymentTestSuiteWithEmbeddedDB {
         }
     }
 
+    @Test(groups = "slow")
+    public void testPaymentsForAccountByPage() {
+        final UUID accountId = UUID.randomUUID();
+        final DateTime now = clock.getUTCNow();
+        internalCallContext.setAccountRecordId(1L);
+
+        final List<PaymentModelDao> payments = new ArrayList<PaymentModelDao>();
+        for (int i = 3; i > 0; i--) {
+            final DateTime createdDate = now.minusHours(i);
+            final PaymentModelDao paymentModelDao = new PaymentModelDao(createdDate, createdDate, accountId, UUID.randomUUID(), UUID.randomUUID().toString());
+            final PaymentTransactionModelDao transactionModelDao = new PaymentTransactionModelDao(createdDate, createdDate, null, UUID.randomUUID().toString(),
+                                                                                                  paymentModelDao.getId(), TransactionType.AUTHORIZE, createdDate,
+                                                                                                  TransactionStatus.SUCCESS, BigDecimal.TEN, Currency.AED,
+                                                                                                  "success", "");
+            internalCallContext.setCreatedDate(createdDate);
+            internalCallContext.setUpdatedDate(createdDate);
+            payments.add(paymentDao.insertPaymentWithFirstTransaction(paymentModelDao, transactionModelDao, internalCallContext));
+        }
+
+        final DateTime beginningOfTime = new DateTime(0L, DateTimeZone.UTC);
+        final List<PaymentModelDao> firstPage = paymentDao.getPaymentsForAccount(beginningOfTime, 0L, 2L, internalCallContext);
+        assertEquals(firstPage.size(), 2);
+        assertEquals(firstPage.get(0).getId(), payments.get(0).getId());
+        assertEquals(firstPage.get(1).getId(), payments.get(1).getId());
+        final List<PaymentModelDao> secondPage = paymentDao.getPaymentsForAccount(beginningOfTime, 2L, 2L, internalCallContext);
+        assertEquals(secondPage.size(), 1);
+        assertEquals(secondPage.get(0).getId(), payments.get(2).getId());
+
+        // History window
+        final List<PaymentModelDao> recentPayments = paymentDao.getPaymentsForAccount(now.minusMinutes(150), 0L, 10L, internalCallContext);
+        assertEquals(recentPayments.size(), 2);
+        assertEquals(recentPayments.get(0).getId(), payments.get(1).getId());
+        assertEquals(recentPayments.get(1).getId(), payments.get(2).getId());
+
+        final List<PaymentTransactionModelDao> transactions = paymentDao.getTransactionsForPayments(ImmutableList.<UUID>of(payments.get(1).getId(), payments.get(2).getId()), internalCallContext);
+        assertEquals(transactions.size(), 2);
+        assertEquals(paymentDao.getTransactionsForPayments(ImmutableList.<UUID>of(), internalCallContext).size(), 0);
+    }
+
     @Test(groups = "slow")
     public void testPaymentAttemptsByStateAcrossTenants() {
 
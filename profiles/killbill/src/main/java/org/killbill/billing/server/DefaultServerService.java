@@ -27,6 +27,8 @@ import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
 import org.killbill.billing.server.notifications.PushNotificationListener;
 import org.killbill.bus.api.PersistentBus;
 import org.killbill.bus.api.PersistentBus.EventBusException;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,7 +36,7 @@ public class DefaultServerService implements ServerService {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultServerService.class);
 
-    private static final String SERVER_SERVICE = "server-service";
+    public static final String SERVER_SERVICE = "server-service";
 
     private final PersistentBus bus;
     private final PushNotificationListener pushNotificationListener;
@@ -51,7 +53,8 @@ public class DefaultServerService implements ServerService {
     }
 
     @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
-    public void registerForNotifications() {
+    public void registerForNotifications() throws NotificationQueueAlreadyExists {
+        pushNotificationListener.initialize();
         try {
             bus.register(pushNotificationListener);
         } catch (final EventBusException e) {
@@ -59,12 +62,18 @@ public class DefaultServerService implements ServerService {
         }
     }
 
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        pushNotificationListener.start();
+    }
+
     @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
-    public void unregisterForNotifications() {
+    public void unregisterForNotifications() throws NoSuchNotificationQueue, InterruptedException {
         try {
             bus.unregister(pushNotificationListener);
         } catch (final EventBusException e) {
             log.warn("Failed to unregister PushNotificationListener", e);
         }
+        pushNotificationListener.stop();
     }
 }
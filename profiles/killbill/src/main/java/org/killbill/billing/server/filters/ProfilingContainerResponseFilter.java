@@ -18,9 +18,12 @@
 package org.killbill.billing.server.filters;
 
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.killbill.billing.jaxrs.json.ProfilingDataJson;
+import org.killbill.billing.util.entity.dao.DBRouter;
 import org.killbill.billing.util.jackson.ObjectMapper;
+import org.killbill.billing.util.profiling.LatencyHistograms;
 import org.killbill.commons.profiling.Profiling;
 import org.killbill.commons.profiling.ProfilingData;
 import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
@@ -43,6 +46,11 @@ public class ProfilingContainerResponseFilter implements ContainerRequestFilter,
     private static final String PROFILING_HEADER_REQ = "X-Killbill-Profiling-Req";
     private static final String PROFILING_HEADER_RESP = "X-Killbill-Profiling-Resp";
 
+    private static final String LATENCY_START_PROPERTY = ProfilingContainerResponseFilter.class.getName() + ".startNanos";
+
+    // Collapse ids in paths to keep the number of distinct JAXRS operations bounded
+    private static final Pattern ID_PATTERN = Pattern.compile("/(?:[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}|[0-9]+)(?=/|$)");
+
     private static final ObjectMapper mapper = new ObjectMapper();
 
     static {
@@ -51,6 +59,9 @@ public class ProfilingContainerResponseFilter implements ContainerRequestFilter,
 
     @Override
     public ContainerRequest filter(final ContainerRequest request) {
+        request.getProperties().put(LATENCY_START_PROPERTY, LatencyHistograms.start());
+        // Container threads are pooled: start each request with a clean read-after-write state
+        DBRouter.resetRequestState();
 
         final List<String> profilingHeaderRequests = request.getRequestHeader(PROFILING_HEADER_REQ);
         final String profilingHeaderRequest = (profilingHeaderRequests == null || profilingHeaderRequests.isEmpty()) ? null : profilingHeaderRequests.get(0);
@@ -89,7 +100,17 @@ public class ProfilingContainerResponseFilter implements ContainerRequestFilter,
             }
         } finally {
             Profiling.resetPerThreadProfilingData();
+            DBRouter.resetRequestState();
+            recordLatency(request);
         }
         return response;
     }
+
+    private void recordLatency(final ContainerRequest request) {
+        final Object startNanos = request.getProperties().get(LATENCY_START_PROPERTY);
+        if (startNanos != null) {
+            final String operation = request.getMethod() + " /" + ID_PATTERN.matcher(request.getPath()).replaceAll("/{id}");
+            LatencyHistograms.recordSince(ProfilingFeatureType.JAXRS, operation, (Long) startNanos);
+        }
+    }
 }
@@ -33,7 +33,11 @@ public class ConfigMagicObfuscator extends Obfuscator {
             "password"
     };
 
+    private static final String CONFIG_MAGIC_LINE_PREFIX = "Assigning value [";
+
+    private final KeywordsMatcher configMagicLineMatcher = new KeywordsMatcher(CONFIG_MAGIC_LINE_PREFIX);
     private final Collection<Pattern> patterns = new LinkedList<Pattern>();
+    private final boolean hasExtraPatterns;
 
     public ConfigMagicObfuscator() {
         this(ImmutableList.<Pattern>of());
@@ -46,10 +50,15 @@ public class ConfigMagicObfuscator extends Obfuscator {
             this.patterns.add(buildPattern(sensitiveKey));
         }
         this.patterns.addAll(extraPatterns);
+        this.hasExtraPatterns = !extraPatterns.isEmpty();
     }
 
     @Override
     public String obfuscate(final String originalString, final ILoggingEvent event) {
+        // The default patterns only match the ConfigurationObjectFactory log lines
+        if (!hasExtraPatterns && !configMagicLineMatcher.findAny(originalString)) {
+            return originalString;
+        }
         return obfuscate(originalString, patterns, event);
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.log.obfuscators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds, in a single pass, which of a set of keywords appear in a String.
+ * <p/>
+ * Matching is ASCII case-insensitive, like the patterns built with {@link Obfuscator#DEFAULT_PATTERN_FLAGS}: this is used
+ * to skip the regular expressions of keywords which cannot match. False positives are fine, false negatives are not.
+ */
+class KeywordsMatcher {
+
+    private static final int ASCII_SIZE = 128;
+
+    private final String[] keywords;
+    // Index of the keywords, by lower-cased first character
+    private final int[][] keywordsByFirstChar = new int[ASCII_SIZE][];
+
+    KeywordsMatcher(final String... keywords) {
+        this.keywords = keywords;
+
+        final List<List<Integer>> indexes = new ArrayList<List<Integer>>(ASCII_SIZE);
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            indexes.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < keywords.length; i++) {
+            final char firstChar = Character.toLowerCase(keywords[i].charAt(0));
+            if (firstChar >= ASCII_SIZE) {
+                throw new IllegalArgumentException("Keywords must start with an ASCII character: " + keywords[i]);
+            }
+            indexes.get(firstChar).add(i);
+        }
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            final List<Integer> keywordIndexes = indexes.get(c);
+            if (keywordIndexes.isEmpty()) {
+                continue;
+            }
+            keywordsByFirstChar[c] = new int[keywordIndexes.size()];
+            for (int j = 0; j < keywordIndexes.size(); j++) {
+                keywordsByFirstChar[c][j] = keywordIndexes.get(j);
+            }
+        }
+    }
+
+    /**
+     * @param input the String to look into
+     * @return for each keyword (in the order given at construction time), whether it appears in the input
+     */
+    boolean[] find(final String input) {
+        final boolean[] found = new boolean[keywords.length];
+        int nbFound = 0;
+
+        final int length = input.length();
+        for (int pos = 0; pos < length && nbFound < keywords.length; pos++) {
+            final char c = Character.toLowerCase(input.charAt(pos));
+            if (c >= ASCII_SIZE || keywordsByFirstChar[c] == null) {
+                continue;
+            }
+            for (final int keywordIndex : keywordsByFirstChar[c]) {
+                if (!found[keywordIndex] && input.regionMatches(true, pos, keywords[keywordIndex], 0, keywords[keywordIndex].length())) {
+                    found[keywordIndex] = true;
+                    nbFound++;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    boolean findAny(final String input) {
+        for (final boolean keywordFound : find(input)) {
+            if (keywordFound) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -49,13 +49,18 @@ public abstract class Obfuscator {
     public abstract String obfuscate(final String originalString, final ILoggingEvent event);
 
     protected String obfuscate(final String originalString, final Iterable<Pattern> patterns, final ILoggingEvent event) {
-        final StringBuilder obfuscatedStringBuilder = new StringBuilder(originalString);
+        String obfuscatedString = originalString;
 
         for (final Pattern pattern : patterns) {
+            final Matcher matcher = pattern.matcher(obfuscatedString);
+            // Only copy the String when there is something to obfuscate
+            if (!matcher.find()) {
+                continue;
+            }
+
             int currentOffset = 0;
-            // Create a matcher with a copy of the current obfuscated String
-            final Matcher matcher = pattern.matcher(obfuscatedStringBuilder.toString());
-            while (matcher.find()) {
+            final StringBuilder obfuscatedStringBuilder = new StringBuilder(obfuscatedString);
+            do {
                 for (int groupNb = 1; groupNb <= matcher.groupCount(); groupNb++) {
                     final String confidentialData = matcher.group(groupNb);
 
@@ -70,10 +75,11 @@ public abstract class Obfuscator {
                         }
                     }
                 }
-            }
+            } while (matcher.find());
+            obfuscatedString = obfuscatedStringBuilder.toString();
         }
 
-        return obfuscatedStringBuilder.toString();
+        return obfuscatedString;
     }
 
     private boolean shouldObfuscate(final String confidentialData, final ILoggingEvent event) {
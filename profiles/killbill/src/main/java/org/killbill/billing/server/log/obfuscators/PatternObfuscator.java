@@ -17,8 +17,9 @@
 
 package org.killbill.billing.server.log.obfuscators;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -46,7 +47,10 @@ public class PatternObfuscator extends Obfuscator {
             "xid"
     };
 
-    private final Collection<Pattern> patterns = new LinkedList<Pattern>();
+    private final KeywordsMatcher sensitiveKeysMatcher = new KeywordsMatcher(DEFAULT_SENSITIVE_KEYS);
+    // Patterns for each sensitive key, in the same order as DEFAULT_SENSITIVE_KEYS
+    private final List<Collection<Pattern>> patternsPerSensitiveKey = new ArrayList<Collection<Pattern>>(DEFAULT_SENSITIVE_KEYS.length);
+    private final Collection<Pattern> extraPatterns;
 
     public PatternObfuscator() {
         this(ImmutableList.<Pattern>of());
@@ -56,16 +60,26 @@ public class PatternObfuscator extends Obfuscator {
         super();
 
         for (final String sensitiveKey : DEFAULT_SENSITIVE_KEYS) {
-            this.patterns.add(buildJSONPattern(sensitiveKey));
-            this.patterns.add(buildXMLPattern(sensitiveKey));
-            this.patterns.add(buildMultiValuesXMLPattern(sensitiveKey));
+            this.patternsPerSensitiveKey.add(ImmutableList.<Pattern>of(buildJSONPattern(sensitiveKey),
+                                                                       buildXMLPattern(sensitiveKey),
+                                                                       buildMultiValuesXMLPattern(sensitiveKey)));
         }
-        this.patterns.addAll(extraPatterns);
+        this.extraPatterns = ImmutableList.<Pattern>copyOf(extraPatterns);
     }
 
     @Override
     public String obfuscate(final String originalString, final ILoggingEvent event) {
-        return obfuscate(originalString, patterns, event);
+        // All default patterns start with their key: only run the ones whose key appears in the message.
+        // Masking cannot introduce a key which wasn't there, so we can look for the keys once, upfront.
+        final boolean[] sensitiveKeysFound = sensitiveKeysMatcher.find(originalString);
+
+        String obfuscatedString = originalString;
+        for (int i = 0; i < sensitiveKeysFound.length; i++) {
+            if (sensitiveKeysFound[i]) {
+                obfuscatedString = obfuscate(obfuscatedString, patternsPerSensitiveKey.get(i), event);
+            }
+        }
+        return extraPatterns.isEmpty() ? obfuscatedString : obfuscate(obfuscatedString, extraPatterns, event);
     }
 
     private Pattern buildJSONPattern(final String key) {
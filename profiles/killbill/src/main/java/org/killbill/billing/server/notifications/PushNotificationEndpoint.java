@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.notifications;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+// Delivery state for a given callback URL: bounded buffer of pending notifications, in-flight requests limit and metrics
+public class PushNotificationEndpoint {
+
+    private final String url;
+    private final BlockingQueue<PendingNotification> pendingNotifications;
+    private final int maxInFlightRequests;
+    private final Semaphore inFlightRequests;
+    private final Timer latency;
+    private final Meter failures;
+
+    private volatile boolean closed;
+
+    public PushNotificationEndpoint(final String url, final int queueSize, final int maxInFlightRequests, final MetricRegistry metricRegistry) {
+        this.url = url;
+        this.pendingNotifications = new LinkedBlockingQueue<PendingNotification>(queueSize);
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.latency = metricRegistry.timer(getLatencyMetricName(url));
+        this.failures = metricRegistry.meter(getFailuresMetricName(url));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    // Returns false if the buffer is full or if the endpoint has been closed
+    public synchronized boolean offer(final PendingNotification notification) {
+        return !closed && pendingNotifications.offer(notification);
+    }
+
+    // Once closed, the endpoint doesn't accept notifications anymore: the ones still pending are returned
+    public synchronized List<PendingNotification> close(final MetricRegistry metricRegistry) {
+        closed = true;
+        metricRegistry.remove(getLatencyMetricName(url));
+        metricRegistry.remove(getFailuresMetricName(url));
+        return drainPendingNotifications(Integer.MAX_VALUE);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // No pending notification and no in-flight request
+    public boolean isIdle() {
+        return pendingNotifications.isEmpty() && inFlightRequests.availablePermits() == maxInFlightRequests;
+    }
+
+    public boolean hasPendingNotifications() {
+        return !pendingNotifications.isEmpty();
+    }
+
+    public List<PendingNotification> drainPendingNotifications(final int maxNotifications) {
+        final List<PendingNotification> notifications = new LinkedList<PendingNotification>();
+        pendingNotifications.drainTo(notifications, maxNotifications);
+        return notifications;
+    }
+
+    public int getNbPendingNotifications() {
+        return pendingNotifications.size();
+    }
+
+    public boolean tryAcquireRequest() {
+        return inFlightRequests.tryAcquire();
+    }
+
+    public void releaseRequest() {
+        inFlightRequests.release();
+    }
+
+    public Timer.Context startRequest() {
+        return latency.time();
+    }
+
+    public void markFailure() {
+        failures.mark();
+    }
+
+    private static String getLatencyMetricName(final String url) {
+        return MetricRegistry.name(PushNotificationEndpoint.class, url, "latency");
+    }
+
+    private static String getFailuresMetricName(final String url) {
+        return MetricRegistry.name(PushNotificationEndpoint.class, url, "failures");
+    }
+
+    public static final class PendingNotification {
+
+        private final PushNotificationKey key;
+        private final Long accountRecordId;
+        private final Long tenantRecordId;
+
+        public PendingNotification(final PushNotificationKey key, final Long accountRecordId, final Long tenantRecordId) {
+            this.key = key;
+            this.accountRecordId = accountRecordId;
+            this.tenantRecordId = tenantRecordId;
+        }
+
+        public PushNotificationKey getKey() {
+            return key;
+        }
+
+        public Long getAccountRecordId() {
+            return accountRecordId;
+        }
+
+        public Long getTenantRecordId() {
+            return tenantRecordId;
+        }
+    }
+}
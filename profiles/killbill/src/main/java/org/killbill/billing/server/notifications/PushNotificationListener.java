@@ -1,7 +1,7 @@
 /*
  * Copyright 2010-2013 Ning, Inc.
- * Copyright 2014-2015 Groupon, Inc
- * Copyright 2014-2015 The Billing Project, LLC
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
  *
  * The Billing Project licenses this file to you under the Apache License, version 2.0
  * (the "License"); you may not use this file except in compliance with the
@@ -19,34 +19,72 @@
 package org.killbill.billing.server.notifications;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.jaxrs.json.NotificationJson;
 import org.killbill.billing.notification.plugin.api.ExtBusEvent;
+import org.killbill.billing.server.DefaultServerService;
+import org.killbill.billing.server.notifications.PushNotificationEndpoint.PendingNotification;
 import org.killbill.billing.tenant.api.TenantApiException;
+import org.killbill.billing.tenant.api.TenantInternalApi;
+import org.killbill.billing.tenant.api.TenantInternalApi.CacheInvalidationCallback;
 import org.killbill.billing.tenant.api.TenantKV.TenantKey;
 import org.killbill.billing.tenant.api.TenantUserApi;
 import org.killbill.billing.util.callcontext.CallContextFactory;
+import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.callcontext.TenantContext;
+import org.killbill.billing.util.config.PushNotificationConfig;
+import org.killbill.clock.Clock;
+import org.killbill.notificationq.api.NotificationEvent;
+import org.killbill.notificationq.api.NotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService;
+import org.killbill.notificationq.api.NotificationQueueService.NoSuchNotificationQueue;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueAlreadyExists;
+import org.killbill.notificationq.api.NotificationQueueService.NotificationQueueHandler;
+import org.skife.config.TimeSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClient.BoundRequestBuilder;
 import com.ning.http.client.AsyncHttpClientConfig;
-import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 
+//
+// Push notifications are delivered asynchronously: the bus thread only serializes the event and buffers it
+// for each callback URL of the tenant. Each URL has a bounded buffer and a maximum number of in-flight requests,
+// so a slow endpoint only delays its own notifications. Failed notifications (and buffer overflows) go to a
+// persistent notification queue and are retried with backoff. Endpoints are dropped once no tenant registers their URL anymore.
+//
 public class PushNotificationListener {
 
     private static final Logger log = LoggerFactory.getLogger(PushNotificationListener.class);
@@ -56,32 +94,166 @@ public class PushNotificationListener {
     @VisibleForTesting
     public static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
 
-    private static final int TIMEOUT_NOTIFICATION = 15; // 15 seconds
+    public static final String RETRY_QUEUE_NAME = "push-notification-retries";
+
+    private static final String PUSH_NOTIFICATION_THREAD_PREFIX = "push-notification-th-";
+    private static final String PUSH_NOTIFICATION_TH_GROUP_NAME = "push-notification-grp";
+    private static final int NB_DELIVERY_THREADS = 2;
+    private static final long SHUTDOWN_POLL_MILLIS = 100;
 
     private final TenantUserApi tenantApi;
+    private final TenantInternalApi tenantInternalApi;
     private final CallContextFactory contextFactory;
+    private final InternalCallContextFactory internalCallContextFactory;
+    private final NotificationQueueService notificationQueueService;
+    private final PushNotificationConfig pushNotificationConfig;
+    private final MetricRegistry metricRegistry;
+    private final Clock clock;
     private final AsyncHttpClient httpClient;
     private final ObjectMapper mapper;
+    private final ConcurrentMap<String, PushNotificationEndpoint> endpoints = new ConcurrentHashMap<String, PushNotificationEndpoint>();
+    // Callback URLs last seen for each tenant (record id), and number of tenants registering each URL
+    private final ConcurrentMap<Long, Set<String>> callbacksPerTenant = new ConcurrentHashMap<Long, Set<String>>();
+    private final Multiset<String> callbackReferences = ConcurrentHashMultiset.<String>create();
+
+    private volatile ScheduledExecutorService deliveryExecutor;
+    private NotificationQueue retryQueue;
 
     @Inject
-    public PushNotificationListener(final ObjectMapper mapper, final TenantUserApi tenantApi, final CallContextFactory contextFactory) {
-        this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout(TIMEOUT_NOTIFICATION * 1000).build());
+    public PushNotificationListener(final ObjectMapper mapper,
+                                    final TenantUserApi tenantApi,
+                                    final TenantInternalApi tenantInternalApi,
+                                    final CallContextFactory contextFactory,
+                                    final InternalCallContextFactory internalCallContextFactory,
+                                    final NotificationQueueService notificationQueueService,
+                                    final PushNotificationConfig pushNotificationConfig,
+                                    final MetricRegistry metricRegistry,
+                                    final Clock clock) {
+        // Connections are pooled and re-used across notifications for the same endpoint
+        this.httpClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestTimeout((int) pushNotificationConfig.getPushNotificationTimeout().getMillis())
+                                                                                 .setAllowPoolingConnections(true)
+                                                                                 .build());
         this.tenantApi = tenantApi;
+        this.tenantInternalApi = tenantInternalApi;
         this.contextFactory = contextFactory;
+        this.internalCallContextFactory = internalCallContextFactory;
+        this.notificationQueueService = notificationQueueService;
+        this.pushNotificationConfig = pushNotificationConfig;
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
         this.mapper = mapper;
     }
 
+    public void initialize() throws NotificationQueueAlreadyExists {
+        deliveryExecutor = Executors.newScheduledThreadPool(NB_DELIVERY_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread th = new Thread(new ThreadGroup(PUSH_NOTIFICATION_TH_GROUP_NAME), r);
+                th.setName(PUSH_NOTIFICATION_THREAD_PREFIX + th.getId());
+                return th;
+            }
+        });
+
+        retryQueue = notificationQueueService.createNotificationQueue(DefaultServerService.SERVER_SERVICE,
+                                                                      RETRY_QUEUE_NAME,
+                                                                      new NotificationQueueHandler() {
+                                                                          @Override
+                                                                          public void handleReadyNotification(final NotificationEvent notificationKey, final DateTime eventDateTime, final UUID userToken, final Long accountRecordId, final Long tenantRecordId) {
+                                                                              if (!(notificationKey instanceof PushNotificationKey)) {
+                                                                                  log.error("Push notification service received an unexpected event className='{}'", notificationKey.getClass());
+                                                                                  return;
+                                                                              }
+                                                                              enqueue((PushNotificationKey) notificationKey, accountRecordId, tenantRecordId);
+                                                                          }
+                                                                      });
+
+        // Invoked on all nodes when a tenant (un)registers callbacks
+        tenantInternalApi.initializeCacheInvalidationCallback(TenantKey.PUSH_NOTIFICATION_CB, new CacheInvalidationCallback() {
+            @Override
+            public void invalidateCache(final TenantKey key, final Object cookie, final InternalTenantContext tenantContext) {
+                final List<String> callbacks = tenantInternalApi.getTenantValuesForKey(TenantKey.PUSH_NOTIFICATION_CB.toString(), tenantContext);
+                updateCallbacksForTenant(tenantContext.getTenantRecordId(), callbacks);
+            }
+        });
+    }
+
+    public void start() {
+        retryQueue.startQueue();
+
+        final long batchWindowMillis = pushNotificationConfig.getPushNotificationBatchWindow().getMillis();
+        if (batchWindowMillis > 0) {
+            deliveryExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    for (final PushNotificationEndpoint endpoint : endpoints.values()) {
+                        sendPendingNotifications(endpoint);
+                        pruneEndpointIfUnused(endpoint);
+                    }
+                }
+            }, batchWindowMillis, batchWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() throws NoSuchNotificationQueue, InterruptedException {
+        if (retryQueue != null) {
+            // Stop dispatching retries, but keep the queue around to record the notifications which cannot be delivered in time
+            retryQueue.stopQueue();
+        }
+
+        flushPendingNotifications();
+
+        if (deliveryExecutor != null) {
+            // Let the queued completion tasks record their retries (the batching task is cancelled)
+            deliveryExecutor.shutdown();
+            deliveryExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            deliveryExecutor = null;
+        }
+
+        if (retryQueue != null) {
+            notificationQueueService.deleteNotificationQueue(retryQueue.getServiceName(), retryQueue.getQueueName());
+        }
+
+        httpClient.close();
+    }
+
+    // Deliver the buffered notifications for up to the shutdown timeout, then persist the remaining ones in the retry queue
+    private void flushPendingNotifications() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + pushNotificationConfig.getPushNotificationShutdownTimeout().getMillis();
+        while (System.currentTimeMillis() < deadline) {
+            boolean idle = true;
+            for (final PushNotificationEndpoint endpoint : endpoints.values()) {
+                sendPendingNotifications(endpoint);
+                idle = idle && endpoint.isIdle();
+            }
+            if (idle) {
+                return;
+            }
+            Thread.sleep(SHUTDOWN_POLL_MILLIS);
+        }
+
+        for (final PushNotificationEndpoint endpoint : endpoints.values()) {
+            final List<PendingNotification> notifications = endpoint.drainPendingNotifications(Integer.MAX_VALUE);
+            if (!notifications.isEmpty()) {
+                log.warn("Moving {} push notifications for url='{}' to the retry queue on shutdown", notifications.size(), endpoint.getUrl());
+            }
+            for (final PendingNotification notification : notifications) {
+                scheduleRetry(notification.getKey(), notification.getKey().getAttemptNumber(), notification.getAccountRecordId(), notification.getTenantRecordId());
+            }
+        }
+    }
+
     @AllowConcurrentEvents
     @Subscribe
     public void triggerPushNotifications(final ExtBusEvent event) {
         final TenantContext context = contextFactory.createTenantContext(event.getTenantId());
         try {
+            // Callbacks are cached in the tenant KV cache
             final List<String> callbacks = getCallbacksForTenant(context);
             if (callbacks.isEmpty()) {
                 // Optimization - see https://github.com/killbill/killbill/issues/297
                 return;
             }
-            dispatchCallback(event.getTenantId(), event, callbacks);
+            dispatchCallback(event.getTenantId(), event, callbacks, context);
         } catch (final TenantApiException e) {
             log.warn("Failed to retrieve push notification callback for tenant {}", event.getTenantId());
         } catch (final IOException e) {
@@ -89,34 +261,217 @@ public class PushNotificationListener {
         }
     }
 
-    private void dispatchCallback(final UUID tenantId, final ExtBusEvent event, final Iterable<String> callbacks) throws IOException {
+    private void dispatchCallback(final UUID tenantId, final ExtBusEvent event, final Collection<String> callbacks, final TenantContext context) throws IOException {
         final NotificationJson notification = new NotificationJson(event);
         final String body = mapper.writeValueAsString(notification);
+
+        final InternalTenantContext internalTenantContext = event.getAccountId() != null ?
+                                                            internalCallContextFactory.createInternalTenantContext(event.getAccountId(), context) :
+                                                            internalCallContextFactory.createInternalTenantContext(context);
+        updateCallbacksForTenant(internalTenantContext.getTenantRecordId(), callbacks);
         for (final String cur : callbacks) {
-            doPost(tenantId, cur, body, TIMEOUT_NOTIFICATION);
+            enqueue(new PushNotificationKey(tenantId, cur, body, 0), internalTenantContext.getAccountRecordId(), internalTenantContext.getTenantRecordId());
         }
     }
 
-    private boolean doPost(final UUID tenantId, final String url, final String body, final int timeoutSec) {
-        final BoundRequestBuilder builder = httpClient.preparePost(url);
-        builder.setBody(body == null ? "{}" : body);
+    private void enqueue(final PushNotificationKey notification, final Long accountRecordId, final Long tenantRecordId) {
+        final PendingNotification pendingNotification = new PendingNotification(notification, accountRecordId, tenantRecordId);
+        PushNotificationEndpoint endpoint;
+        boolean offered;
+        do {
+            // If the endpoint was pruned concurrently, a new one is created
+            endpoint = getEndpoint(notification.getUrl());
+            offered = endpoint.offer(pendingNotification);
+        } while (!offered && endpoint.isClosed());
+
+        if (!offered) {
+            // Don't block the caller (bus or notification queue thread): let the retry queue absorb the overflow
+            log.warn("Too many pending push notifications for url='{}', tenantId='{}', delaying delivery", notification.getUrl(), notification.getTenantId());
+            scheduleRetry(notification, notification.getAttemptNumber(), accountRecordId, tenantRecordId);
+            return;
+        }
+
+        if (!isBatching()) {
+            final PushNotificationEndpoint targetEndpoint = endpoint;
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    sendPendingNotifications(targetEndpoint);
+                }
+            });
+        }
+    }
+
+    private void sendPendingNotifications(final PushNotificationEndpoint endpoint) {
+        final int maxNotificationsPerRequest = isBatching() ? Math.max(1, pushNotificationConfig.getPushNotificationBatchMaxSize()) : 1;
+        while (endpoint.hasPendingNotifications() && endpoint.tryAcquireRequest()) {
+            final List<PendingNotification> notifications = endpoint.drainPendingNotifications(maxNotificationsPerRequest);
+            if (notifications.isEmpty()) {
+                endpoint.releaseRequest();
+                break;
+            }
+            doPost(endpoint, notifications);
+        }
+    }
+
+    private void doPost(final PushNotificationEndpoint endpoint, final List<PendingNotification> notifications) {
+        final Iterable<String> bodies = Iterables.transform(notifications, new Function<PendingNotification, String>() {
+            @Override
+            public String apply(final PendingNotification input) {
+                return input.getKey().getBody() == null ? "{}" : input.getKey().getBody();
+            }
+        });
+        final String body = isBatching() ? "[" + Joiner.on(",").join(bodies) + "]" : Iterables.getOnlyElement(bodies);
+
+        final BoundRequestBuilder builder = httpClient.preparePost(endpoint.getUrl());
+        builder.setBody(body);
         builder.addHeader(HTTP_HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
 
-        final Response response;
+        final Timer.Context timerContext = endpoint.startRequest();
         try {
-            final ListenableFuture<Response> futureStatus =
-                    builder.execute(new AsyncCompletionHandler<Response>() {
-                        @Override
-                        public Response onCompleted(final Response response) throws Exception {
-                            return response;
-                        }
-                    });
-            response = futureStatus.get(timeoutSec, TimeUnit.SECONDS);
+            builder.execute(new AsyncCompletionHandler<Response>() {
+                @Override
+                public Response onCompleted(final Response response) throws Exception {
+                    timerContext.stop();
+                    final boolean success = response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+                    if (!success) {
+                        log.warn("Failed to push notification url='{}', statusCode='{}'", endpoint.getUrl(), response.getStatusCode());
+                    }
+                    onRequestCompleted(endpoint, notifications, success);
+                    return response;
+                }
+
+                @Override
+                public void onThrowable(final Throwable t) {
+                    timerContext.stop();
+                    log.warn("Failed to push notification url='{}'", endpoint.getUrl(), t);
+                    onRequestCompleted(endpoint, notifications, false);
+                }
+            });
         } catch (final Exception e) {
-            log.warn("Failed to push notification url='{}', tenantId='{}'", url, tenantId, e);
+            timerContext.stop();
+            log.warn("Failed to push notification url='{}'", endpoint.getUrl(), e);
+            onRequestCompleted(endpoint, notifications, false);
+        }
+    }
+
+    // Called from the HTTP client threads: hand the work over to the delivery threads
+    private void onRequestCompleted(final PushNotificationEndpoint endpoint, final List<PendingNotification> notifications, final boolean success) {
+        endpoint.releaseRequest();
+        if (!success) {
+            endpoint.markFailure();
+        }
+
+        final boolean submitted = submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!success) {
+                    for (final PendingNotification notification : notifications) {
+                        scheduleRetry(notification.getKey(), notification.getKey().getAttemptNumber() + 1, notification.getAccountRecordId(), notification.getTenantRecordId());
+                    }
+                }
+                if (!isBatching()) {
+                    sendPendingNotifications(endpoint);
+                    pruneEndpointIfUnused(endpoint);
+                }
+            }
+        });
+        if (!submitted && !success) {
+            log.warn("Dropping {} failed push notifications for url='{}' on shutdown", notifications.size(), endpoint.getUrl());
+        }
+    }
+
+    private boolean submit(final Runnable task) {
+        final ScheduledExecutorService executor = deliveryExecutor;
+        if (executor == null) {
             return false;
         }
-        return response.getStatusCode() >= 200 && response.getStatusCode() < 300;
+        try {
+            executor.submit(task);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void scheduleRetry(final PushNotificationKey notification, final int attemptNumber, final Long accountRecordId, final Long tenantRecordId) {
+        final List<TimeSpan> retries = pushNotificationConfig.getPushNotificationRetries();
+        // The first attempt isn't a retry
+        final int retryIndex = Math.max(0, attemptNumber - 1);
+        if (retryIndex >= retries.size()) {
+            log.warn("Giving up on push notification url='{}', tenantId='{}' after {} attempts", notification.getUrl(), notification.getTenantId(), attemptNumber);
+            return;
+        }
+
+        final DateTime retryDate = clock.getUTCNow().plus(retries.get(retryIndex).getMillis());
+        final PushNotificationKey retryKey = new PushNotificationKey(notification.getTenantId(), notification.getUrl(), notification.getBody(), attemptNumber);
+        try {
+            // The notifications table requires a non-null search key
+            retryQueue.recordFutureNotification(retryDate, retryKey, null, accountRecordId == null ? 0L : accountRecordId, tenantRecordId);
+        } catch (final IOException e) {
+            log.warn("Failed to schedule retry for push notification url='{}', tenantId='{}'", notification.getUrl(), notification.getTenantId(), e);
+        }
+    }
+
+    private PushNotificationEndpoint getEndpoint(final String url) {
+        PushNotificationEndpoint endpoint = endpoints.get(url);
+        if (endpoint == null) {
+            final PushNotificationEndpoint newEndpoint = new PushNotificationEndpoint(url,
+                                                                                      pushNotificationConfig.getPushNotificationEndpointQueueSize(),
+                                                                                      pushNotificationConfig.getPushNotificationEndpointMaxRequests(),
+                                                                                      metricRegistry);
+            endpoint = endpoints.putIfAbsent(url, newEndpoint);
+            if (endpoint == null) {
+                endpoint = newEndpoint;
+            }
+        }
+        return endpoint;
+    }
+
+    private void updateCallbacksForTenant(final Long tenantRecordId, final Collection<String> callbacks) {
+        final Set<String> previousCallbacks = callbacksPerTenant.get(tenantRecordId);
+        if (previousCallbacks != null ? previousCallbacks.size() == callbacks.size() && previousCallbacks.containsAll(callbacks) : callbacks.isEmpty()) {
+            return;
+        }
+
+        final Set<String> newCallbacks = ImmutableSet.<String>copyOf(callbacks);
+        final Set<String> removedCallbacks;
+        synchronized (callbacksPerTenant) {
+            final Set<String> oldCallbacks = newCallbacks.isEmpty() ? callbacksPerTenant.remove(tenantRecordId) : callbacksPerTenant.put(tenantRecordId, newCallbacks);
+            final Set<String> nonNullOldCallbacks = oldCallbacks == null ? ImmutableSet.<String>of() : oldCallbacks;
+            for (final String url : Sets.difference(newCallbacks, nonNullOldCallbacks)) {
+                callbackReferences.add(url);
+            }
+            removedCallbacks = ImmutableSet.<String>copyOf(Sets.difference(nonNullOldCallbacks, newCallbacks));
+            for (final String url : removedCallbacks) {
+                callbackReferences.remove(url);
+            }
+        }
+
+        for (final String url : removedCallbacks) {
+            final PushNotificationEndpoint endpoint = endpoints.get(url);
+            if (endpoint != null) {
+                pruneEndpointIfUnused(endpoint);
+            }
+        }
+    }
+
+    // Endpoints with pending notifications or in-flight requests are pruned once they are done
+    private void pruneEndpointIfUnused(final PushNotificationEndpoint endpoint) {
+        if (!endpoint.isIdle() || callbackReferences.contains(endpoint.getUrl())) {
+            return;
+        }
+
+        if (endpoints.remove(endpoint.getUrl(), endpoint)) {
+            // Notifications offered concurrently with the removal
+            for (final PendingNotification notification : endpoint.close(metricRegistry)) {
+                enqueue(notification.getKey(), notification.getAccountRecordId(), notification.getTenantRecordId());
+            }
+        }
+    }
+
+    private boolean isBatching() {
+        return pushNotificationConfig.getPushNotificationBatchWindow().getMillis() > 0;
     }
 
     private List<String> getCallbacksForTenant(final TenantContext context) throws TenantApiException {
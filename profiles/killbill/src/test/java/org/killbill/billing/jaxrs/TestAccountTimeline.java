@@ -36,13 +36,16 @@ import org.killbill.billing.client.model.InvoicePayment;
 import org.killbill.billing.client.model.InvoicePaymentTransaction;
 import org.killbill.billing.client.model.Payment;
 import org.killbill.billing.client.model.PaymentTransaction;
+import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.killbill.billing.payment.api.TransactionType;
 import org.killbill.billing.util.api.AuditLevel;
 import org.killbill.billing.util.audit.ChangeType;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
 
 import static org.testng.Assert.assertEquals;
 
@@ -115,6 +118,36 @@ public class TestAccountTimeline extends TestJaxrsBase {
         verifyBundles(accountJson.getAccountId(), startTime, endTime);
     }
 
+    @Test(groups = "slow", description = "Can retrieve the timeline page by page")
+    public void testStreamingAccountTimeline() throws Exception {
+        final Account accountJson = createAccountWithPMBundleAndSubscriptionAndWaitForFirstInvoice();
+
+        // Add a credit, which is embedded in all the invoices
+        final Invoice invoice = killBillClient.getInvoicesForAccount(accountJson.getAccountId()).get(1);
+        final Credit credit = new Credit();
+        credit.setAccountId(accountJson.getAccountId());
+        credit.setInvoiceId(invoice.getInvoiceId());
+        credit.setCreditAmount(BigDecimal.ONE);
+        killBillClient.createCredit(credit, createdBy, reason, comment);
+
+        for (final AuditLevel auditLevel : AuditLevel.values()) {
+            final AccountTimeline timeline = killBillClient.getAccountTimeline(accountJson.getAccountId(), auditLevel);
+
+            final Multimap<String, String> queryParams = HashMultimap.<String, String>create();
+            queryParams.put(JaxrsResource.QUERY_AUDIT, auditLevel.toString());
+            queryParams.put(JaxrsResource.QUERY_STREAMING, "true");
+            final AccountTimeline streamedTimeline = killBillHttpClient.doGet(JaxrsResource.ACCOUNTS_PATH + "/" + accountJson.getAccountId() + "/" + JaxrsResource.TIMELINE,
+                                                                              queryParams,
+                                                                              AccountTimeline.class);
+
+            Assert.assertEquals(streamedTimeline.getAccount().getAccountId(), accountJson.getAccountId());
+            Assert.assertEquals(streamedTimeline.getBundles(), timeline.getBundles());
+            Assert.assertEquals(streamedTimeline.getInvoices(), timeline.getInvoices());
+            Assert.assertEquals(streamedTimeline.getPayments(), timeline.getPayments());
+            Assert.assertEquals(streamedTimeline.getInvoices().get(1).getCredits().size(), 1);
+        }
+    }
+
     private void verifyPayments(final UUID accountId, final DateTime startTime, final DateTime endTime,
                                 final BigDecimal refundAmount, final BigDecimal chargebackAmount) throws Exception {
         for (final AuditLevel auditLevel : AuditLevel.values()) {
@@ -20,9 +20,14 @@ package org.killbill.billing.jaxrs;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -41,13 +46,19 @@ import org.killbill.billing.client.model.Invoices;
 import org.killbill.billing.client.model.PaymentMethod;
 import org.killbill.billing.entitlement.api.SubscriptionEventType;
 import org.killbill.billing.invoice.api.DryRunType;
+import org.killbill.billing.jaxrs.resources.JaxrsResource;
 import org.killbill.billing.payment.provider.ExternalPaymentProviderPlugin;
 import org.killbill.billing.util.api.AuditLevel;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import com.ning.http.client.Response;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
@@ -211,6 +222,39 @@ public class TestInvoice extends TestJaxrsBase {
         assertEquals(newInvoiceList.size(), 3);
     }
 
+    @Test(groups = "slow", description = "Can export invoices as HTML")
+    public void testExportInvoicesAsHTML() throws Exception {
+        final Account accountJson = createAccountWithPMBundleAndSubscriptionAndWaitForFirstInvoice();
+
+        final List<Invoice> invoices = killBillClient.getInvoicesForAccount(accountJson.getAccountId());
+        assertEquals(invoices.size(), 2);
+        final String firstInvoiceHtml = killBillClient.getInvoiceAsHtml(invoices.get(0).getInvoiceId());
+        final String secondInvoiceHtml = killBillClient.getInvoiceAsHtml(invoices.get(1).getInvoiceId());
+
+        // By invoice ids, in the requested order
+        final Multimap<String, String> byIds = HashMultimap.<String, String>create();
+        byIds.put(JaxrsResource.QUERY_INVOICE_ID, invoices.get(1).getInvoiceId().toString());
+        Map<String, String> exported = exportInvoicesAsHTML(byIds);
+        assertEquals(ImmutableList.<String>copyOf(exported.keySet()), ImmutableList.<String>of(invoices.get(1).getInvoiceId() + ".html"));
+        assertEquals(exported.get(invoices.get(1).getInvoiceId() + ".html"), secondInvoiceHtml);
+
+        // By account, ordered by invoice date
+        final Multimap<String, String> byAccount = HashMultimap.<String, String>create();
+        byAccount.put(JaxrsResource.QUERY_ACCOUNT_ID, accountJson.getAccountId().toString());
+        exported = exportInvoicesAsHTML(byAccount);
+        assertEquals(ImmutableList.<String>copyOf(exported.keySet()), ImmutableList.<String>of(invoices.get(0).getInvoiceId() + ".html", invoices.get(1).getInvoiceId() + ".html"));
+        assertEquals(exported.get(invoices.get(0).getInvoiceId() + ".html"), firstInvoiceHtml);
+        assertEquals(exported.get(invoices.get(1).getInvoiceId() + ".html"), secondInvoiceHtml);
+
+        // Across the tenant, by invoice date
+        final Multimap<String, String> byInvoiceDate = HashMultimap.<String, String>create();
+        byInvoiceDate.put(JaxrsResource.QUERY_START_DATE, invoices.get(1).getInvoiceDate().toString());
+        byInvoiceDate.put(JaxrsResource.QUERY_END_DATE, invoices.get(1).getInvoiceDate().toString());
+        exported = exportInvoicesAsHTML(byInvoiceDate);
+        assertEquals(ImmutableList.<String>copyOf(exported.keySet()), ImmutableList.<String>of(invoices.get(1).getInvoiceId() + ".html"));
+        assertEquals(exported.get(invoices.get(1).getInvoiceId() + ".html"), secondInvoiceHtml);
+    }
+
     @Test(groups = "slow", description = "Can create a subscription in dryRun mode and get an invoice back")
     public void testDryRunSubscriptionCreate() throws Exception {
         final DateTime initialDate = new DateTime(2012, 4, 25, 0, 3, 42, 0);
@@ -652,4 +696,21 @@ public class TestInvoice extends TestJaxrsBase {
         }
         Assert.assertNull(page);
     }
+
+    private Map<String, String> exportInvoicesAsHTML(final Multimap<String, String> queryParams) throws Exception {
+        final Response response = killBillHttpClient.doGet(JaxrsResource.INVOICES_PATH + "/" + JaxrsResource.EXPORT + "/html", queryParams, Response.class);
+        assertEquals(response.getStatusCode(), 200);
+
+        final Map<String, String> entries = new LinkedHashMap<String, String>();
+        final ZipInputStream zipInputStream = new ZipInputStream(response.getResponseBodyAsStream());
+        try {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(ByteStreams.toByteArray(zipInputStream), StandardCharsets.UTF_8));
+            }
+        } finally {
+            zipInputStream.close();
+        }
+        return entries;
+    }
 }
@@ -123,6 +123,32 @@ public class TestPushNotification extends TestJaxrsBase {
         Assert.assertEquals(result2.getValues().size(), 0);
     }
 
+    @Test(groups = "slow")
+    public void testPushNotificationRetries() throws Exception {
+        // Restart the callback server, failing the first call
+        callbackServer.stopServer();
+        callbackServer = new CallbackServer(this, SERVER_PORT, CALLBACK_ENDPOINT, 1);
+        callbackServer.startServer();
+
+        final String callback = "http://127.0.0.1:" + SERVER_PORT + CALLBACK_ENDPOINT;
+        killBillClient.registerCallbackNotificationForTenant(callback, createdBy, reason, comment);
+
+        // Create account to trigger a push notification
+        createAccount();
+
+        // The notification should be retried through the retry queue (see org.killbill.server.notifications.retries in killbill.properties)
+        final boolean success = waitForCallbacksToComplete();
+        if (!success) {
+            Assert.fail("Fail to see push notification retry");
+        }
+
+        if (callbackCompletedWithError) {
+            Assert.fail("Assertion during callback failed...");
+        }
+
+        killBillClient.unregisterCallbackNotificationForTenant(createdBy, reason, comment);
+    }
+
     public void setCompleted(final boolean withError) {
         callbackCompleted = true;
         callbackCompletedWithError = withError;
@@ -133,10 +159,16 @@ public class TestPushNotification extends TestJaxrsBase {
         private final Server server;
         private final String callbackEndpoint;
         private final TestPushNotification test;
+        private final int nbFailuresBeforeSuccess;
 
         public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint) {
+            this(test, port, callbackEndpoint, 0);
+        }
+
+        public CallbackServer(final TestPushNotification test, final int port, final String callbackEndpoint, final int nbFailuresBeforeSuccess) {
             this.callbackEndpoint = callbackEndpoint;
             this.test = test;
+            this.nbFailuresBeforeSuccess = nbFailuresBeforeSuccess;
             this.server = new Server(port);
         }
 
@@ -144,7 +176,7 @@ public class TestPushNotification extends TestJaxrsBase {
             final ServletContextHandler context = new ServletContextHandler();
             context.setContextPath("/");
             server.setHandler(context);
-            context.addServlet(new ServletHolder(new CallmebackServlet(test, 1)), callbackEndpoint);
+            context.addServlet(new ServletHolder(new CallmebackServlet(test, 1, nbFailuresBeforeSuccess)), callbackEndpoint);
             server.start();
         }
 
@@ -160,14 +192,16 @@ public class TestPushNotification extends TestJaxrsBase {
         private static final Logger log = LoggerFactory.getLogger(CallmebackServlet.class);
 
         private final int expectedNbCalls;
+        private final int nbFailuresBeforeSuccess;
         private final AtomicInteger receivedCalls;
         private final TestPushNotification test;
         private final ObjectMapper objectMapper = new ObjectMapper();
 
         private boolean withError;
 
-        public CallmebackServlet(final TestPushNotification test, final int expectedNbCalls) {
-            this.expectedNbCalls = expectedNbCalls;
+        public CallmebackServlet(final TestPushNotification test, final int expectedNbCalls, final int nbFailuresBeforeSuccess) {
+            this.expectedNbCalls = expectedNbCalls + nbFailuresBeforeSuccess;
+            this.nbFailuresBeforeSuccess = nbFailuresBeforeSuccess;
             this.test = test;
             this.receivedCalls = new AtomicInteger(0);
             this.withError = false;
@@ -178,6 +212,11 @@ public class TestPushNotification extends TestJaxrsBase {
             final int current = receivedCalls.incrementAndGet();
 
             final String body = CharStreams.toString(new InputStreamReader(request.getInputStream(), "UTF-8"));
+            if (current <= nbFailuresBeforeSuccess) {
+                log.info("Failing call {} on purpose", current);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
             response.setStatus(HttpServletResponse.SC_OK);
 
             log.info("Got body {}", body);
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.server.log.obfuscators;
+
+import java.util.Arrays;
+
+import org.killbill.billing.server.log.ServerTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestKeywordsMatcher extends ServerTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testFind() throws Exception {
+        final KeywordsMatcher matcher = new KeywordsMatcher("number", "accountnumber", "cvNumber", "name");
+
+        assertFound(matcher, "", false, false, false, false);
+        assertFound(matcher, "Nothing to see here", false, false, false, false);
+        assertFound(matcher, "{\"accountNumber\": 1234}", true, true, false, false);
+        assertFound(matcher, "<CVNUMBER>123</CVNUMBER>", true, false, true, false);
+        assertFound(matcher, "firstName", false, false, false, true);
+        // Truncated keyword at the end of the input
+        assertFound(matcher, "accountnumbe", false, false, false, false);
+    }
+
+    @Test(groups = "fast")
+    public void testFindAny() throws Exception {
+        final KeywordsMatcher matcher = new KeywordsMatcher("Assigning value [");
+
+        Assert.assertTrue(matcher.findAny("Assigning value [foo] for [bar] on [baz]"));
+        Assert.assertTrue(matcher.findAny("something\nassigning VALUE [foo]"));
+        Assert.assertFalse(matcher.findAny("Assigning value foo"));
+    }
+
+    private void assertFound(final KeywordsMatcher matcher, final String input, final boolean... expected) {
+        Assert.assertEquals(Arrays.toString(matcher.find(input)), Arrays.toString(expected), input);
+    }
+}
@@ -25,21 +25,37 @@ import javax.inject.Inject;
 import org.joda.time.LocalDate;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.AccountVersionTracker;
+import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
 
 public class DefaultRolledUpUsageDao implements RolledUpUsageDao {
 
+    private final IDBI dbi;
     private final RolledUpUsageSqlDao rolledUpUsageSqlDao;
 
     @Inject
     public DefaultRolledUpUsageDao(final IDBI dbi) {
+        this.dbi = dbi;
         this.rolledUpUsageSqlDao = dbi.onDemand(RolledUpUsageSqlDao.class);
     }
 
     @Override
     public void record(final UUID subscriptionId, final String unitType, final LocalDate date, final Long amount, final InternalCallContext context) {
         final RolledUpUsageModelDao rolledUpUsageModelDao = new RolledUpUsageModelDao(subscriptionId, unitType, date, amount);
-        rolledUpUsageSqlDao.create(rolledUpUsageModelDao, context);
+        dbi.inTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                handle.attach(RolledUpUsageSqlDao.class).create(rolledUpUsageModelDao, context);
+                // Usage isn't recorded through the EntitySqlDao wrappers: bump the account version here, so that results cached per version are invalidated
+                if (context.getAccountRecordId() != null) {
+                    AccountVersionTracker.incrementVersion(handle, context.getAccountRecordId(), context.getTenantRecordId(), context.getCreatedDate().toDate());
+                }
+                return null;
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Append-only journal, split into fixed size memory-mapped segments.
+ * <p/>
+ * Each record is framed as [body length][crc32 of the body][type][transaction id][payload], so that a torn write
+ * is detected (and ignored) on recovery. Durability is batched: concurrent callers of {@link #sync(long)} share
+ * a single force() of the current segment. Segments are deleted once neither they nor an older segment are
+ * referenced anymore, so that the records following a retained record (e.g. its commit record) are kept as well.
+ */
+public class AuditJournal implements Closeable {
+
+    public static final byte ENTRIES = 1;
+    public static final byte COMMIT = 2;
+    public static final byte ROLLBACK = 3;
+    public static final byte DRAINED = 4;
+    public static final byte PARKED = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditJournal.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "audit-journal-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    // Body length and crc
+    private static final int FRAME_HEADER_SIZE = 8;
+    // Type and transaction id
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private final File directory;
+    private final long segmentSize;
+    private final SortedMap<Long, Integer> segmentReferences = new TreeMap<Long, Integer>();
+    private final AtomicLong nextTransactionId = new AtomicLong(1);
+    private final Object syncLock = new Object();
+
+    // Oldest segment which may still be on disk
+    private long firstSegmentId = -1;
+    private long currentSegmentId = -1;
+    private RandomAccessFile currentSegmentFile;
+    private MappedByteBuffer currentSegment;
+    // Position of the next record, see toPosition
+    private volatile long writePosition;
+    // Guarded by syncLock
+    private long syncedPosition;
+
+    public AuditJournal(final File directory, final long segmentSize) {
+        Preconditions.checkArgument(segmentSize > FRAME_HEADER_SIZE + RECORD_HEADER_SIZE && segmentSize <= Integer.MAX_VALUE, "Invalid journal segment size %s", segmentSize);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Open the journal: existing records are read back (in order) and new records are appended to a new segment.
+     *
+     * @return all the valid records of the existing segments
+     * @throws IOException if the journal directory cannot be read or written
+     */
+    public synchronized List<Record> open() throws IOException {
+        Preconditions.checkState(currentSegment == null, "Journal %s is already opened", directory);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+
+        final List<Record> records = new ArrayList<Record>();
+        final List<Long> segmentIds = listSegmentIds();
+        long lastSegmentId = 0;
+        for (final Long segmentId : segmentIds) {
+            readSegment(segmentId, records);
+            lastSegmentId = segmentId;
+        }
+        firstSegmentId = segmentIds.isEmpty() ? 1 : segmentIds.get(0);
+
+        long lastTransactionId = 0;
+        for (final Record record : records) {
+            lastTransactionId = Math.max(lastTransactionId, record.getTransactionId());
+        }
+        nextTransactionId.set(lastTransactionId + 1);
+
+        // Never append after recovered data: the tail of the last segment may contain a torn record
+        openSegment(lastSegmentId + 1);
+        return records;
+    }
+
+    public long nextTransactionId() {
+        return nextTransactionId.getAndIncrement();
+    }
+
+    public long append(final byte type, final long transactionId, final byte[] payload) throws IOException {
+        return append(type, transactionId, payload, false);
+    }
+
+    /**
+     * Append a record and retain its segment, atomically (the segment cannot be deleted until it is released)
+     *
+     * @return the position of the record
+     */
+    public long appendAndRetain(final byte type, final long transactionId, final byte[] payload) throws IOException {
+        return append(type, transactionId, payload, true);
+    }
+
+    /**
+     * Make sure the record at the specified position (and all the records before it) are durable
+     *
+     * @param position position returned by append
+     * @throws IOException if the segment cannot be flushed to disk
+     */
+    public void sync(final long position) throws IOException {
+        synchronized (syncLock) {
+            if (position < syncedPosition) {
+                // Forced by a concurrent caller
+                return;
+            }
+
+            // Records are fully written by the time writePosition is published. If the segment is rolled concurrently,
+            // the previous one has already been forced.
+            final long targetPosition = writePosition;
+            final MappedByteBuffer segment;
+            synchronized (this) {
+                segment = currentSegment;
+            }
+            if (segment == null) {
+                throw new IOException("Journal " + directory + " is closed");
+            }
+            segment.force();
+            syncedPosition = targetPosition;
+        }
+    }
+
+    public long getSegmentId(final long position) {
+        return position >>> 32;
+    }
+
+    public synchronized void release(final long segmentId) {
+        final Integer references = segmentReferences.get(segmentId);
+        if (references == null) {
+            return;
+        }
+
+        if (references > 1) {
+            segmentReferences.put(segmentId, references - 1);
+        } else {
+            segmentReferences.remove(segmentId);
+            deleteObsoleteSegments();
+        }
+    }
+
+    public synchronized void retain(final long segmentId) {
+        final Integer references = segmentReferences.get(segmentId);
+        segmentReferences.put(segmentId, references == null ? 1 : references + 1);
+    }
+
+    // Delete all segments which are not needed anymore, e.g. after recovery
+    public synchronized void purge() {
+        deleteObsoleteSegments();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (currentSegment == null) {
+            return;
+        }
+
+        try {
+            currentSegment.force();
+        } finally {
+            currentSegmentFile.close();
+            currentSegmentFile = null;
+            currentSegment = null;
+        }
+    }
+
+    private synchronized long append(final byte type, final long transactionId, final byte[] payload, final boolean retain) throws IOException {
+        if (currentSegment == null) {
+            throw new IOException("Journal " + directory + " is closed");
+        }
+
+        final int bodyLength = RECORD_HEADER_SIZE + payload.length;
+        if ((long) FRAME_HEADER_SIZE + bodyLength > segmentSize) {
+            throw new IOException(String.format("Record of %s bytes doesn't fit in a journal segment of %s bytes", bodyLength, segmentSize));
+        }
+        if (currentSegment.remaining() < FRAME_HEADER_SIZE + bodyLength) {
+            rollSegment();
+        }
+
+        final byte[] body = new byte[bodyLength];
+        ByteBuffer.wrap(body).put(type).putLong(transactionId).put(payload);
+        final CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        final long position = toPosition(currentSegmentId, currentSegment.position());
+        currentSegment.putInt(bodyLength).putInt((int) crc.getValue()).put(body);
+        if (retain) {
+            retain(currentSegmentId);
+        }
+        writePosition = toPosition(currentSegmentId, currentSegment.position());
+        return position;
+    }
+
+    private void rollSegment() throws IOException {
+        // Records of the previous segment need to be durable before any record of the new segment is acknowledged
+        currentSegment.force();
+        currentSegmentFile.close();
+
+        openSegment(currentSegmentId + 1);
+        deleteObsoleteSegments();
+    }
+
+    private void openSegment(final long segmentId) throws IOException {
+        final RandomAccessFile segmentFile = new RandomAccessFile(getSegmentFile(segmentId), "rw");
+        try {
+            segmentFile.setLength(segmentSize);
+            currentSegment = segmentFile.getChannel().map(MapMode.READ_WRITE, 0, segmentSize);
+        } catch (final IOException e) {
+            segmentFile.close();
+            throw e;
+        }
+        currentSegmentFile = segmentFile;
+        currentSegmentId = segmentId;
+        writePosition = toPosition(segmentId, 0);
+    }
+
+    private void readSegment(final long segmentId, final List<Record> records) throws IOException {
+        final RandomAccessFile segmentFile = new RandomAccessFile(getSegmentFile(segmentId), "r");
+        try {
+            final MappedByteBuffer segment = segmentFile.getChannel().map(MapMode.READ_ONLY, 0, segmentFile.length());
+            while (segment.remaining() >= FRAME_HEADER_SIZE) {
+                final int offset = segment.position();
+                final int bodyLength = segment.getInt();
+                // Segments are zero-filled: a zero length marks the end of the written records
+                if (bodyLength < RECORD_HEADER_SIZE || bodyLength > segment.remaining() - 4) {
+                    break;
+                }
+
+                final int expectedCrc = segment.getInt();
+                final byte[] body = new byte[bodyLength];
+                segment.get(body);
+                final CRC32 crc = new CRC32();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    logger.warn("Ignoring torn record at offset {} of journal segment {}", offset, segmentId);
+                    break;
+                }
+
+                final ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+                final byte type = bodyBuffer.get();
+                final long transactionId = bodyBuffer.getLong();
+                final byte[] payload = new byte[bodyBuffer.remaining()];
+                bodyBuffer.get(payload);
+                records.add(new Record(toPosition(segmentId, offset), type, transactionId, payload));
+            }
+        } catch (final BufferUnderflowException e) {
+            logger.warn("Ignoring truncated journal segment {}", segmentId);
+        } finally {
+            segmentFile.close();
+        }
+    }
+
+    private void deleteObsoleteSegments() {
+        final long lastObsoleteSegmentId = (segmentReferences.isEmpty() ? currentSegmentId : Math.min(segmentReferences.firstKey(), currentSegmentId)) - 1;
+        while (firstSegmentId <= lastObsoleteSegmentId) {
+            final File segmentFile = getSegmentFile(firstSegmentId);
+            if (segmentFile.exists() && !segmentFile.delete()) {
+                logger.warn("Unable to delete journal segment {}", segmentFile);
+                return;
+            }
+            firstSegmentId++;
+        }
+    }
+
+    private List<Long> listSegmentIds() throws IOException {
+        final String[] segmentFileNames = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        if (segmentFileNames == null) {
+            throw new IOException("Unable to list journal directory " + directory);
+        }
+
+        final List<Long> segmentIds = new ArrayList<Long>(segmentFileNames.length);
+        for (final String segmentFileName : segmentFileNames) {
+            try {
+                segmentIds.add(Long.valueOf(segmentFileName.substring(SEGMENT_FILE_PREFIX.length(), segmentFileName.length() - SEGMENT_FILE_SUFFIX.length())));
+            } catch (final NumberFormatException e) {
+                logger.warn("Ignoring unexpected file {} in journal directory {}", segmentFileName, directory);
+            }
+        }
+        Collections.sort(segmentIds);
+        return segmentIds;
+    }
+
+    // Positions are ordered and don't depend on the segment size (which may change across restarts)
+    private static long toPosition(final long segmentId, final int offset) {
+        return (segmentId << 32) | offset;
+    }
+
+    private File getSegmentFile(final long segmentId) {
+        return new File(directory, String.format("%s%020d%s", SEGMENT_FILE_PREFIX, segmentId, SEGMENT_FILE_SUFFIX));
+    }
+
+    public static final class Record {
+
+        private final long position;
+        private final byte type;
+        private final long transactionId;
+        private final byte[] payload;
+
+        public Record(final long position, final byte type, final long transactionId, final byte[] payload) {
+            this.position = position;
+            this.type = type;
+            this.transactionId = transactionId;
+            this.payload = payload;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long getTransactionId() {
+            return transactionId;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.callcontext.CallOrigin;
+import org.killbill.billing.util.callcontext.UserType;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.entity.dao.EntityModelDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+/**
+ * History and audit records of an entity change, as stored in the journal. The entity model is serialized
+ * field by field, as it was right after the change.
+ */
+public class AuditJournalEntry {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditJournalEntry.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Model daos are plain beans (they are built by the JDBI mappers): use their fields, not their (sometimes computed) getters
+    private static final ObjectMapper entityObjectMapper = new ObjectMapper();
+
+    static {
+        objectMapper.registerModule(new JodaModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        entityObjectMapper.registerModule(new JodaModule());
+        entityObjectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        entityObjectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        entityObjectMapper.setVisibility(PropertyAccessor.ALL, Visibility.NONE);
+        entityObjectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+    }
+
+    private final String sqlDaoClass;
+    private final String entityClass;
+    private final String entity;
+    private final TableName tableName;
+    private final Long entityRecordId;
+    private final ChangeType changeType;
+    private final DateTime changeDate;
+    private final Long tenantRecordId;
+    private final Long accountRecordId;
+    private final Long auditAccountRecordId;
+    private final UUID userToken;
+    private final String userName;
+    private final CallOrigin callOrigin;
+    private final UserType userType;
+    private final String reasonCode;
+    private final String comments;
+    private final DateTime createdDate;
+    private final DateTime updatedDate;
+
+    @JsonCreator
+    public AuditJournalEntry(@JsonProperty("sqlDaoClass") final String sqlDaoClass,
+                             @JsonProperty("entityClass") final String entityClass,
+                             @JsonProperty("entity") final String entity,
+                             @JsonProperty("tableName") final TableName tableName,
+                             @JsonProperty("entityRecordId") final Long entityRecordId,
+                             @JsonProperty("changeType") final ChangeType changeType,
+                             @JsonProperty("changeDate") final DateTime changeDate,
+                             @JsonProperty("tenantRecordId") final Long tenantRecordId,
+                             @JsonProperty("accountRecordId") @Nullable final Long accountRecordId,
+                             @JsonProperty("auditAccountRecordId") @Nullable final Long auditAccountRecordId,
+                             @JsonProperty("userToken") @Nullable final UUID userToken,
+                             @JsonProperty("userName") final String userName,
+                             @JsonProperty("callOrigin") final CallOrigin callOrigin,
+                             @JsonProperty("userType") final UserType userType,
+                             @JsonProperty("reasonCode") @Nullable final String reasonCode,
+                             @JsonProperty("comments") @Nullable final String comments,
+                             @JsonProperty("createdDate") final DateTime createdDate,
+                             @JsonProperty("updatedDate") final DateTime updatedDate) {
+        this.sqlDaoClass = sqlDaoClass;
+        this.entityClass = entityClass;
+        this.entity = entity;
+        this.tableName = tableName;
+        this.entityRecordId = entityRecordId;
+        this.changeType = changeType;
+        this.changeDate = changeDate;
+        this.tenantRecordId = tenantRecordId;
+        this.accountRecordId = accountRecordId;
+        this.auditAccountRecordId = auditAccountRecordId;
+        this.userToken = userToken;
+        this.userName = userName;
+        this.callOrigin = callOrigin;
+        this.userType = userType;
+        this.reasonCode = reasonCode;
+        this.comments = comments;
+        this.createdDate = createdDate;
+        this.updatedDate = updatedDate;
+    }
+
+    /**
+     * @param context      context used for the history record
+     * @param auditContext context used for the audit record (the account record id is only known after the account creation)
+     * @return the journal entry, or null if the entity model cannot be serialized (the change should be written synchronously)
+     */
+    public static <M extends EntityModelDao<E>, E extends Entity> AuditJournalEntry create(final Class<? extends EntitySqlDao<M, E>> sqlDaoClass,
+                                                                                        final M entity,
+                                                                                        final Long entityRecordId,
+                                                                                        final ChangeType changeType,
+                                                                                        final DateTime changeDate,
+                                                                                        final InternalCallContext context,
+                                                                                        final InternalCallContext auditContext) {
+        final String serializedEntity;
+        try {
+            serializedEntity = entityObjectMapper.writeValueAsString(entity);
+            // Make sure it can be read back when draining the journal
+            entityObjectMapper.readValue(serializedEntity, entity.getClass());
+        } catch (final IOException e) {
+            logger.warn("Unable to journal {}, its history and audit records will be written synchronously: {}", entity.getClass().getName(), e.getMessage());
+            return null;
+        }
+
+        return new AuditJournalEntry(sqlDaoClass.getName(),
+                                     entity.getClass().getName(),
+                                     serializedEntity,
+                                     entity.getTableName(),
+                                     entityRecordId,
+                                     changeType,
+                                     changeDate,
+                                     context.getTenantRecordId(),
+                                     context.getAccountRecordId(),
+                                     auditContext.getAccountRecordId(),
+                                     context.getUserToken(),
+                                     context.getCreatedBy(),
+                                     context.getCallOrigin(),
+                                     context.getContextUserType(),
+                                     context.getReasonCode(),
+                                     context.getComments(),
+                                     context.getCreatedDate(),
+                                     context.getUpdatedDate());
+    }
+
+    public static byte[] toBytes(final List<AuditJournalEntry> entries) throws IOException {
+        return objectMapper.writeValueAsBytes(entries);
+    }
+
+    public static List<AuditJournalEntry> fromBytes(final byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, new TypeReference<List<AuditJournalEntry>>() {});
+    }
+
+    @JsonIgnore
+    public <M extends EntityModelDao<E>, E extends Entity> Class<? extends EntitySqlDao<M, E>> getSqlDaoClassObject() throws ClassNotFoundException {
+        return (Class<? extends EntitySqlDao<M, E>>) Class.forName(sqlDaoClass);
+    }
+
+    @JsonIgnore
+    public <M extends EntityModelDao<E>, E extends Entity> M getEntityObject() throws ClassNotFoundException, IOException {
+        return (M) entityObjectMapper.readValue(entity, Class.forName(entityClass));
+    }
+
+    public InternalCallContext toInternalCallContext() {
+        return toInternalCallContext(accountRecordId);
+    }
+
+    public InternalCallContext toAuditInternalCallContext() {
+        return toInternalCallContext(auditAccountRecordId);
+    }
+
+    private InternalCallContext toInternalCallContext(@Nullable final Long accountRecordId) {
+        return new InternalCallContext(tenantRecordId, accountRecordId, null, userToken, userName, callOrigin, userType, reasonCode, comments, createdDate, updatedDate);
+    }
+
+    public String getSqlDaoClass() {
+        return sqlDaoClass;
+    }
+
+    public String getEntityClass() {
+        return entityClass;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public TableName getTableName() {
+        return tableName;
+    }
+
+    public Long getEntityRecordId() {
+        return entityRecordId;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public DateTime getChangeDate() {
+        return changeDate;
+    }
+
+    public Long getTenantRecordId() {
+        return tenantRecordId;
+    }
+
+    public Long getAccountRecordId() {
+        return accountRecordId;
+    }
+
+    public Long getAuditAccountRecordId() {
+        return auditAccountRecordId;
+    }
+
+    public UUID getUserToken() {
+        return userToken;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public CallOrigin getCallOrigin() {
+        return callOrigin;
+    }
+
+    public UserType getUserType() {
+        return userType;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public DateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public DateTime getUpdatedDate() {
+        return updatedDate;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AuditJournalEntry{");
+        sb.append("tableName=").append(tableName);
+        sb.append(", entityRecordId=").append(entityRecordId);
+        sb.append(", changeType=").append(changeType);
+        sb.append(", changeDate=").append(changeDate);
+        sb.append(", tenantRecordId=").append(tenantRecordId);
+        sb.append('}');
+        return sb.toString();
+    }
+}
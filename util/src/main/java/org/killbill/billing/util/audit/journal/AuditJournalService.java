@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import org.killbill.billing.platform.api.KillbillService;
+
+public interface AuditJournalService extends KillbillService {
+
+    /**
+     * Load all committed journal records into the database
+     */
+    public void drain();
+
+    /**
+     * Read barrier: wait (at most org.killbill.audit.journal.readBarrier.timeout) until the transactions committed so far
+     * have been loaded into the database by the drainer. No-op if the journal is disabled.
+     */
+    public void awaitDrained();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.util.Date;
+import java.util.List;
+
+import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+/**
+ * Commit markers of the audit journal transactions: a marker is inserted as part of each database transaction whose
+ * history and audit records are journaled, and deleted in the transaction which loads these records.
+ */
+@EntitySqlDaoStringTemplate
+public interface AuditJournalSqlDao {
+
+    @SqlUpdate
+    public void insertCommitMarker(@Bind("journalId") final String journalId, @Bind("transactionId") final long transactionId, @Bind("createdDate") final Date createdDate);
+
+    @SqlQuery
+    public List<Long> getCommittedTransactionIds(@Bind("journalId") final String journalId);
+
+    @SqlUpdate
+    public void deleteCommitMarker(@Bind("journalId") final String journalId, @Bind("transactionId") final long transactionId);
+}
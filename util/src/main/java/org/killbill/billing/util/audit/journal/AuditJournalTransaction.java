@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.entity.dao.EntityModelDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDao;
+import org.skife.jdbi.v2.Handle;
+
+/**
+ * History and audit records of a single database transaction. The records are appended to the journal (and synced)
+ * right before the database transaction commits, and are loaded into the database by the drainer once it has committed.
+ */
+public class AuditJournalTransaction {
+
+    private final DefaultAuditJournalService auditJournalService;
+    private final long transactionId;
+    private final List<AuditJournalEntry> entries;
+
+    // Journal position of the ENTRIES record, set when prepared
+    private volatile long position;
+    private volatile long preparedTimeMillis;
+    private volatile boolean prepared;
+    private volatile boolean committed;
+    // Number of drains which failed on this transaction alone (only accessed by the drainer)
+    private int drainFailures;
+
+    public AuditJournalTransaction(final DefaultAuditJournalService auditJournalService, final long transactionId) {
+        this(auditJournalService, transactionId, new LinkedList<AuditJournalEntry>());
+    }
+
+    AuditJournalTransaction(final DefaultAuditJournalService auditJournalService, final long transactionId, final List<AuditJournalEntry> entries) {
+        this.auditJournalService = auditJournalService;
+        this.transactionId = transactionId;
+        this.entries = entries;
+        this.prepared = false;
+        this.committed = false;
+    }
+
+    /**
+     * @return false if the change couldn't be journaled, in which case the caller should write the records synchronously
+     */
+    public <M extends EntityModelDao<E>, E extends Entity> boolean add(final Class<? extends EntitySqlDao<M, E>> sqlDaoClass,
+                                                                       final M entity,
+                                                                       final Long entityRecordId,
+                                                                       final ChangeType changeType,
+                                                                       final DateTime changeDate,
+                                                                       final InternalCallContext context,
+                                                                       final InternalCallContext auditContext) {
+        final AuditJournalEntry entry = AuditJournalEntry.create(sqlDaoClass, entity, entityRecordId, changeType, changeDate, context, auditContext);
+        if (entry == null) {
+            return false;
+        }
+        entries.add(entry);
+        return true;
+    }
+
+    // Called within the database transaction, right before it commits
+    public void prepare(final Handle handle) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        auditJournalService.prepare(this, handle);
+    }
+
+    // Called once the database transaction has committed
+    public void commit() {
+        if (prepared) {
+            auditJournalService.commit(this);
+        }
+        committed = true;
+    }
+
+    // Called if the database transaction failed
+    public void rollback() {
+        if (prepared) {
+            auditJournalService.rollback(this);
+        }
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public List<AuditJournalEntry> getEntries() {
+        return entries;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getPreparedTimeMillis() {
+        return preparedTimeMillis;
+    }
+
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    void setPrepared(final long position, final long preparedTimeMillis) {
+        this.position = position;
+        this.preparedTimeMillis = preparedTimeMillis;
+        this.prepared = true;
+    }
+
+    void setCommitted() {
+        this.committed = true;
+    }
+
+    int incrementDrainFailures() {
+        return ++drainFailures;
+    }
+}
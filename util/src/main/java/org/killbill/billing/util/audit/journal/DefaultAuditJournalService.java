@@ -0,0 +1,593 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.AuditJournalConfig;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.entity.dao.EntityModelDao;
+import org.killbill.billing.util.entity.dao.EntitySqlDao;
+import org.killbill.billing.util.entity.dao.HistoryAndAuditWriter;
+import org.killbill.commons.concurrent.Executors;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.TransactionCallback;
+import org.skife.jdbi.v2.TransactionStatus;
+import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+/**
+ * Makes history and audit records durable in a local journal as part of each transaction, and loads them into
+ * the *_history and audit_log tables in the background (in journal order).
+ * <p/>
+ * Each journaled database transaction also inserts a commit marker (audit_journal_commits), which is deleted by the
+ * database transaction loading its records: on restart, a journal transaction is loaded if and only if its marker exists.
+ * A transaction which cannot be loaded on its own (while the database is available) is retried a few times, and is then
+ * moved to the dead-letter directory so that it doesn't block the following ones.
+ * <p/>
+ * The EntitySqlDao wrappers are not created by Guice, hence the static accessor to begin journal transactions (the journal
+ * is only enabled once the service has been initialized).
+ */
+public class DefaultAuditJournalService implements AuditJournalService {
+
+    private static final int TERMINATION_TIMEOUT_SEC = 5;
+
+    private static final String JOURNAL_ID_FILE_NAME = "journal.id";
+    private static final String DEAD_LETTER_DIRECTORY_NAME = "dead-letter";
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultAuditJournalService.class);
+
+    public static final String AUDIT_JOURNAL_SERVICE_NAME = "audit-journal-service";
+
+    public static final String DRAIN_LAG_METRIC_NAME = MetricRegistry.name(AuditJournalService.class, "drainLagMillis");
+    public static final String PENDING_TRANSACTIONS_METRIC_NAME = MetricRegistry.name(AuditJournalService.class, "pendingTransactions");
+    public static final String PARKED_TRANSACTIONS_METRIC_NAME = MetricRegistry.name(AuditJournalService.class, "parkedTransactions");
+
+    private static volatile DefaultAuditJournalService activeInstance;
+
+    private final AuditJournalConfig auditJournalConfig;
+    private final IDBI dbi;
+    private final NonEntityDao nonEntityDao;
+    private final CacheControllerDispatcher cacheControllerDispatcher;
+    private final MetricRegistry metricRegistry;
+
+    // Prepared transactions, sorted by journal position
+    private final ConcurrentSkipListMap<Long, AuditJournalTransaction> preparedTransactions;
+    // Notified after each drain, see awaitDrained
+    private final Object drainMonitor = new Object();
+    private final AtomicBoolean drainRequested = new AtomicBoolean(false);
+
+    private AuditJournal journal;
+    // Identifies the journal in the commit markers (several nodes share the database)
+    private String journalId;
+    private File deadLetterDirectory;
+    private Meter parkedTransactions;
+    private volatile ScheduledExecutorService drainExecutor;
+
+    @Inject
+    public DefaultAuditJournalService(final AuditJournalConfig auditJournalConfig, final IDBI dbi, final NonEntityDao nonEntityDao,
+                                      final CacheControllerDispatcher cacheControllerDispatcher, final MetricRegistry metricRegistry) {
+        this.auditJournalConfig = auditJournalConfig;
+        this.dbi = dbi;
+        this.nonEntityDao = nonEntityDao;
+        this.cacheControllerDispatcher = cacheControllerDispatcher;
+        this.metricRegistry = metricRegistry;
+        this.preparedTransactions = new ConcurrentSkipListMap<Long, AuditJournalTransaction>();
+    }
+
+    /**
+     * @return a new journal transaction, or null if the journal is disabled
+     */
+    public static AuditJournalTransaction beginTransaction() {
+        final DefaultAuditJournalService instance = activeInstance;
+        if (instance == null) {
+            return null;
+        }
+        return new AuditJournalTransaction(instance, instance.journal.nextTransactionId());
+    }
+
+    @Override
+    public String getName() {
+        return AUDIT_JOURNAL_SERVICE_NAME;
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.INIT_SERVICE)
+    public void initialize() throws IOException {
+        if (auditJournalConfig.getJournalDirectory() == null) {
+            return;
+        }
+
+        final File directory = new File(auditJournalConfig.getJournalDirectory());
+        journal = new AuditJournal(directory, auditJournalConfig.getSegmentSize());
+        final List<AuditJournal.Record> records = journal.open();
+        journalId = readOrCreateJournalId(directory);
+        deadLetterDirectory = new File(directory, DEAD_LETTER_DIRECTORY_NAME);
+
+        metricRegistry.remove(PARKED_TRANSACTIONS_METRIC_NAME);
+        parkedTransactions = metricRegistry.meter(PARKED_TRANSACTIONS_METRIC_NAME);
+
+        recover(records);
+
+        metricRegistry.remove(DRAIN_LAG_METRIC_NAME);
+        metricRegistry.register(DRAIN_LAG_METRIC_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                final Map.Entry<Long, AuditJournalTransaction> oldest = preparedTransactions.firstEntry();
+                return oldest == null ? 0L : System.currentTimeMillis() - oldest.getValue().getPreparedTimeMillis();
+            }
+        });
+        metricRegistry.remove(PENDING_TRANSACTIONS_METRIC_NAME);
+        metricRegistry.register(PENDING_TRANSACTIONS_METRIC_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return preparedTransactions.size();
+            }
+        });
+
+        drainExecutor = Executors.newSingleThreadScheduledExecutor("AuditJournalDrainer");
+        activeInstance = this;
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.START_SERVICE)
+    public void start() {
+        final ScheduledExecutorService executor = drainExecutor;
+        if (executor == null) {
+            return;
+        }
+
+        final TimeUnit rateUnit = auditJournalConfig.getDrainRate().getUnit();
+        final long period = auditJournalConfig.getDrainRate().getPeriod();
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, period, period, rateUnit);
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() throws IOException {
+        final ScheduledExecutorService executor = drainExecutor;
+        if (executor == null) {
+            return;
+        }
+
+        activeInstance = null;
+        drainExecutor = null;
+        try {
+            executor.shutdown();
+            final boolean success = executor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+            if (!success) {
+                logger.warn("AuditJournalDrainer failed to complete termination within {} sec", TERMINATION_TIMEOUT_SEC);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("AuditJournalDrainer stop sequence got interrupted");
+        }
+
+        // Whatever is left (e.g. in-flight transactions) will be recovered on restart
+        drain();
+        journal.close();
+        metricRegistry.remove(DRAIN_LAG_METRIC_NAME);
+        metricRegistry.remove(PENDING_TRANSACTIONS_METRIC_NAME);
+        metricRegistry.remove(PARKED_TRANSACTIONS_METRIC_NAME);
+    }
+
+    @Override
+    public synchronized void drain() {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            drainCommittedTransactions();
+        } finally {
+            synchronized (drainMonitor) {
+                drainMonitor.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void awaitDrained() {
+        final ScheduledExecutorService executor = drainExecutor;
+        final Map.Entry<Long, AuditJournalTransaction> newest = preparedTransactions.lastEntry();
+        if (executor == null || newest == null) {
+            return;
+        }
+
+        // Don't drain on the caller thread: ask the drainer to run now and wait for it
+        requestDrain(executor);
+
+        final long deadlineMillis = System.currentTimeMillis() + auditJournalConfig.getReadBarrierTimeout().getMillis();
+        synchronized (drainMonitor) {
+            while (hasCommittedTransactions(newest.getKey())) {
+                final long remainingMillis = deadlineMillis - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    logger.warn("Timeout while waiting for the audit journal to be loaded, audit logs may be incomplete");
+                    return;
+                }
+                try {
+                    drainMonitor.wait(remainingMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void prepare(final AuditJournalTransaction transaction, final Handle handle) {
+        long position = -1;
+        try {
+            position = journal.appendAndRetain(AuditJournal.ENTRIES, transaction.getTransactionId(), AuditJournalEntry.toBytes(transaction.getEntries()));
+            transaction.setPrepared(position, System.currentTimeMillis());
+            preparedTransactions.put(position, transaction);
+            journal.sync(position);
+        } catch (final IOException e) {
+            logger.warn("Failed to journal history and audit records, writing them synchronously", e);
+            if (transaction.isPrepared()) {
+                preparedTransactions.remove(position);
+                journal.release(journal.getSegmentId(position));
+            }
+            // Still within the database transaction
+            writeEntries(handle, transaction.getEntries());
+            transaction.getEntries().clear();
+            transaction.setPrepared(-1, System.currentTimeMillis());
+            return;
+        }
+
+        // Still within the database transaction: the marker only exists if the transaction commits (see recover)
+        SqlObjectBuilder.attach(handle, AuditJournalSqlDao.class).insertCommitMarker(journalId, transaction.getTransactionId(), new Date());
+    }
+
+    void commit(final AuditJournalTransaction transaction) {
+        if (transaction.getPosition() < 0) {
+            // Records were written synchronously
+            return;
+        }
+
+        // Nothing to write: the commit marker is the durable commit record
+        transaction.setCommitted();
+    }
+
+    void rollback(final AuditJournalTransaction transaction) {
+        if (transaction.getPosition() < 0 || preparedTransactions.remove(transaction.getPosition()) == null) {
+            return;
+        }
+
+        try {
+            // No need to sync: without commit marker, the transaction is discarded on recovery anyways
+            journal.append(AuditJournal.ROLLBACK, transaction.getTransactionId(), new byte[0]);
+        } catch (final IOException e) {
+            logger.warn("Failed to append rollback record for audit journal transaction {}", transaction.getTransactionId(), e);
+        } finally {
+            journal.release(journal.getSegmentId(transaction.getPosition()));
+        }
+    }
+
+    private void drainCommittedTransactions() {
+        final int batchSize = auditJournalConfig.getDrainBatchSize();
+        while (true) {
+            // Only drain the committed prefix, to preserve the ordering of the records
+            final List<AuditJournalTransaction> batch = new LinkedList<AuditJournalTransaction>();
+            int nbEntries = 0;
+            for (final AuditJournalTransaction transaction : preparedTransactions.values()) {
+                if (!transaction.isCommitted() || nbEntries >= batchSize) {
+                    break;
+                }
+                batch.add(transaction);
+                nbEntries += transaction.getEntries().size();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            if (load(batch)) {
+                continue;
+            }
+
+            // Isolate the failing transaction: retry the oldest one on its own
+            final AuditJournalTransaction oldest = batch.get(0);
+            if (batch.size() > 1 && load(ImmutableList.<AuditJournalTransaction>of(oldest))) {
+                continue;
+            }
+
+            // Don't count failures caused by an outage
+            if (!isDatabaseAvailable()) {
+                logger.warn("Database unavailable, the audit journal will be drained later");
+                return;
+            }
+
+            final int drainFailures = oldest.incrementDrainFailures();
+            if (drainFailures < auditJournalConfig.getMaxDrainAttempts() || !park(oldest)) {
+                logger.warn("Failed to load audit journal transaction {} ({} attempt(s)), will retry", oldest.getTransactionId(), drainFailures);
+                return;
+            }
+        }
+    }
+
+    private boolean load(final List<AuditJournalTransaction> transactions) {
+        try {
+            dbi.inTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void inTransaction(final Handle handle, final TransactionStatus status) throws Exception {
+                    final AuditJournalSqlDao auditJournalSqlDao = SqlObjectBuilder.attach(handle, AuditJournalSqlDao.class);
+                    for (final AuditJournalTransaction transaction : transactions) {
+                        writeEntries(handle, transaction.getEntries());
+                        auditJournalSqlDao.deleteCommitMarker(journalId, transaction.getTransactionId());
+                    }
+                    return null;
+                }
+            });
+        } catch (final RuntimeException e) {
+            logger.warn("Failed to load {} audit journal transaction(s)", transactions.size(), e);
+            return false;
+        }
+
+        for (final AuditJournalTransaction transaction : transactions) {
+            try {
+                // No need to sync: the commit markers are gone, so these transactions won't be loaded again on restart
+                journal.append(AuditJournal.DRAINED, transaction.getTransactionId(), new byte[0]);
+            } catch (final IOException e) {
+                logger.warn("Failed to mark audit journal transaction {} as drained", transaction.getTransactionId(), e);
+            }
+            release(transaction);
+        }
+        return true;
+    }
+
+    // Move a transaction which cannot be loaded to the dead-letter directory
+    private boolean park(final AuditJournalTransaction transaction) {
+        try {
+            writeDeadLetter(transaction.getTransactionId(), AuditJournalEntry.toBytes(transaction.getEntries()));
+            journal.sync(journal.append(AuditJournal.PARKED, transaction.getTransactionId(), new byte[0]));
+        } catch (final IOException e) {
+            logger.error("Unable to move audit journal transaction {} to the dead-letter directory", transaction.getTransactionId(), e);
+            return false;
+        }
+
+        logger.error("Audit journal transaction {} could not be loaded after {} attempts and was moved to {}: its history and audit records are missing from the database",
+                     transaction.getTransactionId(), auditJournalConfig.getMaxDrainAttempts(), deadLetterDirectory);
+        parkedTransactions.mark();
+        deleteCommitMarker(transaction.getTransactionId());
+        release(transaction);
+        return true;
+    }
+
+    private void release(final AuditJournalTransaction transaction) {
+        preparedTransactions.remove(transaction.getPosition());
+        journal.release(journal.getSegmentId(transaction.getPosition()));
+
+        // Audit logs may have been cached (and looked up) before the records were loaded
+        for (final AuditJournalEntry entry : transaction.getEntries()) {
+            HistoryAndAuditWriter.invalidateAuditLogCaches(cacheControllerDispatcher, entry.getTableName(), entry.getEntityRecordId());
+        }
+    }
+
+    private void requestDrain(final ScheduledExecutorService executor) {
+        if (!drainRequested.compareAndSet(false, true)) {
+            // Already requested
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drainRequested.set(false);
+                    drain();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Shutting down
+            drainRequested.set(false);
+        }
+    }
+
+    private boolean hasCommittedTransactions(final long upToPosition) {
+        for (final AuditJournalTransaction transaction : preparedTransactions.headMap(upToPosition, true).values()) {
+            if (transaction.isCommitted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDatabaseAvailable() {
+        Handle handle = null;
+        try {
+            handle = dbi.open();
+            handle.select("select 1");
+            return true;
+        } catch (final RuntimeException e) {
+            return false;
+        } finally {
+            if (handle != null) {
+                handle.close();
+            }
+        }
+    }
+
+    private void recover(final List<AuditJournal.Record> records) throws IOException {
+        final Map<Long, AuditJournal.Record> entriesRecords = new LinkedHashMap<Long, AuditJournal.Record>();
+        for (final AuditJournal.Record record : records) {
+            switch (record.getType()) {
+                case AuditJournal.ENTRIES:
+                    entriesRecords.put(record.getTransactionId(), record);
+                    break;
+                case AuditJournal.COMMIT:
+                    // Journals written by previous versions, the commit markers are used instead
+                    break;
+                case AuditJournal.ROLLBACK:
+                case AuditJournal.DRAINED:
+                case AuditJournal.PARKED:
+                    entriesRecords.remove(record.getTransactionId());
+                    break;
+                default:
+                    logger.warn("Ignoring unknown audit journal record type {}", record.getType());
+            }
+        }
+
+        final AuditJournalSqlDao auditJournalSqlDao = dbi.onDemand(AuditJournalSqlDao.class);
+        final Set<Long> committedTransactionIds = new HashSet<Long>(auditJournalSqlDao.getCommittedTransactionIds(journalId));
+        for (final AuditJournal.Record record : entriesRecords.values()) {
+            final long transactionId = record.getTransactionId();
+            if (!committedTransactionIds.remove(transactionId)) {
+                // The database transaction rolled back, or the records were already loaded
+                continue;
+            }
+
+            final List<AuditJournalEntry> entries;
+            try {
+                entries = AuditJournalEntry.fromBytes(record.getPayload());
+            } catch (final IOException e) {
+                writeDeadLetter(transactionId, record.getPayload());
+                logger.error("Unable to read audit journal transaction {}, it was moved to {}: its history and audit records are missing from the database", transactionId, deadLetterDirectory, e);
+                parkedTransactions.mark();
+                auditJournalSqlDao.deleteCommitMarker(journalId, transactionId);
+                continue;
+            }
+
+            final AuditJournalTransaction transaction = new AuditJournalTransaction(this, transactionId, entries);
+            transaction.setPrepared(record.getPosition(), System.currentTimeMillis());
+            transaction.setCommitted();
+            journal.retain(journal.getSegmentId(transaction.getPosition()));
+            preparedTransactions.put(transaction.getPosition(), transaction);
+        }
+
+        // Markers without journal records (e.g. transactions moved to the dead-letter directory): these must be gone,
+        // as transaction ids are reused once the journal segments have been deleted
+        for (final Long transactionId : committedTransactionIds) {
+            auditJournalSqlDao.deleteCommitMarker(journalId, transactionId);
+        }
+        journal.purge();
+
+        if (!preparedTransactions.isEmpty()) {
+            logger.info("Recovered {} audit journal transactions", preparedTransactions.size());
+        }
+    }
+
+    private void deleteCommitMarker(final long transactionId) {
+        try {
+            dbi.onDemand(AuditJournalSqlDao.class).deleteCommitMarker(journalId, transactionId);
+        } catch (final RuntimeException e) {
+            // Deleted on restart (see recover)
+            logger.warn("Failed to delete the commit marker of audit journal transaction {}", transactionId, e);
+        }
+    }
+
+    private void writeDeadLetter(final long transactionId, final byte[] payload) throws IOException {
+        if (!deadLetterDirectory.isDirectory() && !deadLetterDirectory.mkdirs()) {
+            throw new IOException("Unable to create dead-letter directory " + deadLetterDirectory);
+        }
+
+        final File file = new File(deadLetterDirectory, String.format("%s-%020d.entries", journalId, transactionId));
+        final File tmpFile = new File(deadLetterDirectory, file.getName() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(payload);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + file);
+        }
+    }
+
+    private static String readOrCreateJournalId(final File directory) throws IOException {
+        final File journalIdFile = new File(directory, JOURNAL_ID_FILE_NAME);
+        if (journalIdFile.exists()) {
+            return Files.toString(journalIdFile, Charsets.UTF_8).trim();
+        }
+
+        final String journalId = UUID.randomUUID().toString();
+        final File tmpFile = new File(directory, JOURNAL_ID_FILE_NAME + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(journalId.getBytes(Charsets.UTF_8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(journalIdFile)) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + journalIdFile);
+        }
+        return journalId;
+    }
+
+    private void writeEntries(final Handle handle, final List<AuditJournalEntry> entries) {
+        // Caches are invalidated once the records are committed, see release
+        final HistoryAndAuditWriter writer = new HistoryAndAuditWriter(handle, null, nonEntityDao);
+        final Map<String, EntitySqlDao> sqlDaos = new HashMap<String, EntitySqlDao>();
+        for (final AuditJournalEntry entry : entries) {
+            try {
+                writeEntry(handle, writer, sqlDaos, entry);
+            } catch (final ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to load audit journal entry " + entry, e);
+            } catch (final IOException e) {
+                throw new IllegalStateException("Unable to load audit journal entry " + entry, e);
+            }
+        }
+    }
+
+    private <M extends EntityModelDao<E>, E extends Entity> void writeEntry(final Handle handle, final HistoryAndAuditWriter writer, final Map<String, EntitySqlDao> sqlDaos,
+                                                                            final AuditJournalEntry entry) throws ClassNotFoundException, IOException {
+        EntitySqlDao<M, E> sqlDao = (EntitySqlDao<M, E>) sqlDaos.get(entry.getSqlDaoClass());
+        if (sqlDao == null) {
+            final Class<? extends EntitySqlDao<M, E>> sqlDaoClass = entry.getSqlDaoClassObject();
+            sqlDao = SqlObjectBuilder.attach(handle, sqlDaoClass);
+            sqlDaos.put(entry.getSqlDaoClass(), sqlDao);
+        }
+
+        final M entity = entry.getEntityObject();
+        writer.write(sqlDao, entity, entry.getEntityRecordId(), entry.getChangeType(), entry.getChangeDate(), entry.toInternalCallContext(), entry.toAuditInternalCallContext());
+    }
+}
@@ -37,6 +37,7 @@ public @interface Cachable {
     String TENANT_KV_CACHE_NAME = "tenant-kv";
     String TENANT_CACHE_NAME = "tenant";
     String OVERRIDDEN_PLAN_CACHE_NAME = "overridden-plan";
+    String OVERRIDDEN_PLAN_DEFINITION_RECORD_ID_CACHE_NAME = "overridden-plan-definition-record-id";
     String ACCOUNT_IMMUTABLE_CACHE_NAME = "account-immutable";
     String ACCOUNT_BCD_CACHE_NAME = "account-bcd";
 
@@ -80,6 +81,9 @@ public @interface Cachable {
         /* Overwritten plans  */
         OVERRIDDEN_PLAN(OVERRIDDEN_PLAN_CACHE_NAME, false),
 
+        /* Mapping from overridden prices signature -> plan definition 'recordId (Long)' */
+        OVERRIDDEN_PLAN_DEFINITION_RECORD_ID(OVERRIDDEN_PLAN_DEFINITION_RECORD_ID_CACHE_NAME, false),
+
         /* Immutable account data config cache */
         ACCOUNT_IMMUTABLE(ACCOUNT_IMMUTABLE_CACHE_NAME, false),
 
@@ -32,6 +32,8 @@ public interface CacheController<K, V> {
 
     int size();
 
+    long getMaxEntries();
+
     void removeAll();
 
     CacheType getCacheType();
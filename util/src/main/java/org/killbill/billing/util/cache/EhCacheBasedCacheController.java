@@ -65,6 +65,11 @@ public class EhCacheBasedCacheController<K, V> implements CacheController<K, V>
         return cache.getSize();
     }
 
+    @Override
+    public long getMaxEntries() {
+        return cache.getCacheConfiguration().getMaxEntriesLocalHeap();
+    }
+
     @Override
     public void removeAll() {
         cache.removeAll();
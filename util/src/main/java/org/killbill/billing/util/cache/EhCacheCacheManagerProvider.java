@@ -64,6 +64,7 @@ public class EhCacheCacheManagerProvider implements Provider<CacheManager> {
                                        final TenantKVCacheLoader tenantKVCacheLoader,
                                        final TenantCacheLoader tenantCacheLoader,
                                        final OverriddenPlanCacheLoader overriddenPlanCacheLoader,
+                                       final OverriddenPlanDefinitionRecordIdCacheLoader overriddenPlanDefinitionRecordIdCacheLoader,
                                        final TenantStateMachineConfigCacheLoader tenantStateMachineConfigCacheLoader) {
         this.metricRegistry = metricRegistry;
         this.cacheConfig = cacheConfig;
@@ -80,6 +81,7 @@ public class EhCacheCacheManagerProvider implements Provider<CacheManager> {
         cacheLoaders.add(tenantKVCacheLoader);
         cacheLoaders.add(tenantCacheLoader);
         cacheLoaders.add(overriddenPlanCacheLoader);
+        cacheLoaders.add(overriddenPlanDefinitionRecordIdCacheLoader);
         cacheLoaders.add(tenantStateMachineConfigCacheLoader);
     }
 
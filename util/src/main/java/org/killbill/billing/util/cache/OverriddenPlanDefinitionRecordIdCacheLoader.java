@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.cache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.killbill.billing.util.cache.Cachable.CacheType;
+
+@Singleton
+public class OverriddenPlanDefinitionRecordIdCacheLoader extends BaseCacheLoader {
+
+    @Inject
+    public OverriddenPlanDefinitionRecordIdCacheLoader() {
+        super();
+    }
+
+    @Override
+    public CacheType getCacheType() {
+        return CacheType.OVERRIDDEN_PLAN_DEFINITION_RECORD_ID;
+    }
+
+    @Override
+    public Object load(final Object key, final Object argument) {
+        // Entries are added explicitly (see EhCacheOverriddenPlanCache): on a miss, the caller looks up the database
+        throw new IllegalStateException("Method load is not implemented ");
+    }
+}
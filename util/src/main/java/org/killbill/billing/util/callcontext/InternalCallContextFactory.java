@@ -18,6 +18,10 @@
 
 package org.killbill.billing.util.callcontext;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -35,6 +39,7 @@ import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.ObjectRecordIds;
 import org.killbill.clock.Clock;
 import org.slf4j.MDC;
 
@@ -126,6 +131,32 @@ public class InternalCallContextFactory {
         return createInternalTenantContext(tenantRecordId, accountRecordId);
     }
 
+    /**
+     * Create internal tenant callcontexts for a set of objects of the same type, resolving all record ids in bulk
+     *
+     * @param objectIds  the ids of the rows in the table pointed by object type where to look for account_record_id
+     * @param objectType the object type pointed by these objectIds
+     * @param context    original tenant callcontext
+     * @return internal tenant callcontexts, keyed by object id
+     */
+    public Map<UUID, InternalTenantContext> createInternalTenantContexts(final Collection<UUID> objectIds, final ObjectType objectType, final TenantContext context) {
+        final Long tenantRecordId = getTenantRecordIdSafe(context);
+        final Map<UUID, ObjectRecordIds> objectsRecordIds = getRecordIdsSafe(objectIds, objectType, tenantRecordId);
+
+        // Objects often share the same account: only look-up the account timezone once per account
+        final Map<Long, InternalTenantContext> contextsPerAccountRecordId = new HashMap<Long, InternalTenantContext>();
+        final Map<UUID, InternalTenantContext> result = new LinkedHashMap<UUID, InternalTenantContext>();
+        for (final ObjectRecordIds objectRecordIds : objectsRecordIds.values()) {
+            InternalTenantContext internalTenantContext = contextsPerAccountRecordId.get(objectRecordIds.getAccountRecordId());
+            if (internalTenantContext == null) {
+                internalTenantContext = createInternalTenantContext(tenantRecordId, objectRecordIds.getAccountRecordId());
+                contextsPerAccountRecordId.put(objectRecordIds.getAccountRecordId(), internalTenantContext);
+            }
+            result.put(objectRecordIds.getId(), internalTenantContext);
+        }
+        return result;
+    }
+
     /**
      * Create an internal tenant callcontext
      *
@@ -180,6 +211,34 @@ public class InternalCallContextFactory {
                                          context.getCreatedDate(), context.getUpdatedDate(), context);
     }
 
+    /**
+     * Create internal call callcontexts for a set of objects of the same type, resolving all record ids in bulk
+     *
+     * @param objectIds  the ids of the rows in the table pointed by object type where to look for account_record_id
+     * @param objectType the object type pointed by these objectIds
+     * @param context    original call callcontext
+     * @return internal call callcontexts, keyed by object id
+     */
+    public Map<UUID, InternalCallContext> createInternalCallContexts(final Collection<UUID> objectIds, final ObjectType objectType, final CallContext context) {
+        final Long tenantRecordId = getTenantRecordIdSafe(context);
+        final Map<UUID, ObjectRecordIds> objectsRecordIds = getRecordIdsSafe(objectIds, objectType, tenantRecordId);
+
+        // Objects often share the same account: only look-up the account timezone once per account
+        final Map<Long, InternalCallContext> contextsPerAccountRecordId = new HashMap<Long, InternalCallContext>();
+        final Map<UUID, InternalCallContext> result = new LinkedHashMap<UUID, InternalCallContext>();
+        for (final ObjectRecordIds objectRecordIds : objectsRecordIds.values()) {
+            InternalCallContext internalCallContext = contextsPerAccountRecordId.get(objectRecordIds.getAccountRecordId());
+            if (internalCallContext == null) {
+                internalCallContext = createInternalCallContext(tenantRecordId, objectRecordIds.getAccountRecordId(), context.getUserName(), context.getCallOrigin(),
+                                                                context.getUserType(), context.getUserToken(), context.getReasonCode(), context.getComments(),
+                                                                context.getCreatedDate(), context.getUpdatedDate());
+                contextsPerAccountRecordId.put(objectRecordIds.getAccountRecordId(), internalCallContext);
+            }
+            result.put(objectRecordIds.getId(), internalCallContext);
+        }
+        return result;
+    }
+
     // Used by the payment retry service
     public InternalCallContext createInternalCallContext(final UUID objectId, final ObjectType objectType, final String userName,
                                                          final CallOrigin callOrigin, final UserType userType, @Nullable final UUID userToken, final Long tenantRecordId) {
@@ -328,6 +387,22 @@ public class InternalCallContextFactory {
         }
     }
 
+    private Map<UUID, ObjectRecordIds> getRecordIdsSafe(final Collection<UUID> objectIds, final ObjectType objectType, final Long tenantRecordId) throws ObjectDoesNotExist {
+        final Map<UUID, ObjectRecordIds> objectsRecordIds = nonEntityDao.retrieveRecordIdsFromObjects(objectIds, objectType, cacheControllerDispatcher);
+
+        final Map<UUID, ObjectRecordIds> result = new LinkedHashMap<UUID, ObjectRecordIds>();
+        for (final UUID objectId : objectIds) {
+            final ObjectRecordIds objectRecordIds = objectsRecordIds.get(objectId);
+            if (objectRecordIds == null || objectRecordIds.getTenantRecordId() == null) {
+                throw new ObjectDoesNotExist(String.format("Object id=%s type=%s doesn't exist!", objectId, objectType));
+            } else if (!objectRecordIds.getTenantRecordId().equals(tenantRecordId)) {
+                throw new IllegalStateException(String.format("Object id=%s type=%s doesn't belong to tenant recordId=%s", objectId, objectType, tenantRecordId));
+            }
+            result.put(objectId, objectRecordIds);
+        }
+        return result;
+    }
+
     private Long getTenantRecordIdSafe(final TenantContext context) {
         // Default to single default tenant (e.g. single tenant mode)
         // TODO Extract this convention (e.g. BusinessAnalyticsBase needs to know about it)
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.DefaultNull;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+/**
+ * Optional local journal for history and audit records: when a directory is configured, these records are made durable
+ * in the journal as part of each transaction and are loaded into the *_history and audit_log tables in the background.
+ */
+public interface AuditJournalConfig extends KillbillConfig {
+
+    @Config("org.killbill.audit.journal.dir")
+    @DefaultNull
+    @Description("Directory of the history and audit journal (records are written synchronously if not set)")
+    public String getJournalDirectory();
+
+    @Config("org.killbill.audit.journal.segmentSize")
+    @Default("67108864")
+    @Description("Size in bytes of each memory-mapped journal segment")
+    public long getSegmentSize();
+
+    @Config("org.killbill.audit.journal.drain.batchSize")
+    @Default("500")
+    @Description("Maximum number of journal records loaded in a single database transaction")
+    public int getDrainBatchSize();
+
+    @Config("org.killbill.audit.journal.drain.rate")
+    @Default("1s")
+    @Description("Rate at which the journal is drained into the database")
+    public TimeSpan getDrainRate();
+
+    @Config("org.killbill.audit.journal.drain.maxAttempts")
+    @Default("5")
+    @Description("Number of times a journal transaction which cannot be loaded is retried before it is moved to the dead-letter directory")
+    public int getMaxDrainAttempts();
+
+    @Config("org.killbill.audit.journal.readBarrier.timeout")
+    @Default("5s")
+    @Description("Maximum time audit log reads wait for the committed journal records to be loaded")
+    public TimeSpan getReadBarrierTimeout();
+}
@@ -18,6 +18,7 @@ package org.killbill.billing.util.config;
 
 import org.skife.config.Config;
 import org.skife.config.Default;
+import org.skife.config.DefaultNull;
 import org.skife.config.Description;
 
 public interface CatalogConfig extends KillbillConfig {
@@ -26,4 +27,19 @@ public interface CatalogConfig extends KillbillConfig {
     @Default("SpyCarBasic.xml")
     @Description("Default Catalog location, either in the classpath or in the filesystem. For multi-tenancy, one should use APIs to load per-tenant catalog")
     String getCatalogURI();
+
+    @Config("org.killbill.catalog.override.warmUp")
+    @Default("false")
+    @Description("Whether to bulk load the overridden (custom priced) plans of a tenant when its catalog is loaded (bounded by the overridden-plan cache size)")
+    boolean isOverriddenPlansWarmUpEnabled();
+
+    @Config("org.killbill.catalog.snapshot.dir")
+    @DefaultNull
+    @Description("Local directory where validated tenant catalogs are stored in binary form, to avoid parsing the XML again (disabled if not set)")
+    String getCatalogSnapshotDirectory();
+
+    @Config("org.killbill.catalog.lazyVersions.poolSize")
+    @Default("0")
+    @Description("Number of recently used catalog versions (across tenants) kept in memory when tenant catalog versions are parsed on demand (0 to parse all versions eagerly)")
+    int getLazyCatalogVersionsPoolSize();
 }
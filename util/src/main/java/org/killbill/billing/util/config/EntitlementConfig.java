@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface EntitlementConfig extends KillbillConfig {
+
+    @Config("org.killbill.entitlement.accountSnapshot.maxAccounts")
+    @Default("0")
+    @Description("Maximum number of accounts for which the computed events streams are kept in memory (0 to disable)")
+    int getAccountSnapshotMaxAccounts();
+
+    @Config("org.killbill.entitlement.accountSnapshot.maxAge")
+    @Default("1h")
+    @Description("Maximum amount of time a computed account snapshot can be reused")
+    TimeSpan getAccountSnapshotMaxAge();
+}
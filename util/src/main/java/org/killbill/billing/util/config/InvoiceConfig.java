@@ -49,4 +49,49 @@ public interface InvoiceConfig extends KillbillConfig {
     @Default("50")
     @Description("Maximum number of times the system will retry to grab global lock (with a 100ms wait each time)")
     int getMaxGlobalLockRetries();
+
+    @Config("org.killbill.invoice.parallelGeneration.minSubscriptions")
+    @Default("0")
+    @Description("Minimum number of subscriptions for the invoice items of an account to be generated in parallel, per subscription (0 to disable)")
+    int getParallelGenerationMinSubscriptions();
+
+    @Config("org.killbill.invoice.parallelGeneration.nbThreads")
+    @Default("0")
+    @Description("Number of threads used for parallel invoice generation (0 to use the number of available processors)")
+    int getParallelGenerationNbThreads();
+
+    @Config("org.killbill.invoice.dryRunCache.maxAccounts")
+    @Default("0")
+    @Description("Maximum number of accounts for which the dryRun invoices are kept in memory (0 to disable)")
+    int getDryRunCacheMaxAccounts();
+
+    @Config("org.killbill.invoice.dryRunCache.maxAge")
+    @Default("5m")
+    @Description("Maximum amount of time a cached dryRun invoice can be reused")
+    TimeSpan getDryRunCacheMaxAge();
+
+    @Config("org.killbill.invoice.triggerCoalescing.enabled")
+    @Default("false")
+    @Description("Whether to collapse the invoice triggers received for an account while a previous run is pending into a single run")
+    boolean isTriggerCoalescingEnabled();
+
+    @Config("org.killbill.invoice.triggerCoalescing.window")
+    @Default("0s")
+    @Description("Amount of time to wait for other triggers for the same account before running the invoice generation (ignored if set to 0s)")
+    TimeSpan getTriggerCoalescingWindow();
+
+    @Config("org.killbill.invoice.triggerCoalescing.maxWait")
+    @Default("30s")
+    @Description("Maximum amount of time to wait for the run a trigger was merged into (or for the previous run of the account) before running independently")
+    TimeSpan getTriggerCoalescingMaxWait();
+
+    @Config("org.killbill.invoice.htmlCache.maxInvoices")
+    @Default("0")
+    @Description("Maximum number of invoices for which the rendered HTML is kept in memory (0 to disable)")
+    int getHtmlCacheMaxInvoices();
+
+    @Config("org.killbill.invoice.htmlCache.maxAge")
+    @Default("1h")
+    @Description("Maximum amount of time a rendered HTML invoice can be reused")
+    TimeSpan getHtmlCacheMaxAge();
 }
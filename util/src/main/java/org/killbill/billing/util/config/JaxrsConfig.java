@@ -34,6 +34,21 @@ public interface JaxrsConfig extends KillbillConfig {
     @Description("Total timeout for all callables associated to a given api call (parallel mode)")
     TimeSpan getJaxrsTimeout();
 
+    @Config("org.killbill.jaxrs.timeline.streaming.history.window")
+    @Default("0d")
+    @Description("How far back invoices and payments are returned by the streaming account timeline (0 for the full history)")
+    TimeSpan getStreamingTimelineHistoryWindow();
+
+    @Config("org.killbill.jaxrs.timeline.streaming.page.size")
+    @Default("100")
+    @Description("Number of invoices and payments read (and written) at a time by the streaming account timeline")
+    int getStreamingTimelinePageSize();
+
+    @Config("org.killbill.jaxrs.invoices.export.parallelism")
+    @Default("4")
+    @Description("Maximum number of invoices rendered concurrently by the bulk HTML invoice export")
+    int getInvoicesExportParallelism();
+
     @Config("org.killbill.jaxrs.location.full.url")
     @Default("true")
     @Description("Type of return for the jaxrs response location URL")
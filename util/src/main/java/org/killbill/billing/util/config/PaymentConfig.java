@@ -76,6 +76,36 @@ public interface PaymentConfig extends KillbillConfig {
     @Description("Rate at which janitor tasks are scheduled")
     TimeSpan getJanitorRunningRate();
 
+    @Config("org.killbill.payment.janitor.threads.nb")
+    @Default("5")
+    @Description("Number of threads used by the janitor to process incomplete transactions")
+    int getJanitorThreadNb();
+
+    @Config("org.killbill.payment.janitor.queue.size")
+    @Default("1000")
+    @Description("Maximum number of accounts with incomplete transactions waiting to be processed by the janitor threads")
+    int getJanitorQueueSize();
+
+    @Config("org.killbill.payment.janitor.plugin.max.concurrency")
+    @Default("5")
+    @Description("Maximum number of concurrent janitor calls to a given payment plugin")
+    int getJanitorMaxPluginConcurrency();
+
+    @Config("org.killbill.payment.plugin.info.max.concurrency")
+    @Default("5")
+    @Description("Maximum number of concurrent plugin info calls made on the plugin threads for a single account payments request")
+    int getPaymentPluginInfoMaxConcurrency();
+
+    @Config("org.killbill.payment.methods.reconciliation.page.size")
+    @Default("100")
+    @Description("Number of accounts reconciled (and updated in a single transaction) at a time by the payment methods reconciliation job")
+    int getPaymentMethodsReconciliationPageSize();
+
+    @Config("org.killbill.payment.methods.reconciliation.plugin.max.concurrency")
+    @Default("10")
+    @Description("Maximum number of concurrent payment methods reconciliation calls to a given payment plugin")
+    int getPaymentMethodsReconciliationMaxPluginConcurrency();
+
     @Config("org.killbill.payment.invoice.plugin")
     @Default("")
     @Description("Default payment control plugin names")
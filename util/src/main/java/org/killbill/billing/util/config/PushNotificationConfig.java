@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import java.util.List;
+
+import org.skife.config.Config;
+import org.skife.config.Default;
+import org.skife.config.Description;
+import org.skife.config.TimeSpan;
+
+public interface PushNotificationConfig extends KillbillConfig {
+
+    @Config("org.killbill.server.notifications.timeout")
+    @Default("15s")
+    @Description("Timeout for each push notification HTTP request")
+    TimeSpan getPushNotificationTimeout();
+
+    @Config("org.killbill.server.notifications.endpoint.queue.size")
+    @Default("1000")
+    @Description("Number of push notifications buffered in memory per callback URL (overflow goes to the retry queue)")
+    int getPushNotificationEndpointQueueSize();
+
+    @Config("org.killbill.server.notifications.endpoint.max.requests")
+    @Default("4")
+    @Description("Maximum number of in-flight push notification requests per callback URL")
+    int getPushNotificationEndpointMaxRequests();
+
+    @Config("org.killbill.server.notifications.batch.window")
+    @Default("0s")
+    @Description("If non zero, push notifications are sent as a JSON array, once per window and per callback URL")
+    TimeSpan getPushNotificationBatchWindow();
+
+    @Config("org.killbill.server.notifications.batch.max.size")
+    @Default("100")
+    @Description("Maximum number of push notifications sent in a single batch")
+    int getPushNotificationBatchMaxSize();
+
+    @Config("org.killbill.server.notifications.shutdown.timeout")
+    @Default("10s")
+    @Description("Maximum time spent delivering the buffered push notifications on shutdown (the remaining ones go to the retry queue)")
+    TimeSpan getPushNotificationShutdownTimeout();
+
+    @Config("org.killbill.server.notifications.retries")
+    @Default("15s,1m,5m,15m,1h")
+    @Description("Delays before which failed push notifications should be retried")
+    List<TimeSpan> getPushNotificationRetries();
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.config;
+
+import org.skife.config.Config;
+import org.skife.config.DefaultNull;
+import org.skife.config.Description;
+
+/**
+ * Optional read replica: when a url is configured, explicitly read-only DAO work (pagination, audit logs, exports)
+ * is routed to it. Any other org.killbill.dao.readReplica.* property (e.g. org.killbill.dao.readReplica.user or
+ * org.killbill.dao.readReplica.password) overrides the matching org.killbill.dao.* setting for the replica.
+ */
+public interface ReadReplicaConfig extends KillbillConfig {
+
+    @Config("org.killbill.dao.readReplica.url")
+    @DefaultNull
+    @Description("The jdbc url for the read replica (disabled if not set)")
+    public String getJdbcUrl();
+}
@@ -18,13 +18,16 @@ package org.killbill.billing.util.customfield.api;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.killbill.billing.ErrorCode;
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.api.CustomFieldUserApi;
 import org.killbill.billing.util.callcontext.CallContext;
@@ -91,15 +94,19 @@ public class DefaultCustomFieldUserApi implements CustomFieldUserApi {
     public void addCustomFields(final List<CustomField> customFields, final CallContext context) throws CustomFieldApiException {
         // TODO make it transactional
 
-        final Map<UUID, ObjectType> mapping = new HashMap<UUID, ObjectType>();
+        final Map<ObjectType, Set<UUID>> objectIdsPerType = new HashMap<ObjectType, Set<UUID>>();
         for (final CustomField cur : customFields) {
-            mapping.put(cur.getObjectId(), cur.getObjectType());
+            if (objectIdsPerType.get(cur.getObjectType()) == null) {
+                objectIdsPerType.put(cur.getObjectType(), new HashSet<UUID>());
+            }
+            objectIdsPerType.get(cur.getObjectType()).add(cur.getObjectId());
         }
 
+        // One query per object type, instead of one per object
+        final InternalTenantContext internalTenantContext = internalCallContextFactory.createInternalTenantContext(context);
         final List<CustomFieldModelDao> all = new LinkedList<CustomFieldModelDao>();
-        for (UUID cur : mapping.keySet()) {
-            final ObjectType type = mapping.get(cur);
-            all.addAll(customFieldDao.getCustomFieldsForObject(cur, type, internalCallContextFactory.createInternalCallContext(cur, type, context)));
+        for (final ObjectType type : objectIdsPerType.keySet()) {
+            all.addAll(customFieldDao.getCustomFieldsForObjects(objectIdsPerType.get(type), type, internalTenantContext));
         }
         final List<CustomField> toBeInserted = new LinkedList<CustomField>();
         for (final CustomField cur : customFields) {
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -33,6 +34,8 @@ public interface CustomFieldDao extends EntityDao<CustomFieldModelDao, CustomFie
 
     public List<CustomFieldModelDao> getCustomFieldsForObject(final UUID objectId, final ObjectType objectType, final InternalTenantContext context);
 
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context);
+
     public List<CustomFieldModelDao> getCustomFieldsForAccountType(final ObjectType objectType, final InternalTenantContext context);
 
     public List<CustomFieldModelDao> getCustomFieldsForAccount(final InternalTenantContext context);
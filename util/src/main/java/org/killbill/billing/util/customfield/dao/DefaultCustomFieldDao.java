@@ -18,6 +18,7 @@
 
 package org.killbill.billing.util.customfield.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -51,9 +52,11 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 
+import com.google.common.base.Functions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, CustomField, CustomFieldApiException> implements CustomFieldDao {
@@ -79,6 +82,21 @@ public class DefaultCustomFieldDao extends EntityDaoBase<CustomFieldModelDao, Cu
         });
     }
 
+    @Override
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        if (objectIds.isEmpty()) {
+            return ImmutableList.<CustomFieldModelDao>of();
+        }
+
+        final Collection<String> objectIdsAsStrings = ImmutableSet.<String>copyOf(Collections2.transform(objectIds, Functions.toStringFunction()));
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<CustomFieldModelDao>>() {
+            @Override
+            public List<CustomFieldModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(CustomFieldSqlDao.class).getCustomFieldsForObjects(objectIdsAsStrings, objectType, context);
+            }
+        });
+    }
+
     @Override
     public List<CustomFieldModelDao> getCustomFieldsForAccountType(final ObjectType objectType, final InternalTenantContext context) {
         final List<CustomFieldModelDao> allFields = getCustomFieldsForAccount(context);
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.dao;
+
+import java.util.Date;
+
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+/**
+ * Per-account version number, created with the account and incremented by every transaction which changes audited data
+ * (or usage) of the account, once versioning is enabled.
+ *
+ * @see org.killbill.billing.util.entity.dao.AccountVersionTracker
+ */
+@EntitySqlDaoStringTemplate
+public interface AccountVersionSqlDao {
+
+    @SqlUpdate
+    public int incrementVersion(@Bind("accountRecordId") final Long accountRecordId, @Bind("tenantRecordId") final Long tenantRecordId, @Bind("updatedDate") final Date updatedDate);
+
+    @SqlUpdate
+    public void insertVersion(@Bind("accountRecordId") final Long accountRecordId, @Bind("tenantRecordId") final Long tenantRecordId, @Bind("updatedDate") final Date updatedDate);
+
+    @SqlQuery
+    public Long getVersion(@BindBean final InternalTenantContext context);
+}
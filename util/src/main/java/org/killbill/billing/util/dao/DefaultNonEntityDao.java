@@ -18,12 +18,19 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
@@ -36,9 +43,13 @@ import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 
 public class DefaultNonEntityDao implements NonEntityDao {
 
+    // Keep the IN clause of bulk lookups well below the limits of the supported databases
+    private static final int MAX_IDS_PER_BULK_QUERY = 500;
+
     private final NonEntitySqlDao nonEntitySqlDao;
     private final WithCaching<UUID, Long> withCachingObjectId;
     private final WithCaching<Long, UUID> withCachingRecordId;
@@ -131,6 +142,68 @@ public class DefaultNonEntityDao implements NonEntityDao {
         }, objectId, objectType, tableName, cache);
     }
 
+    @Override
+    public Map<UUID, ObjectRecordIds> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheControllerDispatcher cacheControllerDispatcher) {
+        final TableName tableName = TableName.fromObjectType(objectType);
+        Preconditions.checkNotNull(tableName, "%s is not a valid ObjectType", objectType);
+
+        final CacheController<Object, Object> recordIdCache = cacheControllerDispatcher == null ? null : cacheControllerDispatcher.getCacheController(CacheType.RECORD_ID);
+        final CacheController<Object, Object> accountRecordIdCache = cacheControllerDispatcher == null ? null : cacheControllerDispatcher.getCacheController(CacheType.ACCOUNT_RECORD_ID);
+        final CacheController<Object, Object> tenantRecordIdCache = cacheControllerDispatcher == null ? null : cacheControllerDispatcher.getCacheController(CacheType.TENANT_RECORD_ID);
+        final boolean hasAccountRecordId = hasAccountRecordId(tableName);
+
+        final Map<UUID, ObjectRecordIds> result = new HashMap<UUID, ObjectRecordIds>();
+        final Set<String> cacheMisses = new LinkedHashSet<String>();
+        for (final UUID objectId : objectIds) {
+            if (objectId == null || result.containsKey(objectId)) {
+                continue;
+            }
+
+            // Only look at what's already there: we don't want the cache loaders to issue one query per object
+            final Long recordId = (Long) getIfPresent(recordIdCache, tableName, objectId);
+            final Long accountRecordId = hasAccountRecordId ? (Long) getIfPresent(accountRecordIdCache, tableName, objectId) : null;
+            final Long tenantRecordId = (Long) getIfPresent(tenantRecordIdCache, tableName, objectId);
+            if (recordId != null && tenantRecordId != null && (accountRecordId != null || !hasAccountRecordId)) {
+                result.put(objectId, new ObjectRecordIds(objectId, recordId, accountRecordId, tenantRecordId));
+            } else {
+                cacheMisses.add(objectId.toString());
+            }
+        }
+
+        final Profiling<List<ObjectRecordIds>, RuntimeException> prof = new Profiling<List<ObjectRecordIds>, RuntimeException>();
+        for (final List<String> chunk : Iterables.partition(cacheMisses, MAX_IDS_PER_BULK_QUERY)) {
+            final List<ObjectRecordIds> objectsRecordIds = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, "NonEntityDao (type = " + objectType + ") bulk cache miss", new WithProfilingCallback<List<ObjectRecordIds>, RuntimeException>() {
+                @Override
+                public List<ObjectRecordIds> execute() throws RuntimeException {
+                    switch (tableName) {
+                        case TENANT:
+                            return nonEntitySqlDao.getRecordIdsFromTenants(chunk);
+
+                        case TAG_DEFINITIONS:
+                        case TAG_DEFINITION_HISTORY:
+                            return nonEntitySqlDao.getRecordIdsFromObjectsWithoutAccountRecordId(chunk, tableName.getTableName());
+
+                        case ACCOUNT:
+                            return nonEntitySqlDao.getRecordIdsFromAccounts(chunk);
+
+                        default:
+                            return nonEntitySqlDao.getRecordIdsFromObjects(chunk, tableName.getTableName());
+                    }
+                }
+            });
+
+            for (final ObjectRecordIds objectRecordIds : objectsRecordIds) {
+                result.put(objectRecordIds.getId(), objectRecordIds);
+
+                putIfAbsent(recordIdCache, tableName, objectRecordIds.getId(), objectRecordIds.getRecordId());
+                putIfAbsent(accountRecordIdCache, tableName, objectRecordIds.getId(), objectRecordIds.getAccountRecordId());
+                putIfAbsent(tenantRecordIdCache, tableName, objectRecordIds.getId(), objectRecordIds.getTenantRecordId());
+            }
+        }
+
+        return result;
+    }
+
     @Override
     public UUID retrieveIdFromObject(final Long recordId, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
         return retrieveIdFromObjectInTransaction(recordId, objectType, cache, null);
@@ -165,6 +238,26 @@ public class DefaultNonEntityDao implements NonEntityDao {
         return nonEntitySqlDao.getHistoryTargetRecordId(recordId, tableName.getTableName());
     }
 
+    private boolean hasAccountRecordId(final TableName tableName) {
+        return tableName != TableName.TENANT && tableName != TableName.TAG_DEFINITIONS && tableName != TableName.TAG_DEFINITION_HISTORY;
+    }
+
+    private Object getIfPresent(@Nullable final CacheController<Object, Object> cache, final TableName tableName, final Object objectOrRecordId) {
+        return cache == null ? null : cache.get(getCacheKey(cache, tableName, objectOrRecordId));
+    }
+
+    private void putIfAbsent(@Nullable final CacheController<Object, Object> cache, final TableName tableName, final Object objectOrRecordId, @Nullable final Object value) {
+        if (cache != null && value != null) {
+            cache.putIfAbsent(getCacheKey(cache, tableName, objectOrRecordId), value);
+        }
+    }
+
+    private static String getCacheKey(final CacheController<Object, Object> cache, final TableName tableName, final Object objectOrRecordId) {
+        return (cache.getCacheType().isKeyPrefixedWithTableName()) ?
+               tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + objectOrRecordId.toString() :
+               objectOrRecordId.toString();
+    }
+
     private interface OperationRetrieval<TypeIn, TypeOut> {
 
         public TypeOut doRetrieve(final TypeIn objectOrRecordId, final ObjectType objectType);
@@ -180,9 +273,7 @@ public class DefaultNonEntityDao implements NonEntityDao {
                 return null;
             }
             if (cache != null) {
-                final String key = (cache.getCacheType().isKeyPrefixedWithTableName()) ?
-                                   tableName + CacheControllerDispatcher.CACHE_KEY_SEPARATOR + objectOrRecordId.toString() :
-                                   objectOrRecordId.toString();
+                final String key = getCacheKey(cache, tableName, objectOrRecordId);
                 return (TypeOut) cache.get(key, new CacheLoaderArgument(objectType));
             }
             final TypeOut result;
@@ -18,12 +18,15 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
 
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.skife.jdbi.v2.Handle;
 
 // This should only be used for internal operations (trusted code, not API), because the context will not be validated!
@@ -41,6 +44,9 @@ public interface NonEntityDao {
 
     public Long retrieveTenantRecordIdFromObjectInTransaction(final UUID objectId, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache, @Nullable final Handle handle);
 
+    // Bulk version of the three lookups above: one query per chunk of cache misses, the RECORD_ID, ACCOUNT_RECORD_ID and TENANT_RECORD_ID caches are populated with the results
+    public Map<UUID, ObjectRecordIds> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheControllerDispatcher cacheControllerDispatcher);
+
     public UUID retrieveIdFromObject(final Long recordId, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache);
 
     public UUID retrieveIdFromObjectInTransaction(final Long recordId, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache, @Nullable final Handle handle);
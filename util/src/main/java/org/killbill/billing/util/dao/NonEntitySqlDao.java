@@ -18,10 +18,13 @@
 
 package org.killbill.billing.util.dao;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoStringTemplate;
+import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
@@ -53,6 +56,18 @@ public interface NonEntitySqlDao extends Transactional<NonEntitySqlDao>, CloseMe
     @SqlQuery
     public Long getTenantRecordIdFromObjectOtherThanTenant(@Bind("id") String id, @Define("tableName") final String tableName);
 
+    @SqlQuery
+    public List<ObjectRecordIds> getRecordIdsFromObjects(@UUIDCollectionBinder Collection<String> ids, @Define("tableName") final String tableName);
+
+    @SqlQuery
+    public List<ObjectRecordIds> getRecordIdsFromAccounts(@UUIDCollectionBinder Collection<String> ids);
+
+    @SqlQuery
+    public List<ObjectRecordIds> getRecordIdsFromTenants(@UUIDCollectionBinder Collection<String> ids);
+
+    @SqlQuery
+    public List<ObjectRecordIds> getRecordIdsFromObjectsWithoutAccountRecordId(@UUIDCollectionBinder Collection<String> ids, @Define("tableName") final String tableName);
+
     @SqlQuery
     public Long getLastHistoryRecordId(@Bind("targetRecordId") Long targetRecordId, @Define("tableName") final String tableName);
 
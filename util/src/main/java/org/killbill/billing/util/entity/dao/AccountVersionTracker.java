@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.util.dao.AccountVersionSqlDao;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Accounts changed by a transaction: their version (see AccountVersionSqlDao) is incremented once, right before the
+ * transaction commits. Because the version is updated in the same database transaction as the data, it is a cheap and
+ * reliable cache key for per-account computations, even when the history and audit records are written asynchronously.
+ * <p/>
+ * The version row is created with the account (see {@link #createVersion}), changes only update it: an account without
+ * a row (e.g. created by a node running an older version during a rolling upgrade) has no version and its computations
+ * are simply not cached.
+ * <p/>
+ * Versions are only maintained once a consumer is enabled (see {@link #enableVersioning}), so that write transactions
+ * don't pay for them otherwise: the caches relying on them must be enabled on all the nodes.
+ */
+public class AccountVersionTracker {
+
+    // The EntitySqlDao wrappers are not created by Guice, hence the static switch (see DefaultAuditJournalService)
+    private static volatile boolean versioningEnabled = false;
+
+    // Account record id -> tenant record id, sorted to always lock the version rows in the same order
+    private final SortedMap<Long, Long> accounts = new TreeMap<Long, Long>();
+
+    // Called by the consumers of the version (e.g. the caches) when they are enabled
+    public static void enableVersioning() {
+        versioningEnabled = true;
+    }
+
+    @VisibleForTesting
+    static void disableVersioning() {
+        versioningEnabled = false;
+    }
+
+    public static boolean isVersioningEnabled() {
+        return versioningEnabled;
+    }
+
+    public void track(@Nullable final Long accountRecordId, final Long tenantRecordId) {
+        if (accountRecordId != null) {
+            accounts.put(accountRecordId, tenantRecordId);
+        }
+    }
+
+    // Called within the database transaction, right before it commits
+    public void flush(final Handle handle, final Date updatedDate) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+
+        final AccountVersionSqlDao accountVersionSqlDao = SqlObjectBuilder.attach(handle, AccountVersionSqlDao.class);
+        for (final Map.Entry<Long, Long> account : accounts.entrySet()) {
+            accountVersionSqlDao.incrementVersion(account.getKey(), account.getValue(), updatedDate);
+        }
+        accounts.clear();
+    }
+
+    /**
+     * Must be called within the transaction creating the account (whether versioning is enabled or not, so that the
+     * versions are available once it is).
+     */
+    public static void createVersion(final Handle handle, final Long accountRecordId, final Long tenantRecordId, final Date updatedDate) {
+        SqlObjectBuilder.attach(handle, AccountVersionSqlDao.class).insertVersion(accountRecordId, tenantRecordId, updatedDate);
+    }
+
+    /**
+     * For changes which don't go through the EntitySqlDao wrappers (e.g. usage records): must be called within the same
+     * database transaction as the change.
+     */
+    public static void incrementVersion(final Handle handle, final Long accountRecordId, final Long tenantRecordId, final Date updatedDate) {
+        if (!versioningEnabled) {
+            return;
+        }
+        SqlObjectBuilder.attach(handle, AccountVersionSqlDao.class).incrementVersion(accountRecordId, tenantRecordId, updatedDate);
+    }
+}
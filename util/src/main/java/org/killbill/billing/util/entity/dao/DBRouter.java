@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+import org.skife.jdbi.v2.IDBI;
+
+/**
+ * Picks the IDBI to use for a unit of work: explicitly read-only work goes to the read replica (if configured),
+ * unless the current thread already wrote to the primary, in which case the replica could return stale data.
+ */
+public class DBRouter {
+
+    private static final ThreadLocal<Boolean> currentThreadHasWritten = new ThreadLocal<Boolean>();
+
+    private final IDBI dbi;
+    private final IDBI roDbi;
+    // Read replica pool, owned by the router
+    private final Closeable roDataSource;
+
+    @Inject
+    public DBRouter(final IDBI dbi) {
+        this(dbi, null);
+    }
+
+    public DBRouter(final IDBI dbi, @Nullable final IDBI roDbi) {
+        this(dbi, roDbi, null);
+    }
+
+    public DBRouter(final IDBI dbi, @Nullable final IDBI roDbi, @Nullable final Closeable roDataSource) {
+        this.dbi = dbi;
+        this.roDbi = roDbi;
+        this.roDataSource = roDataSource;
+    }
+
+    public IDBI getDBI(final boolean requestedRO) {
+        return shouldUseRODBI(requestedRO) ? roDbi : dbi;
+    }
+
+    public boolean shouldUseRODBI(final boolean requestedRO) {
+        return requestedRO && roDbi != null && !Boolean.TRUE.equals(currentThreadHasWritten.get());
+    }
+
+    public boolean hasReadReplica() {
+        return roDbi != null;
+    }
+
+    // Invoked on shutdown
+    public void close() throws IOException {
+        if (roDataSource != null) {
+            roDataSource.close();
+        }
+    }
+
+    // Invoked for each statement modifying the primary (read-after-write guard)
+    public static void markWrite() {
+        currentThreadHasWritten.set(Boolean.TRUE);
+    }
+
+    // Invoked at request boundaries, so that the guard only covers the current request
+    public static void resetRequestState() {
+        currentThreadHasWritten.remove();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.cache.Cachable;
+import org.killbill.billing.util.cache.CachableKey;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+/**
+ * Everything EntitySqlDaoWrapperInvocationHandler needs to know about a (SqlDao class, Method) pair,
+ * computed once by reflection and then shared by all handlers.
+ */
+public class EntitySqlDaoInvocationPlan {
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Method, EntitySqlDaoInvocationPlan>> PLANS = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, EntitySqlDaoInvocationPlan>>();
+
+    private final Method method;
+    private final String operation;
+    private final String rawProfilingName;
+    private final String cachingRawProfilingName;
+    private final String auditedRawProfilingName;
+    private final String historyAndAuditProfilingName;
+    private final boolean isWrite;
+    private final boolean isGetById;
+    private final Audited auditedAnnotation;
+    private final Cachable cachableAnnotation;
+    private final ObjectType objectType;
+    // Argument index of each piece of the cache key (CachableKey position starts at 1)
+    private final int[] cachableKeyArgIndexes;
+    private final int tenantContextArgIndex;
+    private final int callContextArgIndex;
+    private final Annotation[][] parameterAnnotations;
+
+    public static EntitySqlDaoInvocationPlan get(final Class<?> sqlDaoClass, final Method method) throws ReflectiveOperationException {
+        ConcurrentMap<Method, EntitySqlDaoInvocationPlan> plansForClass = PLANS.get(sqlDaoClass);
+        if (plansForClass == null) {
+            final ConcurrentMap<Method, EntitySqlDaoInvocationPlan> newPlansForClass = new ConcurrentHashMap<Method, EntitySqlDaoInvocationPlan>();
+            plansForClass = PLANS.putIfAbsent(sqlDaoClass, newPlansForClass);
+            if (plansForClass == null) {
+                plansForClass = newPlansForClass;
+            }
+        }
+
+        EntitySqlDaoInvocationPlan plan = plansForClass.get(method);
+        if (plan == null) {
+            // Racing threads compute the same plan, keep the first one
+            final EntitySqlDaoInvocationPlan newPlan = new EntitySqlDaoInvocationPlan(sqlDaoClass, method);
+            plan = plansForClass.putIfAbsent(method, newPlan);
+            if (plan == null) {
+                plan = newPlan;
+            }
+        }
+        return plan;
+    }
+
+    private EntitySqlDaoInvocationPlan(final Class<?> sqlDaoClass, final Method method) throws ReflectiveOperationException {
+        this.method = method;
+        this.operation = sqlDaoClass.getSimpleName() + ":" + method.getName();
+        this.rawProfilingName = sqlDaoClass.getSimpleName() + " (raw):" + method.getName();
+        this.cachingRawProfilingName = sqlDaoClass.getSimpleName() + "(raw) :" + method.getName();
+        this.auditedRawProfilingName = sqlDaoClass.getSimpleName() + " (raw) :";
+        this.historyAndAuditProfilingName = sqlDaoClass.getSimpleName() + " (history/audit) :";
+        this.isWrite = method.getAnnotation(SqlUpdate.class) != null || method.getAnnotation(SqlBatch.class) != null;
+        this.isGetById = "getById".equals(method.getName());
+        this.auditedAnnotation = method.getAnnotation(Audited.class);
+        this.cachableAnnotation = method.getAnnotation(Cachable.class);
+        this.parameterAnnotations = method.getParameterAnnotations();
+
+        final int[] keyArgIndexes = new int[parameterAnnotations.length];
+        int nbKeyPieces = 0;
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (final Annotation annotation : parameterAnnotations[i]) {
+                if (CachableKey.class.equals(annotation.annotationType())) {
+                    final int position = ((CachableKey) annotation).value() - 1;
+                    keyArgIndexes[position] = i;
+                    nbKeyPieces = Math.max(nbKeyPieces, position + 1);
+                    break;
+                }
+            }
+        }
+        this.cachableKeyArgIndexes = Arrays.copyOf(keyArgIndexes, nbKeyPieces);
+
+        this.tenantContextArgIndex = findParameterIndex(method.getParameterTypes(), InternalTenantContext.class);
+        this.callContextArgIndex = findParameterIndex(method.getParameterTypes(), InternalCallContext.class);
+
+        // Only needed to build the cache loader arguments
+        this.objectType = cachableAnnotation != null ? findObjectType(sqlDaoClass) : null;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getRawProfilingName() {
+        return rawProfilingName;
+    }
+
+    public String getCachingRawProfilingName() {
+        return cachingRawProfilingName;
+    }
+
+    public String getAuditedRawProfilingName() {
+        return auditedRawProfilingName;
+    }
+
+    public String getHistoryAndAuditProfilingName() {
+        return historyAndAuditProfilingName;
+    }
+
+    public boolean isWrite() {
+        return isWrite;
+    }
+
+    public boolean isGetById() {
+        return isGetById;
+    }
+
+    @Nullable
+    public Audited getAuditedAnnotation() {
+        return auditedAnnotation;
+    }
+
+    @Nullable
+    public Cachable getCachableAnnotation() {
+        return cachableAnnotation;
+    }
+
+    @Nullable
+    public ObjectType getObjectType() {
+        return objectType;
+    }
+
+    public int[] getCachableKeyArgIndexes() {
+        return cachableKeyArgIndexes;
+    }
+
+    public Annotation[][] getParameterAnnotations() {
+        return parameterAnnotations;
+    }
+
+    @Nullable
+    public InternalTenantContext getTenantContext(final Object[] args) {
+        if (tenantContextArgIndex >= 0) {
+            return (InternalTenantContext) args[tenantContextArgIndex];
+        }
+        // Declared as Object or similar, look at the runtime types
+        for (final Object arg : args) {
+            if (arg instanceof InternalTenantContext) {
+                return (InternalTenantContext) arg;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    public InternalCallContext getCallContext(final Object[] args) {
+        if (callContextArgIndex >= 0) {
+            return (InternalCallContext) args[callContextArgIndex];
+        }
+        for (final Object arg : args) {
+            if (arg instanceof InternalCallContext) {
+                return (InternalCallContext) arg;
+            }
+        }
+        return null;
+    }
+
+    // The first argument declared with that exact type is the context (a fallback on the runtime types is needed for looser declarations)
+    private static int findParameterIndex(final Class<?>[] parameterTypes, final Class<?> type) {
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (type.equals(parameterTypes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
+     * constructing an empty object so we can call the getObjectType method on it.
+     *
+     * @return the objectType associated to that SqlDao class
+     */
+    private static ObjectType findObjectType(final Class<?> sqlDaoClass) throws ReflectiveOperationException {
+        int foundIndexForEntitySqlDao = -1;
+        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
+        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
+            final Type type = sqlDaoClass.getGenericInterfaces()[0];
+            if (!(type instanceof ParameterizedType)) {
+                // AuditSqlDao for example won't extend EntitySqlDao
+                return null;
+            }
+
+            if (EntitySqlDao.class.getName().equals(((Class) ((ParameterizedType) type).getRawType()).getName())) {
+                foundIndexForEntitySqlDao = i;
+                break;
+            }
+        }
+        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
+        if (foundIndexForEntitySqlDao >= 0) {
+            final Type[] types = ((ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
+            int foundIndexForEntityModelDao = -1;
+            for (int i = 0; i < types.length; i++) {
+                final Class clz = ((Class) types[i]);
+                if (EntityModelDao.class.getName().equals(((Class) ((ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
+                    foundIndexForEntityModelDao = i;
+                    break;
+                }
+            }
+
+            if (foundIndexForEntityModelDao >= 0) {
+                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
+
+                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
+
+                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
+                return modelDao.getTableName().getObjectType();
+            }
+        }
+        return null;
+    }
+}
@@ -18,11 +18,18 @@
 
 package org.killbill.billing.util.entity.dao;
 
+import javax.annotation.Nullable;
+
+import org.killbill.billing.util.audit.journal.AuditJournalTransaction;
+import org.killbill.billing.util.audit.journal.DefaultAuditJournalService;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.entity.Entity;
 import org.killbill.clock.Clock;
+import org.killbill.commons.profiling.Profiling;
+import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
 import org.skife.jdbi.v2.Handle;
 import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.Transaction;
@@ -34,7 +41,7 @@ import org.skife.jdbi.v2.TransactionStatus;
  */
 public class EntitySqlDaoTransactionalJdbiWrapper {
 
-    private final IDBI dbi;
+    private final DBRouter dbRouter;
     private final Clock clock;
     private final CacheControllerDispatcher cacheControllerDispatcher;
     private final NonEntityDao nonEntityDao;
@@ -42,7 +49,12 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
 
     public EntitySqlDaoTransactionalJdbiWrapper(final IDBI dbi, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
                                                 final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
-        this.dbi = dbi;
+        this(new DBRouter(dbi), clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
+    }
+
+    public EntitySqlDaoTransactionalJdbiWrapper(final DBRouter dbRouter, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher,
+                                                final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
+        this.dbRouter = dbRouter;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
@@ -53,16 +65,28 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
 
         private final Handle h;
         private final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper;
+        private final AuditJournalTransaction auditJournalTransaction;
 
-        JdbiTransaction(final Handle h, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        JdbiTransaction(final Handle h, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper, @Nullable final AuditJournalTransaction auditJournalTransaction) {
             this.h = h;
             this.entitySqlDaoTransactionWrapper = entitySqlDaoTransactionWrapper;
+            this.auditJournalTransaction = auditJournalTransaction;
         }
 
         @Override
         public ReturnType inTransaction(final EntitySqlDao<M, E> transactionalSqlDao, final TransactionStatus status) throws Exception {
-            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
-            return entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            // Null unless a consumer of the account versions is enabled
+            final AccountVersionTracker accountVersionTracker = AccountVersionTracker.isVersioningEnabled() ? new AccountVersionTracker() : null;
+            final EntitySqlDaoWrapperFactory factoryEntitySqlDao = new EntitySqlDaoWrapperFactory(h, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, auditJournalTransaction, accountVersionTracker);
+            final ReturnType result = entitySqlDaoTransactionWrapper.inTransaction(factoryEntitySqlDao);
+            if (accountVersionTracker != null) {
+                accountVersionTracker.flush(h, clock.getUTCNow().toDate());
+            }
+            if (auditJournalTransaction != null) {
+                // Make the history and audit records durable before the database transaction commits
+                auditJournalTransaction.prepare(h);
+            }
+            return result;
         }
     }
 
@@ -75,11 +99,56 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
      * @return result from the transaction fo type ReturnType
      */
     public <ReturnType> ReturnType execute(final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
-        final Handle handle = dbi.open();
+        return execute(false, entitySqlDaoTransactionWrapper);
+    }
+
+    /**
+     * Same as execute, but the transaction may be routed to the read replica (if configured). Only use it for
+     * reads which can tolerate replication lag (reporting, pagination, audit logs).
+     *
+     * @param entitySqlDaoTransactionWrapper read-only transaction to execute
+     * @param <ReturnType>                   object type to return from the transaction
+     * @return result from the transaction fo type ReturnType
+     */
+    public <ReturnType> ReturnType executeReadOnly(final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        return executeReadOnly(shouldUseReadReplica(), entitySqlDaoTransactionWrapper);
+    }
+
+    // Whether read-only work started now would go to the read replica: callers issuing several read-only calls which must
+    // be consistent with each other (e.g. a count and the matching page) decide once and pass the result along
+    public boolean shouldUseReadReplica() {
+        return dbRouter.shouldUseRODBI(true);
+    }
+
+    public <ReturnType> ReturnType executeReadOnly(final boolean useReadReplica, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        if (!dbRouter.hasReadReplica()) {
+            return execute(false, entitySqlDaoTransactionWrapper);
+        }
+
+        final Profiling<ReturnType, RuntimeException> prof = new Profiling<ReturnType, RuntimeException>();
+        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, "read-only transaction " + (useReadReplica ? "(replica)" : "(primary)"), new WithProfilingCallback<ReturnType, RuntimeException>() {
+            @Override
+            public ReturnType execute() throws RuntimeException {
+                return EntitySqlDaoTransactionalJdbiWrapper.this.execute(useReadReplica, entitySqlDaoTransactionWrapper);
+            }
+        });
+    }
+
+    private <ReturnType> ReturnType execute(final boolean requestedRO, final EntitySqlDaoTransactionWrapper<ReturnType> entitySqlDaoTransactionWrapper) {
+        final Handle handle = dbRouter.getDBI(requestedRO).open();
+        // Null unless the audit journal is enabled
+        final AuditJournalTransaction auditJournalTransaction = DefaultAuditJournalService.beginTransaction();
         try {
             final EntitySqlDao<EntityModelDao<Entity>, Entity> entitySqlDao = handle.attach(InitialEntitySqlDao.class);
-            return entitySqlDao.inTransaction(TransactionIsolationLevel.READ_COMMITTED, new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper));
+            final ReturnType result = entitySqlDao.inTransaction(TransactionIsolationLevel.READ_COMMITTED, new JdbiTransaction<ReturnType, EntityModelDao<Entity>, Entity>(handle, entitySqlDaoTransactionWrapper, auditJournalTransaction));
+            if (auditJournalTransaction != null) {
+                auditJournalTransaction.commit();
+            }
+            return result;
         } finally {
+            if (auditJournalTransaction != null && !auditJournalTransaction.isCommitted()) {
+                auditJournalTransaction.rollback();
+            }
             handle.close();
         }
     }
@@ -87,9 +156,14 @@ public class EntitySqlDaoTransactionalJdbiWrapper {
     //
     // This is only used in the pagination APIs when streaming results. We want to keep the connection open, and also there is no need
     // to send bus events, record notifications where we need to keep the Connection through the jDBI Handle.
+    // These are read-only by nature, so they are routed to the read replica (if configured).
     //
     public <M extends EntityModelDao<E>, E extends Entity, T extends EntitySqlDao<M, E>> T onDemandForStreamingResults(final Class<T> sqlObjectType) {
-        return dbi.onDemand(sqlObjectType);
+        return onDemandForStreamingResults(sqlObjectType, shouldUseReadReplica());
+    }
+
+    public <M extends EntityModelDao<E>, E extends Entity, T extends EntitySqlDao<M, E>> T onDemandForStreamingResults(final Class<T> sqlObjectType, final boolean useReadReplica) {
+        return dbRouter.getDBI(useReadReplica).onDemand(sqlObjectType);
     }
 
     /**
@@ -20,6 +20,9 @@ package org.killbill.billing.util.entity.dao;
 
 import java.lang.reflect.Proxy;
 
+import javax.annotation.Nullable;
+
+import org.killbill.billing.util.audit.journal.AuditJournalTransaction;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
 import org.killbill.billing.util.dao.NonEntityDao;
@@ -42,13 +45,23 @@ public class EntitySqlDaoWrapperFactory {
 
     private final NonEntityDao nonEntityDao;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AuditJournalTransaction auditJournalTransaction;
+    private final AccountVersionTracker accountVersionTracker;
 
     public EntitySqlDaoWrapperFactory(final Handle handle, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
+        this(handle, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, null, null);
+    }
+
+    public EntitySqlDaoWrapperFactory(final Handle handle, final Clock clock, final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao,
+                                      final InternalCallContextFactory internalCallContextFactory, @Nullable final AuditJournalTransaction auditJournalTransaction,
+                                      @Nullable final AccountVersionTracker accountVersionTracker) {
         this.handle = handle;
         this.clock = clock;
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.auditJournalTransaction = auditJournalTransaction;
+        this.accountVersionTracker = accountVersionTracker;
     }
 
     /**
@@ -76,7 +89,7 @@ public class EntitySqlDaoWrapperFactory {
         final ClassLoader classLoader = newSqlDao.getClass().getClassLoader();
         final Class[] interfacesToImplement = {newSqlDaoClass};
         final EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity> wrapperInvocationHandler =
-                new EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity>(newSqlDaoClass, newSqlDao, handle, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
+                new EntitySqlDaoWrapperInvocationHandler<NewSqlDao, NewEntityModelDao, NewEntity>(newSqlDaoClass, newSqlDao, handle, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, auditJournalTransaction, accountVersionTracker);
 
         final Object newSqlDaoObject = Proxy.newProxyInstance(classLoader, interfacesToImplement, wrapperInvocationHandler);
         return newSqlDaoClass.cast(newSqlDaoObject);
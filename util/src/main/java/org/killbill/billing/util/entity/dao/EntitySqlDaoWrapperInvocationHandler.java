@@ -21,35 +21,30 @@ package org.killbill.billing.util.entity.dao;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
 
-import org.killbill.billing.ObjectType;
+import org.joda.time.DateTime;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.audit.ChangeType;
-import org.killbill.billing.util.cache.Cachable;
+import org.killbill.billing.util.audit.journal.AuditJournalTransaction;
 import org.killbill.billing.util.cache.Cachable.CacheType;
-import org.killbill.billing.util.cache.CachableKey;
 import org.killbill.billing.util.cache.CacheController;
 import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.cache.CacheLoaderArgument;
 import org.killbill.billing.util.callcontext.InternalCallContextFactory;
-import org.killbill.billing.util.dao.EntityAudit;
-import org.killbill.billing.util.dao.EntityHistoryModelDao;
 import org.killbill.billing.util.dao.NonEntityDao;
-import org.killbill.billing.util.dao.NonEntitySqlDao;
 import org.killbill.billing.util.dao.TableName;
 import org.killbill.billing.util.entity.Entity;
+import org.killbill.billing.util.profiling.LatencyHistograms;
 import org.killbill.billing.util.tag.dao.UUIDCollectionBinder;
 import org.killbill.clock.Clock;
 import org.killbill.commons.profiling.Profiling;
@@ -61,16 +56,12 @@ import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.exceptions.DBIException;
 import org.skife.jdbi.v2.exceptions.StatementException;
 import org.skife.jdbi.v2.sqlobject.Bind;
-import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
 
 /**
  * Wraps an instance of EntitySqlDao, performing extra work around each method (Sql query)
@@ -91,6 +82,8 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
     private final Clock clock;
     private final NonEntityDao nonEntityDao;
     private final InternalCallContextFactory internalCallContextFactory;
+    private final AuditJournalTransaction auditJournalTransaction;
+    private final AccountVersionTracker accountVersionTracker;
     private final Profiling prof;
 
     public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
@@ -101,6 +94,18 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                                                 @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
                                                 @Nullable final NonEntityDao nonEntityDao,
                                                 final InternalCallContextFactory internalCallContextFactory) {
+        this(sqlDaoClass, sqlDao, handle, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory, null, null);
+    }
+
+    public EntitySqlDaoWrapperInvocationHandler(final Class<S> sqlDaoClass,
+                                                final S sqlDao,
+                                                final Handle handle,
+                                                final Clock clock,
+                                                @Nullable final CacheControllerDispatcher cacheControllerDispatcher,
+                                                @Nullable final NonEntityDao nonEntityDao,
+                                                final InternalCallContextFactory internalCallContextFactory,
+                                                @Nullable final AuditJournalTransaction auditJournalTransaction,
+                                                @Nullable final AccountVersionTracker accountVersionTracker) {
         this.sqlDaoClass = sqlDaoClass;
         this.sqlDao = sqlDao;
         this.handle = handle;
@@ -108,16 +113,27 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         this.cacheControllerDispatcher = cacheControllerDispatcher;
         this.nonEntityDao = nonEntityDao;
         this.internalCallContextFactory = internalCallContextFactory;
+        this.auditJournalTransaction = auditJournalTransaction;
+        this.accountVersionTracker = accountVersionTracker;
         this.prof = new Profiling<Object, Throwable>();
     }
 
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final EntitySqlDaoInvocationPlan plan = EntitySqlDaoInvocationPlan.get(sqlDaoClass, method);
+        final long startNanos = LatencyHistograms.start();
+        if (plan.isWrite()) {
+            // Subsequent read-only calls from this request need to see this write: keep them on the primary
+            DBRouter.markWrite();
+        }
         try {
-            return prof.executeWithProfiling(ProfilingFeatureType.DAO, sqlDaoClass.getSimpleName() + ":" + method.getName(), new WithProfilingCallback() {
+            if (!isProfilingRequested()) {
+                return invokeSafely(plan, args);
+            }
+            return prof.executeWithProfiling(ProfilingFeatureType.DAO, plan.getOperation(), new WithProfilingCallback() {
                 @Override
                 public Object execute() throws Throwable {
-                    return invokeSafely(proxy, method, args);
+                    return invokeSafely(plan, args);
                 }
             });
         } catch (Throwable t) {
@@ -150,6 +166,8 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
             } else {
                 errorDuringTransaction(t, method);
             }
+        } finally {
+            LatencyHistograms.recordSince(ProfilingFeatureType.DAO, plan.getOperation(), startNanos);
         }
 
         // Never reached
@@ -185,159 +203,97 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         errorDuringTransaction(t, method, null);
     }
 
-    private Object invokeSafely(final Object proxy, final Method method, final Object[] args) throws Throwable {
-
-        final Audited auditedAnnotation = method.getAnnotation(Audited.class);
-        final Cachable cachableAnnotation = method.getAnnotation(Cachable.class);
-
+    private Object invokeSafely(final EntitySqlDaoInvocationPlan plan, final Object[] args) throws Throwable {
         // This can't be AUDIT'ed and CACHABLE'd at the same time as we only cache 'get'
-        if (auditedAnnotation != null) {
-            return invokeWithAuditAndHistory(auditedAnnotation, method, args);
-        } else if (cachableAnnotation != null && cacheControllerDispatcher != null) {
-            return invokeWithCaching(cachableAnnotation, method, args);
+        if (plan.getAuditedAnnotation() != null) {
+            return invokeWithAuditAndHistory(plan, args);
+        } else if (plan.getCachableAnnotation() != null && cacheControllerDispatcher != null) {
+            return invokeWithCaching(plan, args);
         } else {
-            return invokeRaw(method, args);
+            return invokeRaw(plan, args);
         }
     }
 
-    private Object invokeRaw(final Method method, final Object[] args) throws Throwable {
-        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (raw):" + method.getName(), new WithProfilingCallback() {
+    private Object invokeRaw(final EntitySqlDaoInvocationPlan plan, final Object[] args) throws Throwable {
+        if (!isProfilingRequested()) {
+            return invokeRawWithoutProfiling(plan, args);
+        }
+        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, plan.getRawProfilingName(), new WithProfilingCallback() {
             @Override
             public Object execute() throws Throwable {
-                Object result = method.invoke(sqlDao, args);
-                // This is *almost* the default invocation except that we want to intercept getById calls to populate the caches; the pattern is to always fetch
-                // the object after it was created, which means this method is (by pattern) first called right after object creation and contains all the goodies we care
-                // about (record_id, account_record_id, object_id, tenant_record_id)
-                //
-                if (result != null && method.getName().equals("getById")) {
-                    populateCacheOnGetByIdInvocation((M) result);
-                }
-                return result;
+                return invokeRawWithoutProfiling(plan, args);
             }
         });
     }
 
-    private Object invokeWithCaching(final Cachable cachableAnnotation, final Method method, final Object[] args)
-            throws Throwable {
-        final ObjectType objectType = getObjectType();
-        final CacheType cacheType = cachableAnnotation.value();
-        final CacheController<Object, Object> cache = cacheControllerDispatcher.getCacheController(cacheType);
-        Object result = null;
-        if (cache != null) {
-            // Find all arguments marked with @CachableKey
-            final Map<Integer, Object> keyPieces = new LinkedHashMap<Integer, Object>();
-            final Annotation[][] annotations = method.getParameterAnnotations();
-            for (int i = 0; i < annotations.length; i++) {
-                for (int j = 0; j < annotations[i].length; j++) {
-                    final Annotation annotation = annotations[i][j];
-                    if (CachableKey.class.equals(annotation.annotationType())) {
-                        // CachableKey position starts at 1
-                        keyPieces.put(((CachableKey) annotation).value() - 1, args[i]);
-                        break;
-                    }
-                }
-            }
-
-            // Build the Cache key
-            final String cacheKey = buildCacheKey(keyPieces);
-
-            final InternalTenantContext internalTenantContext = (InternalTenantContext) Iterables.find(ImmutableList.copyOf(args), new Predicate<Object>() {
-                @Override
-                public boolean apply(final Object input) {
-                    return input instanceof InternalTenantContext;
-                }
-            }, null);
-            final CacheLoaderArgument cacheLoaderArgument = new CacheLoaderArgument(objectType, args, internalTenantContext, handle);
-            return cache.get(cacheKey, cacheLoaderArgument);
-        }
-        if (result == null) {
-            result = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + "(raw) :" + method.getName(), new WithProfilingCallback() {
-                @Override
-                public Object execute() throws Throwable {
-                    return method.invoke(sqlDao, args);
-                }
-            });
+    private Object invokeRawWithoutProfiling(final EntitySqlDaoInvocationPlan plan, final Object[] args) throws Throwable {
+        final Object result = plan.getMethod().invoke(sqlDao, args);
+        // This is *almost* the default invocation except that we want to intercept getById calls to populate the caches; the pattern is to always fetch
+        // the object after it was created, which means this method is (by pattern) first called right after object creation and contains all the goodies we care
+        // about (record_id, account_record_id, object_id, tenant_record_id)
+        //
+        if (result != null && plan.isGetById()) {
+            populateCacheOnGetByIdInvocation((M) result);
         }
         return result;
     }
 
-    /**
-     * Extract object from sqlDaoClass by looking at first parameter type (EntityModelDao) and
-     * constructing an empty object so we can call the getObjectType method on it.
-     *
-     * @return the objectType associated to that handler
-     * @throws InstantiationException
-     * @throws IllegalAccessException
-     * @throws ClassNotFoundException
-     */
-    private ObjectType getObjectType() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
-
-        int foundIndexForEntitySqlDao = -1;
-        // If the sqlDaoClass implements multiple interfaces, first figure out which one is the EntitySqlDao
-        for (int i = 0; i < sqlDaoClass.getGenericInterfaces().length; i++) {
-            final Type type = sqlDaoClass.getGenericInterfaces()[0];
-            if (!(type instanceof java.lang.reflect.ParameterizedType)) {
-                // AuditSqlDao for example won't extend EntitySqlDao
-                return null;
-            }
+    private Object invokeWithCaching(final EntitySqlDaoInvocationPlan plan, final Object[] args) throws Throwable {
+        final CacheType cacheType = plan.getCachableAnnotation().value();
+        final CacheController<Object, Object> cache = cacheControllerDispatcher.getCacheController(cacheType);
+        if (cache != null) {
+            // Build the Cache key from all arguments marked with @CachableKey
+            final String cacheKey = buildCacheKey(plan.getCachableKeyArgIndexes(), args);
 
-            if (EntitySqlDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) type).getRawType()).getName())) {
-                foundIndexForEntitySqlDao = i;
-                break;
-            }
+            final InternalTenantContext internalTenantContext = plan.getTenantContext(args);
+            final CacheLoaderArgument cacheLoaderArgument = new CacheLoaderArgument(plan.getObjectType(), args, internalTenantContext, handle);
+            return cache.get(cacheKey, cacheLoaderArgument);
         }
-        // Find out from the parameters of the EntitySqlDao which one is the EntityModelDao, and extract his (sub)type to finally return the ObjectType
-        if (foundIndexForEntitySqlDao >= 0) {
-            final Type[] types = ((java.lang.reflect.ParameterizedType) sqlDaoClass.getGenericInterfaces()[foundIndexForEntitySqlDao]).getActualTypeArguments();
-            int foundIndexForEntityModelDao = -1;
-            for (int i = 0; i < types.length; i++) {
-                final Class clz = ((Class) types[i]);
-                if (EntityModelDao.class.getName().equals(((Class) ((java.lang.reflect.ParameterizedType) clz.getGenericInterfaces()[0]).getRawType()).getName())) {
-                    foundIndexForEntityModelDao = i;
-                    break;
-                }
+        if (!isProfilingRequested()) {
+            return plan.getMethod().invoke(sqlDao, args);
+        }
+        return prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, plan.getCachingRawProfilingName(), new WithProfilingCallback() {
+            @Override
+            public Object execute() throws Throwable {
+                return plan.getMethod().invoke(sqlDao, args);
             }
+        });
+    }
 
-            if (foundIndexForEntityModelDao >= 0) {
-                final String modelClassName = ((Class) types[foundIndexForEntityModelDao]).getName();
-
-                final Class<? extends EntityModelDao<?>> clz = (Class<? extends EntityModelDao<?>>) Class.forName(modelClassName);
-
-                final EntityModelDao<?> modelDao = (EntityModelDao<?>) clz.newInstance();
-                return modelDao.getTableName().getObjectType();
-            }
-        }
-        return null;
+    // Profiling data is only collected when requested (X-Killbill-Profiling-Req): avoid allocating the callbacks otherwise
+    private boolean isProfilingRequested() {
+        return Profiling.getPerThreadProfilingData() != null;
     }
 
-    private Object invokeWithAuditAndHistory(final Audited auditedAnnotation, final Method method, final Object[] args) throws Throwable {
-        InternalCallContext context = null;
-        List<String> entityIds = null;
+    private Object invokeWithAuditAndHistory(final EntitySqlDaoInvocationPlan plan, final Object[] args) throws Throwable {
         final Map<String, M> entities = new HashMap<String, M>();
         final Map<String, Long> entityRecordIds = new HashMap<String, Long>();
-        if (auditedAnnotation != null) {
-            // There will be some work required after the statement is executed,
-            // get the id before in case the change is a delete
-            context = retrieveContextFromArguments(args);
-            entityIds = retrieveEntityIdsFromArguments(method, args);
-            for (final String entityId : entityIds) {
-                entities.put(entityId, sqlDao.getById(entityId, context));
-                entityRecordIds.put(entityId, sqlDao.getRecordId(entityId, context));
-            }
+        // There will be some work required after the statement is executed,
+        // get the id before in case the change is a delete
+        final InternalCallContext context = plan.getCallContext(args);
+        final List<String> entityIds = retrieveEntityIdsFromArguments(plan.getParameterAnnotations(), args);
+        for (final String entityId : entityIds) {
+            entities.put(entityId, sqlDao.getById(entityId, context));
+            entityRecordIds.put(entityId, sqlDao.getRecordId(entityId, context));
         }
 
         // Real jdbc call
-        final Object obj = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (raw) :", new WithProfilingCallback() {
-            @Override
-            public Object execute() throws Throwable {
-                return method.invoke(sqlDao, args);
-            }
-        });
+        final Object obj;
+        if (!isProfilingRequested()) {
+            obj = plan.getMethod().invoke(sqlDao, args);
+        } else {
+            obj = prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, plan.getAuditedRawProfilingName(), new WithProfilingCallback() {
+                @Override
+                public Object execute() throws Throwable {
+                    return plan.getMethod().invoke(sqlDao, args);
+                }
+            });
+        }
 
-        final ChangeType changeType = auditedAnnotation.value();
+        final ChangeType changeType = plan.getAuditedAnnotation().value();
 
         for (final String entityId : entityIds) {
-            updateHistoryAndAudit(entityId, entities, entityRecordIds, changeType, context);
+            updateHistoryAndAudit(plan, entityId, entities, entityRecordIds, changeType, context);
         }
         return obj;
     }
@@ -367,10 +323,10 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                rawKey;
     }
 
-    private void updateHistoryAndAudit(final String entityId, final Map<String, M> entities, final Map<String, Long> entityRecordIds,
+    private void updateHistoryAndAudit(final EntitySqlDaoInvocationPlan plan, final String entityId, final Map<String, M> entities, final Map<String, Long> entityRecordIds,
                                        final ChangeType changeType, final InternalCallContext context) throws Throwable {
 
-        prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, sqlDaoClass.getSimpleName() + " (history/audit) :", new WithProfilingCallback() {
+        prof.executeWithProfiling(ProfilingFeatureType.DAO_DETAILS, plan.getHistoryAndAuditProfilingName(), new WithProfilingCallback() {
             @Override
             public Object execute() {
                 final M reHydratedEntity = sqlDao.getById(entityId, context);
@@ -378,24 +334,32 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
                 final M entity = Objects.firstNonNull(reHydratedEntity, entities.get(entityId));
                 final Long entityRecordId = Objects.firstNonNull(reHydratedEntityRecordId, entityRecordIds.get(entityId));
                 final TableName tableName = entity.getTableName();
+                final DateTime changeDate = clock.getUTCNow();
 
-                // Note: audit entries point to the history record id
-                final Long historyRecordId;
-                if (tableName.getHistoryTableName() != null) {
-                    historyRecordId = insertHistory(entityRecordId, entity, changeType, context);
+                final InternalCallContext auditContext;
+                // Populate the account record id when creating the account record
+                if (TableName.ACCOUNT.equals(tableName) && ChangeType.INSERT.equals(changeType)) {
+                    auditContext = internalCallContextFactory.createInternalCallContext(entityRecordId, context);
                 } else {
-                    historyRecordId = entityRecordId;
+                    auditContext = context;
+                }
+
+                if (accountVersionTracker != null) {
+                    accountVersionTracker.track(auditContext.getAccountRecordId(), auditContext.getTenantRecordId());
+                }
+
+                // When the audit journal is enabled, the history and audit records are written asynchronously
+                if (auditJournalTransaction != null && auditJournalTransaction.add(sqlDaoClass, entity, entityRecordId, changeType, changeDate, context, auditContext)) {
+                    return null;
                 }
 
-                // Make sure to re-hydrate the object (especially needed for create calls)
-                insertAudits(tableName, entityRecordId, historyRecordId, changeType, context);
+                new HistoryAndAuditWriter(handle, cacheControllerDispatcher, nonEntityDao).write(sqlDao, entity, entityRecordId, changeType, changeDate, context, auditContext);
                 return null;
             }
         });
     }
 
-    private List<String> retrieveEntityIdsFromArguments(final Method method, final Object[] args) {
-        final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    private List<String> retrieveEntityIdsFromArguments(final Annotation[][] parameterAnnotations, final Object[] args) {
         int i = -1;
         for (final Object arg : args) {
             i++;
@@ -441,66 +405,12 @@ public class EntitySqlDaoWrapperInvocationHandler<S extends EntitySqlDao<M, E>,
         return entityIds;
     }
 
-    private InternalCallContext retrieveContextFromArguments(final Object[] args) {
-        for (final Object arg : args) {
-            if (!(arg instanceof InternalCallContext)) {
-                continue;
-            }
-            return (InternalCallContext) arg;
-        }
-        return null;
-    }
-
-    private Long insertHistory(final Long entityRecordId, final M entityModelDao, final ChangeType changeType, final InternalCallContext context) {
-        final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDao, entityRecordId, changeType, clock.getUTCNow());
-
-        sqlDao.addHistoryFromTransaction(history, context);
-
-        final NonEntitySqlDao transactional = SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
-
-        /* return transactional.getLastHistoryRecordId(entityRecordId, entityModelDao.getHistoryTableName().getTableName()); */
-        return nonEntityDao.retrieveLastHistoryRecordIdFromTransaction(entityRecordId, entityModelDao.getHistoryTableName(), transactional);
-    }
-
-    private void insertAudits(final TableName tableName, final Long entityRecordId, final Long historyRecordId, final ChangeType changeType, final InternalCallContext contextMaybeWithoutAccountRecordId) {
-        final TableName destinationTableName = Objects.firstNonNull(tableName.getHistoryTableName(), tableName);
-        final EntityAudit audit = new EntityAudit(destinationTableName, historyRecordId, changeType, clock.getUTCNow());
-
-        final InternalCallContext context;
-        // Populate the account record id when creating the account record
-        if (TableName.ACCOUNT.equals(tableName) && ChangeType.INSERT.equals(changeType)) {
-            context = internalCallContextFactory.createInternalCallContext(entityRecordId, contextMaybeWithoutAccountRecordId);
-        } else {
-            context = contextMaybeWithoutAccountRecordId;
-        }
-        sqlDao.insertAuditFromTransaction(audit, context);
-
-        // We need to invalidate the caches. There is a small window of doom here where caches will be stale.
-        // TODO Knowledge on how the key is constructed is also in AuditSqlDao
-        if (tableName.getHistoryTableName() != null) {
-            final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG_VIA_HISTORY);
-            if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName.getHistoryTableName(), 1, tableName.getHistoryTableName(), 2, entityRecordId));
-                cacheController.remove(key);
-            }
-        } else {
-            final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG);
-            if (cacheController != null) {
-                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName, 1, entityRecordId));
-                cacheController.remove(key);
-            }
-        }
-    }
-
-    private String buildCacheKey(final Map<Integer, Object> keyPieces) {
+    private String buildCacheKey(final int[] keyArgIndexes, final Object[] args) {
         final StringBuilder cacheKey = new StringBuilder();
-        for (int i = 0; i < keyPieces.size(); i++) {
-            // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase.
-            // Since the database engine may be case insensitive and we use arguments of the SQL method call
-            // to build the key, the key has to be case insensitive as well.
-            final String str = String.valueOf(keyPieces.get(i)).toUpperCase();
-            cacheKey.append(str);
-            if (i < keyPieces.size() - 1) {
+        for (int i = 0; i < keyArgIndexes.length; i++) {
+            // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase (see HistoryAndAuditWriter)
+            cacheKey.append(String.valueOf(args[keyArgIndexes[i]]).toUpperCase());
+            if (i < keyArgIndexes.length - 1) {
                 cacheKey.append(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
             }
         }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.dao.EntityAudit;
+import org.killbill.billing.util.dao.EntityHistoryModelDao;
+import org.killbill.billing.util.dao.NonEntityDao;
+import org.killbill.billing.util.dao.NonEntitySqlDao;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.Entity;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.sqlobject.SqlObjectBuilder;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Writes the history and audit records of an entity change, on a given handle. Used both by the
+ * EntitySqlDao wrapper (synchronous mode) and when draining the audit journal.
+ */
+public class HistoryAndAuditWriter {
+
+    private final Handle handle;
+    private final CacheControllerDispatcher cacheControllerDispatcher;
+    private final NonEntityDao nonEntityDao;
+
+    public HistoryAndAuditWriter(final Handle handle, @Nullable final CacheControllerDispatcher cacheControllerDispatcher, final NonEntityDao nonEntityDao) {
+        this.handle = handle;
+        this.cacheControllerDispatcher = cacheControllerDispatcher;
+        this.nonEntityDao = nonEntityDao;
+    }
+
+    public <M extends EntityModelDao<E>, E extends Entity> void write(final EntitySqlDao<M, E> sqlDao,
+                                                                      final M entity,
+                                                                      final Long entityRecordId,
+                                                                      final ChangeType changeType,
+                                                                      final DateTime changeDate,
+                                                                      final InternalCallContext context,
+                                                                      final InternalCallContext auditContext) {
+        final TableName tableName = entity.getTableName();
+
+        // Note: audit entries point to the history record id
+        final Long historyRecordId;
+        if (tableName.getHistoryTableName() != null) {
+            historyRecordId = insertHistory(sqlDao, entityRecordId, entity, changeType, changeDate, context);
+        } else {
+            historyRecordId = entityRecordId;
+        }
+
+        final TableName destinationTableName = Objects.firstNonNull(tableName.getHistoryTableName(), tableName);
+        final EntityAudit audit = new EntityAudit(destinationTableName, historyRecordId, changeType, changeDate);
+        sqlDao.insertAuditFromTransaction(audit, auditContext);
+
+        // We need to invalidate the caches. There is a small window of doom here where caches will be stale.
+        invalidateAuditLogCaches(cacheControllerDispatcher, tableName, entityRecordId);
+    }
+
+    private <M extends EntityModelDao<E>, E extends Entity> Long insertHistory(final EntitySqlDao<M, E> sqlDao, final Long entityRecordId, final M entityModelDao,
+                                                                               final ChangeType changeType, final DateTime changeDate, final InternalCallContext context) {
+        final EntityHistoryModelDao<M, E> history = new EntityHistoryModelDao<M, E>(entityModelDao, entityRecordId, changeType, changeDate);
+
+        sqlDao.addHistoryFromTransaction(history, context);
+
+        final NonEntitySqlDao transactional = SqlObjectBuilder.attach(handle, NonEntitySqlDao.class);
+
+        /* return transactional.getLastHistoryRecordId(entityRecordId, entityModelDao.getHistoryTableName().getTableName()); */
+        return nonEntityDao.retrieveLastHistoryRecordIdFromTransaction(entityRecordId, entityModelDao.getHistoryTableName(), transactional);
+    }
+
+    // TODO Knowledge on how the key is constructed is also in AuditSqlDao
+    public static void invalidateAuditLogCaches(@Nullable final CacheControllerDispatcher cacheControllerDispatcher, final TableName tableName, final Long entityRecordId) {
+        if (cacheControllerDispatcher == null) {
+            return;
+        }
+
+        if (tableName.getHistoryTableName() != null) {
+            final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG_VIA_HISTORY);
+            if (cacheController != null) {
+                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName.getHistoryTableName(), 1, tableName.getHistoryTableName(), 2, entityRecordId));
+                cacheController.remove(key);
+            }
+        } else {
+            final CacheController<Object, Object> cacheController = cacheControllerDispatcher.getCacheController(CacheType.AUDIT_LOG);
+            if (cacheController != null) {
+                final String key = buildCacheKey(ImmutableMap.<Integer, Object>of(0, tableName, 1, entityRecordId));
+                cacheController.remove(key);
+            }
+        }
+    }
+
+    private static String buildCacheKey(final Map<Integer, Object> keyPieces) {
+        final StringBuilder cacheKey = new StringBuilder();
+        for (int i = 0; i < keyPieces.size(); i++) {
+            // To normalize the arguments and avoid casing issues, we make all pieces of the key uppercase.
+            // Since the database engine may be case insensitive and we use arguments of the SQL method call
+            // to build the key, the key has to be case insensitive as well.
+            final String str = String.valueOf(keyPieces.get(i)).toUpperCase();
+            cacheKey.append(str);
+            if (i < keyPieces.size() - 1) {
+                cacheKey.append(CacheControllerDispatcher.CACHE_KEY_SEPARATOR);
+            }
+        }
+        return cacheKey.toString();
+    }
+}
@@ -24,7 +24,6 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.skife.jdbi.v2.Handle;
-import org.skife.jdbi.v2.IDBI;
 import org.skife.jdbi.v2.ResultIterator;
 import org.skife.jdbi.v2.tweak.HandleCallback;
 
@@ -32,6 +31,7 @@ import org.killbill.billing.util.api.ColumnInfo;
 import org.killbill.billing.util.api.DatabaseExportOutputStream;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.entity.dao.DBRouter;
 import org.killbill.billing.util.validation.DefaultColumnInfo;
 import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 
@@ -39,13 +39,13 @@ import org.killbill.billing.util.validation.dao.DatabaseSchemaDao;
 public class DatabaseExportDao {
 
     private final DatabaseSchemaDao databaseSchemaDao;
-    private final IDBI dbi;
+    private final DBRouter dbRouter;
 
     @Inject
     public DatabaseExportDao(final DatabaseSchemaDao databaseSchemaDao,
-                             final IDBI dbi) {
+                             final DBRouter dbRouter) {
         this.databaseSchemaDao = databaseSchemaDao;
-        this.dbi = dbi;
+        this.dbRouter = dbRouter;
     }
 
     public void exportDataForAccount(final DatabaseExportOutputStream out, final InternalTenantContext context) {
@@ -109,7 +109,8 @@ public class DatabaseExportDao {
         // Notify the stream that we're about to write data for a different table
         out.newTable(tableName, columnsForTable);
 
-        dbi.withHandle(new HandleCallback<Void>() {
+        // Exports are read-only: use the read replica, if configured
+        dbRouter.getDBI(true).withHandle(new HandleCallback<Void>() {
             @Override
             public Void withHandle(final Handle handle) throws Exception {
                 final ResultIterator<Map<String, Object>> iterator = handle.createQuery(queryBuilder.toString())
@@ -23,6 +23,10 @@ import org.killbill.billing.util.api.AuditUserApi;
 import org.killbill.billing.util.audit.api.DefaultAuditUserApi;
 import org.killbill.billing.util.audit.dao.AuditDao;
 import org.killbill.billing.util.audit.dao.DefaultAuditDao;
+import org.killbill.billing.util.audit.journal.AuditJournalService;
+import org.killbill.billing.util.audit.journal.DefaultAuditJournalService;
+import org.killbill.billing.util.config.AuditJournalConfig;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class AuditModule extends KillBillModule {
 
@@ -38,9 +42,17 @@ public class AuditModule extends KillBillModule {
         bind(AuditUserApi.class).to(DefaultAuditUserApi.class).asEagerSingleton();
     }
 
+    protected void installAuditJournal() {
+        final ConfigurationObjectFactory factory = new ConfigurationObjectFactory(skifeConfigSource);
+        final AuditJournalConfig auditJournalConfig = factory.build(AuditJournalConfig.class);
+        bind(AuditJournalConfig.class).toInstance(auditJournalConfig);
+        bind(AuditJournalService.class).to(DefaultAuditJournalService.class).asEagerSingleton();
+    }
+
     @Override
     protected void configure() {
         installDaos();
         installUserApi();
+        installAuditJournal();
     }
 }
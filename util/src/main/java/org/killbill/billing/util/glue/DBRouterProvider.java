@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.glue;
+
+import java.io.Closeable;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import org.killbill.billing.util.config.ReadReplicaConfig;
+import org.killbill.billing.util.entity.dao.DBRouter;
+import org.killbill.commons.jdbi.guice.DBIProvider;
+import org.killbill.commons.jdbi.guice.DaoConfig;
+import org.killbill.commons.jdbi.guice.DataSourceProvider;
+import org.skife.config.ConfigSource;
+import org.skife.config.ConfigurationObjectFactory;
+import org.skife.jdbi.v2.IDBI;
+import org.skife.jdbi.v2.tweak.TransactionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Injector;
+
+public class DBRouterProvider implements Provider<DBRouter> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DBRouterProvider.class);
+
+    private static final String DAO_PREFIX = "org.killbill.dao.";
+    private static final String READ_REPLICA_PREFIX = "org.killbill.dao.readReplica.";
+    private static final String READ_REPLICA_POOL_NAME = "readReplica";
+
+    private final ConfigSource skifeConfigSource;
+
+    private Injector injector;
+    private IDBI dbi;
+    private ReadReplicaConfig readReplicaConfig;
+
+    public DBRouterProvider(final ConfigSource skifeConfigSource) {
+        this.skifeConfigSource = skifeConfigSource;
+    }
+
+    @Inject
+    public void initialize(final Injector injector, final IDBI dbi, final ReadReplicaConfig readReplicaConfig) {
+        this.injector = injector;
+        this.dbi = dbi;
+        this.readReplicaConfig = readReplicaConfig;
+    }
+
+    @Override
+    public DBRouter get() {
+        if (readReplicaConfig.getJdbcUrl() == null) {
+            return new DBRouter(dbi);
+        }
+
+        logger.info("Routing read-only DAO calls to read replica {}", readReplicaConfig.getJdbcUrl());
+
+        final DaoConfig readReplicaDaoConfig = new ConfigurationObjectFactory(new ReadReplicaConfigSource(skifeConfigSource)).build(DaoConfig.class);
+        final DataSource readReplicaDataSource = new DataSourceProvider(readReplicaDaoConfig, READ_REPLICA_POOL_NAME).get();
+        // Same jDBI setup (mappers, SQL logging, metrics) as the primary
+        final DBIProvider dbiProvider = new DBIProvider(readReplicaDaoConfig, readReplicaDataSource, injector.getInstance(TransactionHandler.class));
+        injector.injectMembers(dbiProvider);
+
+        final Closeable closeableDataSource;
+        if (readReplicaDataSource instanceof Closeable) {
+            closeableDataSource = (Closeable) readReplicaDataSource;
+        } else {
+            logger.warn("Read replica pool {} cannot be closed on shutdown", readReplicaDataSource.getClass().getName());
+            closeableDataSource = null;
+        }
+        return new DBRouter(dbi, dbiProvider.get(), closeableDataSource);
+    }
+
+    // Resolves org.killbill.dao.xxx as org.killbill.dao.readReplica.xxx, falling back to the primary setting
+    private static final class ReadReplicaConfigSource implements ConfigSource {
+
+        private final ConfigSource delegate;
+
+        private ReadReplicaConfigSource(final ConfigSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getString(final String propertyName) {
+            if (propertyName.startsWith(DAO_PREFIX)) {
+                final String readReplicaValue = delegate.getString(READ_REPLICA_PREFIX + propertyName.substring(DAO_PREFIX.length()));
+                if (readReplicaValue != null) {
+                    return readReplicaValue;
+                }
+            }
+            return delegate.getString(propertyName);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.lang.reflect.Method;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.killbill.billing.KillbillApi;
+import org.killbill.billing.util.profiling.LatencyHistograms;
 import org.killbill.commons.profiling.Profiling;
 import org.killbill.commons.profiling.Profiling.WithProfilingCallback;
 import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
@@ -46,12 +47,17 @@ public class KillbillApiAopModule extends AbstractModule {
 
         @Override
         public Object invoke(final MethodInvocation invocation) throws Throwable {
-            return prof.executeWithProfiling(ProfilingFeatureType.API, invocation.getMethod().getName(), new WithProfilingCallback() {
-                @Override
-                public Object execute() throws Throwable {
-                    return invocation.proceed();
-                }
-            });
+            final long startNanos = LatencyHistograms.start();
+            try {
+                return prof.executeWithProfiling(ProfilingFeatureType.API, invocation.getMethod().getName(), new WithProfilingCallback() {
+                    @Override
+                    public Object execute() throws Throwable {
+                        return invocation.proceed();
+                    }
+                });
+            } finally {
+                LatencyHistograms.recordSince(ProfilingFeatureType.API, invocation.getMethod().getDeclaringClass().getSimpleName() + ":" + invocation.getMethod().getName(), startNanos);
+            }
         }
     }
 
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.glue;
+
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.config.ReadReplicaConfig;
+import org.killbill.billing.util.entity.dao.DBRouter;
+import org.killbill.billing.util.readreplica.DefaultReadReplicaService;
+import org.killbill.billing.util.readreplica.ReadReplicaService;
+import org.skife.config.ConfigurationObjectFactory;
+
+public class ReadReplicaModule extends KillBillModule {
+
+    public ReadReplicaModule(final KillbillConfigSource configSource) {
+        super(configSource);
+    }
+
+    @Override
+    protected void configure() {
+        final ReadReplicaConfig readReplicaConfig = new ConfigurationObjectFactory(skifeConfigSource).build(ReadReplicaConfig.class);
+        bind(ReadReplicaConfig.class).toInstance(readReplicaConfig);
+
+        bind(DBRouter.class).toProvider(new DBRouterProvider(skifeConfigSource)).asEagerSingleton();
+        bind(ReadReplicaService.class).to(DefaultReadReplicaService.class).asEagerSingleton();
+    }
+}
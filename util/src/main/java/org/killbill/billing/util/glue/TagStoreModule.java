@@ -21,12 +21,15 @@ package org.killbill.billing.util.glue;
 import org.killbill.billing.platform.api.KillbillConfigSource;
 import org.killbill.billing.tag.TagInternalApi;
 import org.killbill.billing.util.api.TagUserApi;
+import org.killbill.billing.util.config.TagConfig;
+import org.killbill.billing.util.tag.ControlTagsCache;
 import org.killbill.billing.util.tag.DefaultTagInternalApi;
 import org.killbill.billing.util.tag.api.DefaultTagUserApi;
 import org.killbill.billing.util.tag.dao.DefaultTagDao;
 import org.killbill.billing.util.tag.dao.DefaultTagDefinitionDao;
 import org.killbill.billing.util.tag.dao.TagDao;
 import org.killbill.billing.util.tag.dao.TagDefinitionDao;
+import org.skife.config.ConfigurationObjectFactory;
 
 public class TagStoreModule extends KillBillModule {
 
@@ -34,8 +37,14 @@ public class TagStoreModule extends KillBillModule {
         super(configSource);
     }
 
+    protected void installConfig() {
+        final TagConfig config = new ConfigurationObjectFactory(skifeConfigSource).build(TagConfig.class);
+        bind(TagConfig.class).toInstance(config);
+    }
+
     @Override
     protected void configure() {
+        installConfig();
         installUserApi();
         installInternalApi();
         installDaos();
@@ -46,6 +55,7 @@ public class TagStoreModule extends KillBillModule {
     }
 
     protected void installInternalApi() {
+        bind(ControlTagsCache.class).asEagerSingleton();
         bind(TagInternalApi.class).to(DefaultTagInternalApi.class).asEagerSingleton();
     }
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.profiling;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Always-on latency recording, keyed by profiling feature type and operation name. Unlike the
+ * per-request profiling (X-Killbill-Profiling-Req), this is cheap enough to run on every call:
+ * a map lookup and a few atomic increments.
+ * <p/>
+ * The number of tracked operations is bounded: once MAX_OPERATIONS distinct keys have been
+ * seen, new operations are folded into a shared OTHER_OPERATION histogram per feature type.
+ */
+public class LatencyHistograms {
+
+    public static final String OTHER_OPERATION = "__other__";
+
+    static final int MAX_OPERATIONS = 1000;
+
+    private static final String ENABLED_PROPERTY = "org.killbill.profiling.latency.enabled";
+
+    private static final ConcurrentMap<ProfilingFeatureType, ConcurrentMap<String, LatencyHistogram>> histograms = new ConcurrentHashMap<ProfilingFeatureType, ConcurrentMap<String, LatencyHistogram>>();
+    private static final ConcurrentMap<ProfilingFeatureType, LatencyHistogram> overflowHistograms = new ConcurrentHashMap<ProfilingFeatureType, LatencyHistogram>();
+    private static final AtomicInteger nbOperations = new AtomicInteger();
+
+    private static volatile boolean enabled = !"false".equals(System.getProperty(ENABLED_PROPERTY));
+
+    static {
+        for (final ProfilingFeatureType featureType : ProfilingFeatureType.values()) {
+            histograms.put(featureType, new ConcurrentHashMap<String, LatencyHistogram>());
+            overflowHistograms.put(featureType, new LatencyHistogram());
+        }
+    }
+
+    private LatencyHistograms() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        LatencyHistograms.enabled = enabled;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void recordSince(final ProfilingFeatureType featureType, final String operation, final long startNanos) {
+        if (enabled && startNanos != 0L) {
+            record(featureType, operation, System.nanoTime() - startNanos);
+        }
+    }
+
+    public static void record(final ProfilingFeatureType featureType, final String operation, final long durationNanos) {
+        getOrCreate(featureType, operation).recordNanos(durationNanos);
+    }
+
+    public static Map<ProfilingFeatureType, Map<String, LatencyHistogram.Snapshot>> snapshot() {
+        final ImmutableMap.Builder<ProfilingFeatureType, Map<String, LatencyHistogram.Snapshot>> builder = ImmutableMap.builder();
+        for (final ProfilingFeatureType featureType : ProfilingFeatureType.values()) {
+            final ImmutableMap.Builder<String, LatencyHistogram.Snapshot> operations = ImmutableMap.builder();
+            for (final Map.Entry<String, LatencyHistogram> entry : histograms.get(featureType).entrySet()) {
+                operations.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            final LatencyHistogram.Snapshot overflowSnapshot = overflowHistograms.get(featureType).snapshot();
+            if (overflowSnapshot.getCount() > 0) {
+                operations.put(OTHER_OPERATION, overflowSnapshot);
+            }
+            builder.put(featureType, operations.build());
+        }
+        return builder.build();
+    }
+
+    public static void reset() {
+        for (final ConcurrentMap<String, LatencyHistogram> operations : histograms.values()) {
+            operations.clear();
+        }
+        for (final ProfilingFeatureType featureType : ProfilingFeatureType.values()) {
+            overflowHistograms.put(featureType, new LatencyHistogram());
+        }
+        nbOperations.set(0);
+    }
+
+    private static LatencyHistogram getOrCreate(final ProfilingFeatureType featureType, final String operation) {
+        final ConcurrentMap<String, LatencyHistogram> operations = histograms.get(featureType);
+        final LatencyHistogram histogram = operations.get(operation);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        // Reserve a slot first, so that concurrent callers cannot go over the limit
+        if (!reserveOperation()) {
+            return overflowHistograms.get(featureType);
+        }
+
+        final LatencyHistogram newHistogram = new LatencyHistogram();
+        final LatencyHistogram existingHistogram = operations.putIfAbsent(operation, newHistogram);
+        if (existingHistogram != null) {
+            nbOperations.decrementAndGet();
+            return existingHistogram;
+        }
+        return newHistogram;
+    }
+
+    private static boolean reserveOperation() {
+        while (true) {
+            final int current = nbOperations.get();
+            if (current >= MAX_OPERATIONS) {
+                return false;
+            }
+            if (nbOperations.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.readreplica;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.platform.api.LifecycleHandlerType;
+import org.killbill.billing.platform.api.LifecycleHandlerType.LifecycleLevel;
+import org.killbill.billing.util.entity.dao.DBRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the lifecycle of the read replica pool (see DBRouter).
+ */
+public class DefaultReadReplicaService implements ReadReplicaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultReadReplicaService.class);
+
+    public static final String READ_REPLICA_SERVICE_NAME = "read-replica-service";
+
+    private final DBRouter dbRouter;
+
+    @Inject
+    public DefaultReadReplicaService(final DBRouter dbRouter) {
+        this.dbRouter = dbRouter;
+    }
+
+    @Override
+    public String getName() {
+        return READ_REPLICA_SERVICE_NAME;
+    }
+
+    @LifecycleHandlerType(LifecycleLevel.STOP_SERVICE)
+    public void stop() {
+        try {
+            dbRouter.close();
+        } catch (final IOException e) {
+            logger.warn("Failed to close the read replica pool", e);
+        }
+    }
+}
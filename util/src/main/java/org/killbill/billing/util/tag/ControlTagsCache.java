@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.tag;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.joda.time.DateTime;
+import org.killbill.billing.events.ControlTagCreationInternalEvent;
+import org.killbill.billing.events.ControlTagDeletionInternalEvent;
+import org.killbill.billing.util.config.TagConfig;
+import org.killbill.clock.Clock;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+//
+// Node-local cache of the active control tags (AUTO_INVOICING_OFF, AUTO_PAY_OFF, ...) of an account and its objects.
+//
+// Entries are invalidated by DefaultTagDao when a tag is created or deleted, and on the control tag bus events.
+// Changes made by other nodes are only seen once the entry expires (see TagConfig#getControlTagsCacheMaxAge).
+//
+@Singleton
+public class ControlTagsCache {
+
+    private final int maxAccounts;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private final Map<Long, AccountControlTags> controlTags;
+    // Bumped on each invalidation, to avoid caching tags which were loaded before a concurrent change
+    private final AtomicLong generation = new AtomicLong();
+
+    @Inject
+    public ControlTagsCache(final TagConfig tagConfig, final Clock clock) {
+        this.maxAccounts = tagConfig.getControlTagsCacheMaxAccounts();
+        this.maxAgeMillis = tagConfig.getControlTagsCacheMaxAge().getMillis();
+        this.clock = clock;
+        this.controlTags = Collections.synchronizedMap(new LinkedHashMap<Long, AccountControlTags>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, AccountControlTags> eldest) {
+                return size() > maxAccounts;
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return maxAccounts > 0;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public List<Tag> get(final Long accountRecordId, final Long tenantRecordId) {
+        if (!isEnabled() || accountRecordId == null) {
+            return null;
+        }
+
+        final AccountControlTags accountControlTags = controlTags.get(accountRecordId);
+        if (accountControlTags == null) {
+            return null;
+        } else if (!accountControlTags.isValid(tenantRecordId, clock.getUTCNow())) {
+            controlTags.remove(accountRecordId);
+            return null;
+        } else {
+            return accountControlTags.getTags();
+        }
+    }
+
+    // The generation must have been retrieved (see getGeneration) before loading the tags
+    public void put(final Long accountRecordId, final Long tenantRecordId, final long loadGeneration, final List<Tag> tags) {
+        if (!isEnabled() || accountRecordId == null) {
+            return;
+        }
+
+        final AccountControlTags accountControlTags = new AccountControlTags(tenantRecordId, clock.getUTCNow().plus(maxAgeMillis), tags);
+        synchronized (controlTags) {
+            if (generation.get() == loadGeneration) {
+                controlTags.put(accountRecordId, accountControlTags);
+            }
+        }
+    }
+
+    public void invalidate(final Long accountRecordId) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (controlTags) {
+            generation.incrementAndGet();
+            controlTags.remove(accountRecordId);
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagCreation(final ControlTagCreationInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void handleControlTagDeletion(final ControlTagDeletionInternalEvent event) {
+        invalidate(event.getSearchKey1());
+    }
+
+    private static final class AccountControlTags {
+
+        private final Long tenantRecordId;
+        private final DateTime validUntil;
+        private final List<Tag> tags;
+
+        private AccountControlTags(final Long tenantRecordId, final DateTime validUntil, final List<Tag> tags) {
+            this.tenantRecordId = tenantRecordId;
+            this.validUntil = validUntil;
+            this.tags = ImmutableList.<Tag>copyOf(tags);
+        }
+
+        public boolean isValid(final Long tenantRecordId, final DateTime now) {
+            return Objects.equal(this.tenantRecordId, tenantRecordId) && now.isBefore(validUntil);
+        }
+
+        public List<Tag> getTags() {
+            return tags;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.tag;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,14 +40,25 @@ import com.google.common.collect.Iterables;
 
 public class DefaultTagInternalApi implements TagInternalApi {
 
+    private static final Collection<UUID> CONTROL_TAG_DEFINITION_IDS = Collections2.transform(ImmutableList.<ControlTagType>copyOf(ControlTagType.values()),
+                                                                                              new Function<ControlTagType, UUID>() {
+                                                                                                  @Override
+                                                                                                  public UUID apply(final ControlTagType input) {
+                                                                                                      return input.getId();
+                                                                                                  }
+                                                                                              });
+
     private final TagDao tagDao;
     private final TagDefinitionDao tagDefinitionDao;
+    private final ControlTagsCache controlTagsCache;
 
     @Inject
     public DefaultTagInternalApi(final TagDao tagDao,
-                                 final TagDefinitionDao tagDefinitionDao) {
+                                 final TagDefinitionDao tagDefinitionDao,
+                                 final ControlTagsCache controlTagsCache) {
         this.tagDao = tagDao;
         this.tagDefinitionDao = tagDefinitionDao;
+        this.controlTagsCache = controlTagsCache;
     }
 
     @Override
@@ -65,6 +77,24 @@ public class DefaultTagInternalApi implements TagInternalApi {
         return toTagList(tagDao.getTagsForObject(objectId, objectType, false, context));
     }
 
+    @Override
+    public List<Tag> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        return toTagList(tagDao.getTagsForObjects(objectIds, objectType, false, context));
+    }
+
+    @Override
+    public List<Tag> getControlTagsForAccount(final InternalTenantContext context) {
+        final List<Tag> cachedControlTags = controlTagsCache.get(context.getAccountRecordId(), context.getTenantRecordId());
+        if (cachedControlTags != null) {
+            return cachedControlTags;
+        }
+
+        final long generation = controlTagsCache.getGeneration();
+        final List<Tag> controlTags = toTagList(tagDao.getTagsForAccountAndTagDefinitions(CONTROL_TAG_DEFINITION_IDS, context));
+        controlTagsCache.put(context.getAccountRecordId(), context.getTenantRecordId(), generation, controlTags);
+        return controlTags;
+    }
+
     @Override
     public List<Tag> getTagsForAccountType(final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
         return toTagList(tagDao.getTagsForAccountType(objectType, includedDeleted, internalTenantContext));
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
@@ -47,12 +48,15 @@ import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoTransactionalJdbiWrapper;
 import org.killbill.billing.util.entity.dao.EntitySqlDaoWrapperFactory;
 import org.killbill.billing.util.tag.ControlTagType;
+import org.killbill.billing.util.tag.ControlTagsCache;
 import org.killbill.billing.util.tag.Tag;
 import org.killbill.billing.util.tag.api.user.TagEventBuilder;
 
+import com.google.common.base.Functions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
@@ -62,13 +66,16 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
 
     private final TagEventBuilder tagEventBuilder;
     private final PersistentBus bus;
+    private final ControlTagsCache controlTagsCache;
 
     @Inject
     public DefaultTagDao(final IDBI dbi, final TagEventBuilder tagEventBuilder, final PersistentBus bus, final Clock clock,
-                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory) {
+                         final CacheControllerDispatcher controllerDispatcher, final NonEntityDao nonEntityDao, final InternalCallContextFactory internalCallContextFactory,
+                         final ControlTagsCache controlTagsCache) {
         super(new EntitySqlDaoTransactionalJdbiWrapper(dbi, clock, controllerDispatcher, nonEntityDao, internalCallContextFactory), TagSqlDao.class);
         this.tagEventBuilder = tagEventBuilder;
         this.bus = bus;
+        this.controlTagsCache = controlTagsCache;
     }
 
     @Override
@@ -86,6 +93,26 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
         });
     }
 
+    @Override
+    public List<TagModelDao> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        if (objectIds.isEmpty()) {
+            return ImmutableList.<TagModelDao>of();
+        }
+
+        final Collection<String> objectIdsAsStrings = ImmutableSet.<String>copyOf(Collections2.transform(objectIds, Functions.toStringFunction()));
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<TagModelDao>>() {
+            @Override
+            public List<TagModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final TagSqlDao tagSqlDao = entitySqlDaoWrapperFactory.become(TagSqlDao.class);
+                if (includedDeleted) {
+                    return tagSqlDao.getTagsForObjectsIncludedDeleted(objectIdsAsStrings, objectType, internalTenantContext);
+                } else {
+                    return tagSqlDao.getTagsForObjects(objectIdsAsStrings, objectType, internalTenantContext);
+                }
+            }
+        });
+    }
+
     @Override
     public List<TagModelDao> getTagsForAccountType(final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
         final List<TagModelDao> allTags = getTagsForAccount(includedDeleted, internalTenantContext);
@@ -112,6 +139,21 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
         });
     }
 
+    @Override
+    public List<TagModelDao> getTagsForAccountAndTagDefinitions(final Collection<UUID> tagDefinitionIds, final InternalTenantContext internalTenantContext) {
+        if (tagDefinitionIds.isEmpty()) {
+            return ImmutableList.<TagModelDao>of();
+        }
+
+        final Collection<String> tagDefinitionIdsAsStrings = ImmutableSet.<String>copyOf(Collections2.transform(tagDefinitionIds, Functions.toStringFunction()));
+        return transactionalSqlDao.execute(new EntitySqlDaoTransactionWrapper<List<TagModelDao>>() {
+            @Override
+            public List<TagModelDao> inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                return entitySqlDaoWrapperFactory.become(TagSqlDao.class).getTagsForAccountRecordIdAndTagDefinitions(tagDefinitionIdsAsStrings, internalTenantContext);
+            }
+        });
+    }
+
     @Override
     protected void postBusEventFromTransaction(final TagModelDao tag, final TagModelDao savedTag, final ChangeType changeType,
                                                final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory, final InternalCallContext context)
@@ -187,6 +229,7 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
     @Override
     public void create(final TagModelDao entity, final InternalCallContext context) throws TagApiException {
         transactionalSqlDao.execute(TagApiException.class, getCreateEntitySqlDaoTransactionWrapper(entity, context));
+        controlTagsCache.invalidate(context.getAccountRecordId());
     }
 
     @Override
@@ -217,7 +260,7 @@ public class DefaultTagDao extends EntityDaoBase<TagModelDao, Tag, TagApiExcepti
                 return null;
             }
         });
-
+        controlTagsCache.invalidate(context.getAccountRecordId());
     }
 
     @Override
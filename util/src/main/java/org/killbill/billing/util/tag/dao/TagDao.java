@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -35,7 +36,11 @@ public interface TagDao extends EntityDao<TagModelDao, Tag, TagApiException> {
 
     List<TagModelDao> getTagsForObject(UUID objectId, ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
+    List<TagModelDao> getTagsForObjects(Collection<UUID> objectIds, ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
+
     List<TagModelDao> getTagsForAccountType(ObjectType objectType, boolean includedDeleted, InternalTenantContext internalTenantContext);
 
     List<TagModelDao> getTagsForAccount(boolean includedDeleted, InternalTenantContext internalTenantContext);
+
+    List<TagModelDao> getTagsForAccountAndTagDefinitions(Collection<UUID> tagDefinitionIds, InternalTenantContext internalTenantContext);
 }
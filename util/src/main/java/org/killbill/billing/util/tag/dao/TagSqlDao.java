@@ -16,6 +16,7 @@
 
 package org.killbill.billing.util.tag.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -46,6 +47,20 @@ public interface TagSqlDao extends EntitySqlDao<TagModelDao, Tag> {
                                        @Bind("objectType") ObjectType objectType,
                                        @BindBean InternalTenantContext internalTenantContext);
 
+    @SqlQuery
+    List<TagModelDao> getTagsForObjects(@UUIDCollectionBinder Collection<String> objectIds,
+                                        @Bind("objectType") ObjectType objectType,
+                                        @BindBean InternalTenantContext internalTenantContext);
+
+    @SqlQuery
+    List<TagModelDao> getTagsForObjectsIncludedDeleted(@UUIDCollectionBinder Collection<String> objectIds,
+                                                       @Bind("objectType") ObjectType objectType,
+                                                       @BindBean InternalTenantContext internalTenantContext);
+
+    @SqlQuery
+    List<TagModelDao> getTagsForAccountRecordIdAndTagDefinitions(@UUIDCollectionBinder Collection<String> tagDefinitionIds,
+                                                                 @BindBean InternalTenantContext internalTenantContext);
+
     @SqlQuery
     List<TagModelDao> getTagsForObjectIncludedDeleted(@Bind("objectId") UUID objectId,
                                                       @Bind("objectType") ObjectType objectType,
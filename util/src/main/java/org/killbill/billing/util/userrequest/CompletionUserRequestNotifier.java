@@ -18,10 +18,14 @@
 
 package org.killbill.billing.util.userrequest;
 
+import java.util.UUID;
+
 import org.killbill.billing.events.BusInternalEvent;
 
 public interface CompletionUserRequestNotifier {
 
+    public UUID getUserToken();
+
     public void notifyForCompletion();
 
     public void onBusEvent(final BusInternalEvent event);
@@ -148,6 +148,27 @@ CREATE INDEX audit_log_user_name ON audit_log(created_by);
 CREATE INDEX audit_log_tenant_account_record_id ON audit_log(tenant_record_id, account_record_id);
 CREATE INDEX audit_log_via_history ON audit_log(target_record_id, table_name, tenant_record_id);
 
+DROP TABLE IF EXISTS audit_journal_commits;
+CREATE TABLE audit_journal_commits (
+    record_id serial unique,
+    journal_id varchar(36) NOT NULL,
+    transaction_id bigint /*! unsigned */ not null,
+    created_date datetime NOT NULL,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX audit_journal_commits_journal_transaction ON audit_journal_commits(journal_id, transaction_id);
+
+DROP TABLE IF EXISTS account_versions;
+CREATE TABLE account_versions (
+    record_id serial unique,
+    account_record_id bigint /*! unsigned */ not null,
+    version bigint /*! unsigned */ not null,
+    updated_date datetime NOT NULL,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX account_versions_account_record_id ON account_versions(account_record_id);
+
 
 
 DROP TABLE IF EXISTS notifications;
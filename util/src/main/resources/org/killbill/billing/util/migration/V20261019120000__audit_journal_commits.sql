@@ -0,0 +1,9 @@
+DROP TABLE IF EXISTS audit_journal_commits;
+CREATE TABLE audit_journal_commits (
+    record_id serial unique,
+    journal_id varchar(36) NOT NULL,
+    transaction_id bigint /*! unsigned */ not null,
+    created_date datetime NOT NULL,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX audit_journal_commits_journal_transaction ON audit_journal_commits(journal_id, transaction_id);
@@ -0,0 +1,12 @@
+DROP TABLE IF EXISTS account_versions;
+CREATE TABLE account_versions (
+    record_id serial unique,
+    account_record_id bigint /*! unsigned */ not null,
+    version bigint /*! unsigned */ not null,
+    updated_date datetime NOT NULL,
+    tenant_record_id bigint /*! unsigned */ not null default 0,
+    PRIMARY KEY(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+CREATE UNIQUE INDEX account_versions_account_record_id ON account_versions(account_record_id);
+
+insert into account_versions (account_record_id, version, updated_date, tenant_record_id) select record_id, 1, NOW(), tenant_record_id from accounts;
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.killbill.billing.platform.test.PlatformDBTestingHelper;
 import org.killbill.billing.util.dao.AuditLogModelDaoMapper;
+import org.killbill.billing.util.dao.ObjectRecordIdsMapper;
 import org.killbill.billing.util.dao.RecordIdIdMappingsMapper;
 import org.killbill.billing.util.io.IOUtils;
 import org.killbill.billing.util.security.shiro.dao.SessionModelDao;
@@ -60,6 +61,7 @@ public class DBTestingHelper extends PlatformDBTestingHelper {
         if (initialized.compareAndSet(false, true)) {
             dbi.registerMapper(new AuditLogModelDaoMapper());
             dbi.registerMapper(new RecordIdIdMappingsMapper());
+            dbi.registerMapper(new ObjectRecordIdsMapper());
             dbi.registerMapper(new LowerToCamelBeanMapperFactory(SessionModelDao.class));
         }
         return dbi;
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.dao;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -27,8 +28,10 @@ import javax.annotation.Nullable;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalTenantContext;
 import org.killbill.billing.util.cache.CacheController;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
 import org.killbill.billing.util.dao.NonEntityDao;
 import org.killbill.billing.util.dao.NonEntitySqlDao;
+import org.killbill.billing.util.dao.ObjectRecordIds;
 import org.killbill.billing.util.dao.TableName;
 import org.skife.jdbi.v2.Handle;
 
@@ -75,6 +78,18 @@ public class MockNonEntityDao implements NonEntityDao {
         return null;
     }
 
+    @Override
+    public Map<UUID, ObjectRecordIds> retrieveRecordIdsFromObjects(final Collection<UUID> objectIds, final ObjectType objectType, @Nullable final CacheControllerDispatcher cacheControllerDispatcher) {
+        final Map<UUID, ObjectRecordIds> result = new HashMap<UUID, ObjectRecordIds>();
+        for (final UUID objectId : objectIds) {
+            final Long tenantRecordId = tenantRecordIdMappings.get(objectId);
+            if (tenantRecordId != null) {
+                result.put(objectId, new ObjectRecordIds(objectId, null, accountRecordIdMappings.get(objectId), tenantRecordId));
+            }
+        }
+        return result;
+    }
+
     @Override
     public UUID retrieveIdFromObject(final Long recordId, final ObjectType objectType, @Nullable final CacheController<Object, Object> cache) {
         return null;
@@ -18,6 +18,7 @@
 
 package org.killbill.billing.mock.glue;
 
+import org.killbill.billing.payment.api.AccountPaymentsInternalApi;
 import org.killbill.billing.payment.api.PaymentApi;
 import org.killbill.billing.payment.api.PaymentInternalApi;
 import org.killbill.billing.platform.api.KillbillConfigSource;
@@ -34,5 +35,6 @@ public class MockPaymentModule extends KillBillModule {
     protected void configure() {
         bind(PaymentApi.class).toInstance(Mockito.mock(PaymentApi.class));
         bind(PaymentInternalApi.class).toInstance(Mockito.mock(PaymentInternalApi.class));
+        bind(AccountPaymentsInternalApi.class).toInstance(Mockito.mock(AccountPaymentsInternalApi.class));
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+public class TestAuditJournal extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testAppendAndRecover() throws Exception {
+        final File directory = Files.createTempDir();
+
+        final AuditJournal journal = new AuditJournal(directory, 4096);
+        Assert.assertTrue(journal.open().isEmpty());
+        final long transactionId = journal.nextTransactionId();
+        final long entriesPosition = journal.append(AuditJournal.ENTRIES, transactionId, "foo".getBytes());
+        final long commitPosition = journal.append(AuditJournal.COMMIT, transactionId, new byte[0]);
+        Assert.assertTrue(commitPosition > entriesPosition);
+        journal.sync(commitPosition);
+        journal.close();
+
+        final AuditJournal reopenedJournal = new AuditJournal(directory, 4096);
+        final List<AuditJournal.Record> records = reopenedJournal.open();
+        Assert.assertEquals(records.size(), 2);
+        Assert.assertEquals(records.get(0).getType(), AuditJournal.ENTRIES);
+        Assert.assertEquals(records.get(0).getTransactionId(), transactionId);
+        Assert.assertEquals(records.get(0).getPosition(), entriesPosition);
+        Assert.assertEquals(new String(records.get(0).getPayload()), "foo");
+        Assert.assertEquals(records.get(1).getType(), AuditJournal.COMMIT);
+        Assert.assertEquals(records.get(1).getTransactionId(), transactionId);
+        // Transaction ids are never re-used
+        Assert.assertTrue(reopenedJournal.nextTransactionId() > transactionId);
+        reopenedJournal.close();
+    }
+
+    @Test(groups = "fast")
+    public void testTornRecordIsIgnored() throws Exception {
+        final File directory = Files.createTempDir();
+
+        final AuditJournal journal = new AuditJournal(directory, 4096);
+        journal.open();
+        journal.append(AuditJournal.ENTRIES, journal.nextTransactionId(), "foo".getBytes());
+        final long tornPosition = journal.append(AuditJournal.ENTRIES, journal.nextTransactionId(), "bar".getBytes());
+        journal.close();
+
+        // Corrupt the payload of the second record
+        final File segmentFile = directory.listFiles()[0];
+        final RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+        try {
+            file.seek((tornPosition & 0xFFFFFFFFL) + 8 + 9);
+            file.write('X');
+        } finally {
+            file.close();
+        }
+
+        final AuditJournal reopenedJournal = new AuditJournal(directory, 4096);
+        final List<AuditJournal.Record> records = reopenedJournal.open();
+        Assert.assertEquals(records.size(), 1);
+        Assert.assertEquals(new String(records.get(0).getPayload()), "foo");
+        reopenedJournal.close();
+    }
+
+    @Test(groups = "fast")
+    public void testSegmentsAreDeletedOnceReleased() throws Exception {
+        final File directory = Files.createTempDir();
+
+        // Room for a single record per segment
+        final AuditJournal journal = new AuditJournal(directory, 32);
+        journal.open();
+        final long firstPosition = journal.appendAndRetain(AuditJournal.ENTRIES, journal.nextTransactionId(), "foo".getBytes());
+        final long secondPosition = journal.appendAndRetain(AuditJournal.ENTRIES, journal.nextTransactionId(), "bar".getBytes());
+        journal.append(AuditJournal.COMMIT, 1, new byte[0]);
+        Assert.assertEquals(directory.listFiles().length, 3);
+
+        // The second segment is still referenced
+        journal.release(journal.getSegmentId(firstPosition));
+        Assert.assertEquals(directory.listFiles().length, 2);
+
+        journal.release(journal.getSegmentId(secondPosition));
+        Assert.assertEquals(directory.listFiles().length, 1);
+        journal.close();
+
+        final AuditJournal reopenedJournal = new AuditJournal(directory, 32);
+        final List<AuditJournal.Record> records = reopenedJournal.open();
+        Assert.assertEquals(records.size(), 1);
+        Assert.assertEquals(records.get(0).getType(), AuditJournal.COMMIT);
+        reopenedJournal.purge();
+        Assert.assertEquals(directory.listFiles().length, 1);
+        reopenedJournal.close();
+    }
+}
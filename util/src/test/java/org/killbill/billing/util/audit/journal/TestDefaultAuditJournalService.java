@@ -0,0 +1,224 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.audit.journal;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.api.TestApiListener.NextEvent;
+import org.killbill.billing.platform.api.KillbillConfigSource;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.api.AuditLevel;
+import org.killbill.billing.util.audit.AuditLog;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.config.AuditJournalConfig;
+import org.killbill.billing.util.dao.TableName;
+import org.killbill.billing.util.tag.DescriptiveTag;
+import org.killbill.billing.util.tag.dao.TagDefinitionModelDao;
+import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.skife.jdbi.v2.Handle;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+public class TestDefaultAuditJournalService extends UtilTestSuiteWithEmbeddedDB {
+
+    @Inject
+    private AuditJournalService auditJournalService;
+    @Inject
+    private AuditJournalConfig auditJournalConfig;
+    @Inject
+    private CacheControllerDispatcher cacheControllerDispatcher;
+
+    @Override
+    protected KillbillConfigSource getConfigSource() {
+        return getConfigSource(null,
+                               ImmutableMap.<String, String>of("org.killbill.audit.journal.dir", Files.createTempDir().getAbsolutePath()));
+    }
+
+    @AfterMethod(groups = "slow")
+    public void afterMethod() throws Exception {
+        ((DefaultAuditJournalService) auditJournalService).stop();
+        super.afterMethod();
+    }
+
+    @Test(groups = "slow")
+    public void testRecordsAreLoadedAsynchronously() throws Exception {
+        // Not started: records are only drained on demand
+        ((DefaultAuditJournalService) auditJournalService).initialize();
+
+        final TagModelDao tag = addTag();
+        Assert.assertEquals(countTagHistoryRecords(), 0);
+
+        // Reads drain the journal first
+        final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.TAG, tag.getId(), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 1);
+        Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+        Assert.assertEquals(auditLogs.get(0).getUserName(), internalCallContext.getCreatedBy());
+        Assert.assertEquals(countTagHistoryRecords(), 1);
+    }
+
+    @Test(groups = "slow")
+    public void testRecordsAreRecoveredOnRestart() throws Exception {
+        // Simulate a crash: this instance is never stopped (nor drained)
+        final DefaultAuditJournalService crashedAuditJournalService = new DefaultAuditJournalService(auditJournalConfig, idbi, nonEntityDao, cacheControllerDispatcher, new MetricRegistry());
+        crashedAuditJournalService.initialize();
+
+        final TagModelDao tag = addTag();
+        Assert.assertEquals(countTagHistoryRecords(), 0);
+
+        ((DefaultAuditJournalService) auditJournalService).initialize();
+        auditJournalService.drain();
+        Assert.assertEquals(countTagHistoryRecords(), 1);
+
+        final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.TAG, tag.getId(), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 1);
+        Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+    }
+
+    @Test(groups = "slow")
+    public void testInDoubtTransactionsAreOnlyRecoveredIfCommitted() throws Exception {
+        // Simulate a crash: this instance is never stopped (nor drained)
+        final DefaultAuditJournalService crashedAuditJournalService = new DefaultAuditJournalService(auditJournalConfig, idbi, nonEntityDao, cacheControllerDispatcher, new MetricRegistry());
+        crashedAuditJournalService.initialize();
+
+        final TagModelDao tag = addTag();
+
+        // Both updates are journaled, but the process crashes before the outcome of the database transactions is known
+        prepareUpdate(tag, false);
+        prepareUpdate(tag, true);
+        Assert.assertEquals(countTagHistoryRecords(), 0);
+
+        ((DefaultAuditJournalService) auditJournalService).initialize();
+        auditJournalService.drain();
+        Assert.assertEquals(countTagHistoryRecords(), 2);
+        Assert.assertEquals(countCommitMarkers(), 0);
+
+        final List<AuditLog> auditLogs = auditDao.getAuditLogsForId(TableName.TAG, tag.getId(), AuditLevel.FULL, internalCallContext);
+        Assert.assertEquals(auditLogs.size(), 2);
+        Assert.assertEquals(auditLogs.get(0).getChangeType(), ChangeType.INSERT);
+        Assert.assertEquals(auditLogs.get(1).getChangeType(), ChangeType.UPDATE);
+    }
+
+    @Test(groups = "slow")
+    public void testFailingTransactionIsParked() throws Exception {
+        ((DefaultAuditJournalService) auditJournalService).initialize();
+
+        final TagModelDao tag = addTag();
+        auditJournalService.drain();
+        Assert.assertEquals(countTagHistoryRecords(), 1);
+
+        // Transaction which cannot be loaded, followed by a valid one
+        final AuditJournalTransaction transaction = DefaultAuditJournalService.beginTransaction();
+        Assert.assertTrue(transaction.add(TagSqlDao.class, tag, tag.getRecordId(), ChangeType.UPDATE, clock.getUTCNow(), internalCallContext, internalCallContext));
+        final AuditJournalEntry entry = transaction.getEntries().remove(0);
+        transaction.getEntries().add(new AuditJournalEntry(TagSqlDao.class.getName() + "Unknown", entry.getEntityClass(), entry.getEntity(), entry.getTableName(),
+                                                           entry.getEntityRecordId(), entry.getChangeType(), entry.getChangeDate(), entry.getTenantRecordId(),
+                                                           entry.getAccountRecordId(), entry.getAuditAccountRecordId(), entry.getUserToken(), entry.getUserName(),
+                                                           entry.getCallOrigin(), entry.getUserType(), entry.getReasonCode(), entry.getComments(),
+                                                           entry.getCreatedDate(), entry.getUpdatedDate()));
+        final Handle handle = idbi.open();
+        try {
+            handle.begin();
+            transaction.prepare(handle);
+            handle.commit();
+        } finally {
+            handle.close();
+        }
+        transaction.commit();
+        addTag();
+
+        for (int i = 1; i < auditJournalConfig.getMaxDrainAttempts(); i++) {
+            auditJournalService.drain();
+            Assert.assertEquals(countTagHistoryRecords(), 1);
+        }
+
+        // Moved out of the way
+        auditJournalService.drain();
+        Assert.assertEquals(countTagHistoryRecords(), 2);
+        Assert.assertEquals(countCommitMarkers(), 0);
+        final File[] deadLetters = new File(auditJournalConfig.getJournalDirectory(), "dead-letter").listFiles();
+        Assert.assertNotNull(deadLetters);
+        Assert.assertEquals(deadLetters.length, 1);
+        Assert.assertEquals(AuditJournalEntry.fromBytes(Files.toByteArray(deadLetters[0])).size(), 1);
+    }
+
+    // Journal an update of the tag, within a database transaction which either commits or rolls back
+    private void prepareUpdate(final TagModelDao tag, final boolean commit) {
+        final AuditJournalTransaction transaction = DefaultAuditJournalService.beginTransaction();
+        Assert.assertTrue(transaction.add(TagSqlDao.class, tag, tag.getRecordId(), ChangeType.UPDATE, clock.getUTCNow(), internalCallContext, internalCallContext));
+
+        final Handle handle = idbi.open();
+        try {
+            handle.begin();
+            transaction.prepare(handle);
+            if (commit) {
+                handle.commit();
+            } else {
+                handle.rollback();
+            }
+        } finally {
+            handle.close();
+        }
+    }
+
+    private TagModelDao addTag() throws Exception {
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        final TagDefinitionModelDao tagDefinition = tagDefinitionDao.create(UUID.randomUUID().toString().substring(0, 5),
+                                                                            UUID.randomUUID().toString().substring(0, 5),
+                                                                            internalCallContext);
+        assertListenerStatus();
+
+        final UUID objectId = UUID.randomUUID();
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        tagDao.create(new TagModelDao(new DescriptiveTag(tagDefinition.getId(), ObjectType.ACCOUNT, objectId, clock.getUTCNow())), internalCallContext);
+        assertListenerStatus();
+
+        final List<TagModelDao> tags = tagDao.getTagsForObject(objectId, ObjectType.ACCOUNT, false, internalCallContext);
+        Assert.assertEquals(tags.size(), 1);
+        return tags.get(0);
+    }
+
+    private int countCommitMarkers() {
+        final Handle handle = idbi.open();
+        try {
+            return handle.select("select record_id from audit_journal_commits").size();
+        } finally {
+            handle.close();
+        }
+    }
+
+    private int countTagHistoryRecords() {
+        final Handle handle = idbi.open();
+        try {
+            return handle.select("select id from tag_history").size();
+        } finally {
+            handle.close();
+        }
+    }
+}
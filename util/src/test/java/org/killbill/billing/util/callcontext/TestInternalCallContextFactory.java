@@ -17,6 +17,7 @@
 package org.killbill.billing.util.callcontext;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.Handle;
@@ -28,6 +29,8 @@ import org.killbill.billing.ObjectType;
 import org.killbill.billing.callcontext.InternalCallContext;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestInternalCallContextFactory extends UtilTestSuiteWithEmbeddedDB {
 
 
@@ -87,6 +90,58 @@ public class TestInternalCallContextFactory extends UtilTestSuiteWithEmbeddedDB
         verifyInternalCallContext(context);
     }
 
+    @Test(groups = "slow")
+    public void testCreateInternalCallContextsInBulk() throws Exception {
+        final UUID invoiceId1 = UUID.randomUUID();
+        final UUID invoiceId2 = UUID.randomUUID();
+        final UUID invoiceId3 = UUID.randomUUID();
+        final Long accountRecordId1 = 19384012L;
+        final Long accountRecordId2 = 19384013L;
+
+        dbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                handle.execute("DROP TABLE IF EXISTS invoices;\n" +
+                               "CREATE TABLE invoices (\n" +
+                               "    record_id serial unique,\n" +
+                               "    id varchar(36) NOT NULL,\n" +
+                               "    account_id varchar(36) NOT NULL,\n" +
+                               "    invoice_date date NOT NULL,\n" +
+                               "    target_date date NOT NULL,\n" +
+                               "    currency varchar(3) NOT NULL,\n" +
+                               "    migrated bool NOT NULL,\n" +
+                               "    created_by varchar(50) NOT NULL,\n" +
+                               "    created_date datetime NOT NULL,\n" +
+                               "    account_record_id bigint /*! unsigned */ not null,\n" +
+                               "    tenant_record_id bigint /*! unsigned */ not null default 0,\n" +
+                               "    PRIMARY KEY(record_id)\n" +
+                               ");");
+                final String insertInvoice = "insert into invoices (id, account_id, invoice_date, target_date, currency, migrated, created_by, created_date, account_record_id) values " +
+                                             "(?, ?, now(), now(), 'USD', false, 'test', now(), ?)";
+                handle.execute(insertInvoice, invoiceId1.toString(), UUID.randomUUID().toString(), accountRecordId1);
+                handle.execute(insertInvoice, invoiceId2.toString(), UUID.randomUUID().toString(), accountRecordId1);
+                handle.execute(insertInvoice, invoiceId3.toString(), UUID.randomUUID().toString(), accountRecordId2);
+                return null;
+            }
+        });
+
+        final Map<UUID, InternalCallContext> contexts = internalCallContextFactory.createInternalCallContexts(ImmutableList.<UUID>of(invoiceId1, invoiceId2, invoiceId3), ObjectType.INVOICE, callContext);
+        Assert.assertEquals(contexts.size(), 3);
+        // The account record ids should have been looked up in the invoices table
+        Assert.assertEquals(contexts.get(invoiceId1).getAccountRecordId(), accountRecordId1);
+        Assert.assertEquals(contexts.get(invoiceId2).getAccountRecordId(), accountRecordId1);
+        Assert.assertEquals(contexts.get(invoiceId3).getAccountRecordId(), accountRecordId2);
+        for (final InternalCallContext context : contexts.values()) {
+            verifyInternalCallContext(context);
+        }
+
+        try {
+            internalCallContextFactory.createInternalCallContexts(ImmutableList.<UUID>of(invoiceId1, UUID.randomUUID()), ObjectType.INVOICE, callContext);
+            Assert.fail();
+        } catch (final InternalCallContextFactory.ObjectDoesNotExist e) {
+        }
+    }
+
     private void verifyInternalCallContext(final InternalCallContext context) {
         Assert.assertEquals(context.getCallOrigin(), callContext.getCallOrigin());
         Assert.assertEquals(context.getComments(), callContext.getComments());
@@ -25,8 +25,11 @@ import org.killbill.billing.api.TestApiListener.NextEvent;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 import org.killbill.billing.util.api.CustomFieldApiException;
 import org.killbill.billing.util.customfield.dao.CustomFieldModelDao;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestFieldStore extends UtilTestSuiteWithEmbeddedDB {
 
     @Test(groups = "slow")
@@ -47,4 +50,30 @@ public class TestFieldStore extends UtilTestSuiteWithEmbeddedDB {
         customFieldDao.create(new CustomFieldModelDao(internalCallContext.getCreatedDate(), fieldName, fieldValue, id, objectType), internalCallContext);
         assertListenerStatus();
     }
+
+    @Test(groups = "slow")
+    public void testGetCustomFieldsForObjects() throws CustomFieldApiException {
+        final ObjectType objectType = ObjectType.INVOICE;
+        final UUID objectId1 = UUID.randomUUID();
+        final UUID objectId2 = UUID.randomUUID();
+        final UUID objectId3 = UUID.randomUUID();
+
+        eventsListener.pushExpectedEvents(NextEvent.CUSTOM_FIELD, NextEvent.CUSTOM_FIELD, NextEvent.CUSTOM_FIELD);
+        customFieldDao.create(new CustomFieldModelDao(internalCallContext.getCreatedDate(), "field1", "value1", objectId1, objectType), internalCallContext);
+        customFieldDao.create(new CustomFieldModelDao(internalCallContext.getCreatedDate(), "field2", "value2", objectId1, objectType), internalCallContext);
+        final CustomFieldModelDao field3 = new CustomFieldModelDao(internalCallContext.getCreatedDate(), "field3", "value3", objectId2, objectType);
+        customFieldDao.create(field3, internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(), objectType, internalCallContext).size(), 0);
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1), objectType, internalCallContext).size(), 2);
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2, objectId3), objectType, internalCallContext).size(), 3);
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2, objectId3), ObjectType.ACCOUNT, internalCallContext).size(), 0);
+
+        eventsListener.pushExpectedEvent(NextEvent.CUSTOM_FIELD);
+        customFieldDao.deleteCustomField(field3.getId(), internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(customFieldDao.getCustomFieldsForObjects(ImmutableList.<UUID>of(objectId1, objectId2), objectType, internalCallContext).size(), 2);
+    }
 }
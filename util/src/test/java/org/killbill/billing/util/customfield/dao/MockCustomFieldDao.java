@@ -17,6 +17,7 @@
 package org.killbill.billing.util.customfield.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -42,6 +43,18 @@ public class MockCustomFieldDao extends MockEntityDaoBase<CustomFieldModelDao, C
         return result;
     }
 
+    @Override
+    public List<CustomFieldModelDao> getCustomFieldsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final InternalTenantContext context) {
+        final List<CustomFieldModelDao> result = new ArrayList<CustomFieldModelDao>();
+        final Iterable<CustomFieldModelDao> all = getAll(context);
+        for (final CustomFieldModelDao cur : all) {
+            if (objectIds.contains(cur.getObjectId()) && cur.getObjectType() == objectType) {
+                result.add(cur);
+            }
+        }
+        return result;
+    }
+
     @Override
     public List<CustomFieldModelDao> getCustomFieldsForAccountType(final ObjectType objectType, final InternalTenantContext context) {
         throw new UnsupportedOperationException();
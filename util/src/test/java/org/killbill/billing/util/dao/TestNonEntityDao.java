@@ -18,6 +18,7 @@ package org.killbill.billing.util.dao;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 import org.skife.jdbi.v2.Handle;
@@ -28,6 +29,8 @@ import org.testng.annotations.Test;
 import org.killbill.billing.ObjectType;
 import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
 
+import com.google.common.collect.ImmutableList;
+
 public class TestNonEntityDao extends UtilTestSuiteWithEmbeddedDB {
 
     final Long tenantRecordId = 123123123L;
@@ -91,6 +94,34 @@ public class TestNonEntityDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(resultTenantRecordId, tenantRecordId);
     }
 
+    @Test(groups = "slow")
+    public void testRetrieveRecordIdsFromObjects() throws IOException {
+        insertTenant();
+        insertAccount();
+        insertTagDefinition();
+        insertTag();
+
+        final Map<UUID, ObjectRecordIds> accounts = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(accountId, UUID.randomUUID()), ObjectType.ACCOUNT, null);
+        Assert.assertEquals(accounts.size(), 1);
+        Assert.assertEquals(accounts.get(accountId).getRecordId(), accountRecordId);
+        Assert.assertEquals(accounts.get(accountId).getAccountRecordId(), accountRecordId);
+        Assert.assertEquals(accounts.get(accountId).getTenantRecordId(), tenantRecordId);
+
+        final Map<UUID, ObjectRecordIds> tags = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(tagId), ObjectType.TAG, null);
+        Assert.assertEquals(tags.get(tagId).getRecordId(), tagRecordId);
+        Assert.assertEquals(tags.get(tagId).getAccountRecordId(), accountRecordId);
+        Assert.assertEquals(tags.get(tagId).getTenantRecordId(), (Long) 0L);
+
+        final Map<UUID, ObjectRecordIds> tagDefinitions = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(tagDefinitionId), ObjectType.TAG_DEFINITION, null);
+        Assert.assertEquals(tagDefinitions.get(tagDefinitionId).getRecordId(), tagDefinitionRecordId);
+        Assert.assertNull(tagDefinitions.get(tagDefinitionId).getAccountRecordId());
+
+        final Map<UUID, ObjectRecordIds> tenants = nonEntityDao.retrieveRecordIdsFromObjects(ImmutableList.<UUID>of(tenantId), ObjectType.TENANT, null);
+        Assert.assertEquals(tenants.get(tenantId).getRecordId(), tenantRecordId);
+        Assert.assertNull(tenants.get(tenantId).getAccountRecordId());
+        Assert.assertEquals(tenants.get(tenantId).getTenantRecordId(), tenantRecordId);
+    }
+
     private void insertAccount() throws IOException {
         dbi.withHandle(new HandleCallback<Void>() {
             @Override
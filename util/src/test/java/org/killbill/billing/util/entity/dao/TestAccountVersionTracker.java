@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteWithEmbeddedDB;
+import org.killbill.billing.util.cache.CacheControllerDispatcher;
+import org.killbill.billing.util.dao.AccountVersionSqlDao;
+import org.killbill.billing.util.tag.DescriptiveTag;
+import org.killbill.billing.util.tag.dao.TagModelDao;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.HandleCallback;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestAccountVersionTracker extends UtilTestSuiteWithEmbeddedDB {
+
+    @Inject
+    private CacheControllerDispatcher cacheControllerDispatcher;
+
+    @BeforeMethod(groups = "slow")
+    public void beforeMethod() throws Exception {
+        super.beforeMethod();
+        AccountVersionTracker.enableVersioning();
+    }
+
+    @Test(groups = "slow")
+    public void testVersionIsIncrementedOncePerTransaction() throws Exception {
+        final AccountVersionSqlDao accountVersionSqlDao = idbi.onDemand(AccountVersionSqlDao.class);
+        createVersion();
+        Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 1L);
+
+        createTags(1, false);
+        Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 2L);
+
+        createTags(3, false);
+        Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 3L);
+
+        // Reads don't change the version
+        createTransactionalSqlDao().execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                entitySqlDaoWrapperFactory.become(TagSqlDao.class).getByAccountRecordId(internalCallContext);
+                return null;
+            }
+        });
+        Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 3L);
+    }
+
+    @Test(groups = "slow")
+    public void testVersionIsNotIncrementedOnRollback() throws Exception {
+        final AccountVersionSqlDao accountVersionSqlDao = idbi.onDemand(AccountVersionSqlDao.class);
+        createVersion();
+        createTags(1, false);
+        Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 2L);
+
+        try {
+            createTags(1, true);
+            Assert.fail();
+        } catch (final RuntimeException e) {
+            Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 2L);
+        }
+    }
+
+    @Test(groups = "slow")
+    public void testMissingVersionIsNotCreated() throws Exception {
+        final AccountVersionSqlDao accountVersionSqlDao = idbi.onDemand(AccountVersionSqlDao.class);
+
+        // E.g. account created by an older version of Kill Bill: the changes still go through
+        createTags(1, false);
+        Assert.assertNull(accountVersionSqlDao.getVersion(internalCallContext));
+    }
+
+    @Test(groups = "slow")
+    public void testVersionIsNotIncrementedWhenDisabled() throws Exception {
+        final AccountVersionSqlDao accountVersionSqlDao = idbi.onDemand(AccountVersionSqlDao.class);
+        createVersion();
+
+        AccountVersionTracker.disableVersioning();
+        try {
+            createTags(1, false);
+            Assert.assertEquals(accountVersionSqlDao.getVersion(internalCallContext), (Long) 1L);
+        } finally {
+            AccountVersionTracker.enableVersioning();
+        }
+    }
+
+    private void createVersion() {
+        idbi.withHandle(new HandleCallback<Void>() {
+            @Override
+            public Void withHandle(final Handle handle) throws Exception {
+                AccountVersionTracker.createVersion(handle, internalCallContext.getAccountRecordId(), internalCallContext.getTenantRecordId(), clock.getUTCNow().toDate());
+                return null;
+            }
+        });
+    }
+
+    private void createTags(final int nbTags, final boolean fail) {
+        createTransactionalSqlDao().execute(new EntitySqlDaoTransactionWrapper<Void>() {
+            @Override
+            public Void inTransaction(final EntitySqlDaoWrapperFactory entitySqlDaoWrapperFactory) throws Exception {
+                final TagSqlDao tagSqlDao = entitySqlDaoWrapperFactory.become(TagSqlDao.class);
+                for (int i = 0; i < nbTags; i++) {
+                    tagSqlDao.create(new TagModelDao(new DescriptiveTag(UUID.randomUUID(), ObjectType.ACCOUNT, UUID.randomUUID(), clock.getUTCNow())), internalCallContext);
+                }
+                if (fail) {
+                    throw new IllegalStateException("Rolling back");
+                }
+                return null;
+            }
+        });
+    }
+
+    private EntitySqlDaoTransactionalJdbiWrapper createTransactionalSqlDao() {
+        return new EntitySqlDaoTransactionalJdbiWrapper(idbi, clock, cacheControllerDispatcher, nonEntityDao, internalCallContextFactory);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.mockito.Mockito;
+import org.skife.jdbi.v2.IDBI;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class TestDBRouter extends UtilTestSuiteNoDB {
+
+    private final IDBI dbi = Mockito.mock(IDBI.class);
+    private final IDBI roDbi = Mockito.mock(IDBI.class);
+
+    @AfterMethod(groups = "fast")
+    public void afterMethod() throws Exception {
+        DBRouter.resetRequestState();
+    }
+
+    @Test(groups = "fast")
+    public void testWithoutReadReplica() throws Exception {
+        final DBRouter dbRouter = new DBRouter(dbi);
+        Assert.assertFalse(dbRouter.hasReadReplica());
+        Assert.assertSame(dbRouter.getDBI(true), dbi);
+        Assert.assertSame(dbRouter.getDBI(false), dbi);
+    }
+
+    @Test(groups = "fast")
+    public void testReadOnlyRouting() throws Exception {
+        final DBRouter dbRouter = new DBRouter(dbi, roDbi);
+        Assert.assertTrue(dbRouter.hasReadReplica());
+        Assert.assertSame(dbRouter.getDBI(true), roDbi);
+        Assert.assertSame(dbRouter.getDBI(false), dbi);
+    }
+
+    @Test(groups = "fast")
+    public void testReadAfterWrite() throws Exception {
+        final DBRouter dbRouter = new DBRouter(dbi, roDbi);
+
+        DBRouter.markWrite();
+        // The replica may not have the write yet
+        Assert.assertSame(dbRouter.getDBI(true), dbi);
+
+        // Other threads are not affected
+        final IDBI[] otherThreadDbi = new IDBI[1];
+        final Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                otherThreadDbi[0] = dbRouter.getDBI(true);
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        Assert.assertSame(otherThreadDbi[0], roDbi);
+
+        // New request
+        DBRouter.resetRequestState();
+        Assert.assertSame(dbRouter.getDBI(true), roDbi);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.entity.dao;
+
+import java.lang.reflect.Method;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.callcontext.InternalCallContext;
+import org.killbill.billing.callcontext.InternalTenantContext;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.audit.ChangeType;
+import org.killbill.billing.util.cache.Cachable.CacheType;
+import org.killbill.billing.util.tag.dao.TagSqlDao;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestEntitySqlDaoInvocationPlan extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testCachableMethod() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("getRecordId", String.class, InternalTenantContext.class);
+        final EntitySqlDaoInvocationPlan plan = EntitySqlDaoInvocationPlan.get(TagSqlDao.class, method);
+
+        Assert.assertSame(plan.getMethod(), method);
+        Assert.assertEquals(plan.getOperation(), "TagSqlDao:getRecordId");
+        Assert.assertFalse(plan.isWrite());
+        Assert.assertFalse(plan.isGetById());
+        Assert.assertNull(plan.getAuditedAnnotation());
+        Assert.assertEquals(plan.getCachableAnnotation().value(), CacheType.RECORD_ID);
+        Assert.assertEquals(plan.getObjectType(), ObjectType.TAG);
+        Assert.assertEquals(plan.getCachableKeyArgIndexes(), new int[]{0});
+        Assert.assertSame(plan.getTenantContext(new Object[]{"id", internalCallContext}), internalCallContext);
+
+        // Computed only once
+        Assert.assertSame(EntitySqlDaoInvocationPlan.get(TagSqlDao.class, method), plan);
+    }
+
+    @Test(groups = "fast")
+    public void testCachableMethodWithSeveralKeyPieces() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("getAuditLogsViaHistoryForTargetRecordId", String.class, String.class, long.class, InternalTenantContext.class);
+        final EntitySqlDaoInvocationPlan plan = EntitySqlDaoInvocationPlan.get(TagSqlDao.class, method);
+
+        Assert.assertEquals(plan.getCachableAnnotation().value(), CacheType.AUDIT_LOG_VIA_HISTORY);
+        Assert.assertEquals(plan.getCachableKeyArgIndexes(), new int[]{0, 1, 2});
+        Assert.assertSame(plan.getTenantContext(new Object[]{"A", "b", 1L, internalCallContext}), internalCallContext);
+    }
+
+    @Test(groups = "fast")
+    public void testAuditedMethod() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("create", EntityModelDao.class, InternalCallContext.class);
+        final EntitySqlDaoInvocationPlan plan = EntitySqlDaoInvocationPlan.get(TagSqlDao.class, method);
+
+        Assert.assertTrue(plan.isWrite());
+        Assert.assertEquals(plan.getAuditedAnnotation().value(), ChangeType.INSERT);
+        Assert.assertNull(plan.getCachableAnnotation());
+        Assert.assertNull(plan.getObjectType());
+        Assert.assertSame(plan.getCallContext(new Object[]{null, internalCallContext}), internalCallContext);
+    }
+
+    @Test(groups = "fast")
+    public void testGetById() throws Exception {
+        final Method method = TagSqlDao.class.getMethod("getById", String.class, InternalTenantContext.class);
+        final EntitySqlDaoInvocationPlan plan = EntitySqlDaoInvocationPlan.get(TagSqlDao.class, method);
+
+        Assert.assertTrue(plan.isGetById());
+        Assert.assertFalse(plan.isWrite());
+        Assert.assertNull(plan.getAuditedAnnotation());
+        Assert.assertNull(plan.getCachableAnnotation());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.profiling;
+
+import java.util.Map;
+
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.commons.profiling.ProfilingFeature.ProfilingFeatureType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestLatencyHistogram extends UtilTestSuiteNoDB {
+
+    @Test(groups = "fast")
+    public void testBucketBoundaries() throws Exception {
+        int previousIndex = -1;
+        for (long value = 0; value < 100000; value++) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            // Buckets are contiguous and monotonic
+            Assert.assertTrue(index == previousIndex || index == previousIndex + 1, "value=" + value);
+            Assert.assertTrue(value <= LatencyHistogram.bucketUpperBound(index), "value=" + value);
+            if (index != previousIndex) {
+                Assert.assertEquals(LatencyHistogram.bucketUpperBound(previousIndex < 0 ? 0 : previousIndex), value == 0 ? 0 : value - 1);
+            }
+            previousIndex = index;
+        }
+        Assert.assertTrue(LatencyHistogram.BUCKET_COUNT < 1000);
+    }
+
+    @Test(groups = "fast")
+    public void testPercentiles() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.recordNanos(micros * 1000);
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(snapshot.getCount(), 10000);
+        Assert.assertEquals(snapshot.getMaxMicros(), 10000);
+        Assert.assertEquals(snapshot.getMeanMicros(), 5000.5, 0.001);
+        assertWithinRelativeError(snapshot.getValueAtPercentileMicros(50.0), 5000);
+        assertWithinRelativeError(snapshot.getValueAtPercentileMicros(99.0), 9900);
+        Assert.assertEquals(snapshot.getValueAtPercentileMicros(100.0), 10000);
+    }
+
+    @Test(groups = "fast")
+    public void testBoundedNumberOfOperations() throws Exception {
+        LatencyHistograms.reset();
+        try {
+            for (int i = 0; i < LatencyHistograms.MAX_OPERATIONS + 10; i++) {
+                LatencyHistograms.record(ProfilingFeatureType.DAO, "op-" + i, 1000L);
+            }
+
+            final Map<String, LatencyHistogram.Snapshot> operations = LatencyHistograms.snapshot().get(ProfilingFeatureType.DAO);
+            Assert.assertEquals(operations.size(), LatencyHistograms.MAX_OPERATIONS + 1);
+            Assert.assertEquals(operations.get(LatencyHistograms.OTHER_OPERATION).getCount(), 10);
+            Assert.assertEquals(operations.get("op-0").getCount(), 1);
+        } finally {
+            LatencyHistograms.reset();
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testBoundedNumberOfOperationsWithConcurrentCallers() throws Exception {
+        LatencyHistograms.reset();
+        try {
+            final int nbThreads = 8;
+            final Thread[] threads = new Thread[nbThreads];
+            for (int t = 0; t < nbThreads; t++) {
+                final int threadNb = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < LatencyHistograms.MAX_OPERATIONS; i++) {
+                            LatencyHistograms.record(ProfilingFeatureType.DAO, "op-" + threadNb + "-" + i, 1000L);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+
+            final Map<String, LatencyHistogram.Snapshot> operations = LatencyHistograms.snapshot().get(ProfilingFeatureType.DAO);
+            Assert.assertEquals(operations.size(), LatencyHistograms.MAX_OPERATIONS + 1);
+            Assert.assertEquals(operations.get(LatencyHistograms.OTHER_OPERATION).getCount(), (nbThreads - 1) * LatencyHistograms.MAX_OPERATIONS);
+        } finally {
+            LatencyHistograms.reset();
+        }
+    }
+
+    private void assertWithinRelativeError(final long actual, final long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= expected * 0.07, "actual=" + actual + ", expected=" + expected);
+    }
+}
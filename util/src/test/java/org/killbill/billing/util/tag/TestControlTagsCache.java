@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.util.tag;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.killbill.billing.ObjectType;
+import org.killbill.billing.util.UtilTestSuiteNoDB;
+import org.killbill.billing.util.config.TagConfig;
+import org.mockito.Mockito;
+import org.skife.config.TimeSpan;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TestControlTagsCache extends UtilTestSuiteNoDB {
+
+    private static final Long ACCOUNT_RECORD_ID = 12L;
+    private static final Long TENANT_RECORD_ID = 3L;
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception {
+        final ControlTagsCache cache = createCache(0);
+        Assert.assertFalse(cache.isEnabled());
+
+        cache.put(ACCOUNT_RECORD_ID, TENANT_RECORD_ID, cache.getGeneration(), createTags());
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+    }
+
+    @Test(groups = "fast")
+    public void testGetPutAndInvalidate() throws Exception {
+        final ControlTagsCache cache = createCache(10);
+        Assert.assertTrue(cache.isEnabled());
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+
+        final List<Tag> tags = createTags();
+        cache.put(ACCOUNT_RECORD_ID, TENANT_RECORD_ID, cache.getGeneration(), tags);
+        Assert.assertEquals(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID), tags);
+        // Wrong tenant
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID + 1));
+
+        cache.put(ACCOUNT_RECORD_ID, TENANT_RECORD_ID, cache.getGeneration(), tags);
+        cache.invalidate(ACCOUNT_RECORD_ID);
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+    }
+
+    @Test(groups = "fast")
+    public void testConcurrentInvalidationDuringLoad() throws Exception {
+        final ControlTagsCache cache = createCache(10);
+
+        final long generation = cache.getGeneration();
+        // Tags are changed while being loaded: the loaded tags must not be cached
+        cache.invalidate(ACCOUNT_RECORD_ID);
+        cache.put(ACCOUNT_RECORD_ID, TENANT_RECORD_ID, generation, createTags());
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+    }
+
+    @Test(groups = "fast")
+    public void testExpiration() throws Exception {
+        final ControlTagsCache cache = createCache(10);
+
+        cache.put(ACCOUNT_RECORD_ID, TENANT_RECORD_ID, cache.getGeneration(), createTags());
+        Assert.assertNotNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+
+        clock.addDays(1);
+        Assert.assertNull(cache.get(ACCOUNT_RECORD_ID, TENANT_RECORD_ID));
+    }
+
+    private ControlTagsCache createCache(final int maxAccounts) {
+        final TagConfig tagConfig = Mockito.mock(TagConfig.class);
+        Mockito.when(tagConfig.getControlTagsCacheMaxAccounts()).thenReturn(maxAccounts);
+        Mockito.when(tagConfig.getControlTagsCacheMaxAge()).thenReturn(new TimeSpan("1h"));
+        return new ControlTagsCache(tagConfig, clock);
+    }
+
+    private List<Tag> createTags() {
+        return ImmutableList.<Tag>of(new DefaultControlTag(ControlTagType.AUTO_INVOICING_OFF, ObjectType.ACCOUNT, UUID.randomUUID(), clock.getUTCNow()));
+    }
+}
@@ -17,6 +17,7 @@
 package org.killbill.billing.util.tag.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +32,7 @@ import org.killbill.billing.util.entity.Pagination;
 import org.killbill.billing.util.entity.dao.MockEntityDaoBase;
 import org.killbill.billing.util.tag.Tag;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
@@ -41,6 +43,7 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
 
     @Override
     public void create(final TagModelDao tag, final InternalCallContext context) throws TagApiException {
+        tag.setAccountRecordId(context.getAccountRecordId());
         if (tagStore.get(tag.getObjectId()) == null) {
             tagStore.put(tag.getObjectId(), new ArrayList<TagModelDao>());
         }
@@ -86,6 +89,15 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
         }));
     }
 
+    @Override
+    public List<TagModelDao> getTagsForObjects(final Collection<UUID> objectIds, final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
+        final List<TagModelDao> result = new ArrayList<TagModelDao>();
+        for (final UUID objectId : objectIds) {
+            result.addAll(getTagsForObject(objectId, objectType, includedDeleted, internalTenantContext));
+        }
+        return result;
+    }
+
     @Override
     public List<TagModelDao> getTagsForAccountType(final ObjectType objectType, final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
         throw new UnsupportedOperationException();
@@ -93,7 +105,26 @@ public class MockTagDao extends MockEntityDaoBase<TagModelDao, Tag, TagApiExcept
 
     @Override
     public List<TagModelDao> getTagsForAccount(final boolean includedDeleted, final InternalTenantContext internalTenantContext) {
-        throw new UnsupportedOperationException();
+        final List<TagModelDao> result = new ArrayList<TagModelDao>();
+        for (final List<TagModelDao> tags : tagStore.values()) {
+            for (final TagModelDao tag : tags) {
+                if (Objects.equal(tag.getAccountRecordId(), internalTenantContext.getAccountRecordId())) {
+                    result.add(tag);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<TagModelDao> getTagsForAccountAndTagDefinitions(final Collection<UUID> tagDefinitionIds, final InternalTenantContext internalTenantContext) {
+        final List<TagModelDao> result = new ArrayList<TagModelDao>();
+        for (final TagModelDao tag : getTagsForAccount(false, internalTenantContext)) {
+            if (tagDefinitionIds.contains(tag.getTagDefinitionId())) {
+                result.add(tag);
+            }
+        }
+        return result;
     }
 
     public void clear() {
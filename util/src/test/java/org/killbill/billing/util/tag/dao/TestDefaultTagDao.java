@@ -33,6 +33,8 @@ import org.killbill.billing.util.tag.ControlTagType;
 import org.killbill.billing.util.tag.DescriptiveTag;
 import org.killbill.billing.util.tag.Tag;
 
+import com.google.common.collect.ImmutableList;
+
 import static org.testng.Assert.assertEquals;
 
 public class TestDefaultTagDao extends UtilTestSuiteWithEmbeddedDB {
@@ -156,6 +158,58 @@ public class TestDefaultTagDao extends UtilTestSuiteWithEmbeddedDB {
         Assert.assertEquals(tagDao.getTagsForAccount(true, internalCallContext).size(), 1);
     }
 
+    @Test(groups = "slow")
+    public void testGetTagsForObjects() throws TagApiException {
+        final ObjectType objectType = ObjectType.BUNDLE;
+        final UUID objectId1 = UUID.randomUUID();
+        final UUID objectId2 = UUID.randomUUID();
+        final UUID objectId3 = UUID.randomUUID();
+
+        eventsListener.pushExpectedEvents(NextEvent.TAG, NextEvent.TAG, NextEvent.TAG);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_INVOICING_OFF.getId(), objectType, objectId1, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_PAY_OFF.getId(), objectType, objectId1, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_INVOICING_OFF.getId(), objectType, objectId2, internalCallContext.getCreatedDate())), internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(), objectType, false, internalCallContext).size(), 0);
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(objectId1), objectType, false, internalCallContext).size(), 2);
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(objectId1, objectId2, objectId3), objectType, false, internalCallContext).size(), 3);
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(objectId1, objectId2, objectId3), ObjectType.ACCOUNT, false, internalCallContext).size(), 0);
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        tagDao.deleteTag(objectId2, objectType, ControlTagType.AUTO_INVOICING_OFF.getId(), internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(objectId1, objectId2), objectType, false, internalCallContext).size(), 2);
+        Assert.assertEquals(tagDao.getTagsForObjects(ImmutableList.<UUID>of(objectId1, objectId2), objectType, true, internalCallContext).size(), 3);
+    }
+
+    @Test(groups = "slow")
+    public void testGetTagsForAccountAndTagDefinitions() throws TagApiException, TagDefinitionApiException {
+        final ObjectType objectType = ObjectType.ACCOUNT;
+        final UUID objectId = UUID.randomUUID();
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG_DEFINITION);
+        final TagDefinitionModelDao userDefinition = tagDefinitionDao.create(UUID.randomUUID().toString().substring(0, 5), "user defined", internalCallContext);
+        assertListenerStatus();
+
+        eventsListener.pushExpectedEvents(NextEvent.TAG, NextEvent.TAG, NextEvent.TAG);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_INVOICING_OFF.getId(), objectType, objectId, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(ControlTagType.AUTO_PAY_OFF.getId(), objectType, objectId, internalCallContext.getCreatedDate())), internalCallContext);
+        tagDao.create(new TagModelDao(new DescriptiveTag(userDefinition.getId(), objectType, objectId, internalCallContext.getCreatedDate())), internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(tagDao.getTagsForAccountAndTagDefinitions(ImmutableList.<UUID>of(), internalCallContext).size(), 0);
+        Assert.assertEquals(tagDao.getTagsForAccountAndTagDefinitions(ImmutableList.<UUID>of(ControlTagType.AUTO_INVOICING_OFF.getId(), ControlTagType.AUTO_PAY_OFF.getId(), ControlTagType.TEST.getId()), internalCallContext).size(), 2);
+        Assert.assertEquals(tagDao.getTagsForAccountAndTagDefinitions(ImmutableList.<UUID>of(userDefinition.getId()), internalCallContext).size(), 1);
+
+        eventsListener.pushExpectedEvent(NextEvent.TAG);
+        tagDao.deleteTag(objectId, objectType, ControlTagType.AUTO_PAY_OFF.getId(), internalCallContext);
+        assertListenerStatus();
+
+        Assert.assertEquals(tagDao.getTagsForAccountAndTagDefinitions(ImmutableList.<UUID>of(ControlTagType.AUTO_INVOICING_OFF.getId(), ControlTagType.AUTO_PAY_OFF.getId()), internalCallContext).size(), 1);
+    }
+
     @Test(groups = "slow")
     public void testInsertMultipleTags() throws TagApiException {
         final UUID objectId = UUID.randomUUID();